@@ -22,9 +22,11 @@ import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.IntFunction;
 
 import com.google.common.base.Preconditions;
 import org.apache.hadoop.classification.InterfaceAudience;
@@ -183,6 +185,20 @@ public abstract class ChecksumFileSystem extends FilterFileSystem {
       return datas.available() + super.available();
     }
     
+    /**
+     * Read the ranges from the raw file when there are no checksums to
+     * verify; otherwise each range is read and verified one after the other.
+     */
+    @Override
+    public void readVectored(List<? extends FileRange> ranges,
+        IntFunction<ByteBuffer> allocate) throws IOException {
+      if (needChecksum()) {
+        VectoredReadUtils.readVectored(this, ranges, allocate);
+      } else {
+        datas.readVectored(ranges, allocate);
+      }
+    }
+
     @Override
     public int read(long position, byte[] b, int off, int len)
       throws IOException {
@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.fs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * A range of a file covering the nearby ranges merged into it by
+ * {@link VectoredReadUtils#mergeSortedRanges}, read at once and then
+ * sliced into the data of each of them.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Unstable
+public class CombinedFileRange extends FileRangeImpl {
+  private final List<FileRange> underlying = new ArrayList<>();
+
+  CombinedFileRange(FileRange first) {
+    super(first.getOffset(), first.getLength());
+    underlying.add(first);
+  }
+
+  /**
+   * @return the ranges merged into this one, in the order of their offsets.
+   */
+  public List<FileRange> getUnderlying() {
+    return underlying;
+  }
+
+  /**
+   * Merge the given range, at or after the start of this one, if the gap
+   * between them is at most minSeek bytes and the merged range is at most
+   * maxSize bytes.
+   * @return true if the range was merged.
+   */
+  boolean merge(FileRange other, int minSeek, int maxSize) {
+    long end = getOffset() + getLength();
+    long otherEnd = other.getOffset() + other.getLength();
+    long newEnd = Math.max(end, otherEnd);
+    if (other.getOffset() - end > minSeek ||
+        newEnd - getOffset() > maxSize) {
+      return false;
+    }
+    setLength((int) (newEnd - getOffset()));
+    underlying.add(other);
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " of " + underlying.size() + " ranges";
+  }
+}
@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.fs;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * A byte range of a file to read with
+ * {@link PositionedReadable#readVectored}.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public interface FileRange {
+
+  /**
+   * @return the offset of the range in the file.
+   */
+  long getOffset();
+
+  /**
+   * @return the number of bytes of the range.
+   */
+  int getLength();
+
+  /**
+   * @return the future completed with the data of the range, once read.
+   * The buffer of the data is positioned at its first byte and limited
+   * to its last.
+   */
+  CompletableFuture<ByteBuffer> getData();
+
+  /**
+   * Set the future of the data of the range; called by the stream reading
+   * it.
+   * @param data the future completed with the data of the range
+   */
+  void setData(CompletableFuture<ByteBuffer> data);
+
+  /**
+   * Create a range to read.
+   * @param offset the offset of the range in the file
+   * @param length the number of bytes of the range
+   * @return a new range
+   */
+  static FileRange createFileRange(long offset, int length) {
+    return new FileRangeImpl(offset, length);
+  }
+}
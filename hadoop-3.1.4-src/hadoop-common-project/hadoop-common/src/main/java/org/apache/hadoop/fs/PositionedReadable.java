@@ -18,6 +18,9 @@
 package org.apache.hadoop.fs;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.IntFunction;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
@@ -85,4 +88,41 @@ public interface PositionedReadable {
    * the read operation completed
    */
   void readFully(long position, byte[] buffer) throws IOException;
+
+  /**
+   * @return the largest gap between two ranges read at once by
+   * {@link #readVectored}, rather than apart.
+   */
+  default int minSeekForVectorReads() {
+    return 4 * 1024;
+  }
+
+  /**
+   * @return the largest range read at once by {@link #readVectored} from
+   * nearby ranges merged.
+   */
+  default int maxReadSizeForVectorReads() {
+    return 1024 * 1024;
+  }
+
+  /**
+   * Read a vector of ranges, each into a buffer allocated for it, and
+   * complete the future of the data of each range once read. This does not
+   * change the current offset of a file, and is thread-safe.
+   *
+   * The ranges may be read in any order, at once when nearby and in
+   * parallel, and this may return before they are read. The default
+   * implementation reads them one after the other with
+   * {@link #readFully(long, byte[], int, int)}.
+   *
+   * <i>Warning: Not all filesystems satisfy the thread-safety requirement.</i>
+   * @param ranges the ranges to read
+   * @param allocate the function allocating a buffer of the given length
+   * @throws IOException IO problems.
+   * @throws EOFException the offset of a range is negative
+   */
+  default void readVectored(List<? extends FileRange> ranges,
+      IntFunction<ByteBuffer> allocate) throws IOException {
+    VectoredReadUtils.readVectored(this, ranges, allocate);
+  }
 }
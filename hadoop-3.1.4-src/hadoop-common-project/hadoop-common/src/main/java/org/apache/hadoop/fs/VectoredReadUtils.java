@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.fs;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntFunction;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Utility methods for the implementations of
+ * {@link PositionedReadable#readVectored}.
+ */
+@InterfaceAudience.LimitedPrivate({"HDFS"})
+@InterfaceStability.Unstable
+public final class VectoredReadUtils {
+  /** The size of the copies of the ranges read into direct buffers. */
+  private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+  private VectoredReadUtils() {
+  }
+
+  /**
+   * Check that a range can be read.
+   * @param range the range
+   * @throws EOFException if the offset of the range is negative
+   * @throws IllegalArgumentException if its length is negative
+   */
+  public static void validateRangeRequest(FileRange range)
+      throws EOFException {
+    Preconditions.checkArgument(range.getLength() >= 0,
+        "length is negative in %s", range);
+    if (range.getOffset() < 0) {
+      throw new EOFException("position is negative in " + range);
+    }
+  }
+
+  /**
+   * Read each range with {@link PositionedReadable#readFully}, one after
+   * the other, for the streams which do not read vectors of ranges in a
+   * better way.
+   * @param stream the stream to read
+   * @param ranges the ranges to read
+   * @param allocate the function allocating the buffer of each range
+   * @throws EOFException if the offset of a range is negative
+   */
+  public static void readVectored(PositionedReadable stream,
+      List<? extends FileRange> ranges, IntFunction<ByteBuffer> allocate)
+      throws EOFException {
+    for (FileRange range : ranges) {
+      validateRangeRequest(range);
+    }
+    for (FileRange range : ranges) {
+      range.setData(readRangeFrom(stream, range, allocate));
+    }
+  }
+
+  /**
+   * Read a range with {@link PositionedReadable#readFully}.
+   * @param stream the stream to read
+   * @param range the range to read
+   * @param allocate the function allocating the buffer of the range
+   * @return the future of the data, already completed with it or with the
+   * error reading it.
+   */
+  public static CompletableFuture<ByteBuffer> readRangeFrom(
+      PositionedReadable stream, FileRange range,
+      IntFunction<ByteBuffer> allocate) {
+    CompletableFuture<ByteBuffer> result = new CompletableFuture<>();
+    try {
+      ByteBuffer buffer = allocate.apply(range.getLength());
+      int start = buffer.position();
+      if (buffer.hasArray()) {
+        stream.readFully(range.getOffset(), buffer.array(),
+            buffer.arrayOffset() + start, range.getLength());
+        buffer.position(start + range.getLength());
+      } else {
+        byte[] copy = new byte[Math.min(COPY_BUFFER_SIZE, range.getLength())];
+        int nread = 0;
+        while (nread < range.getLength()) {
+          int len = Math.min(copy.length, range.getLength() - nread);
+          stream.readFully(range.getOffset() + nread, copy, 0, len);
+          buffer.put(copy, 0, len);
+          nread += len;
+        }
+      }
+      buffer.limit(buffer.position());
+      buffer.position(start);
+      result.complete(buffer);
+    } catch (IOException | RuntimeException e) {
+      result.completeExceptionally(e);
+    }
+    return result;
+  }
+
+  /**
+   * @return the ranges sorted by their offsets.
+   */
+  public static List<FileRange> sortRanges(
+      List<? extends FileRange> ranges) {
+    List<FileRange> sorted = new ArrayList<>(ranges);
+    Collections.sort(sorted, new Comparator<FileRange>() {
+      @Override
+      public int compare(FileRange a, FileRange b) {
+        return Long.compare(a.getOffset(), b.getOffset());
+      }
+    });
+    return sorted;
+  }
+
+  /**
+   * Merge the nearby ranges, to read each group of them at once.
+   * @param sortedRanges the ranges, sorted by their offsets
+   * @param minSeek the largest gap between two ranges merged; reading the
+   * bytes in between costs less than reading the ranges apart
+   * @param maxSize the largest merged range, unless a single range is
+   * larger
+   * @return the merged ranges, in the order of their offsets.
+   */
+  public static List<CombinedFileRange> mergeSortedRanges(
+      List<? extends FileRange> sortedRanges, int minSeek, int maxSize) {
+    List<CombinedFileRange> merged = new ArrayList<>();
+    CombinedFileRange current = null;
+    for (FileRange range : sortedRanges) {
+      if (current == null || !current.merge(range, minSeek, maxSize)) {
+        current = new CombinedFileRange(range);
+        merged.add(current);
+      }
+    }
+    return merged;
+  }
+
+  /**
+   * Slice the data of a range out of the data of the range merged from it.
+   * @param readData the data of the merged range
+   * @param readOffset the offset of the merged range in the file
+   * @param request the range merged
+   * @return a buffer sharing the bytes of the range with the merged data.
+   */
+  public static ByteBuffer sliceTo(ByteBuffer readData, long readOffset,
+      FileRange request) {
+    int start = readData.position() +
+        (int) (request.getOffset() - readOffset);
+    ByteBuffer slice = readData.duplicate();
+    slice.limit(start + request.getLength());
+    slice.position(start);
+    return slice.slice();
+  }
+}
@@ -80,7 +80,7 @@ public class RSRawDecoder extends RawErasureDecoder {
     for (int i = 0; i < getNumDataUnits(); i++) {
       realInputs[i] = decodingState.inputs[validIndexes[i]];
     }
-    RSUtil.encodeData(gfTables, realInputs, decodingState.outputs);
+    encodeData(gfTables, realInputs, decodingState.outputs);
   }
 
   @Override
@@ -96,7 +96,7 @@ public class RSRawDecoder extends RawErasureDecoder {
       realInputs[i] = decodingState.inputs[validIndexes[i]];
       realInputOffsets[i] = decodingState.inputOffsets[validIndexes[i]];
     }
-    RSUtil.encodeData(gfTables, dataLen, realInputs, realInputOffsets,
+    encodeData(gfTables, dataLen, realInputs, realInputOffsets,
         decodingState.outputs, decodingState.outputOffsets);
   }
 
@@ -174,4 +174,23 @@ public class RSRawDecoder extends RawErasureDecoder {
       }
     }
   }
+
+  /**
+   * Compute the outputs from the inputs and the tables of the coefficients
+   * generated by {@link RSUtil#initTables}. The outputs were reset.
+   */
+  protected void encodeData(byte[] tables, ByteBuffer[] inputs,
+      ByteBuffer[] outputs) {
+    RSUtil.encodeData(tables, inputs, outputs);
+  }
+
+  /**
+   * Compute the outputs from the inputs and the tables of the coefficients
+   * generated by {@link RSUtil#initTables}. The outputs were reset.
+   */
+  protected void encodeData(byte[] tables, int dataLen, byte[][] inputs,
+      int[] inputOffsets, byte[][] outputs, int[] outputOffsets) {
+    RSUtil.encodeData(tables, dataLen, inputs, inputOffsets, outputs,
+        outputOffsets);
+  }
 }
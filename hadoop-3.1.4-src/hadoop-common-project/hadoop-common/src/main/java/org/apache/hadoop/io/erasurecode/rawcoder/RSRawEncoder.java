@@ -23,6 +23,8 @@ import org.apache.hadoop.io.erasurecode.ErasureCoderOptions;
 import org.apache.hadoop.io.erasurecode.rawcoder.util.DumpUtil;
 import org.apache.hadoop.io.erasurecode.rawcoder.util.RSUtil;
 
+import java.nio.ByteBuffer;
+
 /**
  * A raw erasure encoder in RS code scheme in pure Java in case native one
  * isn't available in some environment. Please always use native implementations
@@ -64,7 +66,7 @@ public class RSRawEncoder extends RawErasureEncoder {
   protected void doEncode(ByteBufferEncodingState encodingState) {
     CoderUtil.resetOutputBuffers(encodingState.outputs,
         encodingState.encodeLength);
-    RSUtil.encodeData(gfTables, encodingState.inputs, encodingState.outputs);
+    encodeData(gfTables, encodingState.inputs, encodingState.outputs);
   }
 
   @Override
@@ -72,9 +74,28 @@ public class RSRawEncoder extends RawErasureEncoder {
     CoderUtil.resetOutputBuffers(encodingState.outputs,
         encodingState.outputOffsets,
         encodingState.encodeLength);
-    RSUtil.encodeData(gfTables, encodingState.encodeLength,
+    encodeData(gfTables, encodingState.encodeLength,
         encodingState.inputs,
         encodingState.inputOffsets, encodingState.outputs,
         encodingState.outputOffsets);
   }
+
+  /**
+   * Compute the outputs from the inputs and the tables of the coefficients
+   * generated by {@link RSUtil#initTables}. The outputs were reset.
+   */
+  protected void encodeData(byte[] tables, ByteBuffer[] inputs,
+      ByteBuffer[] outputs) {
+    RSUtil.encodeData(tables, inputs, outputs);
+  }
+
+  /**
+   * Compute the outputs from the inputs and the tables of the coefficients
+   * generated by {@link RSUtil#initTables}. The outputs were reset.
+   */
+  protected void encodeData(byte[] tables, int dataLen, byte[][] inputs,
+      int[] inputOffsets, byte[][] outputs, int[] outputOffsets) {
+    RSUtil.encodeData(tables, dataLen, inputs, inputOffsets, outputs,
+        outputOffsets);
+  }
 }
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.erasurecode.rawcoder.util;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Computes the outputs of a Reed-Solomon coder like
+ * {@link RSUtil#encodeData}, from the same tables, faster in pure Java.
+ * <ul>
+ * <li>Each byte is multiplied by a coefficient with a single lookup in the
+ * row of the coefficient in the full {@link GF256#gfMulTab()} table.</li>
+ * <li>The data is coded a chunk at a time, so that the chunks of the inputs
+ * and of the outputs stay in the CPU caches while every output is computed.
+ * </li>
+ * <li>The chunks of the buffers that are not backed by arrays are copied
+ * in and out in bulk, rather than read and written a byte at a time.</li>
+ * </ul>
+ */
+@InterfaceAudience.Private
+public final class RSTableUtil {
+  /** The bytes of each input and output coded at a time. */
+  static final int CHUNK_SIZE = 4096;
+
+  private RSTableUtil() {
+  }
+
+  /**
+   * @return the rows of the multiplication table of the coefficients of the
+   * given tables, generated by {@link RSUtil#initTables}, in the same order.
+   */
+  private static byte[][] getMulTables(byte[] gfTables, int numInputs,
+      int numOutputs) {
+    final byte[][] mulTables = new byte[numInputs * numOutputs][];
+    for (int i = 0; i < mulTables.length; i++) {
+      // the nibble tables start with 0 and the coefficient times 1
+      mulTables[i] = GF256.gfMulTab()[gfTables[i * 32 + 1] & 0xff];
+    }
+    return mulTables;
+  }
+
+  /**
+   * Add to len bytes of the output the products of the inputs with the
+   * coefficients of the output.
+   */
+  private static void encodeChunk(byte[][] mulTables, int tableOffset,
+      byte[][] inputs, int[] inputOffsets, int start, int len,
+      byte[] output, int oPos) {
+    for (int j = 0; j < inputs.length; j++) {
+      final byte[] t = mulTables[tableOffset + j];
+      final byte[] in = inputs[j];
+      final int iPos = inputOffsets[j] + start;
+      for (int i = 0; i < len; i++) {
+        output[oPos + i] ^= t[in[iPos + i] & 0xff];
+      }
+    }
+  }
+
+  /**
+   * Encode a group of inputs data and add to the outputs, like
+   * {@link RSUtil#encodeData(byte[], int, byte[][], int[], byte[][], int[])}.
+   */
+  public static void encodeData(byte[] gfTables, int dataLen,
+      byte[][] inputs, int[] inputOffsets, byte[][] outputs,
+      int[] outputOffsets) {
+    final int numInputs = inputs.length;
+    final byte[][] mulTables =
+        getMulTables(gfTables, numInputs, outputs.length);
+    for (int start = 0; start < dataLen; start += CHUNK_SIZE) {
+      final int len = Math.min(CHUNK_SIZE, dataLen - start);
+      for (int l = 0; l < outputs.length; l++) {
+        encodeChunk(mulTables, l * numInputs, inputs, inputOffsets, start,
+            len, outputs[l], outputOffsets[l] + start);
+      }
+    }
+  }
+
+  /**
+   * Encode a group of inputs data and add to the outputs, like
+   * {@link RSUtil#encodeData(byte[], ByteBuffer[], ByteBuffer[])}. The
+   * positions of the buffers are not changed.
+   */
+  public static void encodeData(byte[] gfTables, ByteBuffer[] inputs,
+      ByteBuffer[] outputs) {
+    final int dataLen = inputs[0].remaining();
+    boolean hasArrays = true;
+    for (ByteBuffer buffer : inputs) {
+      hasArrays &= buffer.hasArray();
+    }
+    for (ByteBuffer buffer : outputs) {
+      hasArrays &= buffer.hasArray();
+    }
+    if (hasArrays) {
+      final byte[][] inputArrays = new byte[inputs.length][];
+      final int[] inputOffsets = new int[inputs.length];
+      for (int j = 0; j < inputs.length; j++) {
+        inputArrays[j] = inputs[j].array();
+        inputOffsets[j] = inputs[j].arrayOffset() + inputs[j].position();
+      }
+      final byte[][] outputArrays = new byte[outputs.length][];
+      final int[] outputOffsets = new int[outputs.length];
+      for (int l = 0; l < outputs.length; l++) {
+        outputArrays[l] = outputs[l].array();
+        outputOffsets[l] = outputs[l].arrayOffset() + outputs[l].position();
+      }
+      encodeData(gfTables, dataLen, inputArrays, inputOffsets, outputArrays,
+          outputOffsets);
+      return;
+    }
+
+    // code the chunks copied out of the buffers
+    final int numInputs = inputs.length;
+    final byte[][] mulTables =
+        getMulTables(gfTables, numInputs, outputs.length);
+    final ByteBuffer[] in = new ByteBuffer[numInputs];
+    final byte[][] inputChunks = new byte[numInputs][];
+    for (int j = 0; j < numInputs; j++) {
+      in[j] = inputs[j].duplicate();
+      inputChunks[j] = new byte[Math.min(CHUNK_SIZE, dataLen)];
+    }
+    final int[] chunkOffsets = new int[numInputs];
+    final ByteBuffer[] out = new ByteBuffer[outputs.length];
+    for (int l = 0; l < outputs.length; l++) {
+      out[l] = outputs[l].duplicate();
+    }
+    final byte[] outputChunk = new byte[Math.min(CHUNK_SIZE, dataLen)];
+    for (int start = 0; start < dataLen; start += CHUNK_SIZE) {
+      final int len = Math.min(CHUNK_SIZE, dataLen - start);
+      for (int j = 0; j < numInputs; j++) {
+        in[j].get(inputChunks[j], 0, len);
+      }
+      for (int l = 0; l < outputs.length; l++) {
+        final int oPos = out[l].position();
+        out[l].get(outputChunk, 0, len);
+        encodeChunk(mulTables, l * numInputs, inputChunks, chunkOffsets, 0,
+            len, outputChunk, 0);
+        out[l].position(oPos);
+        out[l].put(outputChunk, 0, len);
+      }
+    }
+  }
+}
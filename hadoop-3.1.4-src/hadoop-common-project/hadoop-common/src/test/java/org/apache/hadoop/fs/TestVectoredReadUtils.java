@@ -0,0 +1,184 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.fs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.IntFunction;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the merging of the ranges of vectored reads and the vectored reads
+ * of local files.
+ */
+public class TestVectoredReadUtils {
+  private static final int FILE_LENGTH = 100 * 1024;
+  private static final byte[] DATA = new byte[FILE_LENGTH];
+  private static Path file;
+
+  @BeforeClass
+  public static void createFile() throws Exception {
+    File dir = GenericTestUtils.getTestDir("work-dir/vectored");
+    for (int i = 0; i < DATA.length; i++) {
+      DATA[i] = (byte) (i % 251);
+    }
+    file = new Path(dir.getAbsolutePath(), "file");
+    LocalFileSystem fs = FileSystem.getLocal(new Configuration());
+    try (FSDataOutputStream out = fs.create(file, true)) {
+      out.write(DATA);
+    }
+  }
+
+  private static List<FileRange> ranges(long... offsetsAndLengths) {
+    FileRange[] ranges = new FileRange[offsetsAndLengths.length / 2];
+    for (int i = 0; i < ranges.length; i++) {
+      ranges[i] = FileRange.createFileRange(offsetsAndLengths[2 * i],
+          (int) offsetsAndLengths[2 * i + 1]);
+    }
+    return Arrays.asList(ranges);
+  }
+
+  private static void assertRange(long offset, int length, FileRange range) {
+    assertEquals(offset, range.getOffset());
+    assertEquals(length, range.getLength());
+  }
+
+  private static void assertData(List<FileRange> ranges) throws Exception {
+    for (FileRange range : ranges) {
+      ByteBuffer data = range.getData().get();
+      assertEquals(range.getLength(), data.remaining());
+      for (int i = 0; i < range.getLength(); i++) {
+        assertEquals("at " + (range.getOffset() + i) + " of " + range,
+            DATA[(int) range.getOffset() + i], data.get(data.position() + i));
+      }
+    }
+  }
+
+  @Test
+  public void testMergeSortedRanges() {
+    List<FileRange> sorted = VectoredReadUtils.sortRanges(
+        ranges(1000, 100, 0, 100, 1100, 50, 500, 100, 5000, 10, 520, 10));
+    assertRange(0, 100, sorted.get(0));
+    assertRange(5000, 10, sorted.get(5));
+
+    List<CombinedFileRange> merged =
+        VectoredReadUtils.mergeSortedRanges(sorted, 400, 1000);
+    assertEquals(3, merged.size());
+    // the gap of 400 bytes and the range within another are merged
+    assertRange(0, 600, merged.get(0));
+    assertEquals(3, merged.get(0).getUnderlying().size());
+    assertRange(1000, 150, merged.get(1));
+    assertRange(5000, 10, merged.get(2));
+    assertTrue(merged.get(2).getUnderlying().get(0) == sorted.get(5));
+
+    // merged ranges are not larger than the maximum
+    merged = VectoredReadUtils.mergeSortedRanges(sorted, 400, 550);
+    assertEquals(4, merged.size());
+    assertRange(0, 100, merged.get(0));
+    assertRange(500, 100, merged.get(1));
+
+    // without gaps, only the adjacent and overlapping ranges are merged
+    merged = VectoredReadUtils.mergeSortedRanges(sorted, 0, 10000);
+    assertEquals(4, merged.size());
+    assertRange(500, 100, merged.get(1));
+    assertRange(1000, 150, merged.get(2));
+  }
+
+  @Test
+  public void testSliceTo() {
+    ByteBuffer read = ByteBuffer.allocate(110);
+    for (int i = 0; i < read.capacity(); i++) {
+      read.put((byte) i);
+    }
+    read.position(10);
+    ByteBuffer slice = VectoredReadUtils.sliceTo(read, 1000,
+        FileRange.createFileRange(1020, 30));
+    assertEquals(0, slice.position());
+    assertEquals(30, slice.remaining());
+    assertEquals(30, slice.get(0));
+    assertEquals(59, slice.get(29));
+    assertEquals(10, read.position());
+  }
+
+  private void testReadVectored(FileSystem fs) throws Exception {
+    List<IntFunction<ByteBuffer>> allocators = Arrays.asList(
+        ByteBuffer::allocate, ByteBuffer::allocateDirect);
+    for (IntFunction<ByteBuffer> allocate : allocators) {
+      List<FileRange> ranges = ranges(FILE_LENGTH - 100, 100, 0, 1,
+          10, 70 * 1024, 8000, 0, 20 * 1024, 100);
+      try (FSDataInputStream in = fs.open(file)) {
+        in.readVectored(ranges, allocate);
+        assertData(ranges);
+      }
+    }
+
+    try (FSDataInputStream in = fs.open(file)) {
+      List<FileRange> ranges = ranges(FILE_LENGTH - 10, 20, 10, 10);
+      in.readVectored(ranges, ByteBuffer::allocate);
+      try {
+        ranges.get(0).getData().get();
+        fail("read past the end of the file");
+      } catch (ExecutionException e) {
+        GenericTestUtils.assertExceptionContains("EOF", e.getCause());
+        assertTrue(e.getCause() instanceof EOFException);
+      }
+      assertData(ranges.subList(1, 2));
+      try {
+        in.readVectored(ranges(-1, 10), ByteBuffer::allocate);
+        fail("read at a negative offset");
+      } catch (EOFException e) {
+        GenericTestUtils.assertExceptionContains("negative", e);
+      }
+    }
+  }
+
+  @Test
+  public void testReadVectoredLocal() throws Exception {
+    testReadVectored(FileSystem.getLocal(new Configuration()));
+  }
+
+  @Test
+  public void testReadVectoredRawLocal() throws Exception {
+    testReadVectored(FileSystem.getLocal(new Configuration()).getRaw());
+  }
+
+  @Test
+  public void testReadVectoredWithoutChecksums() throws Exception {
+    LocalFileSystem fs = new LocalFileSystem();
+    fs.initialize(FileSystem.getDefaultUri(new Configuration()),
+        new Configuration());
+    try {
+      fs.setVerifyChecksum(false);
+      testReadVectored(fs);
+    } finally {
+      fs.close();
+    }
+  }
+}
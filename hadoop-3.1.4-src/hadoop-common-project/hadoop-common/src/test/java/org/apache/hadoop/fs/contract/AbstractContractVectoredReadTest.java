@@ -0,0 +1,241 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs.contract;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileRange;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+import org.junit.Test;
+
+import static org.apache.hadoop.fs.contract.ContractTestUtils.createFile;
+import static org.apache.hadoop.fs.contract.ContractTestUtils.dataset;
+import static org.apache.hadoop.test.LambdaTestUtils.intercept;
+
+/**
+ * Test vectored reads of lists of ranges, as specified for
+ * {@code PositionedReadable.readVectored()}.
+ */
+public abstract class AbstractContractVectoredReadTest
+    extends AbstractFSContractTestBase {
+
+  /**
+   * The length of the file read; long enough for some of the ranges to be
+   * too far apart to be merged.
+   */
+  public static final int DATASET_LEN = 256 * 1024;
+  private static final int FUTURE_TIMEOUT_SECONDS = 60;
+
+  private byte[] data;
+  private FSDataInputStream instream;
+
+  @Override
+  public void setup() throws Exception {
+    super.setup();
+    Path path = path("vectored");
+    data = dataset(DATASET_LEN, 'a', 32);
+    createFile(getFileSystem(), path, true, data);
+    instream = getFileSystem().open(path);
+  }
+
+  @Override
+  public void teardown() throws Exception {
+    IOUtils.closeStream(instream);
+    instream = null;
+    super.teardown();
+  }
+
+  private static List<FileRange> ranges(long... offsetsAndLengths) {
+    List<FileRange> ranges = new ArrayList<>();
+    for (int i = 0; i < offsetsAndLengths.length; i += 2) {
+      ranges.add(FileRange.createFileRange(offsetsAndLengths[i],
+          (int) offsetsAndLengths[i + 1]));
+    }
+    return ranges;
+  }
+
+  /**
+   * Read the ranges and check that the data of each of them is that of the
+   * file at its offset.
+   */
+  private void readAndValidate(List<FileRange> ranges,
+      IntFunction<ByteBuffer> allocate) throws Exception {
+    List<FileRange> requested = new ArrayList<>(ranges);
+    instream.readVectored(ranges, allocate);
+    assertEquals("ranges modified", requested, ranges);
+    for (FileRange range : ranges) {
+      assertNotNull("no data for " + range, range.getData());
+      ByteBuffer buffer = range.getData().get(FUTURE_TIMEOUT_SECONDS,
+          TimeUnit.SECONDS);
+      assertEquals("length of " + range, range.getLength(),
+          buffer.remaining());
+      for (int i = 0; i < range.getLength(); i++) {
+        assertEquals("byte " + i + " of " + range,
+            data[(int) range.getOffset() + i],
+            buffer.get(buffer.position() + i));
+      }
+    }
+  }
+
+  /**
+   * Wait for the data of a range which is expected to fail.
+   * @return the cause of the failure.
+   */
+  private static Throwable awaitFailure(FileRange range) throws Exception {
+    try {
+      range.getData().get(FUTURE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      fail("expected a failure reading " + range);
+      return null;
+    } catch (ExecutionException e) {
+      return e.getCause();
+    }
+  }
+
+  @Test
+  public void testNoRanges() throws Throwable {
+    describe("read an empty list of ranges");
+    instream.readVectored(Collections.<FileRange>emptyList(),
+        ByteBuffer::allocate);
+  }
+
+  @Test
+  public void testDisjointRanges() throws Throwable {
+    describe("read ranges with gaps between them");
+    readAndValidate(ranges(0, 100, 1000, 100, 10000, 4000, 100000, 1024,
+        200000, 8192), ByteBuffer::allocate);
+  }
+
+  @Test
+  public void testDirectBuffers() throws Throwable {
+    describe("read ranges into direct buffers");
+    readAndValidate(ranges(0, 100, 1000, 100, 10000, 4000, 100000, 1024,
+        200000, 8192), ByteBuffer::allocateDirect);
+  }
+
+  @Test
+  public void testConsecutiveRanges() throws Throwable {
+    describe("read ranges one after the other");
+    readAndValidate(ranges(100, 500, 600, 500, 1100, 500),
+        ByteBuffer::allocate);
+  }
+
+  @Test
+  public void testUnorderedRanges() throws Throwable {
+    describe("read ranges listed out of the order of their offsets");
+    readAndValidate(ranges(200000, 1024, 100, 200, 100000, 300, 0, 50),
+        ByteBuffer::allocate);
+  }
+
+  @Test
+  public void testOverlappingRanges() throws Throwable {
+    describe("read ranges overlapping or containing each other");
+    readAndValidate(ranges(100, 1000, 500, 1000, 600, 10, 0, 4096,
+        30000, 10000), ByteBuffer::allocate);
+  }
+
+  @Test
+  public void testSameRangeTwice() throws Throwable {
+    describe("read the same range listed twice");
+    readAndValidate(ranges(1000, 2000, 1000, 2000), ByteBuffer::allocate);
+  }
+
+  @Test
+  public void testWholeFile() throws Throwable {
+    describe("read the whole file as a single range");
+    readAndValidate(ranges(0, DATASET_LEN), ByteBuffer::allocate);
+  }
+
+  @Test
+  public void testEmptyRange() throws Throwable {
+    describe("read a range of no bytes");
+    readAndValidate(ranges(100, 0, 200, 10), ByteBuffer::allocate);
+  }
+
+  @Test
+  public void testPositionUnchanged() throws Throwable {
+    describe("vectored reads do not change the position of the stream");
+    instream.seek(5000);
+    readAndValidate(ranges(0, 100, 20000, 100), ByteBuffer::allocate);
+    assertEquals(5000, instream.getPos());
+    assertEquals(data[5000], (byte) instream.read());
+  }
+
+  @Test
+  public void testNegativeOffset() throws Throwable {
+    describe("a range at a negative offset is rejected before any read");
+    List<FileRange> ranges = ranges(0, 100, -1, 100);
+    intercept(EOFException.class,
+        () -> instream.readVectored(ranges, ByteBuffer::allocate));
+    assertNull("data set for " + ranges.get(0), ranges.get(0).getData());
+  }
+
+  @Test
+  public void testNegativeLength() throws Throwable {
+    describe("a range of negative length is rejected before any read");
+    List<FileRange> ranges = ranges(0, 100, 1000, -1);
+    intercept(IllegalArgumentException.class,
+        () -> instream.readVectored(ranges, ByteBuffer::allocate));
+    assertNull("data set for " + ranges.get(0), ranges.get(0).getData());
+  }
+
+  @Test
+  public void testRangePastEOF() throws Throwable {
+    describe("a range extending past the end of the file fails");
+    List<FileRange> ranges = ranges(DATASET_LEN - 100, 200);
+    instream.readVectored(ranges, ByteBuffer::allocate);
+    Throwable cause = awaitFailure(ranges.get(0));
+    if (!(cause instanceof EOFException)) {
+      throw new AssertionError("expected an EOFException", cause);
+    }
+  }
+
+  @Test
+  public void testRangeAfterEOF() throws Throwable {
+    describe("a range starting after the end of the file fails");
+    List<FileRange> ranges = ranges(DATASET_LEN + 1000, 100);
+    instream.readVectored(ranges, ByteBuffer::allocate);
+    Throwable cause = awaitFailure(ranges.get(0));
+    if (!(cause instanceof EOFException)) {
+      throw new AssertionError("expected an EOFException", cause);
+    }
+  }
+
+  @Test
+  public void testReadAfterFailedRange() throws Throwable {
+    describe("the stream is still usable after a range failed");
+    List<FileRange> ranges = ranges(DATASET_LEN - 10, 20);
+    instream.readVectored(ranges, ByteBuffer::allocate);
+    awaitFailure(ranges.get(0));
+    readAndValidate(ranges(0, 100, DATASET_LEN - 10, 10),
+        ByteBuffer::allocate);
+    byte[] buf = new byte[100];
+    instream.readFully(200, buf);
+    assertArrayEquals(Arrays.copyOfRange(data, 200, 300), buf);
+  }
+}
@@ -26,6 +26,8 @@ import org.apache.hadoop.io.erasurecode.rawcoder.RSLegacyRawEncoder;
 import org.apache.hadoop.io.erasurecode.rawcoder.RSRawDecoder;
 import org.apache.hadoop.io.erasurecode.rawcoder.RSRawEncoder;
 import org.apache.hadoop.io.erasurecode.rawcoder.RSRawErasureCoderFactory;
+import org.apache.hadoop.io.erasurecode.rawcoder.RSTableRawDecoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.RSTableRawEncoder;
 import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureDecoder;
 import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureEncoder;
 import org.apache.hadoop.io.erasurecode.rawcoder.XORRawDecoder;
@@ -63,8 +65,8 @@ public class TestCodecRawCoderMapping {
       Assert.assertTrue(encoder instanceof NativeRSRawEncoder);
       Assert.assertTrue(decoder instanceof NativeRSRawDecoder);
     } else {
-      Assert.assertTrue(encoder instanceof RSRawEncoder);
-      Assert.assertTrue(decoder instanceof RSRawDecoder);
+      Assert.assertTrue(encoder instanceof RSTableRawEncoder);
+      Assert.assertTrue(decoder instanceof RSTableRawDecoder);
     }
 
     // should return default raw coder of rs-legacy codec
@@ -42,7 +42,8 @@ import java.util.concurrent.TimeUnit;
  * and measures the total throughput. It only focuses on performance and doesn't
  * validate correctness of the encoded/decoded results.
  * User can specify the data size each thread processes, as well as the chunk
- * size to use for the coder.
+ * size to use for the coder, and the numbers of data and parity units of the
+ * schema, 6 and 3 by default.
  * Different coders are supported. User can specify the coder by a coder index.
  * The coder is shared among all the threads.
  */
@@ -55,21 +56,22 @@ public final class RawErasureCoderBenchmark {
   // target size of input data buffer
   private static final int TARGET_BUFFER_SIZE_MB = 126;
 
-  private static final int MAX_CHUNK_SIZE =
-      TARGET_BUFFER_SIZE_MB / BenchData.NUM_DATA_UNITS * 1024;
-
   private static final List<RawErasureCoderFactory> CODER_MAKERS =
       Collections.unmodifiableList(
           Arrays.asList(new DummyRawErasureCoderFactory(),
               new RSLegacyRawErasureCoderFactory(),
               new RSRawErasureCoderFactory(),
-              new NativeRSRawErasureCoderFactory()));
+              new NativeRSRawErasureCoderFactory(),
+              new RSTableRawErasureCoderFactory(),
+              new XORRawErasureCoderFactory()));
 
   enum CODER {
     DUMMY_CODER("Dummy coder"),
     LEGACY_RS_CODER("Legacy Reed-Solomon Java coder"),
     RS_CODER("Reed-Solomon Java coder"),
-    ISAL_CODER("ISA-L coder");
+    ISAL_CODER("ISA-L coder"),
+    TABLE_RS_CODER("Reed-Solomon Java table coder"),
+    XOR_CODER("XOR Java coder");
 
     private final String name;
 
@@ -102,7 +104,8 @@ public final class RawErasureCoderBenchmark {
     }
     System.out.println(
         "Usage: RawErasureCoderBenchmark <encode/decode> <coderIndex> " +
-            "[numThreads] [dataSize-in-MB] [chunkSize-in-KB]");
+            "[numThreads] [dataSize-in-MB] [chunkSize-in-KB] " +
+            "[numDataUnits] [numParityUnits]");
     printAvailableCoders();
     System.exit(1);
   }
@@ -114,6 +117,8 @@ public final class RawErasureCoderBenchmark {
     int dataSizeMB = 10240;
     int chunkSizeKB = 1024;
     int numThreads = 1;
+    int numDataUnits = 6;
+    int numParityUnits = 3;
 
     if (args.length > 1) {
       opType = args[0];
@@ -162,30 +167,60 @@ public final class RawErasureCoderBenchmark {
         if (chunkSizeKB <= 0) {
           usage("Chunk size should be positive.");
         }
-        if (chunkSizeKB > MAX_CHUNK_SIZE) {
-          usage("Chunk size should be no larger than " + MAX_CHUNK_SIZE);
-        }
       } catch (NumberFormatException e) {
         usage("Malformed chunk size, " + e.getMessage());
       }
     }
 
+    if (args.length > 6) {
+      try {
+        numDataUnits = Integer.parseInt(args[5]);
+        numParityUnits = Integer.parseInt(args[6]);
+        if (numDataUnits <= 0 || numParityUnits <= 0) {
+          usage("Numbers of units should be positive.");
+        }
+      } catch (NumberFormatException e) {
+        usage("Malformed number of units, " + e.getMessage());
+      }
+    }
+
+    int maxChunkSizeKB = TARGET_BUFFER_SIZE_MB / numDataUnits * 1024;
+    if (chunkSizeKB > maxChunkSizeKB) {
+      usage("Chunk size should be no larger than " + maxChunkSizeKB);
+    }
+
     performBench(opType, CODER.values()[coderIndex],
-        numThreads, dataSizeMB, chunkSizeKB);
+        numThreads, dataSizeMB, chunkSizeKB, numDataUnits, numParityUnits);
   }
 
   /**
-   * Performs benchmark.
+   * Performs benchmark with 6 data units and 3 parity units.
+   */
+  public static void performBench(String opType, CODER coder,
+      int numThreads, int dataSizeMB, int chunkSizeKB) throws Exception {
+    performBench(opType, coder, numThreads, dataSizeMB, chunkSizeKB, 6, 3);
+  }
+
+  /**
+   * Performs benchmark, decoding all the parity units.
    *
    * @param opType      The operation to perform. Can be encode or decode
    * @param coder       The coder to use
    * @param numThreads  Number of threads to launch concurrently
    * @param dataSizeMB  Total test data size in MB
    * @param chunkSizeKB Chunk size in KB
+   * @param numDataUnits   Number of data units of the schema
+   * @param numParityUnits Number of parity units of the schema, 1 for the
+   *                       XOR coder
    */
   public static void performBench(String opType, CODER coder,
-      int numThreads, int dataSizeMB, int chunkSizeKB) throws Exception {
-    BenchData.configure(dataSizeMB, chunkSizeKB);
+      int numThreads, int dataSizeMB, int chunkSizeKB, int numDataUnits,
+      int numParityUnits) throws Exception {
+    Preconditions.checkArgument(
+        coder != CODER.XOR_CODER || numParityUnits == 1,
+        "The XOR coder has a single parity unit");
+    BenchData.configure(dataSizeMB, chunkSizeKB, numDataUnits,
+        numParityUnits);
 
     RawErasureEncoder encoder = null;
     RawErasureDecoder decoder = null;
@@ -219,7 +254,8 @@ public final class RawErasureCoderBenchmark {
       DecimalFormat df = new DecimalFormat("#.##");
       System.out.println(coder + " " + opType + " " +
           df.format(totalDataSize) + "MB data, with chunk size " +
-          BenchData.chunkSize / 1024 + "KB");
+          BenchData.chunkSize / 1024 + "KB and schema " +
+          BenchData.dataUnits + "x" + BenchData.parityUnits);
       System.out.println("Total time: " + df.format(duration / 1000.0) + " s.");
       System.out.println("Total throughput: " + df.format(
           totalDataSize / duration * 1000.0) + " MB/s");
@@ -241,25 +277,25 @@ public final class RawErasureCoderBenchmark {
 
   private static RawErasureEncoder getRawEncoder(int index) throws IOException {
     RawErasureEncoder encoder =
-        CODER_MAKERS.get(index).createEncoder(BenchData.OPTIONS);
+        CODER_MAKERS.get(index).createEncoder(BenchData.options);
     final boolean isDirect = encoder.preferDirectBuffer();
     encoder.encode(
-        getBufferForInit(BenchData.NUM_DATA_UNITS, 1, isDirect),
-        getBufferForInit(BenchData.NUM_PARITY_UNITS, 1, isDirect));
+        getBufferForInit(BenchData.dataUnits, 1, isDirect),
+        getBufferForInit(BenchData.parityUnits, 1, isDirect));
     return encoder;
   }
 
   private static RawErasureDecoder getRawDecoder(int index) throws IOException {
     RawErasureDecoder decoder =
-        CODER_MAKERS.get(index).createDecoder(BenchData.OPTIONS);
+        CODER_MAKERS.get(index).createDecoder(BenchData.options);
     final boolean isDirect = decoder.preferDirectBuffer();
     ByteBuffer[] inputs = getBufferForInit(
-        BenchData.NUM_ALL_UNITS, 1, isDirect);
-    for (int erasedIndex : BenchData.ERASED_INDEXES) {
+        BenchData.allUnits, 1, isDirect);
+    for (int erasedIndex : BenchData.erasedIndexes) {
       inputs[erasedIndex] = null;
     }
-    decoder.decode(inputs, BenchData.ERASED_INDEXES,
-        getBufferForInit(BenchData.ERASED_INDEXES.length, 1, isDirect));
+    decoder.decode(inputs, BenchData.erasedIndexes,
+        getBufferForInit(BenchData.erasedIndexes.length, 1, isDirect));
     return decoder;
   }
 
@@ -306,27 +342,36 @@ public final class RawErasureCoderBenchmark {
   }
 
   private static class BenchData {
-    public static final ErasureCoderOptions OPTIONS =
-        new ErasureCoderOptions(6, 3);
-    public static final int NUM_DATA_UNITS = OPTIONS.getNumDataUnits();
-    public static final int NUM_PARITY_UNITS = OPTIONS.getNumParityUnits();
-    public static final int NUM_ALL_UNITS = OPTIONS.getNumAllUnits();
+    private static ErasureCoderOptions options;
+    private static int dataUnits;
+    private static int parityUnits;
+    private static int allUnits;
     private static int chunkSize;
     private static long totalDataSizeKB;
     private static int bufferSizeKB;
 
-    private static final int[] ERASED_INDEXES = new int[]{6, 7, 8};
-    private final ByteBuffer[] inputs = new ByteBuffer[NUM_DATA_UNITS];
-    private ByteBuffer[] outputs = new ByteBuffer[NUM_PARITY_UNITS];
-    private ByteBuffer[] decodeInputs = new ByteBuffer[NUM_ALL_UNITS];
-
-    public static void configure(int dataSizeMB, int chunkSizeKB) {
+    // the parity units are decoded
+    private static int[] erasedIndexes;
+    private final ByteBuffer[] inputs = new ByteBuffer[dataUnits];
+    private ByteBuffer[] outputs = new ByteBuffer[parityUnits];
+    private ByteBuffer[] decodeInputs = new ByteBuffer[allUnits];
+
+    public static void configure(int dataSizeMB, int chunkSizeKB,
+        int numDataUnits, int numParityUnits) {
+      options = new ErasureCoderOptions(numDataUnits, numParityUnits);
+      dataUnits = numDataUnits;
+      parityUnits = numParityUnits;
+      allUnits = options.getNumAllUnits();
+      erasedIndexes = new int[numParityUnits];
+      for (int i = 0; i < numParityUnits; i++) {
+        erasedIndexes[i] = numDataUnits + i;
+      }
       chunkSize = chunkSizeKB * 1024;
       // buffer size needs to be a multiple of (numDataUnits * chunkSize)
       int round = (int) Math.round(
-          TARGET_BUFFER_SIZE_MB * 1024.0 / NUM_DATA_UNITS / chunkSizeKB);
+          TARGET_BUFFER_SIZE_MB * 1024.0 / dataUnits / chunkSizeKB);
       Preconditions.checkArgument(round > 0);
-      bufferSizeKB = NUM_DATA_UNITS * chunkSizeKB * round;
+      bufferSizeKB = dataUnits * chunkSizeKB * round;
       System.out.println("Using " + bufferSizeKB / 1024 + "MB buffer.");
 
       round = (int) Math.round(
@@ -345,7 +390,7 @@ public final class RawErasureCoderBenchmark {
     }
 
     public void prepareDecInput() {
-      System.arraycopy(inputs, 0, decodeInputs, 0, NUM_DATA_UNITS);
+      System.arraycopy(inputs, 0, decodeInputs, 0, dataUnits);
     }
 
     public void encode(RawErasureEncoder encoder) throws IOException {
@@ -353,7 +398,7 @@ public final class RawErasureCoderBenchmark {
     }
 
     public void decode(RawErasureDecoder decoder) throws IOException {
-      decoder.decode(decodeInputs, ERASED_INDEXES, outputs);
+      decoder.decode(decodeInputs, erasedIndexes, outputs);
     }
   }
 
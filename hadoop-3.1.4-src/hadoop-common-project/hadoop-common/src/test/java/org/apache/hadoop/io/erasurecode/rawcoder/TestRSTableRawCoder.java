@@ -0,0 +1,43 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.erasurecode.rawcoder;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the raw Reed-solomon coder implemented in Java with whole
+ * multiplication tables.
+ */
+public class TestRSTableRawCoder extends TestRSRawCoderBase {
+
+  @Before
+  public void setup() {
+    this.encoderFactoryClass = RSTableRawErasureCoderFactory.class;
+    this.decoderFactoryClass = RSTableRawErasureCoderFactory.class;
+    setAllowDump(false);
+  }
+
+  @Test
+  public void testCoding_10x4_erasing_d0_p0_many_chunks() {
+    // the units are coded a few chunks of 4096 bytes at a time
+    baseChunkSize = 3 * 4096 + 100;
+    prepare(null, 10, 4, new int[]{0}, new int[]{0});
+    testCodingDoMixAndTwice();
+  }
+}
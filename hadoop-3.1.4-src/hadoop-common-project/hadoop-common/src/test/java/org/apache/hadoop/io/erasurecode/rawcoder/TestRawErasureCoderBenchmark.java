@@ -62,4 +62,22 @@ public class TestRawErasureCoderBenchmark {
     RawErasureCoderBenchmark.performBench("decode",
         RawErasureCoderBenchmark.CODER.ISAL_CODER, 6, 200, 128);
   }
+
+  @Test
+  public void testTableRSCoder() throws Exception {
+    // RS Java table coder
+    RawErasureCoderBenchmark.performBench("encode",
+        RawErasureCoderBenchmark.CODER.TABLE_RS_CODER, 3, 200, 200);
+    RawErasureCoderBenchmark.performBench("decode",
+        RawErasureCoderBenchmark.CODER.TABLE_RS_CODER, 4, 135, 20, 10, 4);
+  }
+
+  @Test
+  public void testXORCoder() throws Exception {
+    // XOR Java coder
+    RawErasureCoderBenchmark.performBench("encode",
+        RawErasureCoderBenchmark.CODER.XOR_CODER, 2, 100, 64, 6, 1);
+    RawErasureCoderBenchmark.performBench("decode",
+        RawErasureCoderBenchmark.CODER.XOR_CODER, 3, 150, 128, 6, 1);
+  }
 }
@@ -0,0 +1,232 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A cache of pages of the blocks read by positional reads, shared by the
+ * streams of a {@link ClientContext}. The pages are direct buffers of the
+ * same size, allocated until the capacity is reached and reused once
+ * evicted.
+ * <p>
+ * A page is cached for a block and a generation stamp: reading the block
+ * with another generation stamp, after an append or a truncate, drops the
+ * page.
+ */
+@InterfaceAudience.Private
+public class BlockPageCache {
+  private static final Logger LOG =
+      LoggerFactory.getLogger(BlockPageCache.class);
+
+  /** Which page is evicted first when the cache is full. */
+  public enum EvictionPolicy {
+    /** The least recently read page. */
+    LRU,
+    /** The page cached first. */
+    FIFO
+  }
+
+  private static final class Key {
+    private final String blockPoolId;
+    private final long blockId;
+    private final long pageOffset;
+
+    private Key(String blockPoolId, long blockId, long pageOffset) {
+      this.blockPoolId = blockPoolId;
+      this.blockId = blockId;
+      this.pageOffset = pageOffset;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return blockId == other.blockId && pageOffset == other.pageOffset &&
+          blockPoolId.equals(other.blockPoolId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(blockId) * 31 + Long.hashCode(pageOffset);
+    }
+  }
+
+  private static final class Page {
+    private final long genStamp;
+    private final ByteBuffer data;
+
+    private Page(long genStamp, ByteBuffer data) {
+      this.genStamp = genStamp;
+      this.data = data;
+    }
+  }
+
+  private final int pageSize;
+  private final int maxPages;
+  private final EvictionPolicy policy;
+  /** The cached pages, the first to evict first. */
+  private final LinkedHashMap<Key, Page> pages;
+  /** The buffers of the pages evicted, to reuse. */
+  private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+  /** The buffers allocated, cached, free or being filled. */
+  private int numAllocated;
+
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long invalidations;
+
+  public BlockPageCache(long capacity, int pageSize,
+      EvictionPolicy policy) {
+    Preconditions.checkArgument(pageSize > 0, "pageSize must be positive");
+    this.pageSize = pageSize;
+    this.maxPages = (int) Math.min(Integer.MAX_VALUE, capacity / pageSize);
+    Preconditions.checkArgument(maxPages > 0,
+        "capacity must be at least one page");
+    this.policy = policy;
+    this.pages = new LinkedHashMap<>(16, 0.75f,
+        policy == EvictionPolicy.LRU);
+    LOG.debug("Created {}", this);
+  }
+
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  /**
+   * Copy the given range of a page of the block into the buffer, if the
+   * page is cached for the generation stamp of the block.
+   *
+   * @param block        the block read
+   * @param pageOffset   the offset of the page in the block
+   * @param offsetInPage the offset of the range in the page
+   * @param len          the length of the range
+   * @param buf          the buffer to copy the range into
+   * @return true if the range was copied.
+   */
+  public synchronized boolean read(ExtendedBlock block, long pageOffset,
+      int offsetInPage, int len, ByteBuffer buf) {
+    Key key = new Key(block.getBlockPoolId(), block.getBlockId(),
+        pageOffset);
+    Page page = pages.get(key);
+    if (page != null && page.genStamp != block.getGenerationStamp()) {
+      pages.remove(key);
+      free.add(page.data);
+      invalidations++;
+      page = null;
+    }
+    if (page == null || offsetInPage + len > page.data.limit()) {
+      misses++;
+      return false;
+    }
+    ByteBuffer src = page.data.duplicate();
+    src.position(offsetInPage);
+    src.limit(offsetInPage + len);
+    buf.put(src);
+    hits++;
+    return true;
+  }
+
+  /**
+   * @return a buffer of a page to fill and {@link #put}, or
+   * {@link #release}, or null if the buffers of all the pages are being
+   * filled.
+   */
+  public synchronized ByteBuffer allocate() {
+    ByteBuffer buf = free.poll();
+    if (buf == null) {
+      if (numAllocated < maxPages) {
+        numAllocated++;
+        buf = ByteBuffer.allocateDirect(pageSize);
+      } else {
+        Iterator<Page> it = pages.values().iterator();
+        if (!it.hasNext()) {
+          return null;
+        }
+        buf = it.next().data;
+        it.remove();
+        evictions++;
+      }
+    }
+    buf.clear();
+    return buf;
+  }
+
+  /**
+   * Cache a page of the given block, filled up to its limit from a buffer
+   * returned by {@link #allocate}.
+   */
+  public synchronized void put(ExtendedBlock block, long pageOffset,
+      ByteBuffer buf) {
+    Page old = pages.put(
+        new Key(block.getBlockPoolId(), block.getBlockId(), pageOffset),
+        new Page(block.getGenerationStamp(), buf));
+    if (old != null) {
+      // read by two streams at once
+      free.add(old.data);
+    }
+  }
+
+  /** Give back a buffer returned by {@link #allocate} and not cached. */
+  public synchronized void release(ByteBuffer buf) {
+    free.add(buf);
+  }
+
+  /** @return the number of pages cached. */
+  public synchronized int size() {
+    return pages.size();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  public synchronized long getInvalidations() {
+    return invalidations;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "BlockPageCache(pageSize=" + pageSize + ", maxPages=" + maxPages +
+        ", policy=" + policy + ", pages=" + pages.size() + ", hits=" + hits +
+        ", misses=" + misses + ", evictions=" + evictions +
+        ", invalidations=" + invalidations + ")";
+  }
+}
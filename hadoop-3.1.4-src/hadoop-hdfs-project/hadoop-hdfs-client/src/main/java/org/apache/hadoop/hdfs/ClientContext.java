@@ -83,6 +83,11 @@ public class ClientContext {
    */
   private final PeerCache peerCache;
 
+  /**
+   * Caches pages of the blocks read by positional reads, or null.
+   */
+  private final BlockPageCache blockPageCache;
+
   /**
    * Stores information about socket paths.
    */
@@ -127,6 +132,10 @@ public class ClientContext {
     this.shortCircuitCache = ShortCircuitCache.fromConf(scConf);
     this.peerCache = new PeerCache(scConf.getSocketCacheCapacity(),
         scConf.getSocketCacheExpiry());
+    this.blockPageCache = scConf.getPageCacheCapacity() > 0 ?
+        new BlockPageCache(scConf.getPageCacheCapacity(),
+            scConf.getPageCachePageSize(),
+            scConf.getPageCacheEvictionPolicy()) : null;
     this.keyProviderCache = new KeyProviderCache(
         scConf.getKeyProviderCacheExpiryMs());
     this.useLegacyBlockReaderLocal = scConf.isUseLegacyBlockReaderLocal();
@@ -215,6 +224,14 @@ public class ClientContext {
     return peerCache;
   }
 
+  /**
+   * @return the cache of the pages read by positional reads, or null if
+   * disabled.
+   */
+  public BlockPageCache getBlockPageCache() {
+    return blockPageCache;
+  }
+
   public KeyProviderCache getKeyProviderCache() {
     return keyProviderCache;
   }
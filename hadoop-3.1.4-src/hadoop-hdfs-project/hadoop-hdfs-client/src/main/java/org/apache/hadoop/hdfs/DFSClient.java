@@ -165,6 +165,7 @@ import org.apache.hadoop.hdfs.server.protocol.DatanodeStorageReport;
 import org.apache.hadoop.hdfs.util.IOUtilsClient;
 import org.apache.hadoop.io.EnumSetWritable;
 import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.MultipleIOException;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.retry.LossyRetryInvocationHandler;
 import org.apache.hadoop.ipc.RPC;
@@ -240,6 +241,8 @@ public class DFSClient implements java.io.Closeable, RemotePeerFactory,
       new DFSHedgedReadMetrics();
   private static ThreadPoolExecutor HEDGED_READ_THREAD_POOL;
   private static volatile ThreadPoolExecutor STRIPED_READ_THREAD_POOL;
+  private static volatile ThreadPoolExecutor VECTORED_READ_THREAD_POOL;
+  private final DataNodeReadLatencies readLatencies;
   private final int smallBufferSize;
   private final long serverDefaultsValidityPeriod;
 
@@ -391,9 +394,15 @@ public class DFSClient implements java.io.Closeable, RemotePeerFactory,
       this.initThreadsNumForHedgedReads(dfsClientConf.
           getHedgedReadThreadpoolSize());
     }
+    this.readLatencies = dfsClientConf.isHedgedReadAdaptive() ?
+        new DataNodeReadLatencies() : null;
 
     this.initThreadsNumForStripedReads(dfsClientConf.
         getStripedReadThreadpoolSize());
+    if (dfsClientConf.getVectoredReadThreadpoolSize() > 0) {
+      initThreadsNumForVectoredReads(
+          dfsClientConf.getVectoredReadThreadpoolSize());
+    }
     this.saslClient = new SaslDataTransferClient(
         conf, DataTransferSaslUtil.getSaslPropertiesResolver(conf),
         TrustedChannelResolver.getInstance(conf), nnFallbackToSimpleAuth);
@@ -1222,6 +1231,140 @@ public class DFSClient implements java.io.Closeable, RemotePeerFactory,
     return result;
   }
 
+  /**
+   * Create a batch of new files, with as few NameNode calls as the batch size
+   * {@link HdfsClientConfigKeys#DFS_CLIENT_WRITE_BATCH_SIZE_KEY} allows, and
+   * return an output stream for each of them, in the order of the given
+   * paths.
+   * Either all the files are created, or the streams of the files created
+   * so far are closed and the first failure is thrown. The files are created
+   * one by one if the NameNode does not support createBatch.
+   *
+   * @see ClientProtocol#createBatch for detailed description of exceptions
+   * thrown
+   */
+  public List<DFSOutputStream> createBatch(List<String> srcs,
+      FsPermission permission, EnumSet<CreateFlag> flag, boolean createParent,
+      short replication, long blockSize, Progressable progress,
+      ChecksumOpt checksumOpt, String ecPolicyName) throws IOException {
+    checkOpen();
+    final FsPermission masked = applyUMask(permission);
+    final DataChecksum checksum = dfsClientConf.createChecksum(checksumOpt);
+    final int batchSize = dfsClientConf.getWriteBatchSize();
+    final List<DFSOutputStream> result = new ArrayList<>(srcs.size());
+    boolean batchSupported = true;
+    for (int from = 0; from < srcs.size(); from += batchSize) {
+      final int to = Math.min(srcs.size(), from + batchSize);
+      final String[] chunk = srcs.subList(from, to).toArray(new String[0]);
+      LOG.debug("{}: creating a batch of {} files, masked={}", chunk[0],
+          chunk.length, masked);
+      try {
+        DFSOutputStream[] streams = null;
+        if (batchSupported) {
+          try {
+            streams = DFSOutputStream.newStreamsForCreate(this, chunk, masked,
+                flag, createParent, replication, blockSize, progress,
+                checksum, ecPolicyName);
+          } catch (RpcNoSuchMethodException e) {
+            LOG.debug("The version of namenode doesn't support createBatch" +
+                " API. Fall back to create the files one by one.");
+            batchSupported = false;
+          }
+        }
+        if (streams != null) {
+          for (DFSOutputStream out : streams) {
+            beginFileLease(out.getFileId(), out);
+            result.add(out);
+          }
+        } else {
+          for (String src : chunk) {
+            final DFSOutputStream out = DFSOutputStream.newStreamForCreate(
+                this, src, masked, flag, createParent, replication,
+                blockSize, progress, checksum, null, ecPolicyName);
+            beginFileLease(out.getFileId(), out);
+            result.add(out);
+          }
+        }
+      } catch (IOException e) {
+        for (DFSOutputStream out : result) {
+          IOUtils.cleanupWithLogger(LOG, out);
+        }
+        throw e;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Close a batch of output streams. The data of every stream is flushed to
+   * the DataNodes as by {@link DFSOutputStream#close()}, then the files are
+   * completed with as few NameNode calls as the batch size allows. Files
+   * which cannot be completed yet are retried one by one like a regular
+   * close.
+   *
+   * @throws IOException if any of the streams failed to close; the streams
+   * are all closed regardless.
+   */
+  public void closeBatch(List<DFSOutputStream> streams) throws IOException {
+    final MultipleIOException.Builder b = new MultipleIOException.Builder();
+    final List<DFSOutputStream> pending = new ArrayList<>(streams.size());
+    final List<ExtendedBlock> lasts = new ArrayList<>(streams.size());
+    for (DFSOutputStream out : streams) {
+      try {
+        if (out instanceof DFSStripedOutputStream || out.isClosed()) {
+          out.close();
+        } else {
+          lasts.add(out.closeWithoutCompleting());
+          pending.add(out);
+        }
+      } catch (IOException e) {
+        b.add(e);
+      }
+    }
+    final int batchSize = dfsClientConf.getWriteBatchSize();
+    for (int from = 0; from < pending.size(); from += batchSize) {
+      final int to = Math.min(pending.size(), from + batchSize);
+      completeBatch(pending.subList(from, to), lasts.subList(from, to), b);
+    }
+    final IOException ioe = b.build();
+    if (ioe != null) {
+      throw ioe;
+    }
+  }
+
+  private void completeBatch(List<DFSOutputStream> streams,
+      List<ExtendedBlock> lasts, MultipleIOException.Builder b) {
+    final int n = streams.size();
+    final String[] srcs = new String[n];
+    final long[] fileIds = new long[n];
+    for (int i = 0; i < n; i++) {
+      srcs[i] = streams.get(i).getSrc();
+      fileIds[i] = streams.get(i).getFileId();
+    }
+    boolean[] completed;
+    try (TraceScope ignored = newPathTraceScope("completeBatch", srcs[0])) {
+      completed = namenode.completeBatch(srcs, clientName,
+          lasts.toArray(new ExtendedBlock[n]), fileIds);
+    } catch (IOException e) {
+      LOG.warn("Failed to complete a batch of {} files starting at {}," +
+          " completing them one by one", n, srcs[0], e);
+      completed = new boolean[n];
+    }
+    for (int i = 0; i < n; i++) {
+      if (completed[i]) {
+        continue;
+      }
+      final DFSOutputStream out = streams.get(i);
+      try {
+        synchronized (out) {
+          out.completeFile(lasts.get(i));
+        }
+      } catch (IOException e) {
+        b.add(e);
+      }
+    }
+  }
+
   private String[] getFavoredNodesStr(InetSocketAddress[] favoredNodes) {
     String[] favoredNodeStrs = null;
     if (favoredNodes != null) {
@@ -3013,6 +3156,25 @@ public class DFSClient implements java.io.Closeable, RemotePeerFactory,
     }
   }
 
+  /**
+   * Create thread pool for reading the ranges of vectored reads in parallel,
+   * VECTORED_READ_THREAD_POOL, if it does not already exist.
+   * @param numThreads Number of threads for vectored reads thread pool.
+   */
+  private static void initThreadsNumForVectoredReads(int numThreads) {
+    if (VECTORED_READ_THREAD_POOL != null) {
+      return;
+    }
+    synchronized (DFSClient.class) {
+      if (VECTORED_READ_THREAD_POOL == null) {
+        ThreadPoolExecutor threadPool = DFSUtilClient.getThreadPoolExecutor(1,
+            numThreads, 60, "VectoredRead-", true);
+        threadPool.allowCoreThreadTimeOut(true);
+        VECTORED_READ_THREAD_POOL = threadPool;
+      }
+    }
+  }
+
   ThreadPoolExecutor getHedgedReadsThreadPool() {
     return HEDGED_READ_THREAD_POOL;
   }
@@ -3021,6 +3183,15 @@ public class DFSClient implements java.io.Closeable, RemotePeerFactory,
     return STRIPED_READ_THREAD_POOL;
   }
 
+  /**
+   * @return the thread pool of the vectored reads, or null if the ranges of
+   * vectored reads are read in the calling thread.
+   */
+  ThreadPoolExecutor getVectoredReadsThreadPool() {
+    return dfsClientConf.getVectoredReadThreadpoolSize() > 0 ?
+        VECTORED_READ_THREAD_POOL : null;
+  }
+
   boolean isHedgedReadsEnabled() {
     return (HEDGED_READ_THREAD_POOL != null) &&
         HEDGED_READ_THREAD_POOL.getMaximumPoolSize() > 0;
@@ -3030,6 +3201,14 @@ public class DFSClient implements java.io.Closeable, RemotePeerFactory,
     return HEDGED_READ_METRIC;
   }
 
+  /**
+   * @return the latencies of the reads of this client from each DataNode,
+   * or null if the reads do not adapt to them.
+   */
+  public DataNodeReadLatencies getDataNodeReadLatencies() {
+    return readLatencies;
+  }
+
   @Override
   public URI getKeyProviderUri() throws IOException {
     return HdfsKMSUtil.getKeyProviderUri(ugi, namenodeUri,
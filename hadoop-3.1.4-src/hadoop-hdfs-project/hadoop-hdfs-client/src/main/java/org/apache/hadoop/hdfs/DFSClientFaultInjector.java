@@ -22,6 +22,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import com.google.common.annotations.VisibleForTesting;
 
 import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 
 /**
  * Used for injecting faults in DFSClient and DFSOutputStream tests.
@@ -58,6 +59,8 @@ public class DFSClientFaultInjector {
 
   public void readFromDatanodeDelay() {}
 
+  public void fetchFromDatanodeDelay(DatanodeInfo datanode) {}
+
   public boolean skipRollingRestartWait() {
     return false;
   }
@@ -35,14 +35,18 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.classification.InterfaceAudience;
@@ -52,12 +56,16 @@ import org.apache.hadoop.fs.CanSetDropBehind;
 import org.apache.hadoop.fs.CanSetReadahead;
 import org.apache.hadoop.fs.CanUnbuffer;
 import org.apache.hadoop.fs.ChecksumException;
+import org.apache.hadoop.fs.CombinedFileRange;
+import org.apache.hadoop.fs.FSExceptionMessages;
 import org.apache.hadoop.fs.FSInputStream;
 import org.apache.hadoop.fs.FileEncryptionInfo;
+import org.apache.hadoop.fs.FileRange;
 import org.apache.hadoop.fs.HasEnhancedByteBufferAccess;
 import org.apache.hadoop.fs.ReadOption;
 import org.apache.hadoop.fs.StorageType;
 import org.apache.hadoop.fs.StreamCapabilities;
+import org.apache.hadoop.fs.VectoredReadUtils;
 import org.apache.hadoop.hdfs.DFSUtilClient.CorruptedBlocks;
 import org.apache.hadoop.hdfs.client.impl.BlockReaderFactory;
 import org.apache.hadoop.hdfs.client.impl.DfsClientConf;
@@ -455,6 +463,13 @@ public class DFSInputStream extends FSInputStream
     }
   }
 
+  /** @return true if the file is open, its last block may still change. */
+  boolean isUnderConstruction() {
+    synchronized(infoLock) {
+      return locatedBlocks.isUnderConstruction();
+    }
+  }
+
   /**
    * Returns the datanode from which the stream is currently reading.
    */
@@ -1018,16 +1033,29 @@ public class DFSInputStream extends FSInputStream
     DatanodeInfo chosenNode = null;
     StorageType storageType = null;
     if (nodes != null) {
-      for (int i = 0; i < nodes.length; i++) {
-        if (!deadNodes.containsKey(nodes[i])
-            && (ignoredNodes == null || !ignoredNodes.contains(nodes[i]))) {
-          chosenNode = nodes[i];
-          // Storage types are ordered to correspond with nodes, so use the same
-          // index to get storage type.
-          if (storageTypes != null && i < storageTypes.length) {
-            storageType = storageTypes[i];
+      int chosen = -1;
+      final DataNodeReadLatencies latencies =
+          dfsClient.getDataNodeReadLatencies();
+      if (latencies == null) {
+        for (int i = 0; i < nodes.length; i++) {
+          if (isEligible(nodes[i], ignoredNodes)) {
+            chosen = i;
+            break;
           }
-          break;
+        }
+      } else {
+        boolean[] eligible = new boolean[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+          eligible[i] = isEligible(nodes[i], ignoredNodes);
+        }
+        chosen = latencies.chooseFastest(nodes, eligible);
+      }
+      if (chosen >= 0) {
+        chosenNode = nodes[chosen];
+        // Storage types are ordered to correspond with nodes, so use the same
+        // index to get storage type.
+        if (storageTypes != null && chosen < storageTypes.length) {
+          storageType = storageTypes[chosen];
         }
       }
     }
@@ -1042,6 +1070,12 @@ public class DFSInputStream extends FSInputStream
     return new DNAddrPair(chosenNode, targetAddr, storageType, block);
   }
 
+  private boolean isEligible(DatanodeInfo node,
+      Collection<DatanodeInfo> ignoredNodes) {
+    return !deadNodes.containsKey(node)
+        && (ignoredNodes == null || !ignoredNodes.contains(node));
+  }
+
   /**
    * Warn the user of a lost block
    */
@@ -1129,11 +1163,15 @@ public class DFSInputStream extends FSInputStream
     int refetchToken = 1; // only need to get a new access token once
     int refetchEncryptionKey = 1; // only need to get a new encryption key once
     final int len = (int) (endInBlk - startInBlk + 1);
+    final DataNodeReadLatencies latencies =
+        dfsClient.getDataNodeReadLatencies();
+    final long startNanos = latencies == null ? 0 : System.nanoTime();
     LocatedBlock block = datanode.block;
     while (true) {
       BlockReader reader = null;
       try {
         DFSClientFaultInjector.get().fetchFromDatanodeException();
+        DFSClientFaultInjector.get().fetchFromDatanodeDelay(datanode.info);
         reader = getBlockReader(block, startInBlk, len, datanode.addr,
             datanode.storageType, datanode.info);
 
@@ -1160,6 +1198,10 @@ public class DFSInputStream extends FSInputStream
               "excpected " + len + ", got " + nread);
         }
         DFSClientFaultInjector.get().readFromDatanodeDelay();
+        if (latencies != null) {
+          latencies.addRead(datanode.info,
+              (System.nanoTime() - startNanos) / 1000);
+        }
         return;
       } catch (ChecksumException e) {
         String msg = "fetchBlockByteRange(). Got a checksum exception for "
@@ -1250,9 +1292,15 @@ public class DFSInputStream extends FSInputStream
             .submit(getFromDataNodeCallable);
         futures.add(firstRequest);
         Future<ByteBuffer> future = null;
+        long thresholdMillis = conf.getHedgedReadThresholdMillis();
+        final DataNodeReadLatencies latencies =
+            dfsClient.getDataNodeReadLatencies();
+        if (latencies != null) {
+          thresholdMillis = latencies.getHedgedReadThresholdMillis(
+              chosenNode.info, thresholdMillis);
+        }
         try {
-          future = hedgedService.poll(
-              conf.getHedgedReadThresholdMillis(), TimeUnit.MILLISECONDS);
+          future = hedgedService.poll(thresholdMillis, TimeUnit.MILLISECONDS);
           if (future != null) {
             ByteBuffer result = future.get();
             result.flip();
@@ -1260,7 +1308,7 @@ public class DFSInputStream extends FSInputStream
             return;
           }
           DFSClient.LOG.debug("Waited {}ms to read from {}; spawning hedged "
-              + "read", conf.getHedgedReadThresholdMillis(), chosenNode.info);
+              + "read", thresholdMillis, chosenNode.info);
           dfsClient.getHedgedReadMetrics().incHedgedReadOps();
           // continue; no need to refresh block locations
         } catch (ExecutionException e) {
@@ -1432,17 +1480,20 @@ public class DFSInputStream extends FSInputStream
     List<LocatedBlock> blockRange = getBlockRange(position, realLen);
     int remaining = realLen;
     CorruptedBlocks corruptedBlocks = new CorruptedBlocks();
+    final BlockPageCache pageCache =
+        dfsClient.getClientContext().getBlockPageCache();
     for (LocatedBlock blk : blockRange) {
       long targetStart = position - blk.getStartOffset();
       int bytesToRead = (int) Math.min(remaining,
           blk.getBlockSize() - targetStart);
       long targetEnd = targetStart + bytesToRead - 1;
       try {
-        if (dfsClient.isHedgedReadsEnabled() && !blk.isStriped()) {
-          hedgedFetchBlockByteRange(blk, targetStart,
-              targetEnd, buffer, corruptedBlocks);
+        if (pageCache != null && bytesToRead <= pageCache.getPageSize() &&
+            !blk.isStriped() && !isUnderConstruction()) {
+          readThroughPageCache(pageCache, blk, targetStart, bytesToRead,
+              buffer, corruptedBlocks);
         } else {
-          fetchBlockByteRange(blk, targetStart, targetEnd,
+          fetchBlockByteRangeMaybeHedged(blk, targetStart, targetEnd,
               buffer, corruptedBlocks);
         }
       } finally {
@@ -1460,6 +1511,141 @@ public class DFSInputStream extends FSInputStream
     return realLen;
   }
 
+  @Override
+  public int minSeekForVectorReads() {
+    return dfsClient.getConf().getVectoredReadMinSeekSize();
+  }
+
+  @Override
+  public int maxReadSizeForVectorReads() {
+    return dfsClient.getConf().getVectoredReadMaxMergedSize();
+  }
+
+  /**
+   * Read the ranges with positional reads, each of the nearby ranges merged
+   * at once, and the merged ranges in parallel on the vectored reads thread
+   * pool. The data of each range is a slice of the buffer of the merged
+   * range.
+   */
+  @Override
+  public void readVectored(List<? extends FileRange> ranges,
+      final IntFunction<ByteBuffer> allocate) throws IOException {
+    for (FileRange range : ranges) {
+      VectoredReadUtils.validateRangeRequest(range);
+    }
+    List<CombinedFileRange> merged = VectoredReadUtils.mergeSortedRanges(
+        VectoredReadUtils.sortRanges(ranges), minSeekForVectorReads(),
+        maxReadSizeForVectorReads());
+    ThreadPoolExecutor pool = dfsClient.getVectoredReadsThreadPool();
+    DFSClient.LOG.debug("Reading {} ranges of {} as {}", ranges.size(), src,
+        merged);
+    for (final CombinedFileRange combined : merged) {
+      final CompletableFuture<ByteBuffer> data = new CompletableFuture<>();
+      for (final FileRange range : combined.getUnderlying()) {
+        range.setData(data.thenApply(new Function<ByteBuffer, ByteBuffer>() {
+          @Override
+          public ByteBuffer apply(ByteBuffer buf) {
+            return VectoredReadUtils.sliceTo(buf, combined.getOffset(),
+                range);
+          }
+        }));
+      }
+      Runnable read = new Runnable() {
+        @Override
+        public void run() {
+          try {
+            data.complete(readFully(combined, allocate));
+          } catch (IOException | RuntimeException e) {
+            data.completeExceptionally(e);
+          }
+        }
+      };
+      if (pool != null && merged.size() > 1) {
+        pool.execute(read);
+      } else {
+        read.run();
+      }
+    }
+  }
+
+  /** Read a range into a buffer allocated for it. */
+  private ByteBuffer readFully(FileRange range,
+      IntFunction<ByteBuffer> allocate) throws IOException {
+    ByteBuffer buffer = allocate.apply(range.getLength());
+    int start = buffer.position();
+    buffer.limit(start + range.getLength());
+    long position = range.getOffset();
+    while (buffer.hasRemaining()) {
+      int nread = pread(position, buffer);
+      if (nread < 0) {
+        throw new EOFException(FSExceptionMessages.EOF_IN_READ_FULLY +
+            " reading " + range + " of " + src);
+      }
+      position += nread;
+    }
+    buffer.position(start);
+    return buffer;
+  }
+
+  private void fetchBlockByteRangeMaybeHedged(LocatedBlock blk, long start,
+      long end, ByteBuffer buf, CorruptedBlocks corruptedBlocks)
+      throws IOException {
+    if (dfsClient.isHedgedReadsEnabled() && !blk.isStriped()) {
+      hedgedFetchBlockByteRange(blk, start, end, buf, corruptedBlocks);
+    } else {
+      fetchBlockByteRange(blk, start, end, buf, corruptedBlocks);
+    }
+  }
+
+  /**
+   * Read a small range of a block from the pages cached, reading and
+   * caching the whole pages missing. The blocks of the files under
+   * construction are not cached, their length may change. The bytes read
+   * from the cache are counted as local bytes read.
+   */
+  private void readThroughPageCache(BlockPageCache pageCache,
+      LocatedBlock blk, long start, int len, ByteBuffer buf,
+      CorruptedBlocks corruptedBlocks) throws IOException {
+    final ExtendedBlock block = blk.getBlock();
+    final int pageSize = pageCache.getPageSize();
+    while (len > 0) {
+      long pageOffset = start - start % pageSize;
+      int offsetInPage = (int) (start - pageOffset);
+      int n = Math.min(len, pageSize - offsetInPage);
+      if (pageCache.read(block, pageOffset, offsetInPage, n, buf)) {
+        updateReadStatistics(readStatistics, n, false, 0);
+        dfsClient.updateFileSystemReadStats(0, n);
+      } else {
+        ByteBuffer page = pageCache.allocate();
+        if (page == null) {
+          fetchBlockByteRangeMaybeHedged(blk, start, start + n - 1, buf,
+              corruptedBlocks);
+        } else {
+          boolean cached = false;
+          try {
+            int pageLen = (int) Math.min(pageSize,
+                blk.getBlockSize() - pageOffset);
+            fetchBlockByteRangeMaybeHedged(blk, pageOffset,
+                pageOffset + pageLen - 1, page, corruptedBlocks);
+            page.flip();
+            ByteBuffer src = page.duplicate();
+            src.position(offsetInPage);
+            src.limit(offsetInPage + n);
+            buf.put(src);
+            pageCache.put(block, pageOffset, page);
+            cached = true;
+          } finally {
+            if (!cached) {
+              pageCache.release(page);
+            }
+          }
+        }
+      }
+      start += n;
+      len -= n;
+    }
+  }
+
   /**
    * DFSInputStream reports checksum failure.
    * For replicated blocks, we have the following logic:
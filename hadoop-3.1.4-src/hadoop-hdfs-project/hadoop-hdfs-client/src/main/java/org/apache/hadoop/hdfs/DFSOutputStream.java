@@ -41,6 +41,7 @@ import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
 import org.apache.hadoop.hdfs.client.HdfsDataOutputStream;
 import org.apache.hadoop.hdfs.client.HdfsDataOutputStream.SyncFlag;
 import org.apache.hadoop.hdfs.client.impl.DfsClientConf;
+import org.apache.hadoop.hdfs.protocol.CreateBatchResult;
 import org.apache.hadoop.hdfs.protocol.DSQuotaExceededException;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
@@ -61,6 +62,7 @@ import org.apache.hadoop.hdfs.util.ByteArrayManager;
 import org.apache.hadoop.io.EnumSetWritable;
 import org.apache.hadoop.io.MultipleIOException;
 import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.ipc.RpcNoSuchMethodException;
 import org.apache.hadoop.security.AccessControlException;
 import org.apache.hadoop.security.token.Token;
 import org.apache.hadoop.util.DataChecksum;
@@ -126,6 +128,9 @@ public class DFSOutputStream extends FSOutputSummer
   protected final AtomicReference<CachingStrategy> cachingStrategy;
   private FileEncryptionInfo fileEncryptionInfo;
   private int writePacketSize;
+  // whether close() completes the file, see closeWithoutCompleting()
+  private boolean completeOnClose = true;
+  private ExtendedBlock lastBlockOnClose;
 
   /** Use {@link ByteArrayManager} to create buffer for non-heartbeat packets.*/
   protected DFSPacket createPacket(int packetSize, int chunksPerPkt,
@@ -278,19 +283,7 @@ public class DFSOutputStream extends FSOutputSummer
               blockSize, SUPPORTED_CRYPTO_VERSIONS, ecPolicyName);
           break;
         } catch (RemoteException re) {
-          IOException e = re.unwrapRemoteException(
-              AccessControlException.class,
-              DSQuotaExceededException.class,
-              QuotaByStorageTypeExceededException.class,
-              FileAlreadyExistsException.class,
-              FileNotFoundException.class,
-              ParentNotDirectoryException.class,
-              NSQuotaExceededException.class,
-              RetryStartFileException.class,
-              SafeModeException.class,
-              UnresolvedPathException.class,
-              SnapshotAccessControlException.class,
-              UnknownCryptoProtocolVersionException.class);
+          IOException e = unwrapCreateException(re);
           if (e instanceof RetryStartFileException) {
             if (retryCount > 0) {
               shouldRetry = true;
@@ -305,19 +298,89 @@ public class DFSOutputStream extends FSOutputSummer
         }
       }
       Preconditions.checkNotNull(stat, "HdfsFileStatus should not be null!");
-      final DFSOutputStream out;
-      if(stat.getErasureCodingPolicy() != null) {
-        out = new DFSStripedOutputStream(dfsClient, src, stat,
-            flag, progress, checksum, favoredNodes);
-      } else {
-        out = new DFSOutputStream(dfsClient, src, stat,
-            flag, progress, checksum, favoredNodes, true);
+      return newStreamForStatus(dfsClient, src, stat, flag, progress,
+          checksum, favoredNodes);
+    }
+  }
+
+  private static DFSOutputStream newStreamForStatus(DFSClient dfsClient,
+      String src, HdfsFileStatus stat, EnumSet<CreateFlag> flag,
+      Progressable progress, DataChecksum checksum, String[] favoredNodes)
+      throws IOException {
+    final DFSOutputStream out;
+    if(stat.getErasureCodingPolicy() != null) {
+      out = new DFSStripedOutputStream(dfsClient, src, stat,
+          flag, progress, checksum, favoredNodes);
+    } else {
+      out = new DFSOutputStream(dfsClient, src, stat,
+          flag, progress, checksum, favoredNodes, true);
+    }
+    out.start();
+    return out;
+  }
+
+  /**
+   * Create a batch of files with a single createBatch call and open a stream
+   * for each of them. If a file could not be created, the streams of the
+   * files created before it are closed and its failure is thrown.
+   *
+   * @throws RpcNoSuchMethodException if the NameNode does not support
+   *         createBatch
+   */
+  static DFSOutputStream[] newStreamsForCreate(DFSClient dfsClient,
+      String[] srcs, FsPermission masked, EnumSet<CreateFlag> flag,
+      boolean createParent, short replication, long blockSize,
+      Progressable progress, DataChecksum checksum, String ecPolicyName)
+      throws IOException {
+    try (TraceScope ignored =
+             dfsClient.newPathTraceScope("newStreamsForCreate", srcs[0])) {
+      final CreateBatchResult result;
+      try {
+        result = dfsClient.namenode.createBatch(srcs, masked,
+            dfsClient.clientName, new EnumSetWritable<>(flag), createParent,
+            replication, blockSize, SUPPORTED_CRYPTO_VERSIONS, ecPolicyName);
+      } catch (RemoteException re) {
+        throw unwrapCreateException(re);
       }
-      out.start();
-      return out;
+      HdfsFileStatus[] stats = result.getStatuses();
+      DFSOutputStream[] streams = new DFSOutputStream[stats.length];
+      for (int i = 0; i < stats.length; i++) {
+        streams[i] = newStreamForStatus(dfsClient, srcs[i], stats[i], flag,
+            progress, checksum, null);
+      }
+      RemoteException failure = result.getFailure();
+      if (failure != null) {
+        for (DFSOutputStream out : streams) {
+          try {
+            out.close();
+          } catch (IOException e) {
+            LOG.warn("Failed to close {} after a failed batch create",
+                out.getSrc(), e);
+          }
+        }
+        throw unwrapCreateException(failure);
+      }
+      return streams;
     }
   }
 
+  private static IOException unwrapCreateException(RemoteException re) {
+    return re.unwrapRemoteException(
+        AccessControlException.class,
+        DSQuotaExceededException.class,
+        QuotaByStorageTypeExceededException.class,
+        FileAlreadyExistsException.class,
+        FileNotFoundException.class,
+        ParentNotDirectoryException.class,
+        NSQuotaExceededException.class,
+        RetryStartFileException.class,
+        SafeModeException.class,
+        UnresolvedPathException.class,
+        SnapshotAccessControlException.class,
+        UnknownCryptoProtocolVersionException.class,
+        RpcNoSuchMethodException.class);
+  }
+
   /** Construct a new output stream for append. */
   private DFSOutputStream(DFSClient dfsClient, String src,
       EnumSet<CreateFlag> flags, Progressable progress, LocatedBlock lastBlock,
@@ -887,7 +950,11 @@ public class DFSOutputStream extends FSOutputSummer
       } catch (IOException ioe) {
         cleanupAndRethrowIOException(ioe);
       }
-      completeFile();
+      if (completeOnClose) {
+        completeFile();
+      } else {
+        lastBlockOnClose = getStreamer().getBlock();
+      }
     } catch (ClosedChannelException ignored) {
     } finally {
       // Failures may happen when flushing data.
@@ -899,6 +966,23 @@ public class DFSOutputStream extends FSOutputSummer
     }
   }
 
+  /**
+   * Flush all the data to the DataNodes and close the stream like
+   * {@link #close()}, but leave the file to be completed by the caller, so
+   * that several files can be completed with a single NameNode call.
+   * @return the last block of the file to complete it with.
+   */
+  synchronized ExtendedBlock closeWithoutCompleting() throws IOException {
+    completeOnClose = false;
+    try (TraceScope ignored = dfsClient.newPathTraceScope(
+        "DFSOutputStream#closeWithoutCompleting", src)) {
+      closeImpl();
+    } finally {
+      completeOnClose = true;
+    }
+    return lastBlockOnClose;
+  }
+
   private void completeFile() throws IOException {
     // get last block before destroying the streamer
     ExtendedBlock lastBlock = getStreamer().getBlock();
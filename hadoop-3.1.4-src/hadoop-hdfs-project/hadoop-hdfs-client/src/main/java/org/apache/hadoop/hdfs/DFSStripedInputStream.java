@@ -52,6 +52,7 @@ import java.util.Set;
 import java.util.Collection;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.apache.hadoop.hdfs.util.IOUtilsClient.updateReadStatistics;
 
@@ -73,6 +74,10 @@ public class DFSStripedInputStream extends DFSInputStream {
   protected ByteBuffer parityBuf;
   private final ErasureCodingPolicy ecPolicy;
   private RawErasureDecoder decoder;
+  /** Reads the next stripes ahead, null if disabled. */
+  private final StripedReadAhead readAhead;
+  /** The reads of cells given up as slow. */
+  private final AtomicLong numSlowReads = new AtomicLong();
 
   /**
    * Indicate the start/end offset of the current buffered stripe in the
@@ -108,6 +113,9 @@ public class DFSStripedInputStream extends DFSInputStream {
         dataBlkNum, parityBlkNum);
     decoder = CodecUtil.createRawDecoder(dfsClient.getConfiguration(),
         ecPolicy.getCodecName(), coderOptions);
+    int readAheadStripes = dfsClient.getConf().getStripedReadAheadStripes();
+    readAhead = readAheadStripes > 0 ? new StripedReadAhead(this, ecPolicy,
+        decoder, blockReaders, readAheadStripes) : null;
     if (DFSClient.LOG.isDebugEnabled()) {
       DFSClient.LOG.debug("Creating an striped input stream for file " + src);
     }
@@ -160,6 +168,28 @@ public class DFSStripedInputStream extends DFSInputStream {
   protected ThreadPoolExecutor getStripedReadsThreadPool(){
     return dfsClient.getStripedReadsThreadPool();
   }
+
+  void incrSlowReads(int num) {
+    numSlowReads.addAndGet(num);
+  }
+
+  /**
+   * @return the number of reads of cells given up as slow, and decoded from
+   * parity cells instead.
+   */
+  @VisibleForTesting
+  long getNumSlowReads() {
+    return numSlowReads.get();
+  }
+
+  /**
+   * @return the number of stripes read ahead and consumed.
+   */
+  @VisibleForTesting
+  long getNumStripesReadAhead() {
+    return readAhead == null ? 0 : readAhead.getNumTaken();
+  }
+
   /**
    * When seeking into a new block group, create blockReader for each internal
    * block in the group.
@@ -187,6 +217,9 @@ public class DFSStripedInputStream extends DFSInputStream {
     try {
       super.close();
     } finally {
+      if (readAhead != null) {
+        readAhead.close();
+      }
       if (curStripeBuf != null) {
         BUFFER_POOL.putBuffer(curStripeBuf);
         curStripeBuf = null;
@@ -209,6 +242,9 @@ public class DFSStripedInputStream extends DFSInputStream {
    */
   @Override
   protected void closeCurrentBlockReaders() {
+    if (readAhead != null) {
+      readAhead.stop();
+    }
     resetCurStripeBuffer(false);
     if (blockReaders ==  null || blockReaders.length == 0) {
       return;
@@ -312,21 +348,32 @@ public class DFSStripedInputStream extends DFSInputStream {
         new StripeRange(offsetInBlockGroup, stripeLimit - stripeBufOffset);
 
     LocatedStripedBlock blockGroup = (LocatedStripedBlock) currentLocatedBlock;
-    AlignedStripe[] stripes = StripedBlockUtil.divideOneStripe(ecPolicy,
-        cellSize, blockGroup, offsetInBlockGroup,
-        offsetInBlockGroup + stripeRange.getLength() - 1, curStripeBuf);
-    final LocatedBlock[] blks = StripedBlockUtil.parseStripedBlockGroup(
-        blockGroup, cellSize, dataBlkNum, parityBlkNum);
-    // read the whole stripe
-    for (AlignedStripe stripe : stripes) {
-      // Parse group to get chosen DN location
-      StripeReader sreader = new StatefulStripeReader(stripe, ecPolicy, blks,
-          blockReaders, corruptedBlocks, decoder, this);
-      sreader.readStripe();
+    final long stripeOffset = stripeIndex * stripeLen;
+    ByteBuffer readAheadBuf = readAhead == null ? null :
+        readAhead.take(blockGroup, stripeOffset, corruptedBlocks);
+    if (readAheadBuf != null) {
+      readAhead.release(curStripeBuf);
+      curStripeBuf = readAheadBuf;
+    } else {
+      AlignedStripe[] stripes = StripedBlockUtil.divideOneStripe(ecPolicy,
+          cellSize, blockGroup, offsetInBlockGroup,
+          offsetInBlockGroup + stripeRange.getLength() - 1, curStripeBuf);
+      final LocatedBlock[] blks = StripedBlockUtil.parseStripedBlockGroup(
+          blockGroup, cellSize, dataBlkNum, parityBlkNum);
+      // read the whole stripe
+      for (AlignedStripe stripe : stripes) {
+        // Parse group to get chosen DN location
+        StripeReader sreader = new StatefulStripeReader(stripe, ecPolicy,
+            blks, blockReaders, corruptedBlocks, decoder, this);
+        sreader.readStripe();
+      }
     }
     curStripeBuf.position(stripeBufOffset);
     curStripeBuf.limit(stripeLimit);
     curStripeRange = stripeRange;
+    if (readAhead != null) {
+      readAhead.start(blockGroup, stripeOffset + stripeLen);
+    }
   }
 
   /**
@@ -555,6 +602,9 @@ public class DFSStripedInputStream extends DFSInputStream {
   @Override
   public synchronized void unbuffer() {
     super.unbuffer();
+    if (readAhead != null) {
+      readAhead.close();
+    }
     if (curStripeBuf != null) {
       BUFFER_POOL.putBuffer(curStripeBuf);
       curStripeBuf = null;
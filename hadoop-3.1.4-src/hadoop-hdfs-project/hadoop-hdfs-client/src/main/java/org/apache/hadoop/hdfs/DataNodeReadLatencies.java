@@ -0,0 +1,200 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.util.Time;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * The client-side latencies of the reads from each DataNode: a moving
+ * average, to predict which replica is the fastest to read, and the 95th
+ * percentile of the last reads, to decide how long to wait before starting
+ * a hedged read.
+ * <p>
+ * The latencies of a DataNode are forgotten when it has not been read from
+ * for a while, so that a DataNode which was slow gets a chance again.
+ */
+@InterfaceAudience.Private
+public class DataNodeReadLatencies {
+  /** The weight of the last read in the moving average. */
+  static final double ALPHA = 0.2;
+  /** The number of last reads the percentile is computed over. */
+  static final int NUM_SAMPLES = 128;
+  /** The number of reads to know of a DataNode before trusting them. */
+  static final int MIN_SAMPLES = 8;
+  /** One in this many reads is from a DataNode not known yet, if any. */
+  static final int EXPLORE_INTERVAL = 4;
+  /** The time after which the latencies of a DataNode are forgotten. */
+  static final long STALE_MS = 60 * 1000;
+
+  private final ConcurrentMap<String, Latencies> latencies =
+      new ConcurrentHashMap<>();
+  private final AtomicLong numChoices = new AtomicLong();
+
+  /** The read latencies of one DataNode. */
+  public static class Latencies {
+    private double average;
+    private final long[] samples = new long[NUM_SAMPLES];
+    private long count;
+    private long lastUpdate;
+    private long p95 = -1;
+
+    private synchronized void add(long latencyUs, long now) {
+      if (now - lastUpdate > STALE_MS) {
+        count = 0;
+      }
+      average = count == 0 ? latencyUs :
+          average + ALPHA * (latencyUs - average);
+      samples[(int) (count % NUM_SAMPLES)] = latencyUs;
+      count++;
+      lastUpdate = now;
+      p95 = -1;
+    }
+
+    private synchronized boolean isKnown(long now) {
+      return count >= MIN_SAMPLES && now - lastUpdate <= STALE_MS;
+    }
+
+    /** @return the moving average of the latencies, in microseconds. */
+    public synchronized double getAverageUs() {
+      return average;
+    }
+
+    /**
+     * @return the 95th percentile of the last latencies, in microseconds,
+     * or 0 if there are none.
+     */
+    public synchronized long getP95Us() {
+      if (p95 < 0) {
+        int n = (int) Math.min(count, NUM_SAMPLES);
+        if (n == 0) {
+          return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, n);
+        Arrays.sort(sorted);
+        p95 = sorted[(int) Math.ceil(0.95 * n) - 1];
+      }
+      return p95;
+    }
+
+    /** @return the number of reads since the latencies were last reset. */
+    public synchronized long getCount() {
+      return count;
+    }
+
+    @Override
+    public synchronized String toString() {
+      return "averageUs=" + (long) average + ", p95Us=" + getP95Us() +
+          ", count=" + count;
+    }
+  }
+
+  private static String getKey(DatanodeInfo datanode) {
+    return datanode.getXferAddr();
+  }
+
+  /** Record the latency of a successful read from the given DataNode. */
+  void addRead(DatanodeInfo datanode, long latencyUs) {
+    Latencies l = latencies.get(getKey(datanode));
+    if (l == null) {
+      Latencies newLatencies = new Latencies();
+      l = latencies.putIfAbsent(getKey(datanode), newLatencies);
+      if (l == null) {
+        l = newLatencies;
+      }
+    }
+    l.add(latencyUs, Time.monotonicNow());
+  }
+
+  /**
+   * @return the latencies of the given DataNode, or null if there are not
+   * enough recent reads from it to predict the next ones.
+   */
+  @VisibleForTesting
+  Latencies getKnown(DatanodeInfo datanode) {
+    Latencies l = latencies.get(getKey(datanode));
+    return l != null && l.isKnown(Time.monotonicNow()) ? l : null;
+  }
+
+  /**
+   * @return the index of the node to read from: the first one eligible,
+   * unless another eligible node is known to be at least twice as fast.
+   * Every few reads, an eligible node not known yet is read instead, to
+   * learn about it. The nodes are expected in the order of their distance
+   * to the client.
+   */
+  int chooseFastest(DatanodeInfo[] nodes, boolean[] eligible) {
+    boolean explore = numChoices.incrementAndGet() % EXPLORE_INTERVAL == 0;
+    int first = -1;
+    double firstUs = 0;
+    int fastest = -1;
+    double fastestUs = Double.MAX_VALUE;
+    for (int i = 0; i < nodes.length; i++) {
+      if (!eligible[i]) {
+        continue;
+      }
+      Latencies l = getKnown(nodes[i]);
+      if (l == null && (first < 0 || explore)) {
+        // read it to learn about it
+        return i;
+      }
+      if (first < 0) {
+        first = i;
+        firstUs = l.getAverageUs();
+      }
+      if (l != null && l.getAverageUs() < fastestUs) {
+        fastest = i;
+        fastestUs = l.getAverageUs();
+      }
+    }
+    return 2 * fastestUs < firstUs ? fastest : first;
+  }
+
+  /**
+   * @return how long to wait for a read from the given DataNode before
+   * starting a hedged read: the 95th percentile of its latencies, at most
+   * the given threshold, or the threshold if they are not known.
+   */
+  long getHedgedReadThresholdMillis(DatanodeInfo datanode,
+      long thresholdMillis) {
+    Latencies l = getKnown(datanode);
+    if (l == null) {
+      return thresholdMillis;
+    }
+    long p95Millis = (l.getP95Us() + 999) / 1000;
+    return Math.max(1, Math.min(p95Millis, thresholdMillis));
+  }
+
+  /**
+   * @return the read latencies of each DataNode read from, by transfer
+   * address.
+   */
+  public Map<String, Latencies> getLatencies() {
+    return Collections.unmodifiableMap(latencies);
+  }
+}
@@ -100,6 +100,7 @@ import org.apache.hadoop.hdfs.protocol.SnapshotDiffReportListing.DiffReportListi
 import org.apache.hadoop.hdfs.client.impl.SnapshotDiffReportGenerator;
 import org.apache.hadoop.hdfs.protocol.SnapshottableDirectoryStatus;
 import org.apache.hadoop.hdfs.security.token.delegation.DelegationTokenIdentifier;
+import org.apache.hadoop.io.MultipleIOException;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.net.NetUtils;
 import org.apache.hadoop.security.token.Token;
@@ -223,6 +224,16 @@ public class DistributedFileSystem extends FileSystem
     return dfs.getHedgedReadMetrics();
   }
 
+  /**
+   * Returns the latencies of the reads of this client from each DataNode,
+   * if {@link HdfsClientConfigKeys.HedgedRead#ADAPTIVE_ENABLED_KEY} is set.
+   *
+   * @return object of DataNodeReadLatencies, or null
+   */
+  public DataNodeReadLatencies getDataNodeReadLatencies() {
+    return dfs.getDataNodeReadLatencies();
+  }
+
   /**
    * Checks that the passed URI belongs to this filesystem and returns
    * just the path component. Expects a URI with an absolute path.
@@ -607,6 +618,77 @@ public class DistributedFileSystem extends FileSystem
     return dfs.createWrappedOutputStream(dfsos, statistics);
   }
 
+  /**
+   * Create a batch of files, creating their parent directories as needed,
+   * with as few NameNode calls as {@link
+   * HdfsClientConfigKeys#DFS_CLIENT_WRITE_BATCH_SIZE_KEY} allows. This is
+   * meant for applications writing many small files, where the per-file
+   * NameNode calls dominate the cost of the write. Symlinks in the given
+   * paths are not resolved.
+   * <p>
+   * Either all the files are created, or the first failure is thrown after
+   * closing the files created before it, which are left empty.
+   *
+   * @return an output stream for each path, in the same order.
+   * @see #closeFiles(List)
+   */
+  public List<HdfsDataOutputStream> createFiles(final List<Path> files,
+      final FsPermission permission, final boolean overwrite,
+      final short replication, final long blockSize) throws IOException {
+    final List<String> srcs = new ArrayList<>(files.size());
+    for (Path f : files) {
+      srcs.add(getPathName(fixRelativePart(f)));
+    }
+    statistics.incrementWriteOps(srcs.size());
+    for (int i = 0; i < srcs.size(); i++) {
+      storageStatistics.incrementOpCounter(OpType.CREATE);
+    }
+    final List<DFSOutputStream> streams = dfs.createBatch(srcs, permission,
+        overwrite ? EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE)
+            : EnumSet.of(CreateFlag.CREATE),
+        true, replication, blockSize, null, null, null);
+    final List<HdfsDataOutputStream> result = new ArrayList<>(streams.size());
+    for (DFSOutputStream out : streams) {
+      result.add(dfs.createWrappedOutputStream(out, statistics));
+    }
+    return result;
+  }
+
+  /**
+   * Close a batch of streams returned by {@link #createFiles}, completing
+   * the files with as few NameNode calls as possible. Streams which do not
+   * write directly to HDFS, such as those of encrypted files, are closed
+   * one by one.
+   *
+   * @throws IOException if any of the streams failed to close; the streams
+   * are all closed regardless.
+   */
+  public void closeFiles(final List<? extends FSDataOutputStream> streams)
+      throws IOException {
+    final List<DFSOutputStream> batch = new ArrayList<>(streams.size());
+    final MultipleIOException.Builder b = new MultipleIOException.Builder();
+    for (FSDataOutputStream out : streams) {
+      if (out.getWrappedStream() instanceof DFSOutputStream) {
+        batch.add((DFSOutputStream) out.getWrappedStream());
+      } else {
+        try {
+          out.close();
+        } catch (IOException e) {
+          b.add(e);
+        }
+      }
+    }
+    try {
+      dfs.closeBatch(batch);
+    } catch (IOException e) {
+      b.add(e);
+    }
+    final IOException ioe = b.build();
+    if (ioe != null) {
+      throw ioe;
+    }
+  }
+
   /**
    * Similar to {@link #create(Path, FsPermission, EnumSet, int, short, long,
    * Progressable, ChecksumOpt, InetSocketAddress[], String)}, it provides a
@@ -45,12 +45,25 @@ class StatefulStripeReader extends StripeReader {
         corruptedBlocks, decoder, dfsStripedInputStream);
   }
 
-  @Override
-  void prepareDecodeInputs() {
-    final ByteBuffer cur;
+  /**
+   * @return the buffer of the whole stripe to read into.
+   */
+  ByteBuffer getStripeBuffer() {
     synchronized (dfsStripedInputStream) {
-      cur = dfsStripedInputStream.getCurStripeBuf().duplicate();
+      return dfsStripedInputStream.getCurStripeBuf();
     }
+  }
+
+  /**
+   * @return the buffer of the parity cells of the stripe to read into.
+   */
+  ByteBuffer getParityBuffer() {
+    return dfsStripedInputStream.getParityBuffer();
+  }
+
+  @Override
+  void prepareDecodeInputs() {
+    final ByteBuffer cur = getStripeBuffer().duplicate();
 
     this.decodeInputs = new ECChunk[dataBlkNum + parityBlkNum];
     int bufLen = (int) alignedStripe.getSpanInBlock();
@@ -78,7 +91,7 @@ class StatefulStripeReader extends StripeReader {
       return false;
     }
     final int parityIndex = index - dataBlkNum;
-    ByteBuffer buf = dfsStripedInputStream.getParityBuffer().duplicate();
+    ByteBuffer buf = getParityBuffer().duplicate();
     buf.position(cellSize * parityIndex);
     buf.limit(cellSize * parityIndex + (int) alignedStripe.range.spanInBlock);
     decodeInputs[index] =
@@ -36,12 +36,16 @@ import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletionService;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The reader for reading a complete {@link StripedBlockUtil.AlignedStripe}.
@@ -118,6 +122,16 @@ abstract class StripeReader {
   protected final int cellSize;
   protected final RawErasureDecoder decoder;
   protected final DFSStripedInputStream dfsStripedInputStream;
+  private final long slowReadThresholdMillis;
+  /**
+   * Counted down when the read of each chunk ends, or when it is given up
+   * before it starts.
+   */
+  private final CountDownLatch[] readsDone;
+  /** Set by the read of each chunk as it starts, or as it is given up. */
+  private final AtomicBoolean[] readsStarted;
+  /** The chunks whose slow reads were given up. */
+  private final BitSet slowChunks = new BitSet();
 
   protected ECChunk[] decodeInputs;
 
@@ -136,6 +150,10 @@ abstract class StripeReader {
     this.corruptedBlocks = corruptedBlocks;
     this.decoder = decoder;
     this.dfsStripedInputStream = dfsStripedInputStream;
+    this.slowReadThresholdMillis = dfsStripedInputStream.getDFSClient()
+        .getConf().getStripedSlowReadThresholdMillis();
+    this.readsDone = new CountDownLatch[dataBlkNum + parityBlkNum];
+    this.readsStarted = new AtomicBoolean[dataBlkNum + parityBlkNum];
 
     service = new ExecutorCompletionService<>(
             dfsStripedInputStream.getStripedReadsThreadPool());
@@ -163,6 +181,10 @@ abstract class StripeReader {
   void close() {
   }
 
+  void updateReadStats(BlockReadStats stats) {
+    dfsStripedInputStream.updateReadStats(stats);
+  }
+
   void updateState4SuccessRead(StripingChunkReadResult result) {
     Preconditions.checkArgument(
         result.state == StripingChunkReadResult.SUCCESSFUL);
@@ -265,28 +287,38 @@ abstract class StripeReader {
   private Callable<BlockReadStats> readCells(final BlockReader reader,
       final DatanodeInfo datanode, final long currentReaderOffset,
       final long targetReaderOffset, final ByteBufferStrategy[] strategies,
-      final ExtendedBlock currentBlock) {
+      final ExtendedBlock currentBlock, final AtomicBoolean started,
+      final CountDownLatch done) {
     return () -> {
-      // reader can be null if getBlockReaderWithRetry failed or
-      // the reader hit exception before
-      if (reader == null) {
-        throw new IOException("The BlockReader is null. " +
-            "The BlockReader creation failed or the reader hit exception.");
-      }
-      Preconditions.checkState(currentReaderOffset <= targetReaderOffset);
-      if (currentReaderOffset < targetReaderOffset) {
-        long skipped = reader.skip(targetReaderOffset - currentReaderOffset);
-        Preconditions.checkState(
-            skipped == targetReaderOffset - currentReaderOffset);
+      if (!started.compareAndSet(false, true)) {
+        throw new CancellationException("The read was given up");
       }
+      try {
+        // reader can be null if getBlockReaderWithRetry failed or
+        // the reader hit exception before
+        if (reader == null) {
+          throw new IOException("The BlockReader is null. " +
+              "The BlockReader creation failed or the reader hit exception.");
+        }
+        DFSClientFaultInjector.get().fetchFromDatanodeDelay(datanode);
+        Preconditions.checkState(currentReaderOffset <= targetReaderOffset);
+        if (currentReaderOffset < targetReaderOffset) {
+          long skipped = reader.skip(targetReaderOffset - currentReaderOffset);
+          Preconditions.checkState(
+              skipped == targetReaderOffset - currentReaderOffset);
+        }
 
-      int ret = 0;
-      for (ByteBufferStrategy strategy : strategies) {
-        int bytesReead = readToBuffer(reader, datanode, strategy, currentBlock);
-        ret += bytesReead;
+        int ret = 0;
+        for (ByteBufferStrategy strategy : strategies) {
+          int bytesReead =
+              readToBuffer(reader, datanode, strategy, currentBlock);
+          ret += bytesReead;
+        }
+        return new BlockReadStats(ret, reader.isShortCircuit(),
+            reader.getNetworkDistance());
+      } finally {
+        done.countDown();
       }
-      return new BlockReadStats(ret, reader.isShortCircuit(),
-          reader.getNetworkDistance());
     };
   }
 
@@ -311,12 +343,14 @@ abstract class StripeReader {
     }
 
     chunk.state = StripingChunk.PENDING;
+    readsDone[chunkIndex] = new CountDownLatch(1);
+    readsStarted[chunkIndex] = new AtomicBoolean();
     Callable<BlockReadStats> readCallable =
         readCells(readerInfos[chunkIndex].reader,
         readerInfos[chunkIndex].datanode,
         readerInfos[chunkIndex].blockReaderOffset,
         alignedStripe.getOffsetInBlock(), getReadStrategies(chunk),
-        block.getBlock());
+        block.getBlock(), readsStarted[chunkIndex], readsDone[chunkIndex]);
 
     Future<BlockReadStats> request = service.submit(readCallable);
     futures.put(request, chunkIndex);
@@ -327,6 +361,14 @@ abstract class StripeReader {
    * read the whole stripe. do decoding if necessary
    */
   void readStripe() throws IOException {
+    try {
+      readAndDecode();
+    } finally {
+      waitForSlowReads();
+    }
+  }
+
+  private void readAndDecode() throws IOException {
     for (int i = 0; i < dataBlkNum; i++) {
       if (alignedStripe.chunks[i] != null &&
           alignedStripe.chunks[i].state != StripingChunk.ALLZERO) {
@@ -347,15 +389,27 @@ abstract class StripeReader {
 
     // Input buffers for potential decode operation, which remains null until
     // first read failure
+    long timeoutMillis = slowReadThresholdMillis;
     while (!futures.isEmpty()) {
       try {
         StripingChunkReadResult r = StripedBlockUtil
-            .getNextCompletedStripedRead(service, futures, 0);
-        dfsStripedInputStream.updateReadStats(r.getReadStats());
+            .getNextCompletedStripedRead(service, futures, timeoutMillis);
+        if (r.state == StripingChunkReadResult.TIMEOUT) {
+          if (!readParityForSlowChunks()) {
+            // the stripe cannot be decoded without the slow reads
+            timeoutMillis = 0;
+          }
+          continue;
+        }
+        updateReadStats(r.getReadStats());
         if (DFSClient.LOG.isDebugEnabled()) {
           DFSClient.LOG.debug("Read task returned: " + r + ", for stripe "
               + alignedStripe);
         }
+        if (slowChunks.get(r.index)) {
+          // decoded from the parity chunks instead
+          continue;
+        }
         StripingChunk returnedChunk = alignedStripe.chunks[r.index];
         Preconditions.checkNotNull(returnedChunk);
         Preconditions.checkState(returnedChunk.state == StripingChunk.PENDING);
@@ -394,6 +448,72 @@ abstract class StripeReader {
     }
   }
 
+  /**
+   * Give up the reads still pending after the slow read threshold and read
+   * parity chunks to decode them from instead, as long as the stripe can
+   * still be decoded. The readers of the slow chunks are closed, so the
+   * following stripes of a stateful read do not read from them.
+   *
+   * @return true if any read was given up.
+   */
+  private boolean readParityForSlowChunks() throws IOException {
+    int numParity = 0;
+    for (int i = dataBlkNum; i < dataBlkNum + parityBlkNum; i++) {
+      if (alignedStripe.chunks[i] == null && targetBlocks[i] != null &&
+          (readerInfos[i] == null || !readerInfos[i].shouldSkip)) {
+        numParity++;
+      }
+    }
+    int numSlow = Math.min(numParity,
+        parityBlkNum - alignedStripe.missingChunksNum);
+    int slow = 0;
+    for (Map.Entry<Future<BlockReadStats>, Integer> e : futures.entrySet()) {
+      final int index = e.getValue();
+      if (slow == numSlow) {
+        break;
+      }
+      if (slowChunks.get(index) || readerInfos[index].reader == null ||
+          readerInfos[index].reader.isShortCircuit()) {
+        continue;
+      }
+      DFSClient.LOG.debug("Giving up the slow read of {} from {}",
+          targetBlocks[index].getBlock(), readerInfos[index].datanode);
+      slowChunks.set(index);
+      alignedStripe.chunks[index].state = StripingChunk.MISSING;
+      alignedStripe.missingChunksNum++;
+      e.getKey().cancel(true);
+      if (readsStarted[index].compareAndSet(false, true)) {
+        // the read will not run, nothing to wait for
+        readsDone[index].countDown();
+      }
+      dfsStripedInputStream.closeReader(readerInfos[index]);
+      slow++;
+    }
+    if (slow == 0) {
+      return false;
+    }
+    dfsStripedInputStream.incrSlowReads(slow);
+    readDataForDecoding();
+    readParityChunks(slow);
+    return true;
+  }
+
+  /**
+   * Wait for the slow reads given up to end, before their buffers are used
+   * again. They end soon since their readers were closed.
+   */
+  private void waitForSlowReads() {
+    for (int i = slowChunks.nextSetBit(0); i >= 0;
+         i = slowChunks.nextSetBit(i + 1)) {
+      try {
+        readsDone[i].await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
   /**
    * Some fetched {@link StripingChunk} might be stored in original application
    * buffer instead of prepared decode input buffers. Some others are beyond
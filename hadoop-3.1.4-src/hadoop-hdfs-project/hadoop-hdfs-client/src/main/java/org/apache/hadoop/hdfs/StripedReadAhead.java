@@ -0,0 +1,348 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.DFSUtilClient.CorruptedBlocks;
+import org.apache.hadoop.hdfs.StripeReader.BlockReaderInfo;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedStripedBlock;
+import org.apache.hadoop.hdfs.util.StripedBlockUtil;
+import org.apache.hadoop.hdfs.util.StripedBlockUtil.AlignedStripe;
+import org.apache.hadoop.hdfs.util.StripedBlockUtil.BlockReadStats;
+import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureDecoder;
+
+/**
+ * Reads the next stripes of the current block group of a
+ * {@link DFSStripedInputStream} in the background, with the block readers
+ * of the stream, while the current stripe is being consumed.
+ * <p>
+ * The stripes are read one after the other by a task of the striped reads
+ * thread pool, into buffers reused once the stripes are consumed, until
+ * the given number of stripes are ready. The stream must not use its block
+ * readers while the task runs: it takes the stripes read in order, and
+ * {@link #stop}s the task before reading a stripe itself or closing the
+ * readers.
+ */
+@InterfaceAudience.Private
+class StripedReadAhead {
+
+  /** A stripe read ahead. */
+  private static final class Stripe {
+    private final long blockGroupOffset;
+    private final long offsetInBlockGroup;
+    private final ByteBuffer buf;
+    private final CorruptedBlocks corruptedBlocks = new CorruptedBlocks();
+    private final List<BlockReadStats> readStats = new ArrayList<>();
+    private IOException error;
+
+    private Stripe(long blockGroupOffset, long offsetInBlockGroup,
+        ByteBuffer buf) {
+      this.blockGroupOffset = blockGroupOffset;
+      this.offsetInBlockGroup = offsetInBlockGroup;
+      this.buf = buf;
+    }
+  }
+
+  /** Reads an aligned stripe into the buffers of a stripe read ahead. */
+  private final class ReadAheadStripeReader extends StatefulStripeReader {
+    private final Stripe stripe;
+
+    private ReadAheadStripeReader(AlignedStripe alignedStripe,
+        LocatedBlock[] targetBlocks, Stripe stripe) {
+      super(alignedStripe, StripedReadAhead.this.ecPolicy, targetBlocks,
+          StripedReadAhead.this.readerInfos, stripe.corruptedBlocks,
+          StripedReadAhead.this.decoder, stream);
+      this.stripe = stripe;
+    }
+
+    @Override
+    ByteBuffer getStripeBuffer() {
+      return stripe.buf;
+    }
+
+    @Override
+    ByteBuffer getParityBuffer() {
+      if (parityBuf == null) {
+        parityBuf = stream.getBufferPool().getBuffer(
+            decoder.preferDirectBuffer(), cellSize * parityBlkNum);
+      }
+      parityBuf.clear();
+      return parityBuf;
+    }
+
+    @Override
+    void updateReadStats(BlockReadStats stats) {
+      // the statistics of the file system are per thread
+      if (stats != null) {
+        stripe.readStats.add(stats);
+      }
+    }
+  }
+
+  private final DFSStripedInputStream stream;
+  private final ErasureCodingPolicy ecPolicy;
+  private final RawErasureDecoder decoder;
+  private final BlockReaderInfo[] readerInfos;
+  private final int numStripes;
+  private final int cellSize;
+  private final int dataBlkNum;
+  private final int parityBlkNum;
+  private final long stripeLen;
+
+  /** The stripes read ahead, in order. */
+  private final ArrayDeque<Stripe> ready = new ArrayDeque<>();
+  /** The buffers of the stripes consumed, to read the next ones into. */
+  private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+  private boolean running;
+  private boolean stopped;
+  private long numTaken;
+  /** The parity buffer, only used by the task. */
+  private ByteBuffer parityBuf;
+
+  StripedReadAhead(DFSStripedInputStream stream, ErasureCodingPolicy ecPolicy,
+      RawErasureDecoder decoder, BlockReaderInfo[] readerInfos,
+      int numStripes) {
+    this.stream = stream;
+    this.ecPolicy = ecPolicy;
+    this.decoder = decoder;
+    this.readerInfos = readerInfos;
+    this.numStripes = numStripes;
+    this.cellSize = ecPolicy.getCellSize();
+    this.dataBlkNum = ecPolicy.getNumDataUnits();
+    this.parityBlkNum = ecPolicy.getNumParityUnits();
+    this.stripeLen = (long) cellSize * dataBlkNum;
+  }
+
+  /**
+   * Start reading ahead the stripes of the block group from the given one,
+   * or after the last one read ahead, unless they are being read.
+   */
+  void start(final LocatedStripedBlock blockGroup, long offsetInBlockGroup) {
+    synchronized (this) {
+      if (running) {
+        return;
+      }
+      Stripe last = ready.peekLast();
+      if (last != null) {
+        if (last.error != null) {
+          return;
+        }
+        offsetInBlockGroup = last.offsetInBlockGroup + stripeLen;
+      }
+      if (ready.size() >= numStripes ||
+          offsetInBlockGroup >= blockGroup.getBlockSize()) {
+        return;
+      }
+      running = true;
+      stopped = false;
+    }
+    final long from = offsetInBlockGroup;
+    try {
+      // run by the caller if the pool is busy
+      stream.getStripedReadsThreadPool().execute(new Runnable() {
+        @Override
+        public void run() {
+          readAhead(blockGroup, from);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      DFSClient.LOG.debug("Failed to read ahead the stripes of {}",
+          blockGroup.getBlock(), e);
+      synchronized (this) {
+        running = false;
+        notifyAll();
+      }
+    }
+  }
+
+  private void readAhead(LocatedStripedBlock blockGroup,
+      long offsetInBlockGroup) {
+    try {
+      while (true) {
+        ByteBuffer buf;
+        synchronized (this) {
+          if (stopped || ready.size() >= numStripes ||
+              offsetInBlockGroup >= blockGroup.getBlockSize()) {
+            return;
+          }
+          buf = free.poll();
+        }
+        if (buf == null) {
+          buf = stream.getBufferPool().getBuffer(decoder.preferDirectBuffer(),
+              (int) stripeLen);
+        }
+        Stripe stripe = new Stripe(blockGroup.getStartOffset(),
+            offsetInBlockGroup, buf);
+        readStripe(blockGroup, stripe);
+        synchronized (this) {
+          ready.add(stripe);
+          notifyAll();
+          if (stripe.error != null) {
+            return;
+          }
+        }
+        offsetInBlockGroup += stripeLen;
+      }
+    } finally {
+      synchronized (this) {
+        running = false;
+        notifyAll();
+      }
+    }
+  }
+
+  private void readStripe(LocatedStripedBlock blockGroup, Stripe stripe) {
+    try {
+      stripe.buf.clear();
+      final long end = Math.min(stripe.offsetInBlockGroup + stripeLen,
+          blockGroup.getBlockSize()) - 1;
+      AlignedStripe[] alignedStripes = StripedBlockUtil.divideOneStripe(
+          ecPolicy, cellSize, blockGroup, stripe.offsetInBlockGroup, end,
+          stripe.buf);
+      final LocatedBlock[] blks = StripedBlockUtil.parseStripedBlockGroup(
+          blockGroup, cellSize, dataBlkNum, parityBlkNum);
+      for (AlignedStripe alignedStripe : alignedStripes) {
+        new ReadAheadStripeReader(alignedStripe, blks, stripe).readStripe();
+      }
+    } catch (IOException e) {
+      stripe.error = e;
+    } catch (RuntimeException e) {
+      stripe.error = new IOException(e);
+    }
+  }
+
+  /**
+   * Take the given stripe if it was read ahead, or stop reading ahead.
+   *
+   * @param blockGroup         the block group read
+   * @param offsetInBlockGroup the offset of the stripe in the block group
+   * @param corruptedBlocks    the corrupted blocks found by the read, to add
+   *                           those found reading the stripe to
+   * @return the buffer of the whole stripe, to {@link #release} once
+   * consumed, or null if the stripe was not read ahead.
+   * @throws IOException if the stripe failed to be read.
+   */
+  synchronized ByteBuffer take(LocatedStripedBlock blockGroup,
+      long offsetInBlockGroup, CorruptedBlocks corruptedBlocks)
+      throws IOException {
+    while (true) {
+      Stripe stripe = ready.peek();
+      if (stripe != null &&
+          stripe.blockGroupOffset == blockGroup.getStartOffset() &&
+          stripe.offsetInBlockGroup == offsetInBlockGroup) {
+        ready.poll();
+        for (BlockReadStats stats : stripe.readStats) {
+          stream.updateReadStats(stats);
+        }
+        Map<ExtendedBlock, Set<DatanodeInfo>> corruptions =
+            stripe.corruptedBlocks.getCorruptionMap();
+        if (corruptions != null) {
+          for (Map.Entry<ExtendedBlock, Set<DatanodeInfo>> e :
+              corruptions.entrySet()) {
+            for (DatanodeInfo dn : e.getValue()) {
+              corruptedBlocks.addCorruptedBlock(e.getKey(), dn);
+            }
+          }
+        }
+        if (stripe.error != null) {
+          free.add(stripe.buf);
+          throw stripe.error;
+        }
+        numTaken++;
+        return stripe.buf;
+      }
+      if (stripe != null || !running) {
+        // not the next stripe read ahead, the stream seeked
+        stop();
+        return null;
+      }
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        stop();
+        throw new InterruptedIOException(
+            "Interrupted waiting for the stripe read ahead");
+      }
+    }
+  }
+
+  /**
+   * Give back the buffer of a stripe consumed.
+   */
+  synchronized void release(ByteBuffer buf) {
+    free.add(buf);
+  }
+
+  /**
+   * Stop reading ahead, wait for the stripe being read and drop the stripes
+   * read ahead.
+   */
+  synchronized void stop() {
+    stopped = true;
+    boolean interrupted = false;
+    while (running) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        // the block readers cannot be used until the task ends
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    for (Stripe stripe : ready) {
+      free.add(stripe.buf);
+    }
+    ready.clear();
+  }
+
+  /**
+   * Stop reading ahead and give back all the buffers to the pool.
+   */
+  synchronized void close() {
+    stop();
+    for (ByteBuffer buf : free) {
+      stream.getBufferPool().putBuffer(buf);
+    }
+    free.clear();
+    if (parityBuf != null) {
+      stream.getBufferPool().putBuffer(parityBuf);
+      parityBuf = null;
+    }
+  }
+
+  /** @return the number of stripes taken after being read ahead. */
+  synchronized long getNumTaken() {
+    return numTaken;
+  }
+}
@@ -83,6 +83,8 @@ public interface HdfsClientConfigKeys {
       "dfs.namenode.kerberos.principal";
   String  DFS_CLIENT_WRITE_PACKET_SIZE_KEY = "dfs.client-write-packet-size";
   int     DFS_CLIENT_WRITE_PACKET_SIZE_DEFAULT = 64*1024;
+  String  DFS_CLIENT_WRITE_BATCH_SIZE_KEY = "dfs.client.write.batch.size";
+  int     DFS_CLIENT_WRITE_BATCH_SIZE_DEFAULT = 1000;
   String  DFS_CLIENT_SOCKET_TIMEOUT_KEY = "dfs.client.socket-timeout";
   String  DFS_CLIENT_SOCKET_SEND_BUFFER_SIZE_KEY =
       "dfs.client.socket.send.buffer.size";
@@ -375,6 +377,18 @@ public interface HdfsClientConfigKeys {
           PREFIX + "metrics.sampling.percentage";
       int     METRICS_SAMPLING_PERCENTAGE_DEFAULT = 0;
     }
+
+    /** dfs.client.read.page.cache configuration properties */
+    interface PageCache {
+      String PREFIX = Read.PREFIX + "page.cache.";
+
+      String  CAPACITY_KEY = PREFIX + "capacity";
+      long    CAPACITY_DEFAULT = 0;
+      String  PAGE_SIZE_KEY = PREFIX + "page.size";
+      int     PAGE_SIZE_DEFAULT = 64 * 1024;
+      String  EVICTION_POLICY_KEY = PREFIX + "eviction.policy";
+      String  EVICTION_POLICY_DEFAULT = "LRU";
+    }
   }
 
   /** dfs.client.short.circuit configuration properties */
@@ -408,6 +422,8 @@ public interface HdfsClientConfigKeys {
     long    THRESHOLD_MILLIS_DEFAULT = 500;
     String  THREADPOOL_SIZE_KEY = PREFIX + "threadpool.size";
     int     THREADPOOL_SIZE_DEFAULT = 0;
+    String  ADAPTIVE_ENABLED_KEY = PREFIX + "adaptive.enabled";
+    boolean ADAPTIVE_ENABLED_DEFAULT = false;
   }
 
   /** dfs.client.read.striped configuration properties */
@@ -420,6 +436,28 @@ public interface HdfsClientConfigKeys {
      * span 6 DNs, so this default value accommodates 3 read streams
      */
     int     THREADPOOL_SIZE_DEFAULT = 18;
+    /** The stripes of a block group read ahead by a stateful read. */
+    String  READAHEAD_STRIPES_KEY = PREFIX + "readahead.stripes";
+    int     READAHEAD_STRIPES_DEFAULT = 0;
+    /**
+     * The time after which the cells still being read are decoded from the
+     * parity blocks instead, 0 to wait for them.
+     */
+    String  SLOW_READ_THRESHOLD_MILLIS_KEY =
+        PREFIX + "slow.read.threshold.millis";
+    long    SLOW_READ_THRESHOLD_MILLIS_DEFAULT = 0;
+  }
+
+  /** dfs.client.read.vectored configuration properties */
+  interface VectoredRead {
+    String PREFIX = Read.PREFIX + "vectored.";
+
+    String  THREADPOOL_SIZE_KEY = PREFIX + "threadpool.size";
+    int     THREADPOOL_SIZE_DEFAULT = 8;
+    String  MIN_SEEK_SIZE_KEY = PREFIX + "min.seek.size";
+    int     MIN_SEEK_SIZE_DEFAULT = 64 * 1024;
+    String  MAX_MERGED_SIZE_KEY = PREFIX + "max.merged.size";
+    int     MAX_MERGED_SIZE_DEFAULT = 1024 * 1024;
   }
 
   /** dfs.http.client configuration properties */
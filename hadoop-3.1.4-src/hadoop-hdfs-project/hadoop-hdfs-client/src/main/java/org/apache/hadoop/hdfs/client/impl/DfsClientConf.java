@@ -25,6 +25,7 @@ import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
 import org.apache.hadoop.fs.Options.ChecksumCombineMode;
 import org.apache.hadoop.fs.Options.ChecksumOpt;
 import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.BlockPageCache;
 import org.apache.hadoop.hdfs.ReplicaAccessorBuilder;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants;
 import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
@@ -68,6 +69,8 @@ import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_USE_
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_USE_DN_HOSTNAME_DEFAULT;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_USE_LEGACY_BLOCKREADERLOCAL;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_USE_LEGACY_BLOCKREADERLOCAL_DEFAULT;
+import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_WRITE_BATCH_SIZE_DEFAULT;
+import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_WRITE_BATCH_SIZE_KEY;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_WRITE_PACKET_SIZE_DEFAULT;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_WRITE_PACKET_SIZE_KEY;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_DATANODE_SOCKET_WRITE_TIMEOUT_KEY;
@@ -116,6 +119,7 @@ public class DfsClientConf {
   private final int socketTimeout;
   private final int socketSendBufferSize;
   private final long excludedNodesCacheExpiry;
+  private final int writeBatchSize;
   /** Wait time window (in msec) if BlockMissingException is caught. */
   private final int timeWindow;
   private final int numCachedConnRetry;
@@ -140,10 +144,17 @@ public class DfsClientConf {
 
   private final long hedgedReadThresholdMillis;
   private final int hedgedReadThreadpoolSize;
+  private final boolean hedgedReadAdaptive;
   private final List<Class<? extends ReplicaAccessorBuilder>>
       replicaAccessorBuilderClasses;
 
   private final int stripedReadThreadpoolSize;
+  private final int stripedReadAheadStripes;
+  private final long stripedSlowReadThresholdMillis;
+
+  private final int vectoredReadThreadpoolSize;
+  private final int vectoredReadMinSeekSize;
+  private final int vectoredReadMaxMergedSize;
 
   private final boolean dataTransferTcpNoDelay;
   private final long leaseHardLimitPeriod;
@@ -228,6 +239,8 @@ public class DfsClientConf {
     excludedNodesCacheExpiry = conf.getLong(
         Write.EXCLUDE_NODES_CACHE_EXPIRY_INTERVAL_KEY,
         Write.EXCLUDE_NODES_CACHE_EXPIRY_INTERVAL_DEFAULT);
+    writeBatchSize = conf.getInt(DFS_CLIENT_WRITE_BATCH_SIZE_KEY,
+        DFS_CLIENT_WRITE_BATCH_SIZE_DEFAULT);
     prefetchSize = conf.getLong(Read.PREFETCH_SIZE_KEY,
         10 * defaultBlockSize);
     numCachedConnRetry = conf.getInt(DFS_CLIENT_CACHED_CONN_RETRY_KEY,
@@ -266,6 +279,9 @@ public class DfsClientConf {
     hedgedReadThreadpoolSize = conf.getInt(
         HdfsClientConfigKeys.HedgedRead.THREADPOOL_SIZE_KEY,
         HdfsClientConfigKeys.HedgedRead.THREADPOOL_SIZE_DEFAULT);
+    hedgedReadAdaptive = conf.getBoolean(
+        HedgedRead.ADAPTIVE_ENABLED_KEY,
+        HedgedRead.ADAPTIVE_ENABLED_DEFAULT);
 
     stripedReadThreadpoolSize = conf.getInt(
         HdfsClientConfigKeys.StripedRead.THREADPOOL_SIZE_KEY,
@@ -273,6 +289,22 @@ public class DfsClientConf {
     Preconditions.checkArgument(stripedReadThreadpoolSize > 0, "The value of " +
         HdfsClientConfigKeys.StripedRead.THREADPOOL_SIZE_KEY +
         " must be greater than 0.");
+    stripedReadAheadStripes = conf.getInt(
+        HdfsClientConfigKeys.StripedRead.READAHEAD_STRIPES_KEY,
+        HdfsClientConfigKeys.StripedRead.READAHEAD_STRIPES_DEFAULT);
+    stripedSlowReadThresholdMillis = conf.getLong(
+        HdfsClientConfigKeys.StripedRead.SLOW_READ_THRESHOLD_MILLIS_KEY,
+        HdfsClientConfigKeys.StripedRead.SLOW_READ_THRESHOLD_MILLIS_DEFAULT);
+
+    vectoredReadThreadpoolSize = conf.getInt(
+        HdfsClientConfigKeys.VectoredRead.THREADPOOL_SIZE_KEY,
+        HdfsClientConfigKeys.VectoredRead.THREADPOOL_SIZE_DEFAULT);
+    vectoredReadMinSeekSize = (int) conf.getLongBytes(
+        HdfsClientConfigKeys.VectoredRead.MIN_SEEK_SIZE_KEY,
+        HdfsClientConfigKeys.VectoredRead.MIN_SEEK_SIZE_DEFAULT);
+    vectoredReadMaxMergedSize = (int) conf.getLongBytes(
+        HdfsClientConfigKeys.VectoredRead.MAX_MERGED_SIZE_KEY,
+        HdfsClientConfigKeys.VectoredRead.MAX_MERGED_SIZE_DEFAULT);
     replicaAccessorBuilderClasses = loadReplicaAccessorBuilderClasses(conf);
 
     leaseHardLimitPeriod =
@@ -481,6 +513,13 @@ public class DfsClientConf {
     return excludedNodesCacheExpiry;
   }
 
+  /**
+   * @return the maximum number of files created or completed per batch call
+   */
+  public int getWriteBatchSize() {
+    return writeBatchSize;
+  }
+
   /**
    * @return the timeWindow
    */
@@ -593,6 +632,14 @@ public class DfsClientConf {
     return hedgedReadThreadpoolSize;
   }
 
+  /**
+   * @return whether the hedged reads and the choice of the DataNodes to
+   * read from adapt to the read latencies observed
+   */
+  public boolean isHedgedReadAdaptive() {
+    return hedgedReadAdaptive;
+  }
+
   /**
    * @return the stripedReadThreadpoolSize
    */
@@ -600,6 +647,42 @@ public class DfsClientConf {
     return stripedReadThreadpoolSize;
   }
 
+  /**
+   * @return the number of stripes read ahead by a stateful striped read
+   */
+  public int getStripedReadAheadStripes() {
+    return stripedReadAheadStripes;
+  }
+
+  /**
+   * @return the time after which the cells of a striped read still being
+   * read are decoded instead, or 0
+   */
+  public long getStripedSlowReadThresholdMillis() {
+    return stripedSlowReadThresholdMillis;
+  }
+
+  /**
+   * @return the vectoredReadThreadpoolSize
+   */
+  public int getVectoredReadThreadpoolSize() {
+    return vectoredReadThreadpoolSize;
+  }
+
+  /**
+   * @return the largest gap between two ranges of a vectored read merged
+   */
+  public int getVectoredReadMinSeekSize() {
+    return vectoredReadMinSeekSize;
+  }
+
+  /**
+   * @return the largest range of a vectored read merged from others
+   */
+  public int getVectoredReadMaxMergedSize() {
+    return vectoredReadMaxMergedSize;
+  }
+
   /**
    * @return the leaseHardLimitPeriod
    */
@@ -638,6 +721,10 @@ public class DfsClientConf {
     private final int socketCacheCapacity;
     private final long socketCacheExpiry;
 
+    private final long pageCacheCapacity;
+    private final int pageCachePageSize;
+    private final BlockPageCache.EvictionPolicy pageCacheEvictionPolicy;
+
     private final boolean useLegacyBlockReaderLocal;
     private final String domainSocketPath;
     private final boolean skipShortCircuitChecksums;
@@ -670,6 +757,17 @@ public class DfsClientConf {
           DFS_CLIENT_SOCKET_CACHE_EXPIRY_MSEC_KEY,
           DFS_CLIENT_SOCKET_CACHE_EXPIRY_MSEC_DEFAULT);
 
+      pageCacheCapacity = conf.getLongBytes(
+          HdfsClientConfigKeys.Read.PageCache.CAPACITY_KEY,
+          HdfsClientConfigKeys.Read.PageCache.CAPACITY_DEFAULT);
+      pageCachePageSize = (int) conf.getLongBytes(
+          HdfsClientConfigKeys.Read.PageCache.PAGE_SIZE_KEY,
+          HdfsClientConfigKeys.Read.PageCache.PAGE_SIZE_DEFAULT);
+      pageCacheEvictionPolicy = conf.getEnum(
+          HdfsClientConfigKeys.Read.PageCache.EVICTION_POLICY_KEY,
+          BlockPageCache.EvictionPolicy.valueOf(
+              HdfsClientConfigKeys.Read.PageCache.EVICTION_POLICY_DEFAULT));
+
       useLegacyBlockReaderLocal = conf.getBoolean(
           DFS_CLIENT_USE_LEGACY_BLOCKREADERLOCAL,
           DFS_CLIENT_USE_LEGACY_BLOCKREADERLOCAL_DEFAULT);
@@ -761,6 +859,21 @@ public class DfsClientConf {
       return socketCacheExpiry;
     }
 
+    /**
+     * @return the capacity of the page cache, in bytes, 0 if disabled
+     */
+    public long getPageCacheCapacity() {
+      return pageCacheCapacity;
+    }
+
+    public int getPageCachePageSize() {
+      return pageCachePageSize;
+    }
+
+    public BlockPageCache.EvictionPolicy getPageCacheEvictionPolicy() {
+      return pageCacheEvictionPolicy;
+    }
+
     public boolean isUseLegacyBlockReaderLocal() {
       return useLegacyBlockReaderLocal;
     }
@@ -898,7 +1011,13 @@ public class DfsClientConf {
           + ", keyProviderCacheExpiryMs = "
           + keyProviderCacheExpiryMs
           + ", domainSocketDisableIntervalSeconds = "
-          + domainSocketDisableIntervalSeconds;
+          + domainSocketDisableIntervalSeconds
+          + ", pageCacheCapacity = "
+          + pageCacheCapacity
+          + ", pageCachePageSize = "
+          + pageCachePageSize
+          + ", pageCacheEvictionPolicy = "
+          + pageCacheEvictionPolicy;
     }
   }
 }
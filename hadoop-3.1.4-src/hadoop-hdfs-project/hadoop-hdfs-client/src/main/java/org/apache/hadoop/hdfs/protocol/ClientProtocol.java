@@ -212,6 +212,29 @@ public interface ClientProtocol {
       CryptoProtocolVersion[] supportedVersions, String ecPolicyName)
       throws IOException;
 
+  /**
+   * Create a batch of new files with the same parameters in a single call.
+   * The files are created in order, as if by {@link #create}, and the batch
+   * stops at the first file which cannot be created.
+   * <p>
+   * If no file could be created, the failure of the first file is thrown.
+   * Otherwise the result holds the status of each file which was created
+   * and the failure of the file following them, if any.
+   *
+   * @param srcs paths of the files being created.
+   * @see #create for the other parameters and the possible failures.
+   * @return the status of the created files and the failure of the first
+   *         file which could not be created
+   * @throws IOException If an I/O error occurred, or if the first file of
+   *           the batch could not be created
+   */
+  @AtMostOnce
+  CreateBatchResult createBatch(String[] srcs, FsPermission masked,
+      String clientName, EnumSetWritable<CreateFlag> flag,
+      boolean createParent, short replication, long blockSize,
+      CryptoProtocolVersion[] supportedVersions, String ecPolicyName)
+      throws IOException;
+
   /**
    * Append to the end of the file.
    * @param src path of the file being created.
@@ -500,6 +523,26 @@ public interface ClientProtocol {
                           ExtendedBlock last, long fileId)
       throws IOException;
 
+  /**
+   * Complete a batch of files written by the client in a single call, as if
+   * by {@link #complete} for each of them. The arrays are indexed by file.
+   * If an exception is thrown some of the files may have been completed;
+   * as {@link #complete} is idempotent, the batch may simply be retried.
+   *
+   * @param srcs the files being completed
+   * @param clientName the name of the client that wrote the files
+   * @param lasts the last block of each file
+   * @param fileIds the ids uniquely identifying the files
+   *
+   * @return for each file, true if all its blocks are minimally replicated
+   *         or false otherwise
+   * @see #complete for the possible failures
+   * @throws IOException If an I/O error occurred
+   */
+  @Idempotent
+  boolean[] completeBatch(String[] srcs, String clientName,
+      ExtendedBlock[] lasts, long[] fileIds) throws IOException;
+
   /**
    * The client wants to report corrupted blocks (blocks with specified
    * locations on datanodes).
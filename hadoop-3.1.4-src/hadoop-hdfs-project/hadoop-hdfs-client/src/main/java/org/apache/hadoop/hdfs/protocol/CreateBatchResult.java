@@ -0,0 +1,66 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.protocol;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.ipc.RemoteException;
+
+/**
+ * Class to contain the result of the CreateBatch operation: the status of
+ * the files created, in request order, and the failure of the first file
+ * which could not be created, if any.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+public class CreateBatchResult {
+
+  private final HdfsFileStatus[] statuses;
+
+  private final String exceptionClassName;
+
+  private final String errorMessage;
+
+  public CreateBatchResult(HdfsFileStatus[] statuses,
+      String exceptionClassName, String errorMessage) {
+    this.statuses = statuses;
+    this.exceptionClassName = exceptionClassName;
+    this.errorMessage = errorMessage;
+  }
+
+  public HdfsFileStatus[] getStatuses() {
+    return statuses;
+  }
+
+  public String getExceptionClassName() {
+    return exceptionClassName;
+  }
+
+  public String getErrorMessage() {
+    return errorMessage;
+  }
+
+  /**
+   * @return the failure of the file following the created files, or null if
+   *         all the files of the batch were created.
+   */
+  public RemoteException getFailure() {
+    return exceptionClassName == null ? null :
+        new RemoteException(exceptionClassName, errorMessage);
+  }
+}
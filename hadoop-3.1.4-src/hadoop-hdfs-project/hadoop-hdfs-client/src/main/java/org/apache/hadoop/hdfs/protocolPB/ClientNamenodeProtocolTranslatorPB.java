@@ -60,6 +60,7 @@ import org.apache.hadoop.hdfs.protocol.CachePoolEntry;
 import org.apache.hadoop.hdfs.protocol.CachePoolInfo;
 import org.apache.hadoop.hdfs.protocol.ClientProtocol;
 import org.apache.hadoop.hdfs.protocol.CorruptFileBlocks;
+import org.apache.hadoop.hdfs.protocol.CreateBatchResult;
 import org.apache.hadoop.hdfs.protocol.DatanodeID;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.DirectoryListing;
@@ -102,8 +103,12 @@ import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.Append
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.AppendResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CachePoolEntryProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CheckAccessRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CompleteBatchEntryProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CompleteBatchRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CompleteRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.ConcatRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateBatchRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateBatchResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateSnapshotRequestProto;
@@ -371,6 +376,45 @@ public class ClientNamenodeProtocolTranslatorPB implements
 
   }
 
+  @Override
+  public CreateBatchResult createBatch(String[] srcs, FsPermission masked,
+      String clientName, EnumSetWritable<CreateFlag> flag,
+      boolean createParent, short replication, long blockSize,
+      CryptoProtocolVersion[] supportedVersions, String ecPolicyName)
+      throws IOException {
+    CreateBatchRequestProto.Builder builder =
+        CreateBatchRequestProto.newBuilder()
+        .addAllSrc(Arrays.asList(srcs))
+        .setMasked(PBHelperClient.convert(masked))
+        .setClientName(clientName)
+        .setCreateFlag(PBHelperClient.convertCreateFlag(flag))
+        .setCreateParent(createParent)
+        .setReplication(replication)
+        .setBlockSize(blockSize);
+    if (ecPolicyName != null) {
+      builder.setEcPolicyName(ecPolicyName);
+    }
+    FsPermission unmasked = masked.getUnmasked();
+    if (unmasked != null) {
+      builder.setUnmasked(PBHelperClient.convert(unmasked));
+    }
+    builder.addAllCryptoProtocolVersion(
+        PBHelperClient.convert(supportedVersions));
+    try {
+      CreateBatchResponseProto res = rpcProxy.createBatch(null,
+          builder.build());
+      HdfsFileStatus[] statuses = new HdfsFileStatus[res.getFsCount()];
+      for (int i = 0; i < statuses.length; i++) {
+        statuses[i] = PBHelperClient.convert(res.getFs(i));
+      }
+      return new CreateBatchResult(statuses,
+          res.hasExceptionClassName() ? res.getExceptionClassName() : null,
+          res.hasErrorMessage() ? res.getErrorMessage() : null);
+    } catch (ServiceException e) {
+      throw ProtobufHelper.getRemoteException(e);
+    }
+  }
+
   @Override
   public boolean truncate(String src, long newLength, String clientName)
       throws IOException {
@@ -557,6 +601,34 @@ public class ClientNamenodeProtocolTranslatorPB implements
     }
   }
 
+  @Override
+  public boolean[] completeBatch(String[] srcs, String clientName,
+      ExtendedBlock[] lasts, long[] fileIds) throws IOException {
+    CompleteBatchRequestProto.Builder req =
+        CompleteBatchRequestProto.newBuilder().setClientName(clientName);
+    for (int i = 0; i < srcs.length; i++) {
+      CompleteBatchEntryProto.Builder entry =
+          CompleteBatchEntryProto.newBuilder()
+          .setSrc(srcs[i])
+          .setFileId(fileIds[i]);
+      if (lasts[i] != null) {
+        entry.setLast(PBHelperClient.convert(lasts[i]));
+      }
+      req.addEntries(entry);
+    }
+    try {
+      List<Boolean> results =
+          rpcProxy.completeBatch(null, req.build()).getResultList();
+      boolean[] success = new boolean[results.size()];
+      for (int i = 0; i < success.length; i++) {
+        success[i] = results.get(i);
+      }
+      return success;
+    } catch (ServiceException e) {
+      throw ProtobufHelper.getRemoteException(e);
+    }
+  }
+
   @Override
   public void reportBadBlocks(LocatedBlock[] blocks) throws IOException {
     ReportBadBlocksRequestProto req = ReportBadBlocksRequestProto.newBuilder()
@@ -47,6 +47,7 @@ import org.apache.hadoop.hdfs.protocol.CachePoolEntry;
 import org.apache.hadoop.hdfs.protocol.CachePoolInfo;
 import org.apache.hadoop.hdfs.protocol.ClientProtocol;
 import org.apache.hadoop.hdfs.protocol.CorruptFileBlocks;
+import org.apache.hadoop.hdfs.protocol.CreateBatchResult;
 import org.apache.hadoop.hdfs.protocol.DatanodeID;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.DirectoryListing;
@@ -219,6 +220,16 @@ public class RouterClientProtocol implements ClientProtocol {
     return (HdfsFileStatus) rpcClient.invokeSingle(createLocation, method);
   }
 
+  @Override
+  public CreateBatchResult createBatch(String[] srcs, FsPermission masked,
+      String clientName, EnumSetWritable<CreateFlag> flag,
+      boolean createParent, short replication, long blockSize,
+      CryptoProtocolVersion[] supportedVersions, String ecPolicyName)
+      throws IOException {
+    rpcServer.checkOperation(NameNode.OperationCategory.WRITE, false);
+    return null;
+  }
+
   @Override
   public LastBlockWithStatus append(String src, final String clientName,
       final EnumSetWritable<CreateFlag> flag) throws IOException {
@@ -391,6 +402,13 @@ public class RouterClientProtocol implements ClientProtocol {
     return rpcClient.invokeSequential(locations, method, Boolean.class, null);
   }
 
+  @Override
+  public boolean[] completeBatch(String[] srcs, String clientName,
+      ExtendedBlock[] lasts, long[] fileIds) throws IOException {
+    rpcServer.checkOperation(NameNode.OperationCategory.WRITE, false);
+    return null;
+  }
+
   @Override
   public LocatedBlock updateBlockForPipeline(
       ExtendedBlock block, String clientName) throws IOException {
@@ -70,6 +70,7 @@ import org.apache.hadoop.hdfs.protocol.CachePoolEntry;
 import org.apache.hadoop.hdfs.protocol.CachePoolInfo;
 import org.apache.hadoop.hdfs.protocol.ClientProtocol;
 import org.apache.hadoop.hdfs.protocol.CorruptFileBlocks;
+import org.apache.hadoop.hdfs.protocol.CreateBatchResult;
 import org.apache.hadoop.hdfs.protocol.DatanodeID;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.DirectoryListing;
@@ -504,6 +505,17 @@ public class RouterRpcServer extends AbstractService
         replication, blockSize, supportedVersions, ecPolicyName);
   }
 
+  @Override // ClientProtocol
+  public CreateBatchResult createBatch(String[] srcs, FsPermission masked,
+      String clientName, EnumSetWritable<CreateFlag> flag,
+      boolean createParent, short replication, long blockSize,
+      CryptoProtocolVersion[] supportedVersions, String ecPolicyName)
+      throws IOException {
+    return clientProto.createBatch(srcs, masked, clientName, flag,
+        createParent, replication, blockSize, supportedVersions,
+        ecPolicyName);
+  }
+
   /**
    * Get the location to create a file. It checks if the file already existed
    * in one of the locations.
@@ -633,6 +645,12 @@ public class RouterRpcServer extends AbstractService
     return clientProto.complete(src, clientName, last, fileId);
   }
 
+  @Override // ClientProtocol
+  public boolean[] completeBatch(String[] srcs, String clientName,
+      ExtendedBlock[] lasts, long[] fileIds) throws IOException {
+    return clientProto.completeBatch(srcs, clientName, lasts, fileIds);
+  }
+
   @Override // ClientProtocol
   public LocatedBlock updateBlockForPipeline(
       ExtendedBlock block, String clientName) throws IOException {
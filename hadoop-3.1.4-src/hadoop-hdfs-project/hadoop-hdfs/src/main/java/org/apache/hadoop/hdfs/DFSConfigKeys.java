@@ -221,6 +221,10 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.namenode.redundancy.queue.restart.iterations";
   public static final int
       DFS_NAMENODE_REDUNDANCY_QUEUE_RESTART_ITERATIONS_DEFAULT = 2400;
+  public static final String DFS_NAMENODE_REDUNDANCY_PARALLEL_THREADS_KEY =
+      "dfs.namenode.redundancy.parallel.threads";
+  public static final int
+      DFS_NAMENODE_REDUNDANCY_PARALLEL_THREADS_DEFAULT = 0;
   public static final String  DFS_NAMENODE_REPLICATION_MIN_KEY =
       HdfsClientConfigKeys.DeprecatedKeys.DFS_NAMENODE_REPLICATION_MIN_KEY;
   public static final int     DFS_NAMENODE_REPLICATION_MIN_DEFAULT = 1;
@@ -267,6 +271,13 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       = "dfs.namenode.blockreport.queue.size";
   public static final int    DFS_NAMENODE_BLOCKREPORT_QUEUE_SIZE_DEFAULT
       = 1024;
+  public static final String DFS_NAMENODE_BLOCKREPORT_QUEUE_MAX_LOCK_HOLD_MS_KEY
+      = "dfs.namenode.blockreport.queue.max.lock.hold.ms";
+  public static final long
+      DFS_NAMENODE_BLOCKREPORT_QUEUE_MAX_LOCK_HOLD_MS_DEFAULT = 4;
+  public static final String DFS_NAMENODE_BLOCKREPORT_CHUNK_SIZE_KEY
+      = "dfs.namenode.blockreport.chunk.size";
+  public static final int    DFS_NAMENODE_BLOCKREPORT_CHUNK_SIZE_DEFAULT = 0;
   public static final String  DFS_WEBHDFS_AUTHENTICATION_FILTER_KEY = "dfs.web.authentication.filter";
   /* Phrased as below to avoid javac inlining as a constant, to match the behavior when
      this was AuthFilter.class.getName(). Note that if you change the import for AuthFilter, you
@@ -339,6 +350,19 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String  DFS_NAMENODE_EDITS_ASYNC_LOGGING =
       "dfs.namenode.edits.asynclogging";
   public static final boolean DFS_NAMENODE_EDITS_ASYNC_LOGGING_DEFAULT = true;
+  public static final String  DFS_NAMENODE_EDITS_PREFETCH_SIZE_KEY =
+      "dfs.namenode.edits.prefetch.size";
+  public static final int     DFS_NAMENODE_EDITS_PREFETCH_SIZE_DEFAULT = 0;
+  public static final String
+      DFS_NAMENODE_EDITS_ASYNC_GROUP_COMMIT_MAX_WAIT_US_KEY =
+      "dfs.namenode.edits.async.group-commit.max-wait.us";
+  public static final long
+      DFS_NAMENODE_EDITS_ASYNC_GROUP_COMMIT_MAX_WAIT_US_DEFAULT = 0;
+  public static final String
+      DFS_NAMENODE_EDITS_ASYNC_GROUP_COMMIT_BATCH_SIZE_KEY =
+      "dfs.namenode.edits.async.group-commit.batch-size";
+  public static final int
+      DFS_NAMENODE_EDITS_ASYNC_GROUP_COMMIT_BATCH_SIZE_DEFAULT = 128;
 
   public static final String DFS_NAMENODE_PROVIDED_ENABLED = "dfs.namenode.provided.enabled";
   public static final boolean DFS_NAMENODE_PROVIDED_ENABLED_DEFAULT = false;
@@ -366,11 +390,54 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final int     DFS_CONTENT_SUMMARY_LIMIT_DEFAULT = 5000;
   public static final String  DFS_CONTENT_SUMMARY_SLEEP_MICROSEC_KEY = "dfs.content-summary.sleep-microsec";
   public static final long    DFS_CONTENT_SUMMARY_SLEEP_MICROSEC_DEFAULT = 500;
+  public static final String  DFS_CONTENT_SUMMARY_CACHE_ENABLED_KEY =
+      "dfs.content-summary.cache.enabled";
+  public static final boolean DFS_CONTENT_SUMMARY_CACHE_ENABLED_DEFAULT =
+      false;
+  public static final String  DFS_CONTENT_SUMMARY_CACHE_MAX_ENTRIES_KEY =
+      "dfs.content-summary.cache.max-entries";
+  public static final int     DFS_CONTENT_SUMMARY_CACHE_MAX_ENTRIES_DEFAULT =
+      10000;
+  public static final String  DFS_CONTENT_SUMMARY_CACHE_MAX_STALE_MS_KEY =
+      "dfs.content-summary.cache.max-stale.ms";
+  public static final long    DFS_CONTENT_SUMMARY_CACHE_MAX_STALE_MS_DEFAULT =
+      0;
+  public static final String  DFS_CONTENT_SUMMARY_CACHE_IDLE_MS_KEY =
+      "dfs.content-summary.cache.idle.ms";
+  public static final long    DFS_CONTENT_SUMMARY_CACHE_IDLE_MS_DEFAULT =
+      10 * 60 * 1000;
+  public static final String  DFS_NAMENODE_BLOCK_LOCATIONS_CACHE_ENABLED_KEY =
+      "dfs.namenode.block-locations.cache.enabled";
+  public static final boolean
+      DFS_NAMENODE_BLOCK_LOCATIONS_CACHE_ENABLED_DEFAULT = false;
+  public static final String
+      DFS_NAMENODE_BLOCK_LOCATIONS_CACHE_MAX_ENTRIES_KEY =
+      "dfs.namenode.block-locations.cache.max-entries";
+  public static final int
+      DFS_NAMENODE_BLOCK_LOCATIONS_CACHE_MAX_ENTRIES_DEFAULT = 10000;
+  public static final String  DFS_NAMENODE_BLOCK_LOCATIONS_CACHE_TTL_MS_KEY =
+      "dfs.namenode.block-locations.cache.ttl.ms";
+  public static final long
+      DFS_NAMENODE_BLOCK_LOCATIONS_CACHE_TTL_MS_DEFAULT = 3000;
   public static final String  DFS_DATANODE_FAILED_VOLUMES_TOLERATED_KEY = "dfs.datanode.failed.volumes.tolerated";
   public static final int     DFS_DATANODE_FAILED_VOLUMES_TOLERATED_DEFAULT = 0;
   public static final String
       DFS_DATANODE_VOLUMES_REPLICA_ADD_THREADPOOL_SIZE_KEY =
       "dfs.datanode.volumes.replica-add.threadpool.size";
+  public static final String  DFS_DATANODE_REPLICA_INDEX_ENABLED_KEY =
+      "dfs.datanode.replica.index.enabled";
+  public static final boolean DFS_DATANODE_REPLICA_INDEX_ENABLED_DEFAULT =
+      false;
+  public static final String
+      DFS_DATANODE_REPLICA_INDEX_CHECKPOINT_RECORDS_KEY =
+      "dfs.datanode.replica.index.checkpoint.records";
+  public static final long
+      DFS_DATANODE_REPLICA_INDEX_CHECKPOINT_RECORDS_DEFAULT = 100000;
+  public static final String
+      DFS_DATANODE_REPLICA_INDEX_RECONCILE_DELAY_KEY =
+      "dfs.datanode.replica.index.reconcile.delay";
+  public static final long
+      DFS_DATANODE_REPLICA_INDEX_RECONCILE_DELAY_DEFAULT = 600;
   public static final String  DFS_DATANODE_SYNCONCLOSE_KEY = "dfs.datanode.synconclose";
   public static final boolean DFS_DATANODE_SYNCONCLOSE_DEFAULT = false;
   public static final String  DFS_DATANODE_SOCKET_REUSE_KEEPALIVE_KEY = "dfs.datanode.socket.reuse.keepalive";
@@ -697,6 +764,13 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.datanode.ec.reconstruction.xmits.weight";
   public static final float   DFS_DN_EC_RECONSTRUCTION_XMITS_WEIGHT_DEFAULT =
       0.5f;
+  public static final String  DFS_DN_EC_RECONSTRUCTION_BATCH_SIZE_KEY =
+      "dfs.datanode.ec.reconstruction.batch.size";
+  public static final int     DFS_DN_EC_RECONSTRUCTION_BATCH_SIZE_DEFAULT = 1;
+  public static final String  DFS_DN_EC_RECONSTRUCTION_BANDWIDTHPERSEC_KEY =
+      "dfs.datanode.ec.reconstruction.bandwidthPerSec";
+  public static final long    DFS_DN_EC_RECONSTRUCTION_BANDWIDTHPERSEC_DEFAULT =
+      0;
 
   public static final String
       DFS_DATANODE_DIRECTORYSCAN_THROTTLE_LIMIT_MS_PER_SEC_KEY =
@@ -727,12 +801,19 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String  DFS_DATANODE_MAX_RECEIVER_THREADS_KEY =
       HdfsClientConfigKeys.DeprecatedKeys.DFS_DATANODE_MAX_RECEIVER_THREADS_KEY;
   public static final int     DFS_DATANODE_MAX_RECEIVER_THREADS_DEFAULT = 4096;
+  public static final String  DFS_DATANODE_XCEIVER_POOL_ENABLED_KEY =
+      "dfs.datanode.xceiver.pool.enabled";
+  public static final boolean DFS_DATANODE_XCEIVER_POOL_ENABLED_DEFAULT = false;
   public static final String  DFS_DATANODE_SCAN_PERIOD_HOURS_KEY = "dfs.datanode.scan.period.hours";
   public static final int     DFS_DATANODE_SCAN_PERIOD_HOURS_DEFAULT = 21 * 24;  // 3 weeks.
   public static final String  DFS_BLOCK_SCANNER_VOLUME_BYTES_PER_SECOND = "dfs.block.scanner.volume.bytes.per.second";
   public static final long    DFS_BLOCK_SCANNER_VOLUME_BYTES_PER_SECOND_DEFAULT = 1048576L;
   public static final String  DFS_DATANODE_TRANSFERTO_ALLOWED_KEY = "dfs.datanode.transferTo.allowed";
   public static final boolean DFS_DATANODE_TRANSFERTO_ALLOWED_DEFAULT = true;
+  public static final String  DFS_DATANODE_TRANSFERTO_MAPPED_CHECKSUMS_KEY =
+      "dfs.datanode.transferTo.mapped-checksums";
+  public static final boolean DFS_DATANODE_TRANSFERTO_MAPPED_CHECKSUMS_DEFAULT =
+      false;
   public static final String  DFS_HEARTBEAT_INTERVAL_KEY = "dfs.heartbeat.interval";
   public static final long    DFS_HEARTBEAT_INTERVAL_DEFAULT = 3;
   public static final String  DFS_DATANODE_LIFELINE_INTERVAL_SECONDS_KEY =
@@ -797,6 +878,10 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       = "dfs.blockreport.incremental.intervalMsec";
   public static final long    DFS_BLOCKREPORT_INCREMENTAL_INTERVAL_MSEC_DEFAULT
       = 0;
+  public static final String  DFS_BLOCKREPORT_INCREMENTAL_MAX_INTERVAL_MSEC_KEY
+      = "dfs.blockreport.incremental.max.intervalMsec";
+  public static final long
+      DFS_BLOCKREPORT_INCREMENTAL_MAX_INTERVAL_MSEC_DEFAULT = 0;
   public static final String  DFS_BLOCKREPORT_INTERVAL_MSEC_KEY = "dfs.blockreport.intervalMsec";
   public static final long    DFS_BLOCKREPORT_INTERVAL_MSEC_DEFAULT = 6 * 60 * 60 * 1000;
   public static final String  DFS_BLOCKREPORT_INITIAL_DELAY_KEY = "dfs.blockreport.initialDelay";
@@ -830,6 +915,20 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String DFS_IMAGE_COMPRESSION_CODEC_DEFAULT =
                                    "org.apache.hadoop.io.compress.DefaultCodec";
 
+  // property for parallel fsimage saving and loading
+  public static final String DFS_IMAGE_PARALLEL_LOAD_KEY =
+      "dfs.image.parallel.load";
+  public static final boolean DFS_IMAGE_PARALLEL_LOAD_DEFAULT = false;
+  public static final String DFS_IMAGE_PARALLEL_TARGET_SECTIONS_KEY =
+      "dfs.image.parallel.target.sections";
+  public static final int DFS_IMAGE_PARALLEL_TARGET_SECTIONS_DEFAULT = 12;
+  public static final String DFS_IMAGE_PARALLEL_INODE_THRESHOLD_KEY =
+      "dfs.image.parallel.inode.threshold";
+  public static final int DFS_IMAGE_PARALLEL_INODE_THRESHOLD_DEFAULT = 1000000;
+  public static final String DFS_IMAGE_PARALLEL_THREAD_COUNT_KEY =
+      "dfs.image.parallel.threads";
+  public static final int DFS_IMAGE_PARALLEL_THREAD_COUNT_DEFAULT = 4;
+
   public static final String DFS_IMAGE_TRANSFER_RATE_KEY =
                                            "dfs.image.transfer.bandwidthPerSec";
   public static final long DFS_IMAGE_TRANSFER_RATE_DEFAULT = 0;  //no throttling
@@ -882,6 +981,9 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String  DFS_DATANODE_PLUGINS_KEY = "dfs.datanode.plugins";
   public static final String  DFS_DATANODE_FSDATASET_FACTORY_KEY = "dfs.datanode.fsdataset.factory";
   public static final String  DFS_DATANODE_FSDATASET_VOLUME_CHOOSING_POLICY_KEY = "dfs.datanode.fsdataset.volume.choosing.policy";
+  public static final String  DFS_DATANODE_REPLICA_LOCK_STRIPES_KEY =
+      "dfs.datanode.replica.lock.stripes";
+  public static final int     DFS_DATANODE_REPLICA_LOCK_STRIPES_DEFAULT = 0;
 
   public static final String  DFS_DATANODE_AVAILABLE_SPACE_VOLUME_CHOOSING_POLICY_BALANCED_SPACE_THRESHOLD_KEY = "dfs.datanode.available-space-volume-choosing-policy.balanced-space-threshold";
   public static final long    DFS_DATANODE_AVAILABLE_SPACE_VOLUME_CHOOSING_POLICY_BALANCED_SPACE_THRESHOLD_DEFAULT = 1024L * 1024L * 1024L * 10L; // 10 GB
@@ -925,6 +1027,9 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String  DFS_SECONDARY_NAMENODE_INTERNAL_SPNEGO_USER_NAME_KEY = DFS_SECONDARY_NAMENODE_KERBEROS_INTERNAL_SPNEGO_PRINCIPAL_KEY;
   public static final String  DFS_NAMENODE_NAME_CACHE_THRESHOLD_KEY = "dfs.namenode.name.cache.threshold";
   public static final int     DFS_NAMENODE_NAME_CACHE_THRESHOLD_DEFAULT = 10;
+  public static final String  DFS_NAMENODE_CHUNKED_CHILDREN_THRESHOLD_KEY =
+      "dfs.namenode.directory.chunked-children.threshold";
+  public static final int DFS_NAMENODE_CHUNKED_CHILDREN_THRESHOLD_DEFAULT = 0;
   public static final String  DFS_NAMENODE_LEGACY_OIV_IMAGE_DIR_KEY = "dfs.namenode.legacy-oiv-image.dir";
 
   public static final String  DFS_NAMESERVICES =
@@ -1043,6 +1148,9 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.namenode.list.openfiles.num.responses";
   public static final int    DFS_NAMENODE_LIST_OPENFILES_NUM_RESPONSES_DEFAULT =
       1000;
+  public static final String DFS_NAMENODE_WRITE_BATCH_MAX_FILES_KEY =
+      "dfs.namenode.write.batch.max.files";
+  public static final int    DFS_NAMENODE_WRITE_BATCH_MAX_FILES_DEFAULT = 1000;
   public static final String DFS_NAMENODE_EDEKCACHELOADER_INTERVAL_MS_KEY = "dfs.namenode.edekcacheloader.interval.ms";
   public static final int DFS_NAMENODE_EDEKCACHELOADER_INTERVAL_MS_DEFAULT = 1000;
   public static final String DFS_NAMENODE_EDEKCACHELOADER_INITIAL_DELAY_MS_KEY = "dfs.namenode.edekcacheloader.initial.delay.ms";
@@ -46,10 +46,12 @@ import org.apache.hadoop.hdfs.protocol.CacheDirectiveInfo;
 import org.apache.hadoop.hdfs.protocol.CachePoolEntry;
 import org.apache.hadoop.hdfs.protocol.ClientProtocol;
 import org.apache.hadoop.hdfs.protocol.CorruptFileBlocks;
+import org.apache.hadoop.hdfs.protocol.CreateBatchResult;
 import org.apache.hadoop.hdfs.protocol.DirectoryListing;
 import org.apache.hadoop.hdfs.protocol.EncryptionZone;
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicyInfo;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants;
 import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
 import org.apache.hadoop.hdfs.protocol.LastBlockWithStatus;
@@ -88,10 +90,15 @@ import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.Append
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.AppendResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CheckAccessRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CheckAccessResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CompleteBatchEntryProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CompleteBatchRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CompleteBatchResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CompleteRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CompleteResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.ConcatRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.ConcatResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateBatchRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateBatchResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateSnapshotRequestProto;
@@ -484,6 +491,40 @@ public class ClientNamenodeProtocolServerSideTranslatorPB implements
     }
   }
 
+  @Override
+  public CreateBatchResponseProto createBatch(RpcController controller,
+      CreateBatchRequestProto req) throws ServiceException {
+    try {
+      FsPermission masked = req.hasUnmasked() ?
+          FsCreateModes.create(PBHelperClient.convert(req.getMasked()),
+              PBHelperClient.convert(req.getUnmasked())) :
+          PBHelperClient.convert(req.getMasked());
+      List<String> srcs = req.getSrcList();
+      CreateBatchResult result = server.createBatch(
+          srcs.toArray(new String[srcs.size()]), masked, req.getClientName(),
+          PBHelperClient.convertCreateFlag(req.getCreateFlag()),
+          req.getCreateParent(), (short) req.getReplication(),
+          req.getBlockSize(),
+          PBHelperClient.convertCryptoProtocolVersions(
+              req.getCryptoProtocolVersionList()),
+          req.getEcPolicyName());
+      CreateBatchResponseProto.Builder builder =
+          CreateBatchResponseProto.newBuilder();
+      for (HdfsFileStatus status : result.getStatuses()) {
+        builder.addFs(PBHelperClient.convert(status));
+      }
+      if (result.getExceptionClassName() != null) {
+        builder.setExceptionClassName(result.getExceptionClassName());
+      }
+      if (result.getErrorMessage() != null) {
+        builder.setErrorMessage(result.getErrorMessage());
+      }
+      return builder.build();
+    } catch (IOException e) {
+      throw new ServiceException(e);
+    }
+  }
+
   @Override
   public AppendResponseProto append(RpcController controller,
       AppendRequestProto req) throws ServiceException {
@@ -620,6 +661,35 @@ public class ClientNamenodeProtocolServerSideTranslatorPB implements
     }
   }
   
+  @Override
+  public CompleteBatchResponseProto completeBatch(RpcController controller,
+      CompleteBatchRequestProto req) throws ServiceException {
+    try {
+      int n = req.getEntriesCount();
+      String[] srcs = new String[n];
+      ExtendedBlock[] lasts = new ExtendedBlock[n];
+      long[] fileIds = new long[n];
+      for (int i = 0; i < n; i++) {
+        CompleteBatchEntryProto entry = req.getEntries(i);
+        srcs[i] = entry.getSrc();
+        lasts[i] = entry.hasLast() ?
+            PBHelperClient.convert(entry.getLast()) : null;
+        fileIds[i] = entry.hasFileId() ?
+            entry.getFileId() : HdfsConstants.GRANDFATHER_INODE_ID;
+      }
+      boolean[] result = server.completeBatch(srcs, req.getClientName(),
+          lasts, fileIds);
+      CompleteBatchResponseProto.Builder builder =
+          CompleteBatchResponseProto.newBuilder();
+      for (boolean completed : result) {
+        builder.addResult(completed);
+      }
+      return builder.build();
+    } catch (IOException e) {
+      throw new ServiceException(e);
+    }
+  }
+
   @Override
   public ReportBadBlocksResponseProto reportBadBlocks(RpcController controller,
       ReportBadBlocksRequestProto req) throws ServiceException {
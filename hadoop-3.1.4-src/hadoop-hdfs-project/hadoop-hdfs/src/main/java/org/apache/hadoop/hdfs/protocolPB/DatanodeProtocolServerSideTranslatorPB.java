@@ -152,6 +152,7 @@ public class DatanodeProtocolServerSideTranslatorPB implements
     }
 
     builder.setFullBlockReportLeaseId(response.getFullBlockReportLeaseId());
+    builder.setBlockOpsQueueLoad(response.getBlockOpsQueueLoad());
     return builder.build();
   }
 
@@ -25,6 +25,7 @@ import static org.apache.hadoop.util.Time.now;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
@@ -34,6 +35,7 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -41,11 +43,14 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
@@ -128,6 +133,8 @@ import org.apache.hadoop.util.VersionInfo;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -329,6 +336,16 @@ public class BlockManager implements BlockStatsMXBean {
    * {@link #redundancyThread} has run at least one full iteration.
    */
   private final AtomicLong lastRedundancyCycleTS = new AtomicLong(-1);
+  /** Number of threads choosing reconstruction targets, 0 for none. */
+  private final int redundancyParallelThreads;
+  /** Chooses reconstruction targets in parallel, if enabled. */
+  private ExecutorService chooseTargetsExecutor;
+  /**
+   * Whether some blocks are low redundancy, and since when. Only accessed by
+   * the {@link #redundancyThread}.
+   */
+  private boolean lowRedundancy = false;
+  private long lowRedundancySince;
   /** StorageInfoDefragmenter thread. */
   private final Daemon storageInfoDefragmenterThread =
       new Daemon(new StorageInfoDefragmenter());
@@ -406,6 +423,10 @@ public class BlockManager implements BlockStatsMXBean {
   // Max number of blocks to log info about during a block report.
   private final long maxNumBlocksToLog;
 
+  // Max number of replicas of a full block report to diff under one hold of
+  // the write lock, 0 to diff the whole report at once.
+  private final int blockReportChunkSize;
+
   /**
    * When running inside a Standby node, the node may receive block reports
    * from datanodes before receiving the corresponding namespace edits from
@@ -548,6 +569,9 @@ public class BlockManager implements BlockStatsMXBean {
     this.maxNumBlocksToLog =
         conf.getLong(DFSConfigKeys.DFS_MAX_NUM_BLOCKS_TO_LOG_KEY,
             DFSConfigKeys.DFS_MAX_NUM_BLOCKS_TO_LOG_DEFAULT);
+    this.blockReportChunkSize = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_CHUNK_SIZE_KEY,
+        DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_CHUNK_SIZE_DEFAULT);
     this.numBlocksPerIteration = conf.getInt(
         DFSConfigKeys.DFS_BLOCK_MISREPLICATION_PROCESSING_LIMIT,
         DFSConfigKeys.DFS_BLOCK_MISREPLICATION_PROCESSING_LIMIT_DEFAULT);
@@ -581,6 +605,9 @@ public class BlockManager implements BlockStatsMXBean {
       replQueueResetToHeadThreshold = DFSConfigKeys.
           DFS_NAMENODE_REDUNDANCY_QUEUE_RESTART_ITERATIONS_DEFAULT;
     }
+    this.redundancyParallelThreads = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_PARALLEL_THREADS_KEY,
+        DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_PARALLEL_THREADS_DEFAULT);
 
     long heartbeatIntervalSecs = conf.getTimeDuration(
         DFSConfigKeys.DFS_HEARTBEAT_INTERVAL_KEY,
@@ -595,7 +622,11 @@ public class BlockManager implements BlockStatsMXBean {
     int queueSize = conf.getInt(
         DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_QUEUE_SIZE_KEY,
         DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_QUEUE_SIZE_DEFAULT);
-    blockReportThread = new BlockReportProcessingThread(queueSize);
+    long maxLockHoldMs = conf.getLong(
+        DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_QUEUE_MAX_LOCK_HOLD_MS_KEY,
+        DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_QUEUE_MAX_LOCK_HOLD_MS_DEFAULT);
+    blockReportThread =
+        new BlockReportProcessingThread(queueSize, maxLockHoldMs);
 
     LOG.info("defaultReplication         = {}", defaultReplication);
     LOG.info("maxReplication             = {}", maxReplication);
@@ -604,6 +635,8 @@ public class BlockManager implements BlockStatsMXBean {
     LOG.info("redundancyRecheckInterval  = {}ms", redundancyRecheckIntervalMs);
     LOG.info("encryptDataTransfer        = {}", encryptDataTransfer);
     LOG.info("maxNumBlocksToLog          = {}", maxNumBlocksToLog);
+    LOG.info("blockReportChunkSize       = {}", blockReportChunkSize);
+    LOG.info("redundancyParallelThreads  = {}", redundancyParallelThreads);
   }
 
   private static BlockTokenSecretManager createBlockTokenSecretManager(
@@ -719,6 +752,13 @@ public class BlockManager implements BlockStatsMXBean {
   public void activate(Configuration conf, long blockTotal) {
     pendingReconstruction.start();
     datanodeManager.activate(conf);
+    if (redundancyParallelThreads > 0) {
+      chooseTargetsExecutor = Executors.newFixedThreadPool(
+          redundancyParallelThreads, new ThreadFactoryBuilder()
+              .setDaemon(true)
+              .setNameFormat("RedundancyMonitor-ChooseTargets-%d")
+              .build());
+    }
     this.redundancyThread.setName("RedundancyMonitor");
     this.redundancyThread.start();
     storageInfoDefragmenterThread.setName("StorageInfoMonitor");
@@ -739,6 +779,9 @@ public class BlockManager implements BlockStatsMXBean {
       blockReportThread.join(3000);
     } catch (InterruptedException ie) {
     }
+    if (chooseTargetsExecutor != null) {
+      chooseTargetsExecutor.shutdownNow();
+    }
     datanodeManager.close();
     pendingReconstruction.stop();
     blocksMap.close();
@@ -1970,19 +2013,11 @@ public class BlockManager implements BlockStatsMXBean {
     }
 
     // Step 2: choose target nodes for each reconstruction task
-    final Set<Node> excludedNodes = new HashSet<>();
-    for(BlockReconstructionWork rw : reconWork){
-      // Exclude all of the containing nodes from being targets.
-      // This list includes decommissioning or corrupt nodes.
-      excludedNodes.clear();
-      for (DatanodeDescriptor dn : rw.getContainingNodes()) {
-        excludedNodes.add(dn);
-      }
-
-      // choose replication targets: NOT HOLDING THE GLOBAL LOCK
-      final BlockPlacementPolicy placementPolicy =
-          placementPolicies.getPolicy(rw.getBlock().getBlockType());
-      rw.chooseTargets(placementPolicy, storagePolicySuite, excludedNodes);
+    if (chooseTargetsExecutor != null) {
+      reconWork = spreadAcrossSourceRacks(reconWork);
+      chooseTargetsInParallel(reconWork);
+    } else {
+      chooseTargets(reconWork);
     }
 
     // Step 3: add tasks to the DN
@@ -2028,6 +2063,86 @@ public class BlockManager implements BlockStatsMXBean {
     return scheduledWork;
   }
 
+  /**
+   * Choose the targets of the given reconstruction work.
+   */
+  private void chooseTargets(Collection<BlockReconstructionWork> reconWork) {
+    final Set<Node> excludedNodes = new HashSet<>();
+    for(BlockReconstructionWork rw : reconWork){
+      // Exclude all of the containing nodes from being targets.
+      // This list includes decommissioning or corrupt nodes.
+      excludedNodes.clear();
+      for (DatanodeDescriptor dn : rw.getContainingNodes()) {
+        excludedNodes.add(dn);
+      }
+
+      // choose replication targets: NOT HOLDING THE GLOBAL LOCK
+      final BlockPlacementPolicy placementPolicy =
+          placementPolicies.getPolicy(rw.getBlock().getBlockType());
+      rw.chooseTargets(placementPolicy, storagePolicySuite, excludedNodes);
+    }
+  }
+
+  /**
+   * Choose the targets of the given reconstruction work in one batch per
+   * thread of {@link #chooseTargetsExecutor}.
+   */
+  private void chooseTargetsInParallel(
+      List<BlockReconstructionWork> reconWork) {
+    final int batchSize = (reconWork.size() + redundancyParallelThreads - 1)
+        / redundancyParallelThreads;
+    final List<Future<?>> batches = new ArrayList<>(redundancyParallelThreads);
+    for (int from = 0; from < reconWork.size(); from += batchSize) {
+      final List<BlockReconstructionWork> batch = reconWork.subList(from,
+          Math.min(reconWork.size(), from + batchSize));
+      batches.add(chooseTargetsExecutor.submit(() -> chooseTargets(batch)));
+    }
+    for (Future<?> batch : batches) {
+      try {
+        batch.get();
+      } catch (ExecutionException e) {
+        throw Throwables.propagate(e.getCause());
+      } catch (InterruptedException e) {
+        // The RedundancyMonitor is being stopped
+        Thread.currentThread().interrupt();
+        for (Future<?> b : batches) {
+          b.cancel(true);
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * Order reconstruction work round-robin over the racks of its source
+   * nodes, keeping the priority order within each rack. This spreads the
+   * transfers of an iteration, and the batches its targets are chosen in,
+   * evenly across the source racks.
+   */
+  @VisibleForTesting
+  static List<BlockReconstructionWork> spreadAcrossSourceRacks(
+      Collection<BlockReconstructionWork> reconWork) {
+    final Map<String, Queue<BlockReconstructionWork>> racks =
+        new LinkedHashMap<>();
+    for (BlockReconstructionWork rw : reconWork) {
+      racks.computeIfAbsent(rw.getSrcNodes()[0].getNetworkLocation(),
+          rack -> new ArrayDeque<>()).add(rw);
+    }
+    final List<BlockReconstructionWork> spread =
+        new ArrayList<>(reconWork.size());
+    while (!racks.isEmpty()) {
+      for (Iterator<Queue<BlockReconstructionWork>> it =
+          racks.values().iterator(); it.hasNext();) {
+        final Queue<BlockReconstructionWork> rack = it.next();
+        spread.add(rack.remove());
+        if (rack.isEmpty()) {
+          it.remove();
+        }
+      }
+    }
+    return spread;
+  }
+
   // Check if the number of live + pending replicas satisfies
   // the expected redundancy.
   boolean hasEnoughEffectiveReplicas(BlockInfo block,
@@ -2651,6 +2766,31 @@ public class BlockManager implements BlockStatsMXBean {
         context.getLeaseId());
   }
 
+  /**
+   * Process a full block report of the given storage on the block report
+   * processing thread. Reports of more than
+   * {@link DFSConfigKeys#DFS_NAMENODE_BLOCKREPORT_CHUNK_SIZE_KEY} replicas
+   * are processed in chunks, releasing the write lock between chunks.
+   *
+   * @return true if all known storages of the given DN have finished reporting.
+   * @throws IOException
+   */
+  public boolean runBlockReport(final DatanodeID nodeID,
+      final DatanodeStorage storage,
+      final BlockListAsLongs newReport,
+      final BlockReportContext context) throws IOException {
+    if (blockReportChunkSize <= 0 ||
+        newReport.getNumberOfBlocks() <= blockReportChunkSize) {
+      return runBlockOp(new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws IOException {
+          return processReport(nodeID, storage, newReport, context);
+        }
+      });
+    }
+    return processReportInChunks(nodeID, storage, newReport, context);
+  }
+
   /**
    * The given storage is reporting all its blocks.
    * Update the (storage-->block list) and (block-->storage list) maps.
@@ -2677,35 +2817,15 @@ public class BlockManager implements BlockStatsMXBean {
             "ProcessReport from dead or unregistered node: " + nodeID);
       }
 
-      // To minimize startup time, we discard any second (or later) block reports
-      // that we receive while still in startup phase.
-      // Register DN with provided storage, not with storage owned by DN
-      // DN should still have a ref to the DNStorageInfo.
-      DatanodeStorageInfo storageInfo =
-          providedStorageMap.getStorage(node, storage);
-
-      if (storageInfo == null) {
-        // We handle this for backwards compatibility.
-        storageInfo = node.updateStorage(storage);
-      }
-      if (namesystem.isInStartupSafeMode()
-          && storageInfo.getBlockReportCount() > 0) {
-        blockLog.info("BLOCK* processReport 0x{}: "
-            + "discarded non-initial block report from {}"
-            + " because namenode still in startup phase",
-            strBlockReportId, nodeID);
-        blockReportLeaseManager.removeLease(node);
+      DatanodeStorageInfo storageInfo = getReportingStorage(node, storage);
+      if (discardNonInitialReport(node, storageInfo, strBlockReportId)) {
         return !node.hasStaleStorages();
       }
 
       if (storageInfo.getBlockReportCount() == 0) {
         // The first block report can be processed a lot more efficiently than
         // ordinary block reports.  This shortens restart times.
-        blockLog.info("BLOCK* processReport 0x{}: Processing first "
-            + "storage report for {} from datanode {}",
-            strBlockReportId,
-            storageInfo.getStorageID(),
-            nodeID.getDatanodeUuid());
+        logFirstReport(storageInfo, nodeID, strBlockReportId);
         processFirstBlockReport(storageInfo, newReport);
       } else {
         // Block reports for provided storage are not
@@ -2739,6 +2859,195 @@ public class BlockManager implements BlockStatsMXBean {
     return !node.hasStaleStorages();
   }
 
+  /**
+   * Look up the storage of a registered node that is reporting its blocks.
+   */
+  private DatanodeStorageInfo getReportingStorage(DatanodeDescriptor node,
+      DatanodeStorage storage) throws IOException {
+    // Register DN with provided storage, not with storage owned by DN
+    // DN should still have a ref to the DNStorageInfo.
+    DatanodeStorageInfo storageInfo =
+        providedStorageMap.getStorage(node, storage);
+
+    if (storageInfo == null) {
+      // We handle this for backwards compatibility.
+      storageInfo = node.updateStorage(storage);
+    }
+    return storageInfo;
+  }
+
+  /**
+   * To minimize startup time, we discard any second (or later) block reports
+   * that we receive while still in startup phase.
+   *
+   * @return true if the report of the storage is discarded.
+   */
+  private boolean discardNonInitialReport(DatanodeDescriptor node,
+      DatanodeStorageInfo storageInfo, String strBlockReportId) {
+    if (namesystem.isInStartupSafeMode()
+        && storageInfo.getBlockReportCount() > 0) {
+      blockLog.info("BLOCK* processReport 0x{}: "
+          + "discarded non-initial block report from {}"
+          + " because namenode still in startup phase",
+          strBlockReportId, node.getXferAddr());
+      blockReportLeaseManager.removeLease(node);
+      return true;
+    }
+    return false;
+  }
+
+  private void logFirstReport(DatanodeStorageInfo storageInfo,
+      DatanodeID nodeID, String strBlockReportId) {
+    blockLog.info("BLOCK* processReport 0x{}: Processing first "
+        + "storage report for {} from datanode {}",
+        strBlockReportId,
+        storageInfo.getStorageID(),
+        nodeID.getDatanodeUuid());
+  }
+
+  /**
+   * State of a full block report of one storage that is processed in chunks.
+   * It is only accessed under the write lock.
+   */
+  private static class ChunkedReport {
+    private final DatanodeID nodeID;
+    private final DatanodeStorage storage;
+    private final String strBlockReportId;
+    private final ReportDiffMarker marker = new ReportDiffMarker();
+    private final Collection<Block> invalidatedBlocks = new ArrayList<>();
+    private DatanodeDescriptor node;
+    private boolean firstReport;
+    private boolean discarded;
+    private int numChunks;
+    private long processingTimeMs;
+
+    ChunkedReport(DatanodeID nodeID, DatanodeStorage storage,
+        String strBlockReportId) {
+      this.nodeID = nodeID;
+      this.storage = storage;
+      this.strBlockReportId = strBlockReportId;
+    }
+  }
+
+  /**
+   * Position in the blocks of a storage at which the diff of the next chunk
+   * of a full block report resumes.
+   */
+  private static class ReportDiffMarker {
+    // Whether the chunk being diffed is the last one of the report
+    private boolean lastChunk;
+    // The lowest ID of the storage blocks that have not been diffed yet
+    private long nextStorageBlockId = Long.MIN_VALUE;
+    // Whether all the blocks of the storage have been diffed
+    private boolean storageDone;
+  }
+
+  /**
+   * Process a full block report of the given storage in chunks of at most
+   * {@link #blockReportChunkSize} replicas. Each chunk is diffed and applied
+   * on the block report processing thread under its own hold of the write
+   * lock, so that other operations, and chunks of the reports of other
+   * DataNodes, are processed in between.
+   * <p>
+   * The chunks are diffed in block ID order. Between chunks, a
+   * {@link ReportDiffMarker} remembers the first block of the storage that
+   * the previous chunks did not reach. The blocks of a storage only change on
+   * reports from its own DataNode, which waits for the report to complete, so
+   * the chunks together produce the same diff as the whole report.
+   */
+  private boolean processReportInChunks(final DatanodeID nodeID,
+      final DatanodeStorage storage,
+      final BlockListAsLongs newReport,
+      final BlockReportContext context) throws IOException {
+    final String strBlockReportId =
+        context != null ? Long.toHexString(context.getReportId()) : "";
+    final ChunkedReport report =
+        new ChunkedReport(nodeID, storage, strBlockReportId);
+    // Sort the report, if needed, before taking the lock
+    final Iterator<BlockReportReplica> replicas = sortReport(newReport,
+        context, nodeID.getDatanodeUuid()).iterator();
+    do {
+      final List<BlockReportReplica> chunk =
+          new ArrayList<>(blockReportChunkSize);
+      while (replicas.hasNext() && chunk.size() < blockReportChunkSize) {
+        chunk.add(new BlockReportReplica(replicas.next()));
+      }
+      report.marker.lastChunk = !replicas.hasNext();
+      runBlockOp(new Callable<Void>() {
+        @Override
+        public Void call() throws IOException {
+          processReportChunk(report, chunk);
+          return null;
+        }
+      });
+    } while (!report.marker.lastChunk && !report.discarded);
+
+    final DatanodeDescriptor node = report.node;
+    for (Block b : report.invalidatedBlocks) {
+      blockLog.debug("BLOCK* processReport 0x{}: {} on node {} size {} does not"
+          + " belong to any file", strBlockReportId, b, node, b.getNumBytes());
+    }
+
+    final NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+    if (metrics != null && !report.discarded) {
+      metrics.addStorageBlockReport((int) report.processingTimeMs);
+      metrics.incrStorageBlockReportChunks(report.numChunks);
+    }
+    blockLog.info("BLOCK* processReport 0x{}: from storage {} node {}, " +
+        "blocks: {}, hasStaleStorage: {}, processing time: {} msecs in {} " +
+        "chunks, invalidatedBlocks: {}", strBlockReportId,
+        storage.getStorageID(), nodeID, newReport.getNumberOfBlocks(),
+        node.hasStaleStorages(), report.processingTimeMs, report.numChunks,
+        report.invalidatedBlocks.size());
+    return !node.hasStaleStorages();
+  }
+
+  /**
+   * Diff and apply one chunk of a full block report.
+   */
+  private void processReportChunk(ChunkedReport report,
+      List<BlockReportReplica> chunk) throws IOException {
+    assert namesystem.hasWriteLock();
+    final long startTime = Time.monotonicNow();
+    try {
+      final DatanodeDescriptor node =
+          datanodeManager.getDatanode(report.nodeID);
+      if (node == null || !node.isRegistered()) {
+        throw new IOException(
+            "ProcessReport from dead or unregistered node: " + report.nodeID);
+      }
+      report.node = node;
+      final DatanodeStorageInfo storageInfo =
+          getReportingStorage(node, report.storage);
+      if (report.numChunks == 0) {
+        if (discardNonInitialReport(node, storageInfo,
+            report.strBlockReportId)) {
+          report.discarded = true;
+          return;
+        }
+        report.firstReport = storageInfo.getBlockReportCount() == 0;
+        if (report.firstReport) {
+          logFirstReport(storageInfo, report.nodeID, report.strBlockReportId);
+        }
+      }
+      report.numChunks++;
+
+      if (report.firstReport) {
+        processFirstBlockReport(storageInfo, chunk);
+      } else if (!StorageType.PROVIDED.equals(storageInfo.getStorageType())) {
+        // Block reports for provided storage are not
+        // maintained by DN heartbeats
+        report.invalidatedBlocks.addAll(processReportDiff(storageInfo, chunk,
+            report.marker, report.strBlockReportId));
+      }
+      if (report.marker.lastChunk) {
+        storageInfo.receivedBlockReport();
+      }
+    } finally {
+      report.processingTimeMs += Time.monotonicNow() - startTime;
+    }
+  }
+
   public void removeBRLeaseIfNeeded(final DatanodeID nodeID,
       final BlockReportContext context) throws IOException {
     namesystem.writeLock();
@@ -2807,16 +3116,19 @@ public class BlockManager implements BlockStatsMXBean {
       final DatanodeStorageInfo storageInfo,
       final BlockListAsLongs report,
       BlockReportContext context) throws IOException {
-    // Normal case:
-    // Modify the (block-->datanode) map, according to the difference
-    // between the old and new block report.
-    //
-    Collection<BlockInfoToAdd> toAdd = new LinkedList<>();
-    Collection<BlockInfo> toRemove = new TreeSet<>();
-    Collection<Block> toInvalidate = new LinkedList<>();
-    Collection<BlockToMarkCorrupt> toCorrupt = new LinkedList<>();
-    Collection<StatefulBlockInfo> toUC = new LinkedList<>();
+    String strBlockReportId = "";
+    if (context != null) {
+      strBlockReportId = Long.toHexString(context.getReportId());
+    }
+    Iterable<BlockReportReplica> sortedReport = sortReport(report, context,
+        storageInfo.getDatanodeDescriptor().getDatanodeUuid());
+    return processReportDiff(storageInfo, sortedReport, null,
+        strBlockReportId);
+  }
 
+  private Iterable<BlockReportReplica> sortReport(
+      final BlockListAsLongs report, BlockReportContext context,
+      String datanodeUuid) {
     boolean sorted = false;
     String strBlockReportId = "";
     if (context != null) {
@@ -2832,7 +3144,7 @@ public class BlockManager implements BlockStatsMXBean {
                     + "DataNode to the same version of Hadoop HDFS as the "
                     + "NameNode ({}).",
                     strBlockReportId,
-                    storageInfo.getDatanodeDescriptor().getDatanodeUuid(),
+                    datanodeUuid,
                     VersionInfo.getVersion());
       Set<BlockReportReplica> set = new FoldedTreeSet<>();
       for (BlockReportReplica iblk : report) {
@@ -2842,8 +3154,33 @@ public class BlockManager implements BlockStatsMXBean {
     } else {
       sortedReport = report;
     }
+    return sortedReport;
+  }
 
-    reportDiffSorted(storageInfo, sortedReport,
+  /**
+   * Diff the sorted replicas of a full block report, or of a chunk of it,
+   * with the blocks of the storage and apply the difference.
+   *
+   * @param marker where the diff of a chunk resumes, or null to diff the
+   *               whole report
+   * @return the reported replicas that do not belong to any file
+   */
+  private Collection<Block> processReportDiff(
+      final DatanodeStorageInfo storageInfo,
+      final Iterable<BlockReportReplica> sortedReport,
+      final ReportDiffMarker marker,
+      final String strBlockReportId) throws IOException {
+    // Normal case:
+    // Modify the (block-->datanode) map, according to the difference
+    // between the old and new block report.
+    //
+    Collection<BlockInfoToAdd> toAdd = new LinkedList<>();
+    Collection<BlockInfo> toRemove = new TreeSet<>();
+    Collection<Block> toInvalidate = new LinkedList<>();
+    Collection<BlockToMarkCorrupt> toCorrupt = new LinkedList<>();
+    Collection<StatefulBlockInfo> toUC = new LinkedList<>();
+
+    reportDiffSorted(storageInfo, sortedReport, marker,
                      toAdd, toRemove, toInvalidate, toCorrupt, toUC);
 
 
@@ -2929,7 +3266,7 @@ public class BlockManager implements BlockStatsMXBean {
    */
   void processFirstBlockReport(
       final DatanodeStorageInfo storageInfo,
-      final BlockListAsLongs report) throws IOException {
+      final Iterable<BlockReportReplica> report) throws IOException {
     if (report == null) return;
     assert (namesystem.hasWriteLock());
     assert (storageInfo.getBlockReportCount() == 0);
@@ -2997,6 +3334,7 @@ public class BlockManager implements BlockStatsMXBean {
 
   private void reportDiffSorted(DatanodeStorageInfo storageInfo,
       Iterable<BlockReportReplica> newReport,
+      ReportDiffMarker marker,              // resume point of a chunk
       Collection<BlockInfoToAdd> toAdd,     // add to DatanodeDescriptor
       Collection<BlockInfo> toRemove,       // remove from DatanodeDescriptor
       Collection<Block> toInvalidate,       // should be removed from DN
@@ -3004,7 +3342,15 @@ public class BlockManager implements BlockStatsMXBean {
       Collection<StatefulBlockInfo> toUC) { // add to under-construction list
 
     // The blocks must be sorted and the storagenodes blocks must be sorted
-    Iterator<BlockInfo> storageBlocksIterator = storageInfo.getBlockIterator();
+    Iterator<BlockInfo> storageBlocksIterator;
+    if (marker == null) {
+      storageBlocksIterator = storageInfo.getBlockIterator();
+    } else if (marker.storageDone) {
+      storageBlocksIterator = Collections.emptyIterator();
+    } else {
+      storageBlocksIterator =
+          storageInfo.getBlockIterator(marker.nextStorageBlockId);
+    }
     DatanodeDescriptor dn = storageInfo.getDatanodeDescriptor();
     BlockInfo storageBlock = null;
 
@@ -3065,6 +3411,19 @@ public class BlockManager implements BlockStatsMXBean {
       } while (storageBlock != null);
     }
 
+    if (marker != null && !marker.lastChunk) {
+      // Leave the blocks not reached yet to the next chunk
+      if (storageBlock == null && storageBlocksIterator.hasNext()) {
+        storageBlock = storageBlocksIterator.next();
+      }
+      if (storageBlock != null) {
+        marker.nextStorageBlockId = storageBlock.getBlockId();
+      } else {
+        marker.storageDone = true;
+      }
+      return;
+    }
+
     // Iterate any remaining blocks that have not been reported and remove them
     while (storageBlocksIterator.hasNext()) {
       toRemove.add(storageBlocksIterator.next());
@@ -4810,6 +5169,7 @@ public class BlockManager implements BlockStatsMXBean {
             computeDatanodeWork();
             processPendingReconstructions();
             rescanPostponedMisreplicatedBlocks();
+            checkFullRedundancy();
             lastRedundancyCycleTS.set(Time.monotonicNow());
           }
           TimeUnit.MILLISECONDS.sleep(redundancyRecheckIntervalMs);
@@ -4936,8 +5296,13 @@ public class BlockManager implements BlockStatsMXBean {
     }
 
     final int numlive = heartbeatManager.getLiveDatanodeCount();
-    final int blocksToProcess = numlive
-        * this.blocksReplWorkMultiplier;
+    final int blocksToProcess;
+    if (chooseTargetsExecutor != null) {
+      blocksToProcess = Math.max(numlive,
+          getLiveTransferCapacity() * this.blocksReplWorkMultiplier);
+    } else {
+      blocksToProcess = numlive * this.blocksReplWorkMultiplier;
+    }
     final int nodesToProcess = (int) Math.ceil(numlive
         * this.blocksInvalidateWorkPct);
 
@@ -4955,6 +5320,47 @@ public class BlockManager implements BlockStatsMXBean {
     return workFound;
   }
 
+  /**
+   * @return the number of transfers the live DataNodes can take on before
+   *         they reach {@link #maxReplicationStreams}, given the
+   *         reconstruction work already queued to them.
+   */
+  private int getLiveTransferCapacity() {
+    int capacity = 0;
+    for (DatanodeDescriptor node : heartbeatManager.getDatanodes()) {
+      if (node.isAlive() && !node.isDecommissioned()) {
+        capacity += Math.max(0, maxReplicationStreams
+            - node.getNumberOfBlocksToBeReplicated()
+            - node.getNumberOfBlocksToBeErasureCoded());
+      }
+    }
+    return capacity;
+  }
+
+  /**
+   * Measure the time it takes for all the blocks to be fully redundant again
+   * once some of them became low redundancy, e.g. after the loss of a rack.
+   */
+  private void checkFullRedundancy() {
+    final long now = Time.monotonicNow();
+    final boolean lowRedundancyNow =
+        neededReconstruction.getLowRedundancyBlockCount() > 0 ||
+        pendingReconstruction.size() > 0;
+    if (lowRedundancyNow && !lowRedundancy) {
+      lowRedundancy = true;
+      lowRedundancySince = now;
+    } else if (!lowRedundancyNow && lowRedundancy) {
+      lowRedundancy = false;
+      final long elapsed = now - lowRedundancySince;
+      LOG.info("All blocks are fully redundant again {} ms after blocks" +
+          " became low redundancy", elapsed);
+      final NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+      if (metrics != null) {
+        metrics.addTimeToFullRedundancy(elapsed);
+      }
+    }
+  }
+
   /**
    * Clear all queues that hold decisions previously made by
    * this NameNode.
@@ -5142,18 +5548,42 @@ public class BlockManager implements BlockStatsMXBean {
   }
 
   public int getBlockOpQueueLength() {
-    return blockReportThread.queue.size();
+    return blockReportThread.size();
   }
 
+  /**
+   * @return how full the block op queue is, in percent. DataNodes adapt the
+   * interval between their IBRs to it.
+   */
+  public int getBlockOpQueueLoad() {
+    return blockReportThread.getLoad();
+  }
+
+  /**
+   * Applies the block ops queued by the RPC handlers, most of them IBRs of
+   * all the DataNodes, in batches under one hold of the write lock. The
+   * queue is lock-free: the handlers only wait for each other or for this
+   * thread when it is full.
+   */
   private class BlockReportProcessingThread extends Thread {
-    private static final long MAX_LOCK_HOLD_MS = 4;
+    private final long maxLockHoldMs;
     private long lastFull = 0;
 
-    private final BlockingQueue<Runnable> queue;
-
-    BlockReportProcessingThread(int size) {
+    private final int capacity;
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    // permits for the ops that can still be queued.
+    private final Semaphore free;
+    // permits for the ops added to the queue and not taken out yet.
+    private final Semaphore queued = new Semaphore(0);
+    // ops taken out of the queue and not run yet, only accessed by this
+    // thread.
+    private final ArrayDeque<Runnable> batch = new ArrayDeque<>();
+
+    BlockReportProcessingThread(int size, long maxLockHoldMs) {
       super("Block report processor");
-      queue = new ArrayBlockingQueue<>(size);
+      this.capacity = size;
+      this.maxLockHoldMs = maxLockHoldMs;
+      this.free = new Semaphore(size);
       setDaemon(true);
     }
 
@@ -5171,25 +5601,36 @@ public class BlockManager implements BlockStatsMXBean {
       while (namesystem.isRunning()) {
         NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
         try {
-          Runnable action = queue.take();
-          // batch as many operations in the write lock until the queue
+          if (batch.isEmpty()) {
+            queued.acquire();
+            batch.add(queue.poll());
+          }
+          // take out all the ops queued so far before taking the lock.
+          for (int n = queued.drainPermits(); n > 0; n--) {
+            batch.add(queue.poll());
+          }
+          // batch as many operations in the write lock until the batch
           // runs dry, or the max lock hold is reached.
           int processed = 0;
           namesystem.writeLock();
-          metrics.setBlockOpsQueued(queue.size() + 1);
+          metrics.setBlockOpsQueued(size());
+          final long startNanos = System.nanoTime();
           try {
             long start = Time.monotonicNow();
-            do {
+            Runnable action;
+            while ((action = batch.poll()) != null) {
+              free.release();
               processed++;
               action.run();
-              if (Time.monotonicNow() - start > MAX_LOCK_HOLD_MS) {
+              if (Time.monotonicNow() - start > maxLockHoldMs) {
                 break;
               }
-              action = queue.poll();
-            } while (action != null);
+            }
           } finally {
+            long lockHoldUs = (System.nanoTime() - startNanos) / 1000;
             namesystem.writeUnlock();
             metrics.addBlockOpsBatched(processed - 1);
+            metrics.addBlockOpsBatch(processed, lockHoldUs);
           }
         } catch (InterruptedException e) {
           // ignore unless thread was specifically interrupted.
@@ -5199,10 +5640,11 @@ public class BlockManager implements BlockStatsMXBean {
         }
       }
       queue.clear();
+      batch.clear();
     }
 
     void enqueue(Runnable action) throws InterruptedException {
-      if (!queue.offer(action)) {
+      if (!free.tryAcquire()) {
         if (!isAlive() && namesystem.isRunning()) {
           ExitUtil.terminate(1, getName()+" is not running");
         }
@@ -5211,8 +5653,19 @@ public class BlockManager implements BlockStatsMXBean {
           lastFull = now;
           LOG.info("Block report queue is full");
         }
-        queue.put(action);
+        free.acquire();
       }
+      queue.add(action);
+      queued.release();
+    }
+
+    /** @return the number of ops queued and not run yet. */
+    int size() {
+      return capacity - free.availablePermits();
+    }
+
+    int getLoad() {
+      return (int) (100L * size() / capacity);
     }
   }
 
@@ -31,6 +31,7 @@ import org.apache.hadoop.hdfs.server.protocol.StorageReport;
 import org.apache.hadoop.hdfs.util.FoldedTreeSet;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Iterators;
 
 /**
  * A Datanode has one or more storages. A storage in the Datanode is represented
@@ -288,6 +289,16 @@ public class DatanodeStorageInfo {
     return Collections.unmodifiableSet(blocks).iterator();
   }
 
+  /**
+   * @return iterator to an unmodifiable set of the blocks related to this
+   * {@link DatanodeStorageInfo}, from the first block whose ID is not less
+   * than the given ID
+   */
+  Iterator<BlockInfo> getBlockIterator(long fromBlockId) {
+    return Iterators.unmodifiableIterator(
+        blocks.tailIterator(new Block(fromBlockId), null));
+  }
+
   void updateState(StorageReport r) {
     capacity = r.getCapacity();
     dfsUsed = r.getDfsUsed();
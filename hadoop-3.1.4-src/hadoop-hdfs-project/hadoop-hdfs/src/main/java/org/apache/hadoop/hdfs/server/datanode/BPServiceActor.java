@@ -128,6 +128,7 @@ class BPServiceActor implements Runnable {
     this.dnConf = dn.getDnConf();
     this.ibrManager = new IncrementalBlockReportManager(
         dnConf.ibrInterval,
+        dnConf.ibrMaxInterval,
         dn.getMetrics());
     prevBlockReportId = ThreadLocalRandom.current().nextLong();
     fullBlockReportLeaseId = 0;
@@ -657,6 +658,7 @@ class BPServiceActor implements Runnable {
               fullBlockReportLeaseId = resp.getFullBlockReportLeaseId();
             }
             dn.getMetrics().addHeartbeat(scheduler.monotonicNow() - startTime);
+            ibrManager.adaptInterval(resp.getBlockOpsQueueLoad());
 
             // If the state of this NN has changed (eg STANDBY->ACTIVE)
             // then let the BPOfferService update itself.
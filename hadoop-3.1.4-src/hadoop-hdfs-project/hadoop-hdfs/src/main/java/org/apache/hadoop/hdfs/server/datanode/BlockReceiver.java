@@ -304,6 +304,16 @@ class BlockReceiver implements Closeable {
     return replicaInfo;
   }
 
+  /**
+   * Stop the current thread from being the writer of the replica, once done
+   * receiving it. A pooled DataXceiver thread does not die after writing.
+   */
+  void releaseWriter() {
+    if (replicaInfo != null) {
+      replicaInfo.attemptToSetWriter(Thread.currentThread(), null);
+    }
+  }
+
   /**
    * close files and release volume reference.
    */
@@ -28,6 +28,7 @@ import java.io.OutputStream;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.Arrays;
 
@@ -46,6 +47,7 @@ import org.apache.hadoop.hdfs.util.DataTransferThrottler;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.ReadaheadPool.ReadaheadRequest;
+import org.apache.hadoop.io.nativeio.NativeIO;
 import org.apache.hadoop.net.SocketOutputStream;
 import org.apache.hadoop.util.AutoCloseableLock;
 import org.apache.hadoop.util.DataChecksum;
@@ -124,6 +126,14 @@ class BlockSender implements java.io.Closeable {
   private ReplicaInputStreams ris;
   /** updated while using transferTo() */
   private long blockInPosition = -1;
+  /** The meta file to map the checksums from, or null. */
+  private FileChannel metaChannel;
+  /** The checksums of the range sent with transferTo(), or null. */
+  private MappedByteBuffer mappedChecksums;
+  /** Bytes of data and checksums sent without copying them. */
+  private long bytesSentZeroCopy;
+  /** Bytes of data and checksums copied to be sent. */
+  private long bytesSentCopied;
   /** Checksum utility */
   private final DataChecksum checksum;
   /** Initial position to read */
@@ -333,6 +343,11 @@ class BlockSender implements java.io.Closeable {
 
               csum = BlockMetadataHeader.readDataChecksum(checksumIn, block);
               keepMetaInOpen = true;
+              if (datanode.getDnConf().transferToMappedChecksums &&
+                  metaIn.getWrappedStream() instanceof FileInputStream) {
+                metaChannel = ((FileInputStream) metaIn.getWrappedStream())
+                    .getChannel();
+              }
             } else if (!replica.isOnTransientStorage() &&
                 metaIn.getLength() < expectedHeaderSize) {
               LOG.warn("The meta file length {} is less than the expected " +
@@ -486,6 +501,10 @@ class BlockSender implements java.io.Closeable {
     if (curReadahead != null) {
       curReadahead.cancel();
     }
+    if (mappedChecksums != null) {
+      NativeIO.POSIX.munmap(mappedChecksums);
+      mappedChecksums = null;
+    }
 
     try {
       ris.closeStreams();
@@ -595,8 +614,16 @@ class BlockSender implements java.io.Closeable {
     int checksumOff = pkt.position();
     byte[] buf = pkt.array();
     
-    if (checksumSize > 0 && ris.getChecksumIn() != null) {
-      readChecksum(buf, checksumOff, checksumDataLen);
+    // the checksums at the end that are sent from buf, the others are sent
+    // from the mapped meta file
+    int copiedChecksumLen = checksumDataLen;
+    if (checksumSize > 0 &&
+        (mappedChecksums != null || ris.getChecksumIn() != null)) {
+      if (mappedChecksums == null) {
+        readChecksum(buf, checksumOff, checksumDataLen);
+      } else {
+        copiedChecksumLen = 0;
+      }
 
       // write in progress that we need to use to get last checksum
       if (lastDataPacket && lastChunkChecksum != null) {
@@ -604,6 +631,7 @@ class BlockSender implements java.io.Closeable {
         byte[] updatedChecksum = lastChunkChecksum.getChecksum();
         if (updatedChecksum != null) {
           System.arraycopy(updatedChecksum, 0, buf, start, checksumSize);
+          copiedChecksumLen = Math.max(copiedChecksumLen, checksumSize);
         }
       }
     }
@@ -627,8 +655,21 @@ class BlockSender implements java.io.Closeable {
     try {
       if (transferTo) {
         SocketOutputStream sockOut = (SocketOutputStream)out;
-        // First write header and checksums
-        sockOut.write(buf, headerOff, dataOff - headerOff);
+        if (mappedChecksums != null) {
+          // First write header, then the checksums from the meta file, and
+          // the updated last checksum
+          final int mappedLen = checksumDataLen - copiedChecksumLen;
+          sockOut.write(buf, headerOff, checksumOff - headerOff);
+          writeMappedChecksums(sockOut, mappedLen, copiedChecksumLen);
+          if (copiedChecksumLen > 0) {
+            sockOut.write(buf, dataOff - copiedChecksumLen, copiedChecksumLen);
+          }
+          bytesSentZeroCopy += mappedLen;
+        } else {
+          // First write header and checksums
+          sockOut.write(buf, headerOff, dataOff - headerOff);
+        }
+        bytesSentCopied += copiedChecksumLen;
 
         // no need to flush since we know out is not a buffered stream
         FileChannel fileCh = ((FileInputStream)ris.getDataIn()).getChannel();
@@ -640,9 +681,11 @@ class BlockSender implements java.io.Closeable {
         datanode.metrics.addSendDataPacketBlockedOnNetworkNanos(waitTime.get());
         datanode.metrics.addSendDataPacketTransferNanos(transferTime.get());
         blockInPosition += dataLen;
+        bytesSentZeroCopy += dataLen;
       } else {
         // normal transfer
         out.write(buf, headerOff, dataOff + dataLen - headerOff);
+        bytesSentCopied += checksumDataLen + dataLen;
       }
     } catch (IOException e) {
       if (e instanceof SocketTimeoutException) {
@@ -691,6 +734,44 @@ class BlockSender implements java.io.Closeable {
     return dataLen;
   }
   
+  /**
+   * Write the next checksums from the mapped meta file to the socket, then
+   * skip those sent from the packet buffer instead.
+   */
+  private void writeMappedChecksums(SocketOutputStream sockOut, int len,
+      int skip) throws IOException {
+    ByteBuffer sums = mappedChecksums.slice();
+    sums.limit(len);
+    while (sums.hasRemaining()) {
+      if (sockOut.write(sums) < 0) {
+        throw new IOException("The stream is closed");
+      }
+    }
+    mappedChecksums.position(mappedChecksums.position() + len + skip);
+  }
+
+  /**
+   * Map the checksums of the range to send from the meta file, if it has
+   * all of them. Otherwise, they are read from the checksum stream.
+   */
+  private void mapChecksums() {
+    if (metaChannel == null || checksumSize <= 0 || endOffset <= offset) {
+      return;
+    }
+    final long position = BlockMetadataHeader.getHeaderSize() +
+        (offset / chunkSize) * checksumSize;
+    final long len = (long) numberOfChunks(endOffset - offset) * checksumSize;
+    try {
+      if (position + len <= metaChannel.size()) {
+        mappedChecksums = metaChannel.map(FileChannel.MapMode.READ_ONLY,
+            position, len);
+      }
+    } catch (IOException e) {
+      LOG.warn("Failed to map the checksums of " + block +
+          ", reading them instead", e);
+    }
+  }
+
   /**
    * Read checksum into given buffer
    * @param buf buffer to read the checksum into
@@ -813,6 +894,7 @@ class BlockSender implements java.io.Closeable {
         FileChannel fileChannel =
             ((FileInputStream)ris.getDataIn()).getChannel();
         blockInPosition = fileChannel.position();
+        mapChecksums();
         streamForSendChunks = baseStream;
         maxChunksPerPacket = numberOfChunks(TRANSFERTO_BUFFER_SIZE);
         
@@ -854,6 +936,7 @@ class BlockSender implements java.io.Closeable {
         ClientTraceLog.debug(String.format(clientTraceFmt, totalRead,
             initialOffset, endTime - startTime));
       }
+      datanode.metrics.incrBytesSent(bytesSentZeroCopy, bytesSentCopied);
       close();
     }
     return totalRead;
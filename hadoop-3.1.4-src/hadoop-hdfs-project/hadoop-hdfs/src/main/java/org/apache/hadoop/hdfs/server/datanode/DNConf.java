@@ -87,6 +87,7 @@ public class DNConf {
   private final boolean tcpNoDelay;
 
   final boolean transferToAllowed;
+  final boolean transferToMappedChecksums;
   final boolean dropCacheBehindWrites;
   final boolean syncBehindWrites;
   final boolean syncBehindWritesInBackground;
@@ -106,6 +107,7 @@ public class DNConf {
   final boolean diskStatsEnabled;
   final long outliersReportIntervalMs;
   final long ibrInterval;
+  final long ibrMaxInterval;
   final long initialBlockReportDelayMs;
   final long cacheReportInterval;
   final long datanodeSlowIoWarningThresholdMs;
@@ -156,6 +158,9 @@ public class DNConf {
     transferToAllowed = getConf().getBoolean(
         DFS_DATANODE_TRANSFERTO_ALLOWED_KEY,
         DFS_DATANODE_TRANSFERTO_ALLOWED_DEFAULT);
+    transferToMappedChecksums = getConf().getBoolean(
+        DFSConfigKeys.DFS_DATANODE_TRANSFERTO_MAPPED_CHECKSUMS_KEY,
+        DFSConfigKeys.DFS_DATANODE_TRANSFERTO_MAPPED_CHECKSUMS_DEFAULT);
 
     readaheadLength = getConf().getLong(
         HdfsClientConfigKeys.DFS_DATANODE_READAHEAD_BYTES_KEY,
@@ -194,6 +199,9 @@ public class DNConf {
     this.ibrInterval = getConf().getLong(
         DFSConfigKeys.DFS_BLOCKREPORT_INCREMENTAL_INTERVAL_MSEC_KEY,
         DFSConfigKeys.DFS_BLOCKREPORT_INCREMENTAL_INTERVAL_MSEC_DEFAULT);
+    this.ibrMaxInterval = getConf().getLong(
+        DFSConfigKeys.DFS_BLOCKREPORT_INCREMENTAL_MAX_INTERVAL_MSEC_KEY,
+        DFSConfigKeys.DFS_BLOCKREPORT_INCREMENTAL_MAX_INTERVAL_MSEC_DEFAULT);
     this.blockReportSplitThreshold = getConf().getLong(
         DFS_BLOCKREPORT_SPLIT_THRESHOLD_KEY,
         DFS_BLOCKREPORT_SPLIT_THRESHOLD_DEFAULT);
@@ -2221,7 +2221,17 @@ public class DataNode extends ReconfigurableBase
   /** Number of concurrent xceivers per node. */
   @Override // DataNodeMXBean
   public int getXceiverCount() {
-    return threadGroup == null ? 0 : threadGroup.activeCount();
+    ThreadGroup group = threadGroup;
+    if (group == null) {
+      return 0;
+    }
+    // the pooled threads not serving a peer are not xceivers
+    int idle = xserver == null ? 0 : xserver.getNumIdleThreads();
+    Daemon local = localDataXceiverServer;
+    if (local != null) {
+      idle += ((DataXceiverServer) local.getRunnable()).getNumIdleThreads();
+    }
+    return Math.max(0, group.activeCount() - idle);
   }
 
   @Override // DataNodeMXBean
@@ -61,6 +61,7 @@ import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
 import org.apache.hadoop.hdfs.shortcircuit.ShortCircuitShm.SlotId;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.net.NetUtils;
+import org.apache.hadoop.net.SocketInputStream;
 import org.apache.hadoop.net.unix.DomainSocket;
 import org.apache.hadoop.security.token.SecretManager.InvalidToken;
 import org.apache.hadoop.security.token.Token;
@@ -85,6 +86,8 @@ import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
 import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
@@ -121,6 +124,15 @@ class DataXceiver extends Receiver implements Runnable {
   private final int ioFileBufferSize;
   private final int smallBufferSize;
   private Thread xceiver = null;
+  /** The number of operations processed on the connection. */
+  private int opsProcessed = 0;
+  /**
+   * The channel the connection is parked with when the DataXceivers are
+   * pooled, or null if it cannot be parked.
+   */
+  private SelectableChannel parkableChannel;
+  /** Set when the connection was parked for longer than the keepalive. */
+  private volatile boolean keepaliveExpired = false;
 
   /**
    * Client Name used in previous operation. Not available on first request
@@ -217,43 +229,54 @@ class DataXceiver extends Receiver implements Runnable {
   
   /**
    * Read/write data from/to the DataXceiverServer.
+   * When the DataXceivers are pooled, this is run again for the operations
+   * that arrive after the connection was parked.
    */
   @Override
   public void run() {
-    int opsProcessed = 0;
     Op op = null;
+    boolean resumed = opsProcessed != 0;
+    boolean parked = false;
 
     try {
       synchronized(this) {
         xceiver = Thread.currentThread();
       }
-      dataXceiverServer.addPeer(peer, Thread.currentThread(), this);
-      peer.setWriteTimeout(datanode.getDnConf().socketWriteTimeout);
-      InputStream input = socketIn;
-      try {
-        IOStreamPair saslStreams = datanode.saslServer.receive(peer, socketOut,
-          socketIn, datanode.getXferAddress().getPort(),
-          datanode.getDatanodeId());
-        input = new BufferedInputStream(saslStreams.in,
-            smallBufferSize);
-        socketOut = saslStreams.out;
-      } catch (InvalidMagicNumberException imne) {
-        if (imne.isHandshake4Encryption()) {
-          LOG.info("Failed to read expected encryption handshake from client " +
-              "at {}. Perhaps the client " +
-              "is running an older version of Hadoop which does not support " +
-              "encryption", peer.getRemoteAddressString(), imne);
-        } else {
-          LOG.info("Failed to read expected SASL data transfer protection " +
-              "handshake from client at {}" +
-              ". Perhaps the client is running an older version of Hadoop " +
-              "which does not support SASL data transfer protection",
-              peer.getRemoteAddressString(), imne);
+      if (resumed) {
+        dataXceiverServer.setPeerThread(peer, Thread.currentThread());
+        if (keepaliveExpired) {
+          return;
+        }
+      } else {
+        dataXceiverServer.addPeer(peer, Thread.currentThread(), this);
+        peer.setWriteTimeout(datanode.getDnConf().socketWriteTimeout);
+        InputStream input = socketIn;
+        try {
+          IOStreamPair saslStreams = datanode.saslServer.receive(peer,
+            socketOut, socketIn, datanode.getXferAddress().getPort(),
+            datanode.getDatanodeId());
+          input = new BufferedInputStream(saslStreams.in,
+              smallBufferSize);
+          socketOut = saslStreams.out;
+          parkableChannel = getParkableChannel(saslStreams.in);
+        } catch (InvalidMagicNumberException imne) {
+          if (imne.isHandshake4Encryption()) {
+            LOG.info("Failed to read expected encryption handshake from " +
+                "client at {}. Perhaps the client " +
+                "is running an older version of Hadoop which does not " +
+                "support encryption", peer.getRemoteAddressString(), imne);
+          } else {
+            LOG.info("Failed to read expected SASL data transfer protection " +
+                "handshake from client at {}" +
+                ". Perhaps the client is running an older version of Hadoop " +
+                "which does not support SASL data transfer protection",
+                peer.getRemoteAddressString(), imne);
+          }
+          return;
         }
-        return;
-      }
       
-      super.initialize(new DataInputStream(input));
+        super.initialize(new DataInputStream(input));
+      }
       
       // We process requests in a loop, and stay around for a short timeout.
       // This optimistic behaviour allows the other end to reuse connections.
@@ -262,11 +285,14 @@ class DataXceiver extends Receiver implements Runnable {
         updateCurrentThreadName("Waiting for operation #" + (opsProcessed + 1));
 
         try {
-          if (opsProcessed != 0) {
+          if (opsProcessed == 0 || resumed) {
+            peer.setReadTimeout(dnConf.socketTimeout);
+          } else if (parkConnection()) {
+            parked = true;
+            return;
+          } else {
             assert dnConf.socketKeepaliveTimeout > 0;
             peer.setReadTimeout(dnConf.socketKeepaliveTimeout);
-          } else {
-            peer.setReadTimeout(dnConf.socketTimeout);
           }
           op = readOp();
         } catch (InterruptedIOException ignored) {
@@ -284,9 +310,10 @@ class DataXceiver extends Receiver implements Runnable {
         }
 
         // restore normal timeout
-        if (opsProcessed != 0) {
+        if (opsProcessed != 0 && !resumed) {
           peer.setReadTimeout(dnConf.socketTimeout);
         }
+        resumed = false;
 
         opStartTime = monotonicNow();
         processOp(op);
@@ -327,14 +354,62 @@ class DataXceiver extends Receiver implements Runnable {
       collectThreadLocalStates();
       LOG.debug("{}:Number of active connections is: {}",
           datanode.getDisplayName(), datanode.getXceiverCount());
-      updateCurrentThreadName("Cleaning up");
-      if (peer != null) {
-        dataXceiverServer.closePeer(peer);
-        IOUtils.closeStream(in);
+      if (parked) {
+        updateCurrentThreadName("Parked");
+      } else {
+        updateCurrentThreadName("Cleaning up");
+        if (peer != null) {
+          dataXceiverServer.closePeer(peer);
+          IOUtils.closeStream(in);
+        }
       }
     }
   }
 
+  /**
+   * @return the channel to park the connection with between two operations,
+   * or null if the DataXceivers are not pooled, or the connection is not a
+   * socket channel, or its input is wrapped by SASL and could buffer data.
+   */
+  private SelectableChannel getParkableChannel(InputStream saslIn) {
+    if (dataXceiverServer.getXceiverPool() == null || saslIn != socketIn) {
+      return null;
+    }
+    ReadableByteChannel channel = peer.getInputStreamChannel();
+    if (channel != socketIn || !(channel instanceof SocketInputStream)) {
+      return null;
+    }
+    ReadableByteChannel socketChannel =
+        ((SocketInputStream) channel).getChannel();
+    return socketChannel instanceof SelectableChannel ?
+        (SelectableChannel) socketChannel : null;
+  }
+
+  /**
+   * Park the connection with the pool until the next operation arrives,
+   * unless it is not parkable or some of the operation was already read.
+   * @return whether the connection was parked.
+   */
+  private boolean parkConnection() throws IOException {
+    if (parkableChannel == null || in.available() > 0) {
+      return false;
+    }
+    dataXceiverServer.setPeerThread(peer, null);
+    dataXceiverServer.getXceiverPool().park(this, parkableChannel);
+    return true;
+  }
+
+  /** Have the next run close the parked connection. */
+  void keepaliveExpired() {
+    keepaliveExpired = true;
+  }
+
+  /** Close the parked connection when it cannot be run again. */
+  void closeParked() {
+    dataXceiverServer.closePeer(peer);
+    IOUtils.closeStream(in);
+  }
+
   /**
    * In this short living thread, any local states should be collected before
    * the thread dies away.
@@ -947,6 +1022,9 @@ class DataXceiver extends Receiver implements Runnable {
       IOUtils.closeStream(replyOut);
       IOUtils.closeSocket(mirrorSock);
       IOUtils.closeStream(blockReceiver);
+      if (blockReceiver != null) {
+        blockReceiver.releaseWriter();
+      }
       setCurrentBlockReceiver(null);
     }
 
@@ -1284,6 +1362,9 @@ class DataXceiver extends Receiver implements Runnable {
       }
       IOUtils.closeStream(proxyOut);
       IOUtils.closeStream(blockReceiver);
+      if (blockReceiver != null) {
+        blockReceiver.releaseWriter();
+      }
       IOUtils.closeStream(proxyReply);
       IOUtils.closeStream(replyOut);
     }
@@ -0,0 +1,279 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.util.Daemon;
+import org.apache.hadoop.util.Time;
+import org.slf4j.Logger;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Runs the {@link DataXceiver}s of a {@link DataXceiverServer} on a pool of
+ * threads, and watches the connections they keep open between two
+ * operations with a single selector thread, so that an idle connection does
+ * not hold a thread.
+ * <p>
+ * A DataXceiver done with an operation parks its connection instead of
+ * waiting for the next operation on its thread. Once the next operation can
+ * be read, or the keepalive timeout expired, the DataXceiver is run again,
+ * on any thread of the pool. The parked connections are only registered and
+ * selected by the selector thread.
+ */
+class DataXceiverPool implements Runnable {
+  public static final Logger LOG = DataNode.LOG;
+
+  private final ThreadPoolExecutor executor;
+  private final long keepaliveMs;
+  private final Selector selector;
+  private final Daemon selectorThread;
+  /** The DataXceivers to park, added by their threads. */
+  private final Queue<Parked> toPark = new ConcurrentLinkedQueue<>();
+  /**
+   * The keys of the parked connections, with their expiry, the first to
+   * expire first. Only used by the selector thread.
+   */
+  private final LinkedHashMap<SelectionKey, Long> parked =
+      new LinkedHashMap<>();
+  private final AtomicInteger numParked = new AtomicInteger();
+  private volatile boolean expireAll = false;
+  private volatile boolean running = true;
+
+  /** A DataXceiver to park, and the channel of its connection. */
+  private static final class Parked {
+    private final DataXceiver xceiver;
+    private final SelectableChannel channel;
+
+    private Parked(DataXceiver xceiver, SelectableChannel channel) {
+      this.xceiver = xceiver;
+      this.channel = channel;
+    }
+  }
+
+  DataXceiverPool(final ThreadGroup threadGroup, int maxThreads,
+      long keepaliveMs) throws IOException {
+    this.keepaliveMs = keepaliveMs;
+    this.executor = new ThreadPoolExecutor(0, maxThreads, 60,
+        TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+        new ThreadFactory() {
+          private final AtomicInteger count = new AtomicInteger();
+
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread t = new Daemon(threadGroup, r);
+            t.setName("DataXceiver pool thread " + count.incrementAndGet());
+            return t;
+          }
+        });
+    this.selector = Selector.open();
+    this.selectorThread = new Daemon(threadGroup, this);
+    this.selectorThread.setName("DataXceiver selector");
+  }
+
+  void start() {
+    selectorThread.start();
+  }
+
+  /**
+   * Run the given DataXceiver on a thread of the pool.
+   * @throws RejectedExecutionException if all the threads are busy.
+   */
+  void execute(final DataXceiver xceiver) {
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        String name = Thread.currentThread().getName();
+        try {
+          xceiver.run();
+        } finally {
+          Thread.currentThread().setName(name);
+        }
+      }
+    });
+  }
+
+  /**
+   * Park the connection of the given DataXceiver, and run it again once
+   * its next operation can be read, or the keepalive timeout expired. The
+   * DataXceiver must not use the connection after this call.
+   */
+  void park(DataXceiver xceiver, SelectableChannel channel) {
+    numParked.incrementAndGet();
+    toPark.add(new Parked(xceiver, channel));
+    selector.wakeup();
+  }
+
+  /** Expire the keepalive of all the parked connections. */
+  void expireAll() {
+    expireAll = true;
+    selector.wakeup();
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (running) {
+        long now = Time.monotonicNow();
+        if (expireAll) {
+          expireAll = false;
+          expire(Long.MAX_VALUE);
+        } else {
+          expire(now);
+        }
+        long timeout = 0;
+        if (!parked.isEmpty()) {
+          timeout = Math.max(1, parked.values().iterator().next() - now);
+        }
+        selector.select(timeout);
+        Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+        while (it.hasNext()) {
+          SelectionKey key = it.next();
+          it.remove();
+          if (parked.remove(key) != null) {
+            resume(key, false);
+          }
+        }
+        Parked p;
+        while ((p = toPark.poll()) != null) {
+          register(p);
+        }
+      }
+    } catch (IOException | ClosedSelectorException e) {
+      if (running) {
+        LOG.error("DataXceiver selector failed", e);
+      }
+    } finally {
+      // the peers of the connections left are closed by the server
+      running = false;
+      try {
+        selector.close();
+      } catch (IOException e) {
+        LOG.warn("Failed to close the DataXceiver selector", e);
+      }
+    }
+  }
+
+  /** Watch the connection of a parked DataXceiver. */
+  private void register(Parked p) {
+    SelectionKey key = p.channel.keyFor(selector);
+    try {
+      if (key == null) {
+        key = p.channel.register(selector, SelectionKey.OP_READ, p.xceiver);
+      } else {
+        key.interestOps(SelectionKey.OP_READ);
+      }
+    } catch (ClosedChannelException | CancelledKeyException e) {
+      // the connection was closed, let the DataXceiver clean up
+      numParked.decrementAndGet();
+      p.xceiver.keepaliveExpired();
+      runAgain(p.xceiver, null);
+      return;
+    }
+    parked.put(key, Time.monotonicNow() + keepaliveMs);
+  }
+
+  /** Run again the DataXceivers whose keepalive expired by the given time. */
+  private void expire(long now) {
+    Iterator<Map.Entry<SelectionKey, Long>> it = parked.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<SelectionKey, Long> e = it.next();
+      if (e.getValue() > now) {
+        break;
+      }
+      it.remove();
+      resume(e.getKey(), true);
+    }
+  }
+
+  private void resume(SelectionKey key, boolean expired) {
+    numParked.decrementAndGet();
+    DataXceiver xceiver = (DataXceiver) key.attachment();
+    try {
+      key.interestOps(0);
+    } catch (CancelledKeyException e) {
+      // closed, the DataXceiver finds it out
+    }
+    if (expired) {
+      xceiver.keepaliveExpired();
+    }
+    runAgain(xceiver, key);
+  }
+
+  private void runAgain(DataXceiver xceiver, SelectionKey key) {
+    try {
+      execute(xceiver);
+    } catch (RejectedExecutionException e) {
+      if (running) {
+        LOG.warn("No thread to serve the next operation of " + xceiver +
+            ", closing the connection", e);
+      }
+      if (key != null) {
+        key.cancel();
+      }
+      xceiver.closeParked();
+    }
+  }
+
+  /**
+   * Stop watching the parked connections and running the DataXceivers.
+   * The caller closes the peers.
+   */
+  void shutdown() {
+    running = false;
+    selector.wakeup();
+    executor.shutdownNow();
+  }
+
+  /**
+   * @return the number of threads not running a DataXceiver: the idle
+   * threads of the pool and the selector thread.
+   */
+  int getNumIdleThreads() {
+    return Math.max(0, executor.getPoolSize() - executor.getActiveCount()) +
+        (selectorThread.isAlive() ? 1 : 0);
+  }
+
+  @VisibleForTesting
+  int getNumParked() {
+    return numParked.get();
+  }
+
+  @VisibleForTesting
+  int getNumThreads() {
+    return executor.getPoolSize();
+  }
+}
@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.nio.channels.AsynchronousCloseException;
 import java.util.HashMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hadoop.conf.Configuration;
@@ -115,10 +116,12 @@ class DataXceiverServer implements Runnable {
    * For older clients we just use the server-side default block size.
    */
   final long estimateBlockSize;
-  
+
+  /** Runs the DataXceivers when they are pooled, or null. */
+  private final DataXceiverPool xceiverPool;
   
   DataXceiverServer(PeerServer peerServer, Configuration conf,
-      DataNode datanode) {
+      DataNode datanode) throws IOException {
     this.peerServer = peerServer;
     this.datanode = datanode;
     
@@ -135,11 +138,23 @@ class DataXceiverServer implements Runnable {
             DFSConfigKeys.DFS_DATANODE_BALANCE_BANDWIDTHPERSEC_DEFAULT),
         conf.getInt(DFSConfigKeys.DFS_DATANODE_BALANCE_MAX_NUM_CONCURRENT_MOVES_KEY,
             DFSConfigKeys.DFS_DATANODE_BALANCE_MAX_NUM_CONCURRENT_MOVES_DEFAULT));
+
+    if (conf.getBoolean(DFSConfigKeys.DFS_DATANODE_XCEIVER_POOL_ENABLED_KEY,
+        DFSConfigKeys.DFS_DATANODE_XCEIVER_POOL_ENABLED_DEFAULT)) {
+      this.xceiverPool = new DataXceiverPool(datanode.threadGroup,
+          maxXceiverCount + 1, datanode.getDnConf().socketKeepaliveTimeout);
+      LOG.info("DataXceivers are pooled");
+    } else {
+      this.xceiverPool = null;
+    }
   }
 
   @Override
   public void run() {
     Peer peer = null;
+    if (xceiverPool != null) {
+      xceiverPool.start();
+    }
     while (datanode.shouldRun && !datanode.shutdownForUpgrade) {
       try {
         peer = peerServer.accept();
@@ -152,9 +167,17 @@ class DataXceiverServer implements Runnable {
               + maxXceiverCount);
         }
 
-        new Daemon(datanode.threadGroup,
-            DataXceiver.create(peer, datanode, this))
-            .start();
+        if (xceiverPool == null) {
+          new Daemon(datanode.threadGroup,
+              DataXceiver.create(peer, datanode, this))
+              .start();
+        } else {
+          try {
+            xceiverPool.execute(DataXceiver.create(peer, datanode, this));
+          } catch (RejectedExecutionException e) {
+            throw new IOException("No DataXceiver thread available", e);
+          }
+        }
       } catch (SocketTimeoutException ignored) {
         // wake up to see if should continue to run
       } catch (AsynchronousCloseException ace) {
@@ -211,6 +234,9 @@ class DataXceiverServer implements Runnable {
     }
     // Close all peers.
     closeAllPeers();
+    if (xceiverPool != null) {
+      xceiverPool.shutdown();
+    }
   }
 
   void kill() {
@@ -235,6 +261,16 @@ class DataXceiverServer implements Runnable {
     datanode.metrics.incrDataNodeActiveXceiversCount();
   }
 
+  /**
+   * Update the thread serving the given peer, or null while the peer is
+   * parked by the {@link DataXceiverPool}.
+   */
+  synchronized void setPeerThread(Peer peer, Thread t) {
+    if (peers.containsKey(peer)) {
+      peers.put(peer, t);
+    }
+  }
+
   synchronized void closePeer(Peer peer) {
     peers.remove(peer);
     peersXceiver.remove(peer);
@@ -272,7 +308,13 @@ class DataXceiverServer implements Runnable {
     assert (datanode.shouldRun == true && datanode.shutdownForUpgrade);
     for (Thread t : peers.values()) {
       // interrupt each and every DataXceiver thread.
-      t.interrupt();
+      if (t != null) {
+        t.interrupt();
+      }
+    }
+    if (xceiverPool != null) {
+      // and close the parked connections
+      xceiverPool.expireAll();
     }
   }
 
@@ -298,6 +340,16 @@ class DataXceiverServer implements Runnable {
     return peersXceiver.size();
   }
 
+  /** @return the pool running the DataXceivers, or null. */
+  DataXceiverPool getXceiverPool() {
+    return xceiverPool;
+  }
+
+  /** @return the number of threads of the server not serving a peer. */
+  int getNumIdleThreads() {
+    return xceiverPool == null ? 0 : xceiverPool.getNumIdleThreads();
+  }
+
   @VisibleForTesting
   PeerServer getPeerServer() {
     return peerServer;
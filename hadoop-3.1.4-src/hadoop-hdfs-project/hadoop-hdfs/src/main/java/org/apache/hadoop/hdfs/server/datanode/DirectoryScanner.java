@@ -72,6 +72,11 @@ public class DirectoryScanner implements Runnable {
   private final ExecutorService reportCompileThreadPool;
   private final ScheduledExecutorService masterThread;
   private final long scanPeriodMsecs;
+  /**
+   * The maximum delay of the first scan, to reconcile the replicas loaded
+   * from the replica index, or -1.
+   */
+  private final long firstScanMaxDelayMsecs;
   private final int throttleLimitMsPerSec;
   private volatile boolean shouldRun = false;
   private boolean retainDiffs = false;
@@ -225,6 +230,15 @@ public class DirectoryScanner implements Runnable {
         DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_INTERVAL_DEFAULT,
         TimeUnit.SECONDS);
     scanPeriodMsecs = interval * MILLIS_PER_SECOND; //msec
+    if (conf.getBoolean(DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_ENABLED_KEY,
+        DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_ENABLED_DEFAULT)) {
+      firstScanMaxDelayMsecs = conf.getTimeDuration(
+          DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_RECONCILE_DELAY_KEY,
+          DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_RECONCILE_DELAY_DEFAULT,
+          TimeUnit.SECONDS) * MILLIS_PER_SECOND;
+    } else {
+      firstScanMaxDelayMsecs = -1;
+    }
 
     int throttle =
         conf.getInt(
@@ -268,6 +282,9 @@ public class DirectoryScanner implements Runnable {
     shouldRun = true;
     long offset = ThreadLocalRandom.current().nextInt(
         (int) (scanPeriodMsecs/MILLIS_PER_SECOND)) * MILLIS_PER_SECOND; //msec
+    if (firstScanMaxDelayMsecs >= 0) {
+      offset = Math.min(offset, firstScanMaxDelayMsecs);
+    }
     long firstScanTime = Time.now() + offset;
     String logMsg;
 
@@ -683,7 +683,8 @@ public class FileIoProvider {
     boolean succeeded = false;
     try {
       faultInjectorEventHook.beforeMetadataOp(volume, MKDIRS);
-      succeeded = dir.isDirectory() || dir.mkdirs();
+      // the directory may be created by a concurrent call
+      succeeded = dir.isDirectory() || dir.mkdirs() || dir.isDirectory();
       profilingEventHook.afterMetadataOp(volume, MKDIRS, begin);
     } catch(Exception e) {
       onFailure(volume, begin);
@@ -133,8 +133,15 @@ class IncrementalBlockReportManager {
    */
   private volatile boolean readyToSend = false;
 
+  /** The time interval between two IBRs when the NN is not loaded. */
+  private final long minIbrInterval;
+  /**
+   * The time interval between two IBRs when the block report queue of the
+   * NN is full, or no more than {@link #minIbrInterval} not to adapt it.
+   */
+  private final long maxIbrInterval;
   /** The time interval between two IBRs. */
-  private final long ibrInterval;
+  private volatile long ibrInterval;
 
   /** The timestamp of the last IBR. */
   private volatile long lastIBR;
@@ -143,11 +150,44 @@ class IncrementalBlockReportManager {
   IncrementalBlockReportManager(
       final long ibrInterval,
       final DataNodeMetrics dnMetrics) {
+    this(ibrInterval, 0, dnMetrics);
+  }
+
+  IncrementalBlockReportManager(
+      final long ibrInterval,
+      final long maxIbrInterval,
+      final DataNodeMetrics dnMetrics) {
+    this.minIbrInterval = ibrInterval;
+    this.maxIbrInterval = maxIbrInterval;
     this.ibrInterval = ibrInterval;
     this.lastIBR = monotonicNow() - ibrInterval;
     this.dnMetrics = dnMetrics;
   }
 
+  /**
+   * Adapt the interval between two IBRs to the load of the NN, so that the
+   * DNs send fewer and larger IBRs while the NN is busy applying them.
+   *
+   * @param load how full the block report queue of the NN is, in percent.
+   */
+  void adaptInterval(int load) {
+    if (maxIbrInterval <= minIbrInterval) {
+      return;
+    }
+    final long interval = minIbrInterval +
+        (maxIbrInterval - minIbrInterval) * Math.min(load, 100) / 100;
+    if (interval != ibrInterval) {
+      LOG.debug("NameNode block report queue is {}% full, IBR interval {}ms",
+          load, interval);
+      ibrInterval = interval;
+    }
+  }
+
+  @VisibleForTesting
+  long getIbrInterval() {
+    return ibrInterval;
+  }
+
   boolean sendImmediately() {
     return readyToSend && monotonicNow() - ibrInterval >= lastIBR;
   }
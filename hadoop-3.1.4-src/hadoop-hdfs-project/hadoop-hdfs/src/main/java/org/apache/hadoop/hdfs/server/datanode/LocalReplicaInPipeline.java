@@ -32,6 +32,7 @@ import org.apache.hadoop.hdfs.server.protocol.ReplicaRecoveryInfo;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.util.DataChecksum;
 import org.apache.hadoop.util.StringUtils;
+import org.apache.hadoop.util.Time;
 
 /**
  * This class defines a replica in a pipeline, which
@@ -43,6 +44,9 @@ import org.apache.hadoop.util.StringUtils;
  */
 public class LocalReplicaInPipeline extends LocalReplica
                         implements ReplicaInPipeline {
+  /** How often to check whether a living writer stopped writing. */
+  private static final long WRITER_POLL_MS = 10;
+
   private long bytesAcked;
   private long bytesOnDisk;
   private byte[] lastChecksum;
@@ -207,7 +211,8 @@ public class LocalReplicaInPipeline extends LocalReplica
   }
 
   /**
-   * Interrupt the writing thread and wait until it dies.
+   * Interrupt the writing thread and wait until it dies, or stops writing
+   * the replica.
    * @throws IOException the waiting is interrupted
    */
   @Override // ReplicaInPipeline
@@ -225,8 +230,16 @@ public class LocalReplicaInPipeline extends LocalReplica
       }
       thread.interrupt();
       try {
-        thread.join(xceiverStopTimeout);
-        if (thread.isAlive()) {
+        // a pooled DataXceiver thread releases the replica without dying
+        final long deadline = Time.monotonicNow() + xceiverStopTimeout;
+        long left = xceiverStopTimeout;
+        while (thread.isAlive() && writer.get() == thread &&
+            (left > 0 || xceiverStopTimeout == 0)) {
+          thread.join(xceiverStopTimeout == 0 ? WRITER_POLL_MS :
+              Math.min(left, WRITER_POLL_MS));
+          left = deadline - Time.monotonicNow();
+        }
+        if (thread.isAlive() && writer.get() == thread) {
           // Our thread join timed out.
           final String msg = "Join on writer thread " + thread + " timed out";
           DataNode.LOG.warn(msg + "\n" + StringUtils.getStackTrace(thread));
@@ -24,13 +24,18 @@ import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.DFSUtilClient;
 import org.apache.hadoop.hdfs.server.datanode.DataNode;
 import org.apache.hadoop.hdfs.server.protocol.BlockECReconstructionCommand.BlockECReconstructionInfo;
+import org.apache.hadoop.hdfs.util.DataTransferThrottler;
 import org.apache.hadoop.hdfs.util.StripedBlockUtil.BlockReadStats;
 import org.apache.hadoop.util.Daemon;
 import org.slf4j.Logger;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -50,6 +55,10 @@ public final class ErasureCodingWorker {
   private final DataNode datanode;
   private final Configuration conf;
   private final float xmitWeight;
+  // the block groups reconstructed by a task
+  private final int batchSize;
+  // null if the reconstruction bandwidth is not limited
+  private final DataTransferThrottler throttler;
 
   private ThreadPoolExecutor stripedReconstructionPool;
   private ThreadPoolExecutor stripedReadPool;
@@ -65,6 +74,18 @@ public final class ErasureCodingWorker {
         "Invalid value configured for " +
             DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_XMITS_WEIGHT_KEY +
             ", it can not be negative value (" + this.xmitWeight + ").");
+    this.batchSize = conf.getInt(
+        DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_BATCH_SIZE_KEY,
+        DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_BATCH_SIZE_DEFAULT);
+    Preconditions.checkArgument(this.batchSize > 0,
+        "Invalid value configured for " +
+            DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_BATCH_SIZE_KEY +
+            ", it must be positive (" + this.batchSize + ").");
+    long bandwidthPerSec = conf.getLong(
+        DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_BANDWIDTHPERSEC_KEY,
+        DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_BANDWIDTHPERSEC_DEFAULT);
+    this.throttler = bandwidthPerSec > 0 ?
+        new DataTransferThrottler(bandwidthPerSec) : null;
 
     initializeStripedReadThreadPool();
     initializeStripedBlkReconstructionThreadPool(conf.getInt(
@@ -120,6 +141,7 @@ public final class ErasureCodingWorker {
    */
   public void processErasureCodingTasks(
       Collection<BlockECReconstructionInfo> ecTasks) {
+    List<StripedBlockReconstructor> batch = new ArrayList<>(batchSize);
     for (BlockECReconstructionInfo reconInfo : ecTasks) {
       int xmitsSubmitted = 0;
       try {
@@ -141,7 +163,15 @@ public final class ErasureCodingWorker {
           //      an unbounded number of tasks in the executor's task queue.
           xmitsSubmitted = Math.max((int)(task.getXmits() * xmitWeight), 1);
           getDatanode().incrementXmitsInProcess(xmitsSubmitted);
-          stripedReconstructionPool.submit(task);
+          if (batchSize > 1) {
+            batch.add(task);
+            if (batch.size() == batchSize) {
+              submitBatch(batch);
+              batch = new ArrayList<>(batchSize);
+            }
+          } else {
+            stripedReconstructionPool.submit(task);
+          }
         } else {
           LOG.warn("No missing internal block. Skip reconstruction for task:{}",
               reconInfo);
@@ -152,6 +182,22 @@ public final class ErasureCodingWorker {
             reconInfo.getExtendedBlock().getLocalBlock(), e);
       }
     }
+    if (!batch.isEmpty()) {
+      submitBatch(batch);
+    }
+  }
+
+  private void submitBatch(List<StripedBlockReconstructor> batch) {
+    try {
+      stripedReconstructionPool.submit(
+          new StripedBlockReconstructionBatch(this, batch));
+    } catch (Throwable e) {
+      for (StripedBlockReconstructor task : batch) {
+        getDatanode().decrementXmitsInProgress(
+            Math.max((int) (task.getXmits() * xmitWeight), 1));
+      }
+      LOG.warn("Failed to reconstruct {} striped blocks", batch.size(), e);
+    }
   }
 
   DataNode getDatanode() {
@@ -166,6 +212,14 @@ public final class ErasureCodingWorker {
     return new ExecutorCompletionService<>(stripedReadPool);
   }
 
+  <T> Future<T> submitStripedRead(Callable<T> read) {
+    return stripedReadPool.submit(read);
+  }
+
+  DataTransferThrottler getThrottler() {
+    return throttler;
+  }
+
   public void shutDown() {
     stripedReconstructionPool.shutdown();
     stripedReadPool.shutdown();
@@ -0,0 +1,123 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.erasurecode;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+
+/**
+ * StripedBlockReconstructionBatch reconstructs the missed blocks of several
+ * striped block groups in one thread: while the buffer read for a block
+ * group is decoded and sent to its targets, the next buffers of the other
+ * block groups are read from their sources.
+ */
+@InterfaceAudience.Private
+class StripedBlockReconstructionBatch implements Runnable {
+
+  private final ErasureCodingWorker worker;
+  private final List<StripedBlockReconstructor> tasks;
+
+  StripedBlockReconstructionBatch(ErasureCodingWorker worker,
+      List<StripedBlockReconstructor> tasks) {
+    this.worker = worker;
+    this.tasks = tasks;
+  }
+
+  @Override
+  public void run() {
+    // the tasks whose next buffer is being read, in the order to decode
+    ArrayDeque<StripedBlockReconstructor> reading = new ArrayDeque<>();
+    Map<StripedBlockReconstructor, Future<Integer>> reads = new HashMap<>();
+    try {
+      for (StripedBlockReconstructor task : tasks) {
+        try {
+          task.init();
+          if (task.hasMoreToReconstruct()) {
+            reads.put(task, readNext(task));
+            reading.add(task);
+          } else {
+            task.end();
+            task.finish();
+          }
+        } catch (Throwable e) {
+          task.fail(e);
+          task.finish();
+        }
+      }
+
+      while (!reading.isEmpty()) {
+        StripedBlockReconstructor task = reading.poll();
+        try {
+          task.reconstructTargets(getRead(reads.remove(task)));
+          if (task.hasMoreToReconstruct()) {
+            reads.put(task, readNext(task));
+            reading.add(task);
+            continue;
+          }
+          task.end();
+        } catch (Throwable e) {
+          task.fail(e);
+        }
+        task.finish();
+      }
+    } finally {
+      // the tasks left if the batch was aborted
+      for (StripedBlockReconstructor task : reading) {
+        Future<Integer> read = reads.get(task);
+        if (read != null) {
+          read.cancel(true);
+        }
+        task.fail(new IOException("Reconstruction batch was aborted"));
+        task.finish();
+      }
+    }
+  }
+
+  private Future<Integer> readNext(final StripedBlockReconstructor task) {
+    return worker.submitStripedRead(new Callable<Integer>() {
+      @Override
+      public Integer call() throws Exception {
+        return task.readNext();
+      }
+    });
+  }
+
+  private static int getRead(Future<Integer> read) throws IOException {
+    try {
+      return read.get();
+    } catch (InterruptedException e) {
+      read.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+}
@@ -35,6 +35,12 @@ class StripedBlockReconstructor extends StripedReconstructor
     implements Runnable {
 
   private StripedWriter stripedWriter;
+  private long startTime;
+  // the time reading the buffer being reconstructed
+  private long readTime;
+  // the bytes read and written when the bandwidth was last throttled
+  private long throttledBytes;
+  private boolean succeeded;
 
   StripedBlockReconstructor(ErasureCodingWorker worker,
       StripedReconstructionInfo stripedReconInfo) {
@@ -51,72 +57,141 @@ class StripedBlockReconstructor extends StripedReconstructor
   @Override
   public void run() {
     try {
-      initDecoderIfNecessary();
-
-      getStripedReader().init();
-
-      stripedWriter.init();
+      init();
 
       reconstruct();
 
-      stripedWriter.endTargetBlocks();
-
-      // Currently we don't check the acks for packets, this is similar as
-      // block replication.
+      end();
     } catch (Throwable e) {
-      LOG.warn("Failed to reconstruct striped block: {}", getBlockGroup(), e);
-      getDatanode().getMetrics().incrECFailedReconstructionTasks();
+      fail(e);
     } finally {
-      getDatanode().decrementXmitsInProgress(getXmits());
-      final DataNodeMetrics metrics = getDatanode().getMetrics();
-      metrics.incrECReconstructionTasks();
-      metrics.incrECReconstructionBytesRead(getBytesRead());
-      metrics.incrECReconstructionRemoteBytesRead(getRemoteBytesRead());
-      metrics.incrECReconstructionBytesWritten(getBytesWritten());
-      getStripedReader().close();
-      stripedWriter.close();
-      cleanup();
+      finish();
     }
   }
 
+  /**
+   * Connect to the sources and the targets.
+   */
+  void init() throws IOException {
+    startTime = Time.monotonicNow();
+
+    initDecoderIfNecessary();
+
+    getStripedReader().init();
+
+    stripedWriter.init();
+  }
+
   @Override
   void reconstruct() throws IOException {
-    while (getPositionInBlock() < getMaxTargetLength()) {
-      DataNodeFaultInjector.get().stripedBlockReconstruction();
-      long remaining = getMaxTargetLength() - getPositionInBlock();
-      final int toReconstructLen =
-          (int) Math.min(getStripedReader().getBufferSize(), remaining);
-
-      long start = Time.monotonicNow();
-      // step1: read from minimum source DNs required for reconstruction.
-      // The returned success list is the source DNs we do real read from
-      getStripedReader().readMinimumSources(toReconstructLen);
-      long readEnd = Time.monotonicNow();
-
-      // step2: decode to reconstruct targets
-      reconstructTargets(toReconstructLen);
-      long decodeEnd = Time.monotonicNow();
-
-      // step3: transfer data
-      if (stripedWriter.transferData2Targets() == 0) {
-        String error = "Transfer failed for all targets.";
-        throw new IOException(error);
-      }
-      long writeEnd = Time.monotonicNow();
-
-      // Only the succeed reconstructions are recorded.
-      final DataNodeMetrics metrics = getDatanode().getMetrics();
-      metrics.incrECReconstructionReadTime(readEnd - start);
-      metrics.incrECReconstructionDecodingTime(decodeEnd - readEnd);
-      metrics.incrECReconstructionWriteTime(writeEnd - decodeEnd);
-
-      updatePositionInBlock(toReconstructLen);
-
-      clearBuffers();
+    while (hasMoreToReconstruct()) {
+      reconstructTargets(readNext());
+    }
+  }
+
+  boolean hasMoreToReconstruct() {
+    return getPositionInBlock() < getMaxTargetLength();
+  }
+
+  /**
+   * Read the next buffer to reconstruct from the sources.
+   *
+   * @return the length to reconstruct.
+   */
+  int readNext() throws IOException {
+    DataNodeFaultInjector.get().stripedBlockReconstruction();
+    long remaining = getMaxTargetLength() - getPositionInBlock();
+    final int toReconstructLen =
+        (int) Math.min(getStripedReader().getBufferSize(), remaining);
+
+    long start = Time.monotonicNow();
+    // step1: read from minimum source DNs required for reconstruction.
+    // The returned success list is the source DNs we do real read from
+    getStripedReader().readMinimumSources(toReconstructLen);
+    readTime = Time.monotonicNow() - start;
+    return toReconstructLen;
+  }
+
+  /**
+   * Decode the buffer read by {@link #readNext()} and send it to the
+   * targets.
+   */
+  void reconstructTargets(int toReconstructLen) throws IOException {
+    long decodeStart = Time.monotonicNow();
+    // step2: decode to reconstruct targets
+    decodeTargets(toReconstructLen);
+    long decodeEnd = Time.monotonicNow();
+
+    // step3: transfer data
+    if (stripedWriter.transferData2Targets() == 0) {
+      String error = "Transfer failed for all targets.";
+      throw new IOException(error);
+    }
+    long writeEnd = Time.monotonicNow();
+
+    // Only the succeed reconstructions are recorded.
+    final DataNodeMetrics metrics = getDatanode().getMetrics();
+    metrics.incrECReconstructionReadTime(readTime);
+    metrics.incrECReconstructionDecodingTime(decodeEnd - decodeStart);
+    metrics.incrECReconstructionWriteTime(writeEnd - decodeEnd);
+
+    updatePositionInBlock(toReconstructLen);
+
+    clearBuffers();
+
+    throttle();
+  }
+
+  /**
+   * Wait for the bytes read and written since the last call to be within
+   * the reconstruction bandwidth of the DataNode.
+   */
+  private void throttle() {
+    long bytes = getBytesRead() + getBytesWritten();
+    if (getThrottler() != null) {
+      getThrottler().throttle(bytes - throttledBytes);
+    }
+    throttledBytes = bytes;
+  }
+
+  /**
+   * Complete the target blocks.
+   */
+  void end() throws IOException {
+    stripedWriter.endTargetBlocks();
+
+    // Currently we don't check the acks for packets, this is similar as
+    // block replication.
+    succeeded = true;
+  }
+
+  void fail(Throwable e) {
+    LOG.warn("Failed to reconstruct striped block: {}", getBlockGroup(), e);
+    getDatanode().getMetrics().incrECFailedReconstructionTasks();
+  }
+
+  /**
+   * Update the metrics and release the resources of the task, whether it
+   * succeeded or failed.
+   */
+  void finish() {
+    getDatanode().decrementXmitsInProgress(getXmits());
+    final DataNodeMetrics metrics = getDatanode().getMetrics();
+    metrics.incrECReconstructionTasks();
+    metrics.incrECReconstructionBytesRead(getBytesRead());
+    metrics.incrECReconstructionRemoteBytesRead(getRemoteBytesRead());
+    metrics.incrECReconstructionBytesWritten(getBytesWritten());
+    if (succeeded) {
+      long elapsed = Math.max(1, Time.monotonicNow() - startTime);
+      metrics.addECReconstructionThroughput(
+          getBytesWritten() * 1000 / elapsed);
     }
+    getStripedReader().close();
+    stripedWriter.close();
+    cleanup();
   }
 
-  private void reconstructTargets(int toReconstructLen) throws IOException {
+  private void decodeTargets(int toReconstructLen) throws IOException {
     ByteBuffer[] inputs = getStripedReader().getInputBuffers(toReconstructLen);
 
     int[] erasedIndices = stripedWriter.getRealTargetIndices();
@@ -24,6 +24,7 @@ import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.server.datanode.CachingStrategy;
 import org.apache.hadoop.hdfs.server.datanode.DataNode;
+import org.apache.hadoop.hdfs.util.DataTransferThrottler;
 import org.apache.hadoop.hdfs.util.StripedBlockUtil;
 import org.apache.hadoop.hdfs.util.StripedBlockUtil.BlockReadStats;
 import org.apache.hadoop.io.ByteBufferPool;
@@ -227,6 +228,14 @@ abstract class StripedReconstructor {
     return erasureCodingWorker.createReadService();
   }
 
+  /**
+   * Get the throttler of the reconstruction bandwidth of the DataNode, or
+   * null if it is not limited.
+   */
+  DataTransferThrottler getThrottler() {
+    return erasureCodingWorker.getThrottler();
+  }
+
   ExtendedBlock getBlockGroup() {
     return blockGroup;
   }
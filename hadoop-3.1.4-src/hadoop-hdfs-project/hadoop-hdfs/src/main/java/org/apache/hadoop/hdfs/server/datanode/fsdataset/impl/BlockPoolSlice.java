@@ -41,6 +41,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
@@ -56,6 +57,8 @@ import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.BlockListAsLongs;
 import org.apache.hadoop.hdfs.protocol.BlockListAsLongs.BlockReportReplica;
 import org.apache.hadoop.hdfs.server.common.HdfsServerConstants.ReplicaState;
+import org.apache.hadoop.hdfs.server.common.HdfsServerConstants.StartupOption;
+import org.apache.hadoop.hdfs.server.datanode.DataNode;
 import org.apache.hadoop.hdfs.server.datanode.FileIoProvider;
 import org.apache.hadoop.hdfs.server.datanode.BlockMetadataHeader;
 import org.apache.hadoop.hdfs.server.datanode.DataStorage;
@@ -64,6 +67,7 @@ import org.apache.hadoop.hdfs.server.datanode.ReplicaInfo;
 import org.apache.hadoop.hdfs.server.datanode.ReplicaBuilder;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.impl.RamDiskReplicaTracker.RamDiskReplica;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.ReplicaInputStreams;
+import org.apache.hadoop.hdfs.server.datanode.metrics.DataNodeMetrics;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.io.MultipleIOException;
 import org.apache.hadoop.util.AutoCloseableLock;
@@ -72,6 +76,7 @@ import org.apache.hadoop.util.DataChecksum.Type;
 import org.apache.hadoop.util.DiskChecker;
 import org.apache.hadoop.util.DiskChecker.DiskErrorException;
 import org.apache.hadoop.util.ShutdownHookManager;
+import org.apache.hadoop.util.Time;
 import org.apache.hadoop.util.Timer;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -108,6 +113,16 @@ class BlockPoolSlice {
   private final Timer timer;
   private final int maxDataLength;
   private final FileIoProvider fileIoProvider;
+  // index of the finalized replicas, or null if it is not kept
+  private final ReplicaIndex replicaIndex;
+  // whether the block files may have been moved without the index knowing
+  private final boolean replicaIndexStale;
+  // whether the replicas of the index are reconciled with those on disk by
+  // the directory scanner
+  private final boolean directoryScannerEnabled;
+  // ids of the finalized replicas found while loading them without the
+  // index, to write to its first checkpoint
+  private Queue<long[]> loadedFinalizedIds;
 
   private static ForkJoinPool addReplicaThreadPool = null;
   private static final int VOLUMES_REPLICA_ADD_THREADPOOL_SIZE = Runtime
@@ -164,6 +179,28 @@ class BlockPoolSlice {
 
     this.timer = timer;
 
+    if (conf.getBoolean(DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_ENABLED_KEY,
+        DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_ENABLED_DEFAULT) &&
+        !volume.isTransientStorage()) {
+      this.replicaIndex = new ReplicaIndex(currentDir, conf.getLong(
+          DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_CHECKPOINT_RECORDS_KEY,
+          DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_CHECKPOINT_RECORDS_DEFAULT));
+      // A rollback moves the block files back from the trash or from the
+      // previous directory.
+      this.replicaIndexStale = StartupOption.getEnum(conf.get(
+          DFSConfigKeys.DFS_DATANODE_STARTUP_KEY,
+          StartupOption.REGULAR.toString())) == StartupOption.ROLLBACK;
+    } else {
+      this.replicaIndex = null;
+      this.replicaIndexStale = true;
+      // An index kept before would be out of date once enabled again.
+      ReplicaIndex.delete(currentDir);
+    }
+    this.directoryScannerEnabled = conf.getTimeDuration(
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_INTERVAL_KEY,
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_INTERVAL_DEFAULT,
+        TimeUnit.SECONDS) >= 0;
+
     // Files that were being written when the datanode was last shutdown
     // are now moved back to the data directory. It is possible that
     // in the future, we might want to do some sort of datanode-local
@@ -242,6 +279,10 @@ class BlockPoolSlice {
     return tmpDir;
   }
 
+  ReplicaIndex getReplicaIndex() {
+    return replicaIndex;
+  }
+
   /** Run DU on local drives.  It must be synchronized from caller. */
   void decDfsUsed(long value) {
     if (dfsUsage instanceof CachingGetSpaceUsed) {
@@ -411,25 +452,43 @@ class BlockPoolSlice {
   void getVolumeMap(ReplicaMap volumeMap,
                     final RamDiskReplicaTracker lazyWriteReplicaMap)
       throws IOException {
+    long startTime = Time.monotonicNow();
+    long numBlocks = getNumOfBlocks();
+    boolean useReplicaIndex = replicaIndex != null && !replicaIndexStale;
     // Recover lazy persist replicas, they will be added to the volumeMap
     // when we scan the finalized directory.
     if (lazypersistDir.exists()) {
       int numRecovered = moveLazyPersistReplicasToFinalized(lazypersistDir);
       FsDatasetImpl.LOG.info(
           "Recovered " + numRecovered + " replicas from " + lazypersistDir);
+      if (numRecovered > 0) {
+        // the replicas recovered are not in the index
+        useReplicaIndex = false;
+      }
+    }
+    if (replicaIndex != null) {
+      loadedFinalizedIds = new ConcurrentLinkedQueue<long[]>();
     }
 
+    long numFromIndex = -1;
     boolean  success = readReplicasFromCache(volumeMap, lazyWriteReplicaMap);
     if (!success) {
+      if (useReplicaIndex) {
+        numFromIndex = readReplicasFromIndex(volumeMap, lazyWriteReplicaMap);
+      }
       List<IOException> exceptions = Collections
           .synchronizedList(new ArrayList<IOException>());
       Queue<RecursiveAction> subTaskQueue =
           new ConcurrentLinkedQueue<RecursiveAction>();
 
-      // add finalized replicas
-      AddReplicaProcessor task = new AddReplicaProcessor(volumeMap,
-          finalizedDir, lazyWriteReplicaMap, true, exceptions, subTaskQueue);
-      ForkJoinTask<Void> finalizedTask = addReplicaThreadPool.submit(task);
+      // add finalized replicas, unless they were in the index
+      AddReplicaProcessor task;
+      ForkJoinTask<Void> finalizedTask = null;
+      if (numFromIndex < 0) {
+        task = new AddReplicaProcessor(volumeMap, finalizedDir,
+            lazyWriteReplicaMap, true, exceptions, subTaskQueue);
+        finalizedTask = addReplicaThreadPool.submit(task);
+      }
 
       // add rbw replicas
       task = new AddReplicaProcessor(volumeMap, rbwDir, lazyWriteReplicaMap,
@@ -437,7 +496,9 @@ class BlockPoolSlice {
       ForkJoinTask<Void> rbwTask = addReplicaThreadPool.submit(task);
 
       try {
-        finalizedTask.get();
+        if (finalizedTask != null) {
+          finalizedTask.get();
+        }
         rbwTask.get();
       } catch (InterruptedException | ExecutionException e) {
         exceptions.add(new IOException(
@@ -448,6 +509,135 @@ class BlockPoolSlice {
       //wait for all the tasks to finish.
       waitForSubTaskToFinish(subTaskQueue, exceptions);
     }
+    if (replicaIndex != null) {
+      startReplicaIndex(volumeMap, numFromIndex >= 0);
+    }
+
+    DataNodeMetrics metrics = getDataNodeMetrics();
+    if (metrics != null) {
+      long numLoaded = getNumOfBlocks() - numBlocks;
+      metrics.addReplicaMapLoad(Time.monotonicNow() - startTime);
+      if (success) {
+        metrics.incrReplicasLoadedFromCache(numLoaded);
+      } else if (numFromIndex >= 0) {
+        metrics.incrReplicasLoadedFromIndex(numFromIndex);
+        metrics.incrReplicasLoadedByScan(numLoaded - numFromIndex);
+      } else {
+        metrics.incrReplicasLoadedByScan(numLoaded);
+      }
+    }
+  }
+
+  private DataNodeMetrics getDataNodeMetrics() {
+    FsDatasetImpl dataset = (FsDatasetImpl) volume.getDataset();
+    DataNode datanode = dataset == null ? null : dataset.datanode;
+    return datanode == null ? null : datanode.getMetrics();
+  }
+
+  /**
+   * Add the finalized replicas of the replica index to the volumeMap.
+   *
+   * @return the number of replicas added, or -1 if there is no index or it
+   * could not be read.
+   */
+  private long readReplicasFromIndex(ReplicaMap volumeMap,
+      final RamDiskReplicaTracker lazyWriteReplicaMap) {
+    final List<ReplicaInfo> replicas = new ArrayList<>();
+    try {
+      boolean loaded = replicaIndex.load(new ReplicaIndex.Visitor() {
+        @Override
+        public void accept(long blockId, long genStamp, long numBytes) {
+          replicas.add(new ReplicaBuilder(ReplicaState.FINALIZED)
+              .setBlockId(blockId)
+              .setLength(numBytes)
+              .setGenerationStamp(genStamp)
+              .setFsVolume(volume)
+              .setDirectoryToUse(
+                  DatanodeUtil.idToBlockDir(finalizedDir, blockId))
+              .build());
+        }
+      });
+      if (!loaded) {
+        LOG.info("Replica index of " + this + " doesn't exist");
+        return -1;
+      }
+      if (!replicaIndex.isClosedCleanly() && !directoryScannerEnabled) {
+        // The records queued when the DataNode stopped were lost, and
+        // nothing would reconcile the replicas they were about.
+        LOG.info("Replica index of " + this + " was not closed cleanly " +
+            "and the directory scanner is disabled, scanning the volume");
+        return -1;
+      }
+    } catch (IOException e) {
+      LOG.warn("Failed to read the replica index of " + this, e);
+      return -1;
+    }
+    long numAdded = 0;
+    for (ReplicaInfo replica : replicas) {
+      if (volumeMap.addAndGet(bpid, replica) == replica) {
+        lazyWriteReplicaMap.discardReplica(bpid, replica.getBlockId(), false);
+        incrNumBlocks();
+        numAdded++;
+      } else if (LOG.isDebugEnabled()) {
+        // The index may be out of date: the duplicate replicas are left
+        // to the DirectoryScanner rather than deleted.
+        LOG.debug("Not adding " + replica + " from the replica index, " +
+            "another replica of the block was loaded");
+      }
+    }
+    LOG.info("Successfully read " + numAdded + " replicas from the " +
+        "replica index of " + this);
+    return numAdded;
+  }
+
+  /**
+   * Start logging the changes of the finalized replicas to the index. If
+   * the replicas were not loaded from the index, it is written anew from
+   * those found in the volumeMap.
+   */
+  private void startReplicaIndex(final ReplicaMap volumeMap,
+      boolean loaded) {
+    final Queue<long[]> finalizedIds = loadedFinalizedIds;
+    loadedFinalizedIds = null;
+    try {
+      replicaIndex.start(loaded);
+    } catch (IOException e) {
+      LOG.warn("Failed to start the replica index of " + this, e);
+      replicaIndex.close();
+      ReplicaIndex.delete(currentDir);
+      return;
+    }
+    if (loaded) {
+      return;
+    }
+    replicaIndex.checkpoint(new ReplicaIndex.Snapshot() {
+      @Override
+      public void visit(ReplicaIndex.Visitor visitor) throws IOException {
+        int numIds = 0;
+        for (long[] ids : finalizedIds) {
+          numIds += ids.length;
+        }
+        long[] sortedIds = new long[numIds];
+        numIds = 0;
+        for (long[] ids : finalizedIds) {
+          System.arraycopy(ids, 0, sortedIds, numIds, ids.length);
+          numIds += ids.length;
+        }
+        Arrays.sort(sortedIds);
+        for (int i = 0; i < sortedIds.length; i++) {
+          long blockId = sortedIds[i];
+          if (i > 0 && blockId == sortedIds[i - 1]) {
+            continue;
+          }
+          ReplicaInfo replica = volumeMap.get(bpid, blockId);
+          if (replica != null && replica.getVolume() == volume &&
+              replica.getState() == ReplicaState.FINALIZED) {
+            visitor.accept(blockId, replica.getGenerationStamp(),
+                replica.getNumBytes());
+          }
+        }
+      }
+    });
   }
 
   /**
@@ -659,6 +849,9 @@ class BlockPoolSlice {
       throws IOException {
     File[] files = fileIoProvider.listFiles(volume, dir);
     Arrays.sort(files, FILE_COMPARATOR);
+    final Queue<long[]> finalizedIds = isFinalized ? loadedFinalizedIds : null;
+    long[] ids = finalizedIds != null ? new long[files.length] : null;
+    int numIds = 0;
     for (int i = 0; i < files.length; i++) {
       File file = files[i];
       if (file.isDirectory()) {
@@ -686,6 +879,12 @@ class BlockPoolSlice {
       Block block = new Block(blockId, file.length(), genStamp);
       addReplicaToReplicasMap(block, volumeMap, lazyWriteReplicaMap,
           isFinalized);
+      if (ids != null) {
+        ids[numIds++] = blockId;
+      }
+    }
+    if (numIds > 0) {
+      finalizedIds.add(Arrays.copyOf(ids, numIds));
     }
   }
 
@@ -858,6 +1057,9 @@ class BlockPoolSlice {
   }
 
   void shutdown(BlockListAsLongs blocksListToPersist) {
+    if (replicaIndex != null) {
+      replicaIndex.close();
+    }
     saveReplicas(blocksListToPersist);
     saveDfsUsed();
     dfsUsedSaved = true;
@@ -919,6 +1121,9 @@ class BlockPoolSlice {
       // Now it is safe to add the replica into volumeMap
       // In case of any exception during parsing this cache file, fall back
       // to scan all the files on disk.
+      long[] finalizedIds = loadedFinalizedIds != null ?
+          new long[tmpReplicaMap.size(bpid)] : null;
+      int numFinalized = 0;
       for (Iterator<ReplicaInfo> iter =
           tmpReplicaMap.replicas(bpid).iterator(); iter.hasNext(); ) {
         ReplicaInfo info = iter.next();
@@ -926,6 +1131,13 @@ class BlockPoolSlice {
         // it from one GSet before adding to another.
         iter.remove();
         volumeMap.add(bpid, info);
+        if (finalizedIds != null &&
+            info.getState() == ReplicaState.FINALIZED) {
+          finalizedIds[numFinalized++] = info.getBlockId();
+        }
+      }
+      if (numFinalized > 0) {
+        loadedFinalizedIds.add(Arrays.copyOf(finalizedIds, numFinalized));
       }
       LOG.info("Successfully read replica from cache file : "
           + replicaFile.getPath());
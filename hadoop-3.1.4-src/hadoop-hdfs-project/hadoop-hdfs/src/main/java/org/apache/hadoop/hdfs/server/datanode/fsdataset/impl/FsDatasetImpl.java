@@ -40,7 +40,9 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.TimeUnit;
 
 import javax.management.NotCompliantMBeanException;
@@ -113,6 +115,8 @@ import org.apache.hadoop.util.DataChecksum;
 import org.apache.hadoop.util.DiskChecker.DiskErrorException;
 import org.apache.hadoop.util.DiskChecker.DiskOutOfSpaceException;
 import org.apache.hadoop.util.InstrumentedLock;
+import org.apache.hadoop.util.InstrumentedReadLock;
+import org.apache.hadoop.util.InstrumentedWriteLock;
 import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.hadoop.util.Time;
 import org.apache.hadoop.util.Timer;
@@ -179,7 +183,7 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
 
   @Override
   public FsVolumeImpl getVolume(final ExtendedBlock b) {
-    try (AutoCloseableLock lock = datasetLock.acquire()) {
+    try (AutoCloseableLock lock = acquireReplicaLock(b.getBlockId())) {
       final ReplicaInfo r =
           volumeMap.get(b.getBlockPoolId(), b.getLocalBlock());
       return r != null ? (FsVolumeImpl) r.getVolume() : null;
@@ -189,7 +193,7 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
   @Override // FsDatasetSpi
   public Block getStoredBlock(String bpid, long blkid)
       throws IOException {
-    try (AutoCloseableLock lock = datasetLock.acquire()) {
+    try (AutoCloseableLock lock = acquireReplicaLock(blkid)) {
       ReplicaInfo r = volumeMap.get(bpid, blkid);
       if (r == null) {
         return null;
@@ -202,7 +206,8 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
   public Set<? extends Replica> deepCopyReplica(String bpid)
       throws IOException {
     Set<? extends Replica> replicas = null;
-    try (AutoCloseableLock lock = datasetLock.acquire()) {
+    try (AutoCloseableLock lock = datasetLock.acquire();
+        AutoCloseableLock mapLock = volumeMap.getLock().acquire()) {
       replicas = new HashSet<>(volumeMap.replicas(bpid) == null ? Collections.
           EMPTY_SET : volumeMap.replicas(bpid));
     }
@@ -268,6 +273,11 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
   @VisibleForTesting
   final AutoCloseableLock datasetLock;
   private final Condition datasetLockCondition;
+  /**
+   * The locks of the stripes of replicas, or null if the operations on a
+   * single replica lock the whole dataset.
+   */
+  private final AutoCloseableLock[] replicaLocks;
   private static String blockPoolId = "";
   
   /**
@@ -280,14 +290,32 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
     this.dataStorage = storage;
     this.conf = conf;
     this.smallBufferSize = DFSUtilClient.getSmallBufferSize(conf);
-    this.datasetLock = new AutoCloseableLock(
-        new InstrumentedLock(getClass().getName(), LOG,
-          new ReentrantLock(true),
-          conf.getTimeDuration(
-            DFSConfigKeys.DFS_LOCK_SUPPRESS_WARNING_INTERVAL_KEY,
-            DFSConfigKeys.DFS_LOCK_SUPPRESS_WARNING_INTERVAL_DEFAULT,
-            TimeUnit.MILLISECONDS),
-          300));
+    final long lockWarningGapMs = conf.getTimeDuration(
+        DFSConfigKeys.DFS_LOCK_SUPPRESS_WARNING_INTERVAL_KEY,
+        DFSConfigKeys.DFS_LOCK_SUPPRESS_WARNING_INTERVAL_DEFAULT,
+        TimeUnit.MILLISECONDS);
+    final int numReplicaLocks = conf.getInt(
+        DFSConfigKeys.DFS_DATANODE_REPLICA_LOCK_STRIPES_KEY,
+        DFSConfigKeys.DFS_DATANODE_REPLICA_LOCK_STRIPES_DEFAULT);
+    if (numReplicaLocks > 0) {
+      // The dataset lock excludes the replica operations, which share it.
+      ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock(true);
+      this.datasetLock = new AutoCloseableLock(
+          new InstrumentedWriteLock(getClass().getName(), LOG, rwLock,
+              lockWarningGapMs, 300));
+      Lock sharedLock = new InstrumentedReadLock(getClass().getName(), LOG,
+          rwLock, lockWarningGapMs, 300);
+      this.replicaLocks = new AutoCloseableLock[numReplicaLocks];
+      for (int i = 0; i < numReplicaLocks; i++) {
+        replicaLocks[i] = new ReplicaStripeLock(sharedLock);
+      }
+      LOG.info("Locking the replicas by " + numReplicaLocks + " stripes");
+    } else {
+      this.datasetLock = new AutoCloseableLock(
+          new InstrumentedLock(getClass().getName(), LOG,
+            new ReentrantLock(true), lockWarningGapMs, 300));
+      this.replicaLocks = null;
+    }
     this.datasetLockCondition = datasetLock.newCondition();
 
     // The number of volumes required for operation is the total number
@@ -327,7 +355,14 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
     }
 
     storageMap = new ConcurrentHashMap<String, DatanodeStorage>();
-    volumeMap = new ReplicaMap(datasetLock);
+    // The replica operations that only hold a stripe change the map
+    // concurrently, so the map then has a lock of its own.
+    volumeMap = new ReplicaMap(replicaLocks == null ? datasetLock :
+        new AutoCloseableLock());
+    if (conf.getBoolean(DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_ENABLED_KEY,
+        DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_ENABLED_DEFAULT)) {
+      volumeMap.setListener(new ReplicaIndex.Updater());
+    }
     ramDiskReplicaTracker = RamDiskReplicaTracker.getInstance(conf, this);
 
     @SuppressWarnings("unchecked")
@@ -384,6 +419,67 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
     return datasetLock.acquire();
   }
 
+  /**
+   * Acquire the lock for an operation on the replica of the given block only.
+   * With {@link DFSConfigKeys#DFS_DATANODE_REPLICA_LOCK_STRIPES_KEY} set,
+   * this is the lock of the stripe of the block, which shares the dataset
+   * lock with the operations on the replicas of the other stripes; otherwise
+   * it is the dataset lock. The operation must not acquire the dataset lock,
+   * nor the lock of another replica, while holding it.
+   */
+  @VisibleForTesting
+  AutoCloseableLock acquireReplicaLock(long blockId) {
+    if (replicaLocks == null) {
+      return datasetLock.acquire();
+    }
+    // block ids are mostly sequential, so the stripes are evenly used
+    int stripe = (int) ((blockId & Long.MAX_VALUE) % replicaLocks.length);
+    return replicaLocks[stripe].acquire();
+  }
+
+  /**
+   * Locks the shared dataset lock, then the lock of a stripe of replicas.
+   * Its conditions are those of the stripe lock: awaiting one keeps the
+   * shared dataset lock.
+   */
+  private static final class ReplicaStripeLock extends AutoCloseableLock {
+    private final Lock sharedLock;
+
+    ReplicaStripeLock(Lock sharedLock) {
+      super(new ReentrantLock());
+      this.sharedLock = sharedLock;
+    }
+
+    @Override
+    public AutoCloseableLock acquire() {
+      sharedLock.lock();
+      try {
+        return super.acquire();
+      } catch (RuntimeException | Error e) {
+        sharedLock.unlock();
+        throw e;
+      }
+    }
+
+    @Override
+    public void release() {
+      super.release();
+      sharedLock.unlock();
+    }
+
+    @Override
+    public boolean tryLock() {
+      if (!sharedLock.tryLock()) {
+        return false;
+      }
+      if (!super.tryLock()) {
+        sharedLock.unlock();
+        return false;
+      }
+      return true;
+    }
+  }
+
   /**
    * Gets initial volume failure information for all volumes that failed
    * immediately at startup.  The method works by determining the set difference
@@ -558,16 +654,18 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
           // not scan disks.
           for (String bpid : volumeMap.getBlockPoolList()) {
             List<ReplicaInfo> blocks = new ArrayList<>();
-            for (Iterator<ReplicaInfo> it =
-                  volumeMap.replicas(bpid).iterator(); it.hasNext();) {
-              ReplicaInfo block = it.next();
-              final StorageLocation blockStorageLocation =
-                  block.getVolume().getStorageLocation();
-              LOG.trace("checking for block " + block.getBlockId() +
-                  " with storageLocation " + blockStorageLocation);
-              if (blockStorageLocation.equals(sdLocation)) {
-                blocks.add(block);
-                it.remove();
+            try (AutoCloseableLock mapLock = volumeMap.getLock().acquire()) {
+              for (Iterator<ReplicaInfo> it =
+                    volumeMap.replicas(bpid).iterator(); it.hasNext();) {
+                ReplicaInfo block = it.next();
+                final StorageLocation blockStorageLocation =
+                    block.getVolume().getStorageLocation();
+                LOG.trace("checking for block " + block.getBlockId() +
+                    " with storageLocation " + blockStorageLocation);
+                if (blockStorageLocation.equals(sdLocation)) {
+                  blocks.add(block);
+                  it.remove();
+                }
               }
             }
             blkToInvalidate.put(bpid, blocks);
@@ -790,7 +888,7 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
       long seekOffset) throws IOException {
 
     ReplicaInfo info;
-    try (AutoCloseableLock lock = datasetLock.acquire()) {
+    try (AutoCloseableLock lock = acquireReplicaLock(b.getBlockId())) {
       info = volumeMap.get(b.getBlockPoolId(), b.getLocalBlock());
     }
 
@@ -1393,6 +1491,8 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
           // finalize the replica if RBW
           if (replicaInfo.getState() == ReplicaState.RBW) {
             finalizeReplica(b.getBlockPoolId(), replicaInfo);
+          } else {
+            volumeMap.replicaUpdated(b.getBlockPoolId(), replicaInfo);
           }
           return replicaInfo;
         }
@@ -1407,7 +1507,10 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
   public ReplicaHandler createRbw(
       StorageType storageType, String storageId, ExtendedBlock b,
       boolean allowLazyPersist) throws IOException {
-    try (AutoCloseableLock lock = datasetLock.acquire()) {
+    // reserving memory for a lazy persist replica may evict others
+    final boolean lazyPersist = allowLazyPersist && lazyWriter != null;
+    try (AutoCloseableLock lock = lazyPersist ? datasetLock.acquire() :
+        acquireReplicaLock(b.getBlockId())) {
       ReplicaInfo replicaInfo = volumeMap.get(b.getBlockPoolId(),
           b.getBlockId());
       if (replicaInfo != null) {
@@ -1421,8 +1524,7 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
       // Use ramdisk only if block size is a multiple of OS page size.
       // This simplifies reservation for partially used replicas
       // significantly.
-      if (allowLazyPersist &&
-          lazyWriter != null &&
+      if (lazyPersist &&
           b.getNumBytes() % cacheManager.getOsPageSize() == 0 &&
           reserveLockedMemory(b.getNumBytes())) {
         try {
@@ -1638,7 +1740,7 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
     ReplicaInfo lastFoundReplicaInfo = null;
     boolean isInPipeline = false;
     do {
-      try (AutoCloseableLock lock = datasetLock.acquire()) {
+      try (AutoCloseableLock lock = acquireReplicaLock(b.getBlockId())) {
         ReplicaInfo currentReplicaInfo =
             volumeMap.get(b.getBlockPoolId(), b.getBlockId());
         if (currentReplicaInfo == lastFoundReplicaInfo) {
@@ -1691,7 +1793,7 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
       invalidate(b.getBlockPoolId(), new Block[] { lastFoundReplicaInfo },
           false);
     }
-    try (AutoCloseableLock lock = datasetLock.acquire()) {
+    try (AutoCloseableLock lock = acquireReplicaLock(b.getBlockId())) {
       FsVolumeReference ref = volumes.getNextVolume(storageType, storageId, b
           .getNumBytes());
       FsVolumeImpl v = (FsVolumeImpl) ref.getVolume();
@@ -1742,7 +1844,7 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
       throws IOException {
     ReplicaInfo replicaInfo = null;
     ReplicaInfo finalizedReplicaInfo = null;
-    try (AutoCloseableLock lock = datasetLock.acquire()) {
+    try (AutoCloseableLock lock = acquireReplicaLock(b.getBlockId())) {
       if (Thread.interrupted()) {
         // Don't allow data modifications from interrupted threads
         throw new IOException("Cannot finalize block from Interrupted Thread");
@@ -1773,7 +1875,8 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
 
   private ReplicaInfo finalizeReplica(String bpid, ReplicaInfo replicaInfo)
       throws IOException {
-    try (AutoCloseableLock lock = datasetLock.acquire()) {
+    try (AutoCloseableLock lock =
+        acquireReplicaLock(replicaInfo.getBlockId())) {
       // Compare generation stamp of old and new replica before finalizing
       if (volumeMap.get(bpid, replicaInfo.getBlockId()).getGenerationStamp()
           > replicaInfo.getGenerationStamp()) {
@@ -1871,7 +1974,8 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
         new HashMap<String, BlockListAsLongs.Builder>();
 
     List<FsVolumeImpl> curVolumes = null;
-    try (AutoCloseableLock lock = datasetLock.acquire()) {
+    try (AutoCloseableLock lock = datasetLock.acquire();
+        AutoCloseableLock mapLock = volumeMap.getLock().acquire()) {
       curVolumes = volumes.getVolumes();
       for (FsVolumeSpi v : curVolumes) {
         builders.put(v.getStorageID(), BlockListAsLongs.builder(maxDataLength));
@@ -1930,7 +2034,8 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
    */
   @Override
   public List<ReplicaInfo> getFinalizedBlocks(String bpid) {
-    try (AutoCloseableLock lock = datasetLock.acquire()) {
+    try (AutoCloseableLock lock = datasetLock.acquire();
+        AutoCloseableLock mapLock = volumeMap.getLock().acquire()) {
       final List<ReplicaInfo> finalized = new ArrayList<ReplicaInfo>(
           volumeMap.size(bpid));
       for (ReplicaInfo b : volumeMap.replicas(bpid)) {
@@ -2268,7 +2373,7 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
 
   @Override // FsDatasetSpi
   public boolean contains(final ExtendedBlock block) {
-    try (AutoCloseableLock lock = datasetLock.acquire()) {
+    try (AutoCloseableLock lock = acquireReplicaLock(block.getBlockId())) {
       final long blockId = block.getLocalBlock().getBlockId();
       final String bpid = block.getBlockPoolId();
       final ReplicaInfo r = volumeMap.get(bpid, blockId);
@@ -2563,6 +2668,7 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
             + memBlockInfo.getBlockDataLength());
         memBlockInfo.setNumBytes(memBlockInfo.getBlockDataLength());
       }
+      volumeMap.replicaUpdated(bpid, memBlockInfo);
     }
 
     // Send corrupt block report outside the lock
@@ -2809,7 +2915,7 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
   @Override // FsDatasetSpi
   public long getReplicaVisibleLength(final ExtendedBlock block)
   throws IOException {
-    try (AutoCloseableLock lock = datasetLock.acquire()) {
+    try (AutoCloseableLock lock = acquireReplicaLock(block.getBlockId())) {
       final Replica replica = getReplicaInfo(block.getBlockPoolId(),
           block.getBlockId());
       if (replica.getGenerationStamp() < block.getGenerationStamp()) {
@@ -2959,7 +3065,7 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
   @Override // FsDatasetSpi
   public BlockLocalPathInfo getBlockLocalPathInfo(ExtendedBlock block)
       throws IOException {
-    try (AutoCloseableLock lock = datasetLock.acquire()) {
+    try (AutoCloseableLock lock = acquireReplicaLock(block.getBlockId())) {
       final Replica replica = volumeMap.get(block.getBlockPoolId(),
           block.getBlockId());
       if (replica == null) {
@@ -3385,7 +3491,8 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
   }
 
   void stopAllDataxceiverThreads(FsVolumeImpl volume) {
-    try (AutoCloseableLock lock = datasetLock.acquire()) {
+    try (AutoCloseableLock lock = datasetLock.acquire();
+        AutoCloseableLock mapLock = volumeMap.getLock().acquire()) {
       for (String bpid : volumeMap.getBlockPoolList()) {
         Collection<ReplicaInfo> replicas = volumeMap.replicas(bpid);
         for (ReplicaInfo replicaInfo : replicas) {
@@ -498,6 +498,12 @@ public class FsVolumeImpl implements FsVolumeSpi {
     return bp;
   }
 
+  /** @return the replica index of the block pool, or null if it has none. */
+  ReplicaIndex getReplicaIndex(String bpid) {
+    BlockPoolSlice bp = bpSlices.get(bpid);
+    return bp == null ? null : bp.getReplicaIndex();
+  }
+
   @Override
   public URI getBaseURI() {
     return new File(currentDir.getParent()).toURI();
@@ -0,0 +1,749 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hdfs.server.common.HdfsServerConstants.ReplicaState;
+import org.apache.hadoop.hdfs.server.datanode.DirectoryScanner;
+import org.apache.hadoop.hdfs.server.datanode.ReplicaInfo;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi;
+import org.apache.hadoop.io.IOUtils;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A durable index of the finalized replicas of a block pool slice, loaded
+ * at startup instead of scanning the finalized directory of the volume.
+ * <p>
+ * The index is a checkpoint of the replicas, each a block id, a generation
+ * stamp and a length, and the logs of the replicas added and removed since
+ * the checkpoint. A record, with its checksum, is queued for each change of
+ * the replica map, under its lock, and the records queued are written to
+ * the log by a background thread. Once the logs have enough records, the
+ * writer starts a new log and the previous ones are merged into a new
+ * checkpoint in the background. A log cut short by a crash is read up to
+ * its last whole record: the replicas the index then misses, or still has
+ * after they were deleted, are reconciled by the {@link DirectoryScanner}.
+ * The last log of an index closed cleanly ends with a close record, see
+ * {@link #isClosedCleanly()}.
+ * <p>
+ * The checkpoint has a sequence number: it holds the changes of the logs
+ * before it, and the logs from it on are applied to it when it is loaded.
+ */
+class ReplicaIndex {
+  static final Log LOG = LogFactory.getLog(ReplicaIndex.class);
+
+  static final String CHECKPOINT_FILE = "replica-index";
+  private static final String LOG_FILE_PREFIX = CHECKPOINT_FILE + ".log.";
+  private static final String TMP_FILE = CHECKPOINT_FILE + ".tmp";
+  private static final int CHECKPOINT_MAGIC = 0x52494458;
+  private static final int LOG_MAGIC = 0x52494c47;
+  private static final int VERSION = 1;
+  /** The magic number, the version and the sequence number of a file. */
+  private static final int HEADER_SIZE = 4 + 4 + 8;
+  /** The block id, the generation stamp and the length of a replica. */
+  private static final int ENTRY_SIZE = 3 * 8;
+  /** The number of replicas and the checksum of a checkpoint. */
+  private static final int TRAILER_SIZE = 8 + 4;
+  /** An operation, a replica and the checksum of both. */
+  @VisibleForTesting
+  static final int RECORD_SIZE = 1 + ENTRY_SIZE + 4;
+  private static final byte OP_ADD = 1;
+  private static final byte OP_REMOVE = 2;
+  /** The last record of a log closed at shutdown. */
+  private static final byte OP_CLOSE = 3;
+
+  /** Visits the replicas of an index. */
+  interface Visitor {
+    void accept(long blockId, long genStamp, long numBytes)
+        throws IOException;
+  }
+
+  /** Supplies the replicas of a checkpoint. */
+  interface Snapshot {
+    void visit(Visitor visitor) throws IOException;
+  }
+
+  /** Writes the checkpoints of all the indexes, one at a time. */
+  private static ExecutorService checkpointer;
+  /** Writes the records queued to the logs of all the indexes. */
+  private static ExecutorService writer;
+
+  private final File dir;
+  private final long checkpointRecords;
+  private final CRC32 recordChecksum = new CRC32();
+  private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+
+  // Guarded by this, and only held for as long as it takes to queue a
+  // record: the log files are written by the writer alone, once started.
+  /** Whether the changes of the replicas are logged. */
+  private boolean started;
+  /** The records queued and not written to the log yet. */
+  private final ByteArrayOutputStream queued = new ByteArrayOutputStream();
+  private long numQueued;
+  /** Whether a write of the records queued is scheduled. */
+  private boolean writeScheduled;
+  /**
+   * Whether there is a checkpoint, or one is scheduled, for the logs to be
+   * merged into.
+   */
+  private boolean checkpointed;
+  /** The last checkpoint scheduled. */
+  private Future<?> checkpointing;
+
+  // Confined to the writer, or to the thread starting or closing the index.
+  /** The log written to, or null if the index is not started. */
+  private FileOutputStream logOut;
+  /** The sequence number of the last log. */
+  private long logSeq;
+  /** The records of the logs not merged into a checkpoint yet. */
+  private long logRecords;
+  /** Whether the last log loaded ends with a close record. */
+  private boolean closedCleanly;
+
+  private volatile boolean disabled;
+
+  /**
+   * @param dir               the directory of the files of the index
+   * @param checkpointRecords the log records after which a new checkpoint
+   *                          is written
+   */
+  ReplicaIndex(File dir, long checkpointRecords) {
+    this.dir = dir;
+    this.checkpointRecords = checkpointRecords;
+  }
+
+  private static synchronized ExecutorService getCheckpointer() {
+    if (checkpointer == null) {
+      checkpointer = Executors.newSingleThreadExecutor(
+          new ThreadFactoryBuilder().setDaemon(true)
+              .setNameFormat("ReplicaIndexCheckpointer").build());
+    }
+    return checkpointer;
+  }
+
+  private static synchronized ExecutorService getWriter() {
+    if (writer == null) {
+      writer = Executors.newSingleThreadExecutor(
+          new ThreadFactoryBuilder().setDaemon(true)
+              .setNameFormat("ReplicaIndexWriter").build());
+    }
+    return writer;
+  }
+
+  /** Delete the files of the index kept in the given directory. */
+  static void delete(File dir) {
+    File[] files = dir.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      if (file.getName().startsWith(CHECKPOINT_FILE) && !file.delete()) {
+        LOG.warn("Failed to delete " + file);
+      }
+    }
+  }
+
+  private File getLogFile(long seq) {
+    return new File(dir, LOG_FILE_PREFIX + seq);
+  }
+
+  /** @return the sequence numbers of the logs, in order. */
+  private List<Long> listLogs() {
+    List<Long> seqs = new ArrayList<>();
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        String name = file.getName();
+        if (name.startsWith(LOG_FILE_PREFIX)) {
+          try {
+            seqs.add(Long.parseLong(name.substring(LOG_FILE_PREFIX.length())));
+          } catch (NumberFormatException e) {
+            LOG.warn("Ignoring " + file);
+          }
+        }
+      }
+    }
+    seqs.sort(null);
+    return seqs;
+  }
+
+  /**
+   * Visit the replicas of the index: the replicas of the checkpoint, with
+   * the changes of the logs applied.
+   *
+   * @return false if there is no checkpoint to load.
+   * @throws IOException if the index cannot be read, in which case some of
+   * its replicas may have been visited already.
+   */
+  synchronized boolean load(Visitor visitor) throws IOException {
+    if (!new File(dir, CHECKPOINT_FILE).exists()) {
+      return false;
+    }
+    long[] merged = merge(Long.MAX_VALUE, visitor);
+    logSeq = merged[0];
+    logRecords = merged[1];
+    closedCleanly = endsWithClose(getLogFile(logSeq));
+    return true;
+  }
+
+  /**
+   * @return whether the last log loaded ends with the record written when
+   * the index was closed, at the shutdown of the DataNode. Otherwise the
+   * DataNode stopped without closing the index and the records it had
+   * queued were lost.
+   */
+  synchronized boolean isClosedCleanly() {
+    return closedCleanly;
+  }
+
+  private static boolean endsWithClose(File file) throws IOException {
+    long length = file.length();
+    if (length < HEADER_SIZE + RECORD_SIZE ||
+        (length - HEADER_SIZE) % RECORD_SIZE != 0) {
+      return false;
+    }
+    byte[] buf = new byte[RECORD_SIZE];
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      raf.seek(length - RECORD_SIZE);
+      raf.readFully(buf);
+    }
+    CRC32 checksum = new CRC32();
+    checksum.update(buf, 0, RECORD_SIZE - 4);
+    ByteBuffer r = ByteBuffer.wrap(buf);
+    return r.get(0) == OP_CLOSE &&
+        r.getInt(RECORD_SIZE - 4) == (int) checksum.getValue();
+  }
+
+  /**
+   * Visit the replicas of the checkpoint, with the changes of the logs up
+   * to the given one applied.
+   *
+   * @return the sequence number of the last log read and the number of
+   * records read.
+   */
+  private long[] merge(long lastSeq, Visitor visitor) throws IOException {
+    File checkpoint = new File(dir, CHECKPOINT_FILE);
+    long length = checkpoint.length();
+    CheckedInputStream checked = new CheckedInputStream(
+        new BufferedInputStream(new FileInputStream(checkpoint)),
+        new CRC32());
+    try (DataInputStream in = new DataInputStream(checked)) {
+      long seq = readHeader(in, CHECKPOINT_MAGIC, checkpoint);
+      long numEntries = (length - HEADER_SIZE - TRAILER_SIZE) / ENTRY_SIZE;
+      if (numEntries < 0 ||
+          HEADER_SIZE + numEntries * ENTRY_SIZE + TRAILER_SIZE != length) {
+        throw new IOException("Invalid length " + length + " of " +
+            checkpoint);
+      }
+      // The last change of each replica since the checkpoint, the
+      // generation stamp and the length of the replica, or null if it was
+      // removed.
+      Map<Long, long[]> changes = new HashMap<>();
+      long[] merged = {seq - 1, 0};
+      for (long s : listLogs()) {
+        if (s >= seq && s <= lastSeq) {
+          merged[0] = s;
+          merged[1] += readLog(s, changes);
+        }
+      }
+      for (long i = 0; i < numEntries; i++) {
+        long blockId = in.readLong();
+        long genStamp = in.readLong();
+        long numBytes = in.readLong();
+        if (!changes.containsKey(blockId)) {
+          visitor.accept(blockId, genStamp, numBytes);
+        }
+      }
+      long count = in.readLong();
+      int checksum = (int) checked.getChecksum().getValue();
+      if (count != numEntries || in.readInt() != checksum) {
+        throw new IOException("Checksum error in " + checkpoint);
+      }
+      for (Map.Entry<Long, long[]> change : changes.entrySet()) {
+        long[] replica = change.getValue();
+        if (replica != null) {
+          visitor.accept(change.getKey(), replica[0], replica[1]);
+        }
+      }
+      return merged;
+    }
+  }
+
+  private static long readHeader(DataInputStream in, int magic, File file)
+      throws IOException {
+    if (in.readInt() != magic) {
+      throw new IOException("Invalid magic number in " + file);
+    }
+    int version = in.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported version " + version + " of " +
+          file);
+    }
+    return in.readLong();
+  }
+
+  /**
+   * Read the records of a log up to its end, or to its first record which
+   * is not whole.
+   *
+   * @return the number of records read.
+   */
+  private long readLog(long seq, Map<Long, long[]> changes)
+      throws IOException {
+    File file = getLogFile(seq);
+    if (file.length() < HEADER_SIZE) {
+      // the log was started just before a crash
+      return 0;
+    }
+    long records = 0;
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(file)))) {
+      if (readHeader(in, LOG_MAGIC, file) != seq) {
+        throw new IOException("Invalid sequence number in " + file);
+      }
+      byte[] buf = new byte[RECORD_SIZE];
+      CRC32 checksum = new CRC32();
+      while (true) {
+        try {
+          in.readFully(buf);
+        } catch (EOFException e) {
+          break;
+        }
+        checksum.reset();
+        checksum.update(buf, 0, RECORD_SIZE - 4);
+        ByteBuffer r = ByteBuffer.wrap(buf);
+        byte op = r.get();
+        long blockId = r.getLong();
+        long genStamp = r.getLong();
+        long numBytes = r.getLong();
+        if (r.getInt() != (int) checksum.getValue() ||
+            (op != OP_ADD && op != OP_REMOVE && op != OP_CLOSE)) {
+          LOG.warn("Ignoring the records of " + file + " from record " +
+              records + " on, which is corrupt");
+          break;
+        }
+        if (op == OP_CLOSE) {
+          continue;
+        }
+        changes.put(blockId,
+            op == OP_ADD ? new long[] {genStamp, numBytes} : null);
+        records++;
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Start logging the changes of the replicas to a new log. If the index
+   * was not loaded, its files are deleted first, and the replicas then
+   * have to be written to a checkpoint by {@link #checkpoint}. The index
+   * must not be started already.
+   */
+  void start(boolean loaded) throws IOException {
+    disabled = false;
+    if (!loaded) {
+      delete(dir);
+      logSeq = 0;
+      logRecords = 0;
+    }
+    // sync the new log, for it to be the last one after a crash rather
+    // than the previous one, which ends with a close record
+    openLog(logSeq + 1, true);
+    synchronized (this) {
+      started = true;
+      checkpointed = loaded;
+    }
+    if (logRecords >= checkpointRecords) {
+      compact();
+    }
+  }
+
+  private void openLog(long seq, boolean sync) throws IOException {
+    FileOutputStream out = new FileOutputStream(getLogFile(seq));
+    try {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(LOG_MAGIC).putInt(VERSION).putLong(seq);
+      out.write(header.array());
+      if (sync) {
+        out.getChannel().force(true);
+      }
+    } catch (IOException e) {
+      IOUtils.cleanup(LOG, out);
+      throw e;
+    }
+    logOut = out;
+    logSeq = seq;
+  }
+
+  /**
+   * Sync and close the log, after appending a close record to it if the
+   * index is closed.
+   */
+  private void closeLog(boolean close) throws IOException {
+    if (logOut != null) {
+      try {
+        if (close) {
+          ByteBuffer r = ByteBuffer.allocate(RECORD_SIZE);
+          encode(r, new CRC32(), OP_CLOSE, 0, 0, 0);
+          logOut.write(r.array());
+        }
+        logOut.getChannel().force(true);
+      } finally {
+        IOUtils.cleanup(LOG, logOut);
+        logOut = null;
+      }
+    }
+  }
+
+  /** Log a finalized replica added, or changed. */
+  void add(long blockId, long genStamp, long numBytes) {
+    append(OP_ADD, blockId, genStamp, numBytes);
+  }
+
+  /** Log a finalized replica removed. */
+  void remove(long blockId) {
+    append(OP_REMOVE, blockId, 0, 0);
+  }
+
+  private static void encode(ByteBuffer r, CRC32 checksum, byte op,
+      long blockId, long genStamp, long numBytes) {
+    r.clear();
+    r.put(op).putLong(blockId).putLong(genStamp).putLong(numBytes);
+    checksum.reset();
+    checksum.update(r.array(), 0, r.position());
+    r.putInt((int) checksum.getValue());
+  }
+
+  /**
+   * Queue a record, called under the lock of the replica map: the record
+   * is written to the log by the writer.
+   */
+  private synchronized void append(byte op, long blockId, long genStamp,
+      long numBytes) {
+    if (!started) {
+      return;
+    }
+    encode(record, recordChecksum, op, blockId, genStamp, numBytes);
+    queued.write(record.array(), 0, RECORD_SIZE);
+    numQueued++;
+    if (!writeScheduled) {
+      writeScheduled = true;
+      getWriter().execute(new Runnable() {
+        @Override
+        public void run() {
+          writeQueued();
+        }
+      });
+    }
+  }
+
+  /**
+   * Write the records queued to the log, and start a new log once it has
+   * enough records. Run by the writer.
+   */
+  private void writeQueued() {
+    byte[] records;
+    long numRecords;
+    boolean roll;
+    synchronized (this) {
+      records = queued.toByteArray();
+      numRecords = numQueued;
+      queued.reset();
+      numQueued = 0;
+      writeScheduled = false;
+      roll = started && checkpointed &&
+          (checkpointing == null || checkpointing.isDone());
+    }
+    if (disabled) {
+      IOUtils.cleanup(LOG, logOut);
+      logOut = null;
+    }
+    if (logOut == null || numRecords == 0) {
+      return;
+    }
+    try {
+      logOut.write(records);
+      logRecords += numRecords;
+      if (roll && logRecords >= checkpointRecords) {
+        closeLog(false);
+        openLog(logSeq + 1, false);
+        compact();
+      }
+    } catch (IOException e) {
+      disable(e);
+      IOUtils.cleanup(LOG, logOut);
+      logOut = null;
+    }
+  }
+
+  /** Merge the logs before the last one into a new checkpoint. */
+  private void compact() {
+    final long seq = logSeq;
+    logRecords = 0;
+    schedule(seq, new Snapshot() {
+      @Override
+      public void visit(Visitor visitor) throws IOException {
+        merge(seq - 1, visitor);
+      }
+    });
+  }
+
+  /**
+   * Write the given replicas to a checkpoint in the background, after the
+   * index was started but not loaded. The changes logged since the start
+   * are applied to the checkpoint when it is loaded, so the replicas can
+   * be read from the replica map in use.
+   */
+  synchronized void checkpoint(Snapshot snapshot) {
+    // no new log is started by the writer before the checkpoint
+    schedule(logSeq, snapshot);
+    checkpointed = true;
+  }
+
+  private synchronized void schedule(final long seq,
+      final Snapshot snapshot) {
+    checkpointing = getCheckpointer().submit(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          writeCheckpoint(seq, snapshot);
+        } catch (IOException e) {
+          disable(e);
+        }
+      }
+    });
+  }
+
+  private void writeCheckpoint(long seq, Snapshot snapshot)
+      throws IOException {
+    long start = System.currentTimeMillis();
+    File tmp = new File(dir, TMP_FILE);
+    FileOutputStream fos = new FileOutputStream(tmp);
+    final long[] count = {0};
+    boolean success = false;
+    try {
+      CheckedOutputStream checked = new CheckedOutputStream(
+          new BufferedOutputStream(fos), new CRC32());
+      final DataOutputStream out = new DataOutputStream(checked);
+      out.writeInt(CHECKPOINT_MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(seq);
+      snapshot.visit(new Visitor() {
+        @Override
+        public void accept(long blockId, long genStamp, long numBytes)
+            throws IOException {
+          out.writeLong(blockId);
+          out.writeLong(genStamp);
+          out.writeLong(numBytes);
+          count[0]++;
+        }
+      });
+      out.writeLong(count[0]);
+      out.writeInt((int) checked.getChecksum().getValue());
+      out.flush();
+      fos.getChannel().force(true);
+      success = true;
+    } finally {
+      IOUtils.cleanup(LOG, fos);
+      if (!success && !tmp.delete()) {
+        LOG.warn("Failed to delete " + tmp);
+      }
+    }
+    Files.move(tmp.toPath(), new File(dir, CHECKPOINT_FILE).toPath(),
+        StandardCopyOption.ATOMIC_MOVE);
+    for (long s : listLogs()) {
+      if (s < seq && !getLogFile(s).delete()) {
+        LOG.warn("Failed to delete " + getLogFile(s));
+      }
+    }
+    if (disabled) {
+      delete(dir);
+      return;
+    }
+    LOG.info("Wrote a checkpoint of " + count[0] + " replicas to " + dir +
+        " in " + (System.currentTimeMillis() - start) + "ms");
+  }
+
+  /**
+   * Stop logging and delete the index after a failure to write it, so that
+   * the volume is scanned at the next startup. The log is closed by the
+   * writer.
+   */
+  private void disable(IOException e) {
+    LOG.warn("Disabling the replica index in " + dir, e);
+    disabled = true;
+    synchronized (this) {
+      started = false;
+      queued.reset();
+      numQueued = 0;
+    }
+    delete(dir);
+  }
+
+  /**
+   * Stop logging, write the records queued and close the log, and wait for
+   * the checkpoint being written, if it was started.
+   */
+  void close() {
+    Future<?> pending;
+    synchronized (this) {
+      started = false;
+      pending = checkpointing;
+      checkpointing = null;
+    }
+    waitFor(getWriter().submit(new Runnable() {
+      @Override
+      public void run() {
+        writeQueued();
+        if (disabled) {
+          return;
+        }
+        try {
+          closeLog(true);
+        } catch (IOException e) {
+          LOG.warn("Failed to sync the replica index log in " + dir, e);
+        }
+      }
+    }));
+    if (pending != null && !pending.cancel(false)) {
+      waitFor(pending);
+    }
+  }
+
+  private static void waitFor(Future<?> future) {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | CancellationException e) {
+      LOG.warn("Failed to write the replica index", e);
+    }
+  }
+
+  /** Wait for the records queued to be written to the log. */
+  @VisibleForTesting
+  void waitForWrites() {
+    waitFor(getWriter().submit(new Runnable() {
+      @Override
+      public void run() {
+      }
+    }));
+  }
+
+  /**
+   * Wait for the records queued to be written, and for the checkpoint
+   * being written, if any.
+   */
+  @VisibleForTesting
+  void waitForCheckpoint() {
+    waitForWrites();
+    Future<?> pending;
+    synchronized (this) {
+      pending = checkpointing;
+    }
+    if (pending != null) {
+      waitFor(pending);
+    }
+  }
+
+  /** @return the records logged since the checkpoint, once written. */
+  @VisibleForTesting
+  long getLogRecords() {
+    waitForWrites();
+    return logRecords;
+  }
+
+  @VisibleForTesting
+  boolean isDisabled() {
+    return disabled;
+  }
+
+  @Override
+  public String toString() {
+    return "ReplicaIndex(" + dir + ")";
+  }
+
+  /**
+   * Logs the finalized replicas added to and removed from a replica map to
+   * the indexes of their volumes.
+   */
+  static class Updater implements ReplicaMap.Listener {
+    @Override
+    public void replicaAdded(String bpid, ReplicaInfo replica,
+        ReplicaInfo old) {
+      boolean finalized = replica.getState() == ReplicaState.FINALIZED;
+      if (old != null && old != replica &&
+          (!finalized || old.getVolume() != replica.getVolume())) {
+        replicaRemoved(bpid, old);
+      }
+      if (finalized) {
+        ReplicaIndex index = getIndex(bpid, replica);
+        if (index != null) {
+          index.add(replica.getBlockId(), replica.getGenerationStamp(),
+              replica.getNumBytes());
+        }
+      }
+    }
+
+    @Override
+    public void replicaRemoved(String bpid, ReplicaInfo replica) {
+      if (replica.getState() == ReplicaState.FINALIZED) {
+        ReplicaIndex index = getIndex(bpid, replica);
+        if (index != null) {
+          index.remove(replica.getBlockId());
+        }
+      }
+    }
+
+    private static ReplicaIndex getIndex(String bpid, ReplicaInfo replica) {
+      FsVolumeSpi volume = replica.getVolume();
+      return volume instanceof FsVolumeImpl ?
+          ((FsVolumeImpl) volume).getReplicaIndex(bpid) : null;
+    }
+  }
+}
@@ -38,6 +38,22 @@ class ReplicaMap {
   // Map of block pool Id to a set of ReplicaInfo.
   private final Map<String, FoldedTreeSet<ReplicaInfo>> map = new HashMap<>();
 
+  /**
+   * Notified, under the lock of the map, of the replicas added to, replaced
+   * in and removed from the map.
+   */
+  interface Listener {
+    /**
+     * @param replica the replica added
+     * @param old     the replica replaced, or null
+     */
+    void replicaAdded(String bpid, ReplicaInfo replica, ReplicaInfo old);
+
+    void replicaRemoved(String bpid, ReplicaInfo replica);
+  }
+
+  private Listener listener;
+
   // Special comparator used to compare Long to Block ID in the TreeSet.
   private static final Comparator<Object> LONG_AND_BLOCK_COMPARATOR
       = new Comparator<Object>() {
@@ -58,6 +74,12 @@ class ReplicaMap {
     this.lock = lock;
   }
   
+  void setListener(Listener listener) {
+    try (AutoCloseableLock l = lock.acquire()) {
+      this.listener = listener;
+    }
+  }
+
   String[] getBlockPoolList() {
     try (AutoCloseableLock l = lock.acquire()) {
       return map.keySet().toArray(new String[map.keySet().size()]);   
@@ -122,6 +144,11 @@ class ReplicaMap {
    * @throws IllegalArgumentException if the input parameter is null
    */
   ReplicaInfo add(String bpid, ReplicaInfo replicaInfo) {
+    return add(bpid, replicaInfo, true);
+  }
+
+  private ReplicaInfo add(String bpid, ReplicaInfo replicaInfo,
+      boolean notify) {
     checkBlockPool(bpid);
     checkBlock(replicaInfo);
     try (AutoCloseableLock l = lock.acquire()) {
@@ -131,7 +158,24 @@ class ReplicaMap {
         set = new FoldedTreeSet<>();
         map.put(bpid, set);
       }
-      return set.addOrReplace(replicaInfo);
+      ReplicaInfo oldReplicaInfo = set.addOrReplace(replicaInfo);
+      if (notify && listener != null) {
+        listener.replicaAdded(bpid, replicaInfo, oldReplicaInfo);
+      }
+      return oldReplicaInfo;
+    }
+  }
+
+  /**
+   * Notify the listener of the map of a replica of the map changed in
+   * place, such as its generation stamp bumped.
+   */
+  void replicaUpdated(String bpid, ReplicaInfo replicaInfo) {
+    try (AutoCloseableLock l = lock.acquire()) {
+      if (listener != null && get(bpid, replicaInfo.getBlockId()) ==
+          replicaInfo) {
+        listener.replicaAdded(bpid, replicaInfo, replicaInfo);
+      }
     }
   }
 
@@ -155,6 +199,9 @@ class ReplicaMap {
         return oldReplicaInfo;
       } else {
         set.addOrReplace(replicaInfo);
+        if (listener != null) {
+          listener.replicaAdded(bpid, replicaInfo, null);
+        }
       }
       return replicaInfo;
     }
@@ -170,12 +217,14 @@ class ReplicaMap {
 
   /**
    * Merge all entries from the given replica map into the local replica map.
+   * The listener is not notified: the replicas were just loaded from their
+   * volume.
    */
   void mergeAll(ReplicaMap other) {
     other.map.forEach(
         (bp, replicaInfos) -> {
           replicaInfos.forEach(
-              replicaInfo -> add(bp, replicaInfo)
+              replicaInfo -> add(bp, replicaInfo, false)
           );
         }
     );
@@ -199,7 +248,7 @@ class ReplicaMap {
             set.get(block.getBlockId(), LONG_AND_BLOCK_COMPARATOR);
         if (replicaInfo != null &&
             block.getGenerationStamp() == replicaInfo.getGenerationStamp()) {
-          return set.removeAndGet(replicaInfo);
+          return removed(bpid, set.removeAndGet(replicaInfo));
         }
       }
     }
@@ -218,11 +267,19 @@ class ReplicaMap {
     try (AutoCloseableLock l = lock.acquire()) {
       FoldedTreeSet<ReplicaInfo> set = map.get(bpid);
       if (set != null) {
-        return set.removeAndGet(blockId, LONG_AND_BLOCK_COMPARATOR);
+        return removed(bpid,
+            set.removeAndGet(blockId, LONG_AND_BLOCK_COMPARATOR));
       }
     }
     return null;
   }
+
+  private ReplicaInfo removed(String bpid, ReplicaInfo replicaInfo) {
+    if (replicaInfo != null && listener != null) {
+      listener.replicaRemoved(bpid, replicaInfo);
+    }
+    return replicaInfo;
+  }
  
   /**
    * Get the size of the map for given block pool
@@ -30,6 +30,7 @@ import org.apache.hadoop.metrics2.lib.MetricsRegistry;
 import org.apache.hadoop.metrics2.lib.MutableCounterLong;
 import org.apache.hadoop.metrics2.lib.MutableQuantiles;
 import org.apache.hadoop.metrics2.lib.MutableRate;
+import org.apache.hadoop.metrics2.lib.MutableStat;
 import org.apache.hadoop.metrics2.lib.MutableGaugeInt;
 import org.apache.hadoop.metrics2.lib.MutableGaugeLong;
 import org.apache.hadoop.metrics2.source.JvmMetrics;
@@ -58,6 +59,10 @@ public class DataNodeMetrics {
   @Metric MutableCounterLong bytesRead;
   @Metric("Milliseconds spent reading")
   MutableCounterLong totalReadTime;
+  @Metric("Bytes of data and checksums sent without copying them")
+  MutableCounterLong bytesSentZeroCopy;
+  @Metric("Bytes of data and checksums copied to be sent")
+  MutableCounterLong bytesSentCopied;
   @Metric MutableCounterLong blocksWritten;
   @Metric MutableCounterLong blocksRead;
   @Metric MutableCounterLong blocksReplicated;
@@ -106,6 +111,15 @@ public class DataNodeMetrics {
   @Metric("Count of active dataNode xceivers")
   private MutableGaugeInt dataNodeActiveXceiversCount;
 
+  @Metric("Time to load the replicas of a block pool on a volume")
+  private MutableRate replicaMapLoad;
+  @Metric("Replicas loaded from the replica index")
+  private MutableCounterLong replicasLoadedFromIndex;
+  @Metric("Replicas loaded from the replica cache file")
+  private MutableCounterLong replicasLoadedFromCache;
+  @Metric("Replicas loaded by scanning the volumes")
+  private MutableCounterLong replicasLoadedByScan;
+
   @Metric MutableRate readBlockOp;
   @Metric MutableRate writeBlockOp;
   @Metric MutableRate blockChecksumOp;
@@ -157,6 +171,9 @@ public class DataNodeMetrics {
   private MutableCounterLong ecReconstructionDecodingTimeMillis;
   @Metric("Milliseconds spent on write by erasure coding worker")
   private MutableCounterLong ecReconstructionWriteTimeMillis;
+  @Metric(value = "Bytes per second written by erasure coding " +
+      "reconstruction tasks", valueName = "BytesPerSec")
+  private MutableStat ecReconstructionThroughput;
 
   final MetricsRegistry registry = new MetricsRegistry("datanode");
   final String name;
@@ -310,6 +327,11 @@ public class DataNodeMetrics {
     bytesRead.incr(delta);
   }
 
+  public void incrBytesSent(long zeroCopy, long copied) {
+    bytesSentZeroCopy.incr(zeroCopy);
+    bytesSentCopied.incr(copied);
+  }
+
   public void incrBlocksRead() {
     blocksRead.incr();
   }
@@ -521,4 +543,24 @@ public class DataNodeMetrics {
   public void incrECReconstructionDecodingTime(long millis) {
     ecReconstructionDecodingTimeMillis.incr(millis);
   }
+
+  public void addECReconstructionThroughput(long bytesPerSec) {
+    ecReconstructionThroughput.add(bytesPerSec);
+  }
+
+  public void addReplicaMapLoad(long latency) {
+    replicaMapLoad.add(latency);
+  }
+
+  public void incrReplicasLoadedFromIndex(long numReplicas) {
+    replicasLoadedFromIndex.incr(numReplicas);
+  }
+
+  public void incrReplicasLoadedFromCache(long numReplicas) {
+    replicasLoadedFromCache.incr(numReplicas);
+  }
+
+  public void incrReplicasLoadedByScan(long numReplicas) {
+    replicasLoadedByScan.incr(numReplicas);
+  }
 }
@@ -0,0 +1,268 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The sorted children of a large directory, kept in chunks of at most
+ * {@link #DEFAULT_MAX_CHUNK_SIZE} inodes so that adding or removing a child
+ * moves the inodes of one chunk instead of the whole list.
+ * <p>
+ * A child is found by a binary search over the first child of every chunk
+ * followed by a binary search within the chunk. The index of the first child
+ * of every chunk is kept to get a child by its index, and the chunk of the
+ * last such lookup is remembered so that scanning the list, e.g. for a
+ * listing, does not search the chunks again.
+ * <p>
+ * Like the {@link ArrayList} it replaces, the list is not thread safe. It is
+ * only changed under the write lock of the namesystem.
+ */
+class ChunkedChildrenList extends AbstractList<INode>
+    implements RandomAccess {
+  static final int DEFAULT_MAX_CHUNK_SIZE = 1024;
+
+  private final int maxChunkSize;
+  private final ArrayList<ArrayList<INode>> chunks = new ArrayList<>();
+  /** The index of the first child of every chunk. */
+  private int[] offsets = new int[16];
+  private int size;
+  /** The chunk of the last lookup by index, only a hint. */
+  private int lastChunk;
+
+  ChunkedChildrenList(Collection<INode> children) {
+    this(children, DEFAULT_MAX_CHUNK_SIZE);
+  }
+
+  ChunkedChildrenList(Collection<INode> children, int maxChunkSize) {
+    Preconditions.checkArgument(maxChunkSize > 1,
+        "The chunk size must be greater than 1");
+    this.maxChunkSize = maxChunkSize;
+    // leave room to add children without splitting the chunks right away
+    int fill = Math.max(1, maxChunkSize * 3 / 4);
+    ArrayList<INode> chunk = null;
+    for (INode child : children) {
+      if (chunk == null || chunk.size() == fill) {
+        chunk = new ArrayList<>(maxChunkSize);
+        chunks.add(chunk);
+      }
+      chunk.add(child);
+    }
+    size = children.size();
+    updateOffsets(0);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  int getNumChunks() {
+    return chunks.size();
+  }
+
+  @Override
+  public INode get(int index) {
+    checkIndex(index, size);
+    final int c = chunkOf(index);
+    return chunks.get(c).get(index - offsets[c]);
+  }
+
+  @Override
+  public INode set(int index, INode child) {
+    checkIndex(index, size);
+    final int c = chunkOf(index);
+    return chunks.get(c).set(index - offsets[c], child);
+  }
+
+  @Override
+  public void add(int index, INode child) {
+    checkIndex(index, size + 1);
+    modCount++;
+    if (chunks.isEmpty()) {
+      ArrayList<INode> chunk = new ArrayList<>(maxChunkSize);
+      chunk.add(child);
+      chunks.add(chunk);
+      size = 1;
+      updateOffsets(0);
+      return;
+    }
+    // an index past the end goes to the last chunk
+    final int c = index == size ? chunks.size() - 1 : chunkOf(index);
+    final ArrayList<INode> chunk = chunks.get(c);
+    chunk.add(index - offsets[c], child);
+    size++;
+    if (chunk.size() > maxChunkSize) {
+      // split the full chunk in halves
+      final int half = chunk.size() / 2;
+      final ArrayList<INode> tail = new ArrayList<>(maxChunkSize);
+      tail.addAll(chunk.subList(half, chunk.size()));
+      chunk.subList(half, chunk.size()).clear();
+      chunks.add(c + 1, tail);
+    }
+    updateOffsets(c);
+  }
+
+  @Override
+  public INode remove(int index) {
+    checkIndex(index, size);
+    modCount++;
+    int c = chunkOf(index);
+    final ArrayList<INode> chunk = chunks.get(c);
+    final INode removed = chunk.remove(index - offsets[c]);
+    size--;
+    if (chunk.isEmpty()) {
+      chunks.remove(c);
+    } else if (chunk.size() < maxChunkSize / 4) {
+      // merge a small chunk with a neighbour to bound the number of chunks
+      final int next = c + 1 < chunks.size() ? c + 1 : c - 1;
+      if (next >= 0
+          && chunks.get(next).size() + chunk.size() <= maxChunkSize) {
+        c = Math.min(c, next);
+        chunks.get(c).addAll(chunks.remove(c + 1));
+      }
+    }
+    updateOffsets(c);
+    return removed;
+  }
+
+  @Override
+  public void clear() {
+    modCount++;
+    chunks.clear();
+    size = 0;
+    lastChunk = 0;
+  }
+
+  /**
+   * The same as {@link Collections#binarySearch(java.util.List, Object)}
+   * for the given name, without getting the children by their indices.
+   */
+  int binarySearch(byte[] name) {
+    int lower = 0;
+    // the last chunk whose first child is not after the name
+    for (int upper = chunks.size() - 1; lower <= upper;) {
+      final int mid = (upper + lower) >>> 1;
+      if (chunks.get(mid).get(0).compareTo(name) <= 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid - 1;
+      }
+    }
+    if (lower == 0) {
+      // before the first child, or empty
+      return -1;
+    }
+    final int c = lower - 1;
+    final int i = Collections.binarySearch(chunks.get(c), name);
+    return i >= 0 ? offsets[c] + i : i - offsets[c];
+  }
+
+  @Override
+  public Iterator<INode> iterator() {
+    return new Iterator<INode>() {
+      private final int expectedModCount = modCount;
+      private int chunk = 0;
+      private int next = 0;
+
+      @Override
+      public boolean hasNext() {
+        return chunk < chunks.size();
+      }
+
+      @Override
+      public INode next() {
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        final ArrayList<INode> c = chunks.get(chunk);
+        final INode child = c.get(next++);
+        if (next == c.size()) {
+          chunk++;
+          next = 0;
+        }
+        return child;
+      }
+    };
+  }
+
+  /** @return the chunk holding the given child index. */
+  private int chunkOf(int index) {
+    // readers may share the list, so check the hint before trusting it
+    int c = lastChunk;
+    if (c < chunks.size() && offsets[c] <= index) {
+      if (index < offsets[c] + chunks.get(c).size()) {
+        return c;
+      }
+      c++;
+      if (c < chunks.size() && index < offsets[c] + chunks.get(c).size()) {
+        lastChunk = c;
+        return c;
+      }
+    }
+    int lower = 0;
+    for (int upper = chunks.size() - 1; lower <= upper;) {
+      final int mid = (upper + lower) >>> 1;
+      if (offsets[mid] <= index) {
+        lower = mid + 1;
+      } else {
+        upper = mid - 1;
+      }
+    }
+    c = lower - 1;
+    lastChunk = c;
+    return c;
+  }
+
+  /** Recompute the offsets of the chunks from the given chunk on. */
+  private void updateOffsets(int from) {
+    if (offsets.length < chunks.size()) {
+      offsets = Arrays.copyOf(offsets,
+          Math.max(chunks.size(), offsets.length * 2));
+    }
+    int offset = from == 0 ? 0
+        : offsets[from - 1] + chunks.get(from - 1).size();
+    for (int c = from; c < chunks.size(); c++) {
+      offsets[c] = offset;
+      offset += chunks.get(c).size();
+    }
+    if (lastChunk >= chunks.size()) {
+      lastChunk = 0;
+    }
+  }
+
+  private void checkIndex(int index, int bound) {
+    if (index < 0 || index >= bound) {
+      throw new IndexOutOfBoundsException("Index: " + index
+          + ", Size: " + size);
+    }
+  }
+}
@@ -0,0 +1,475 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.io.Closeable;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.ContentSummary;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.server.namenode.FSDirectory.DirOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.AddBlockOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.AddCloseOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.AllowSnapshotOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.AppendOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.ClearNSQuotaOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.ConcatDeleteOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.CreateSnapshotOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.DeleteOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.DeleteSnapshotOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.DisallowSnapshotOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.MkdirOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.RemoveXAttrOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.RenameOldOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.RenameOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.SetNSQuotaOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.SetQuotaByStorageTypeOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.SetQuotaOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.SetReplicationOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.SetStoragePolicyOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.SetXAttrOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.SymlinkOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.TruncateOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.UpdateBlocksOp;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
+import org.apache.hadoop.security.AccessControlException;
+import org.apache.hadoop.util.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Caches the content summaries of the directories getContentSummary and
+ * getQuotaUsage were called on, so that later calls for them are answered
+ * without walking the subtree again.
+ * <p>
+ * The summaries are keyed by path. Every edit log operation, whether logged
+ * by the active NameNode or applied by the standby, invalidates the
+ * summaries of the directories above the paths it changes, and for renames,
+ * deletes and inherited policies also the summaries below them. An
+ * invalidated summary is recomputed in the background if it was asked for
+ * recently, and dropped otherwise.
+ * <p>
+ * The cache does not rely on the namesystem lock for its consistency. A
+ * computed summary replaces the entry that was current when the computation
+ * started only if no operation invalidated that entry in the meantime.
+ */
+class ContentSummaryCache implements Closeable {
+  static final Logger LOG = LoggerFactory.getLogger(ContentSummaryCache.class);
+
+  /** A cached summary and whether it is still current. */
+  private static final class Entry {
+    /** The summary, null while it is computed for the first time. */
+    private final ContentSummary summary;
+    private final boolean stale;
+    /** When the summary was first invalidated. */
+    private final long staleSince;
+    /** When the summary was last asked for. */
+    private volatile long lastRequested;
+
+    private Entry(ContentSummary summary, boolean stale, long staleSince,
+        long lastRequested) {
+      this.summary = summary;
+      this.stale = stale;
+      this.staleSince = staleSince;
+      this.lastRequested = lastRequested;
+    }
+
+    private Entry invalidate(long now) {
+      return new Entry(summary, true, stale ? staleSince : now,
+          lastRequested);
+    }
+  }
+
+  private final FSDirectory fsd;
+  private final int maxEntries;
+  private final long maxStaleMs;
+  private volatile long idleMs;
+  private final ConcurrentSkipListMap<String, Entry> entries =
+      new ConcurrentSkipListMap<>();
+  /** The paths waiting for a background refresh. */
+  private final Set<String> pendingRefreshes = ConcurrentHashMap.newKeySet();
+  private final ExecutorService refresher;
+
+  ContentSummaryCache(FSDirectory fsd, Configuration conf) {
+    this.fsd = fsd;
+    this.maxEntries = conf.getInt(
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_MAX_ENTRIES_KEY,
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_MAX_ENTRIES_DEFAULT);
+    this.maxStaleMs = conf.getLong(
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_MAX_STALE_MS_KEY,
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_MAX_STALE_MS_DEFAULT);
+    this.idleMs = conf.getLong(
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_IDLE_MS_KEY,
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_IDLE_MS_DEFAULT);
+    this.refresher = Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder().setDaemon(true)
+            .setNameFormat("ContentSummaryRefresher").build());
+    LOG.info("Content summary cache enabled with " +
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_MAX_ENTRIES_KEY + " = " +
+        maxEntries + ", " +
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_MAX_STALE_MS_KEY + " = " +
+        maxStaleMs + ", " +
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_IDLE_MS_KEY + " = " + idleMs);
+  }
+
+  /**
+   * Whether the summary of the path can be served from the cache. The
+   * computation checks the access to every subdirectory, which a cached
+   * summary cannot, so only the superuser is served when permission
+   * checking is enabled.
+   */
+  boolean isCacheable(FSPermissionChecker pc, INodesInPath iip) {
+    INode inode = iip.getLastINode();
+    return inode != null && inode.isDirectory() && !iip.isSnapshot() &&
+        (!fsd.isPermissionEnabled() || pc.isSuperUser());
+  }
+
+  /**
+   * Get the summary of a directory from the cache, or compute and cache it.
+   * The caller holds the namesystem read lock.
+   */
+  ContentSummary get(FSPermissionChecker pc, INodesInPath iip)
+      throws AccessControlException {
+    final String path = iip.getPath();
+    final long now = Time.monotonicNow();
+    final NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+    Entry entry = entries.get(path);
+    if (entry != null) {
+      entry.lastRequested = now;
+      if (entry.summary != null &&
+          (!entry.stale || now - entry.staleSince < maxStaleMs)) {
+        if (metrics != null) {
+          metrics.incrContentSummaryCacheHits();
+        }
+        if (entry.stale) {
+          scheduleRefresh(path);
+        }
+        return entry.summary;
+      }
+    } else if (entries.size() < maxEntries) {
+      Entry placeholder = new Entry(null, false, 0, now);
+      entry = entries.putIfAbsent(path, placeholder);
+      if (entry == null) {
+        entry = placeholder;
+      }
+    }
+    if (metrics != null) {
+      metrics.incrContentSummaryCacheMisses();
+    }
+    if (entry == null) {
+      // the cache is full
+      return FSDirStatAndListingOp.computeContentSummary(fsd, pc, iip);
+    }
+    boolean computed = false;
+    try {
+      ContentSummary summary = compute(path, entry, pc, iip);
+      computed = true;
+      return summary;
+    } finally {
+      if (!computed && entry.summary == null) {
+        entries.remove(path, entry);
+      }
+    }
+  }
+
+  /**
+   * Compute the summary of a directory and store it in place of the given
+   * entry, unless a newer summary was stored in the meantime.
+   */
+  private ContentSummary compute(String path, Entry expected,
+      FSPermissionChecker pc, INodesInPath iip)
+      throws AccessControlException {
+    final long start = Time.monotonicNow();
+    ContentSummary summary =
+        FSDirStatAndListingOp.computeContentSummary(fsd, pc, iip);
+    if (!entries.replace(path, expected,
+        new Entry(summary, false, 0, expected.lastRequested))) {
+      // The entry was invalidated while the subtree was walked. The summary
+      // still covers every change made before the walk started.
+      Entry current = entries.get(path);
+      if (current != null && current.stale &&
+          (current.summary == null || current.staleSince <= start)) {
+        entries.replace(path, current,
+            new Entry(summary, true, start, current.lastRequested));
+      }
+    }
+    return summary;
+  }
+
+  private void scheduleRefresh(final String path) {
+    if (pendingRefreshes.add(path)) {
+      try {
+        refresher.execute(new Runnable() {
+          @Override
+          public void run() {
+            refresh(path);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        pendingRefreshes.remove(path);
+      }
+    }
+  }
+
+  /**
+   * Recompute an invalidated summary with the same yielding computation the
+   * RPC handlers use.
+   */
+  @VisibleForTesting
+  void refresh(String path) {
+    pendingRefreshes.remove(path);
+    Entry entry = entries.get(path);
+    if (entry == null || !entry.stale) {
+      return;
+    }
+    FSNamesystem fsn = fsd.getFSNamesystem();
+    fsn.readLock();
+    try {
+      INodesInPath iip = fsd.getINodesInPath(path, DirOp.READ);
+      INode inode = iip.getLastINode();
+      if (inode == null || !inode.isDirectory()) {
+        entries.remove(path, entry);
+        return;
+      }
+      compute(path, entry, null, iip);
+      NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+      if (metrics != null) {
+        metrics.incrContentSummaryCacheRefreshes();
+      }
+    } catch (Exception e) {
+      LOG.warn("Failed to refresh the content summary of " + path, e);
+      entries.remove(path, entry);
+    } finally {
+      fsn.readUnlock("contentSummaryRefresh");
+    }
+  }
+
+  /**
+   * Invalidate the summaries the given edit log operation changes. Called
+   * after the operation was applied to the namespace.
+   */
+  void invalidate(FSEditLogOp op) {
+    if (entries.isEmpty()) {
+      return;
+    }
+    switch (op.opCode) {
+    case OP_ADD:
+    case OP_CLOSE:
+      invalidate(((AddCloseOp) op).path, false);
+      break;
+    case OP_APPEND:
+      invalidate(((AppendOp) op).path, false);
+      break;
+    case OP_ADD_BLOCK:
+      invalidate(((AddBlockOp) op).getPath(), false);
+      break;
+    case OP_UPDATE_BLOCKS:
+      invalidate(((UpdateBlocksOp) op).path, false);
+      break;
+    case OP_SET_REPLICATION:
+      invalidate(((SetReplicationOp) op).path, false);
+      break;
+    case OP_TRUNCATE:
+      invalidate(((TruncateOp) op).src, false);
+      break;
+    case OP_CONCAT_DELETE:
+      ConcatDeleteOp concat = (ConcatDeleteOp) op;
+      invalidate(concat.trg, false);
+      for (String src : concat.srcs) {
+        invalidate(src, false);
+      }
+      break;
+    case OP_MKDIR:
+      invalidate(((MkdirOp) op).path, false);
+      break;
+    case OP_SYMLINK:
+      invalidate(((SymlinkOp) op).path, false);
+      break;
+    case OP_DELETE:
+      invalidate(((DeleteOp) op).path, true);
+      break;
+    case OP_RENAME_OLD:
+      invalidate(((RenameOldOp) op).src, true);
+      invalidate(((RenameOldOp) op).dst, true);
+      break;
+    case OP_RENAME:
+      invalidate(((RenameOp) op).src, true);
+      invalidate(((RenameOp) op).dst, true);
+      break;
+    case OP_SET_NS_QUOTA:
+      invalidate(((SetNSQuotaOp) op).src, false);
+      break;
+    case OP_CLEAR_NS_QUOTA:
+      invalidate(((ClearNSQuotaOp) op).src, false);
+      break;
+    case OP_SET_QUOTA:
+      invalidate(((SetQuotaOp) op).src, false);
+      break;
+    case OP_SET_QUOTA_BY_STORAGETYPE:
+      invalidate(((SetQuotaByStorageTypeOp) op).src, false);
+      break;
+    case OP_SET_STORAGE_POLICY:
+      // the policy is inherited by the whole subtree
+      invalidate(((SetStoragePolicyOp) op).path, true);
+      break;
+    case OP_SET_XATTR:
+      // the erasure coding policy is an inherited xattr
+      invalidate(((SetXAttrOp) op).src, true);
+      break;
+    case OP_REMOVE_XATTR:
+      invalidate(((RemoveXAttrOp) op).src, true);
+      break;
+    case OP_CREATE_SNAPSHOT:
+      invalidate(((CreateSnapshotOp) op).snapshotRoot, false);
+      break;
+    case OP_DELETE_SNAPSHOT:
+      invalidate(((DeleteSnapshotOp) op).snapshotRoot, true);
+      break;
+    case OP_ALLOW_SNAPSHOT:
+      invalidate(((AllowSnapshotOp) op).snapshotRoot, false);
+      break;
+    case OP_DISALLOW_SNAPSHOT:
+      invalidate(((DisallowSnapshotOp) op).snapshotRoot, false);
+      break;
+    case OP_SET_PERMISSIONS:
+    case OP_SET_OWNER:
+    case OP_SET_ACL:
+    case OP_TIMES:
+    case OP_REASSIGN_LEASE:
+    case OP_RENAME_SNAPSHOT:
+    case OP_SET_GENSTAMP_V1:
+    case OP_SET_GENSTAMP_V2:
+    case OP_ALLOCATE_BLOCK_ID:
+    case OP_GET_DELEGATION_TOKEN:
+    case OP_RENEW_DELEGATION_TOKEN:
+    case OP_CANCEL_DELEGATION_TOKEN:
+    case OP_UPDATE_MASTER_KEY:
+    case OP_START_LOG_SEGMENT:
+    case OP_END_LOG_SEGMENT:
+    case OP_ADD_CACHE_DIRECTIVE:
+    case OP_MODIFY_CACHE_DIRECTIVE:
+    case OP_REMOVE_CACHE_DIRECTIVE:
+    case OP_ADD_CACHE_POOL:
+    case OP_MODIFY_CACHE_POOL:
+    case OP_REMOVE_CACHE_POOL:
+    case OP_ROLLING_UPGRADE_START:
+    case OP_ROLLING_UPGRADE_FINALIZE:
+    case OP_ADD_ERASURE_CODING_POLICY:
+    case OP_ENABLE_ERASURE_CODING_POLICY:
+    case OP_DISABLE_ERASURE_CODING_POLICY:
+    case OP_REMOVE_ERASURE_CODING_POLICY:
+      // the content summaries are not changed
+      break;
+    default:
+      invalidateAll();
+      break;
+    }
+  }
+
+  /**
+   * Invalidate the summaries of the given path and of the directories above
+   * it, and optionally of the directories below it.
+   */
+  @VisibleForTesting
+  void invalidate(String path, boolean subtree) {
+    if (path == null || !path.startsWith(Path.SEPARATOR)) {
+      invalidateAll();
+      return;
+    }
+    final long now = Time.monotonicNow();
+    for (String p = path;; p = getParent(p)) {
+      invalidateEntry(p, now);
+      if (p.equals(Path.SEPARATOR)) {
+        break;
+      }
+    }
+    if (subtree) {
+      String prefix = path.endsWith(Path.SEPARATOR) ?
+          path : path + Path.SEPARATOR;
+      for (String p : entries.tailMap(prefix).keySet()) {
+        if (!p.startsWith(prefix)) {
+          break;
+        }
+        invalidateEntry(p, now);
+      }
+    }
+  }
+
+  private void invalidateAll() {
+    final long now = Time.monotonicNow();
+    for (String p : entries.keySet()) {
+      invalidateEntry(p, now);
+    }
+  }
+
+  private void invalidateEntry(String path, long now) {
+    Entry entry = entries.get(path);
+    if (entry == null) {
+      return;
+    }
+    if (now - entry.lastRequested < idleMs) {
+      if (entries.replace(path, entry, entry.invalidate(now))) {
+        scheduleRefresh(path);
+      }
+    } else {
+      // nobody asked for the summary for a while
+      entries.remove(path, entry);
+    }
+  }
+
+  private static String getParent(String path) {
+    int i = path.lastIndexOf(Path.SEPARATOR_CHAR);
+    return i <= 0 ? Path.SEPARATOR : path.substring(0, i);
+  }
+
+  /** @return whether a current summary of the path is cached. */
+  @VisibleForTesting
+  boolean isCached(String path) {
+    Entry entry = entries.get(path);
+    return entry != null && entry.summary != null && !entry.stale;
+  }
+
+  @VisibleForTesting
+  void setIdleMs(long idleMs) {
+    this.idleMs = idleMs;
+  }
+
+  @VisibleForTesting
+  int size() {
+    return entries.size();
+  }
+
+  void clear() {
+    entries.clear();
+  }
+
+  @Override
+  public void close() {
+    refresher.shutdownNow();
+  }
+}
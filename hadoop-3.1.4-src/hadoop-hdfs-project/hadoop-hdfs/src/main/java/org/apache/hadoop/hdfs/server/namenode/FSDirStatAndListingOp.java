@@ -139,6 +139,19 @@ class FSDirStatAndListingOp {
   static GetBlockLocationsResult getBlockLocations(
       FSDirectory fsd, FSPermissionChecker pc, String src, long offset,
       long length, boolean needBlockToken) throws IOException {
+    return getBlockLocations(fsd, pc, src, offset, length, needBlockToken,
+        false);
+  }
+
+  /**
+   * Get the block locations of a file, from the block locations cache if it
+   * is enabled and useCache is set. The locations are not sorted for the
+   * reader yet.
+   */
+  static GetBlockLocationsResult getBlockLocations(
+      FSDirectory fsd, FSPermissionChecker pc, String src, long offset,
+      long length, boolean needBlockToken, boolean useCache)
+      throws IOException {
     Preconditions.checkArgument(offset >= 0,
         "Negative offset is not supported. File: " + src);
     Preconditions.checkArgument(length >= 0,
@@ -171,15 +184,30 @@ class FSDirStatAndListingOp {
       final ErasureCodingPolicy ecPolicy = FSDirErasureCodingOp.
           unprotectedGetErasureCodingPolicy(fsd.getFSNamesystem(), iip);
 
-      final LocatedBlocks blocks = bm.createLocatedBlocks(
-          inode.getBlocks(iip.getPathSnapshotId()), fileSize, isUc, offset,
-          length, needBlockToken, iip.isSnapshot(), feInfo, ecPolicy);
+      final LocatedBlocksCache cache = fsd.getLocatedBlocksCache();
+      LocatedBlocksCache.Key cacheKey = null;
+      long cacheGeneration = 0;
+      LocatedBlocks blocks = null;
+      if (cache != null && useCache && needBlockToken &&
+          !isUc && !iip.isSnapshot()) {
+        cacheKey = new LocatedBlocksCache.Key(inode.getId(), offset, length,
+            pc.getUser());
+        cacheGeneration = cache.getGeneration(inode.getId());
+        blocks = cache.get(cacheKey);
+      }
+      final boolean cached = blocks != null;
+      if (!cached) {
+        blocks = bm.createLocatedBlocks(
+            inode.getBlocks(iip.getPathSnapshotId()), fileSize, isUc, offset,
+            length, needBlockToken, iip.isSnapshot(), feInfo, ecPolicy);
+      }
 
       final long now = now();
       boolean updateAccessTime = fsd.isAccessTimeSupported()
           && !iip.isSnapshot()
           && now > inode.getAccessTime() + fsd.getAccessTimePrecision();
-      return new GetBlockLocationsResult(updateAccessTime, blocks, iip);
+      return new GetBlockLocationsResult(updateAccessTime, blocks, iip,
+          cached, cacheKey, cacheGeneration);
     } finally {
       fsd.readUnlock();
     }
@@ -518,22 +546,34 @@ class FSDirStatAndListingOp {
       if (targetNode == null) {
         throw new FileNotFoundException("File does not exist: " + iip.getPath());
       }
-      else {
-        // Make it relinquish locks everytime contentCountLimit entries are
-        // processed. 0 means disabled. I.e. blocking for the entire duration.
-        ContentSummaryComputationContext cscc =
-            new ContentSummaryComputationContext(fsd, fsd.getFSNamesystem(),
-                fsd.getContentCountLimit(), fsd.getContentSleepMicroSec(), pc);
-        ContentSummary cs = targetNode.computeAndConvertContentSummary(
-            iip.getPathSnapshotId(), cscc);
-        fsd.addYieldCount(cscc.getYieldCount());
-        return cs;
+      ContentSummaryCache cache = fsd.getContentSummaryCache();
+      if (cache != null && cache.isCacheable(pc, iip)) {
+        return cache.get(pc, iip);
       }
+      return computeContentSummary(fsd, pc, iip);
     } finally {
       fsd.readUnlock();
     }
   }
 
+  /**
+   * Walk the subtree of an existing inode to compute its content summary.
+   * The caller holds the namesystem read lock.
+   */
+  static ContentSummary computeContentSummary(FSDirectory fsd,
+      FSPermissionChecker pc, INodesInPath iip)
+      throws AccessControlException {
+    // Make it relinquish locks everytime contentCountLimit entries are
+    // processed. 0 means disabled. I.e. blocking for the entire duration.
+    ContentSummaryComputationContext cscc =
+        new ContentSummaryComputationContext(fsd, fsd.getFSNamesystem(),
+            fsd.getContentCountLimit(), fsd.getContentSleepMicroSec(), pc);
+    ContentSummary cs = iip.getLastINode().computeAndConvertContentSummary(
+        iip.getPathSnapshotId(), cscc);
+    fsd.addYieldCount(cscc.getYieldCount());
+    return cs;
+  }
+
   static QuotaUsage getQuotaUsage(
       FSDirectory fsd, FSPermissionChecker pc, String src) throws IOException {
     final INodesInPath iip;
@@ -591,6 +631,11 @@ class FSDirStatAndListingOp {
     final boolean updateAccessTime;
     final LocatedBlocks blocks;
     private final INodesInPath iip;
+    /** Whether the blocks came from the block locations cache. */
+    final boolean cached;
+    /** The key to cache the blocks under, or null. */
+    final LocatedBlocksCache.Key cacheKey;
+    final long cacheGeneration;
     boolean updateAccessTime() {
       return updateAccessTime;
     }
@@ -598,10 +643,15 @@ class FSDirStatAndListingOp {
       return iip;
     }
     private GetBlockLocationsResult(
-        boolean updateAccessTime, LocatedBlocks blocks, INodesInPath iip) {
+        boolean updateAccessTime, LocatedBlocks blocks, INodesInPath iip,
+        boolean cached, LocatedBlocksCache.Key cacheKey,
+        long cacheGeneration) {
       this.updateAccessTime = updateAccessTime;
       this.blocks = blocks;
       this.iip = iip;
+      this.cached = cached;
+      this.cacheKey = cacheKey;
+      this.cacheGeneration = cacheGeneration;
     }
   }
 }
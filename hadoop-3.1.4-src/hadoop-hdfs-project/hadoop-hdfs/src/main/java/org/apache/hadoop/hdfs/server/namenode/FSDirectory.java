@@ -195,6 +195,10 @@ public class FSDirectory implements Closeable {
   private final INodeId inodeId;
 
   private final FSEditLog editLog;
+  /** Cached content summaries, null if the cache is disabled. */
+  private final ContentSummaryCache contentSummaryCache;
+  /** Cached block locations, null if the cache is disabled. */
+  private final LocatedBlocksCache locatedBlocksCache;
 
   private HdfsFileStatus[] reservedStatuses;
 
@@ -360,8 +364,34 @@ public class FSDirectory implements Closeable {
     NameNode.LOG.info("Caching file names occurring more than " + threshold
         + " times");
     nameCache = new NameCache<ByteArray>(threshold);
+    int chunkedChildrenThreshold = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_CHUNKED_CHILDREN_THRESHOLD_KEY,
+        DFSConfigKeys.DFS_NAMENODE_CHUNKED_CHILDREN_THRESHOLD_DEFAULT);
+    Preconditions.checkArgument(chunkedChildrenThreshold >= 0,
+        "Cannot set a negative value for %s",
+        DFSConfigKeys.DFS_NAMENODE_CHUNKED_CHILDREN_THRESHOLD_KEY);
+    INodeDirectory.setChunkedChildrenThreshold(chunkedChildrenThreshold);
     namesystem = ns;
     this.editLog = ns.getEditLog();
+    if (conf.getBoolean(DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_ENABLED_KEY,
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_ENABLED_DEFAULT)) {
+      contentSummaryCache = new ContentSummaryCache(this, conf);
+      if (editLog != null) {
+        editLog.setContentSummaryCache(contentSummaryCache);
+      }
+    } else {
+      contentSummaryCache = null;
+    }
+    if (conf.getBoolean(
+        DFSConfigKeys.DFS_NAMENODE_BLOCK_LOCATIONS_CACHE_ENABLED_KEY,
+        DFSConfigKeys.DFS_NAMENODE_BLOCK_LOCATIONS_CACHE_ENABLED_DEFAULT)) {
+      locatedBlocksCache = new LocatedBlocksCache(this, conf);
+      if (editLog != null) {
+        editLog.setLocatedBlocksCache(locatedBlocksCache);
+      }
+    } else {
+      locatedBlocksCache = null;
+    }
     ezManager = new EncryptionZoneManager(this, conf);
 
     this.quotaInitThreads = conf.getInt(
@@ -583,6 +613,14 @@ public class FSDirectory implements Closeable {
     return contentSleepMicroSec;
   }
 
+  ContentSummaryCache getContentSummaryCache() {
+    return contentSummaryCache;
+  }
+
+  LocatedBlocksCache getLocatedBlocksCache() {
+    return locatedBlocksCache;
+  }
+
   int getInodeXAttrsLimit() {
     return inodeXAttrsLimit;
   }
@@ -595,7 +633,11 @@ public class FSDirectory implements Closeable {
    * Shutdown the filestore
    */
   @Override
-  public void close() throws IOException {}
+  public void close() throws IOException {
+    if (contentSummaryCache != null) {
+      contentSummaryCache.close();
+    }
+  }
 
   void markNameCacheInitialized() {
     writeLock();
@@ -1491,6 +1533,12 @@ public class FSDirectory implements Closeable {
       addToInodeMap(rootDir);
       nameCache.reset();
       inodeId.setCurrentValue(INodeId.LAST_RESERVED_ID);
+      if (contentSummaryCache != null) {
+        contentSummaryCache.clear();
+      }
+      if (locatedBlocksCache != null) {
+        locatedBlocksCache.clear();
+      }
     } finally {
       writeUnlock();
     }
@@ -205,6 +205,11 @@ public class FSEditLog implements LogsPurgeable {
    */
   private final Object journalSetLock = new Object();
 
+  /** Cached content summaries invalidated by the logged operations. */
+  private volatile ContentSummaryCache contentSummaryCache;
+  /** Cached block locations invalidated by the logged operations. */
+  private volatile LocatedBlocksCache locatedBlocksCache;
+
   private static class TransactionId {
     public long txid;
 
@@ -453,6 +458,7 @@ public class FSEditLog implements LogsPurgeable {
    * if a time interval has elapsed).
    */
   void logEdit(final FSEditLogOp op) {
+    invalidateCaches(op);
     boolean needsSync = false;
     synchronized (this) {
       assert isOpenForWrite() :
@@ -474,6 +480,28 @@ public class FSEditLog implements LogsPurgeable {
     }
   }
 
+  void setContentSummaryCache(ContentSummaryCache cache) {
+    this.contentSummaryCache = cache;
+  }
+
+  void setLocatedBlocksCache(LocatedBlocksCache cache) {
+    this.locatedBlocksCache = cache;
+  }
+
+  /**
+   * Invalidate the cached content summaries and block locations changed by
+   * an operation that is about to be logged. The operation was already
+   * applied to the namespace.
+   */
+  void invalidateCaches(FSEditLogOp op) {
+    if (contentSummaryCache != null) {
+      contentSummaryCache.invalidate(op);
+    }
+    if (locatedBlocksCache != null) {
+      locatedBlocksCache.invalidate(op);
+    }
+  }
+
   synchronized boolean doEditTransaction(final FSEditLogOp op) {
     long start = beginTransaction();
     op.setTransactionId(txid);
@@ -1297,6 +1325,13 @@ public class FSEditLog implements LogsPurgeable {
   void setMetricsForTests(NameNodeMetrics metrics) {
     this.metrics = metrics;
   }
+
+  /**
+   * @return the metrics to update, null when not used inside name node
+   */
+  NameNodeMetrics getMetrics() {
+    return metrics;
+  }
   
   /**
    * Return a manifest of what finalized edit logs are available
@@ -25,12 +25,15 @@ import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
 import org.apache.hadoop.ipc.Server;
 import org.apache.hadoop.util.ExitUtil;
 import com.google.common.annotations.VisibleForTesting;
@@ -53,10 +56,37 @@ class FSEditLogAsync extends FSEditLog implements Runnable {
   // of the edit log buffer - ie. a sync will eventually be forced.
   private final Deque<Edit> syncWaitQ = new ArrayDeque<Edit>();
 
+  // group commit: the longest time to wait for more edits to join a sync,
+  // reached just short of the number of edits a sync aims to cover.
+  private final long groupCommitMaxWaitNanos;
+  private final int groupCommitBatchSize;
+
+  // only accessed by syncing thread.  when the first edit pending a sync was
+  // dequeued, how many edits were pending when the sync was first delayed,
+  // and how many pending edits have callers blocked until the sync.
+  private long batchStartNanos;
+  private int batchSizeAtWait = -1;
+  private int blockingEdits;
+
   FSEditLogAsync(Configuration conf, NNStorage storage, List<URI> editsDirs) {
     super(conf, storage, editsDirs);
     // op instances cannot be shared due to queuing for background thread.
     cache.disableCache();
+    long maxWaitUs = conf.getLong(
+        DFSConfigKeys.DFS_NAMENODE_EDITS_ASYNC_GROUP_COMMIT_MAX_WAIT_US_KEY,
+        DFSConfigKeys.DFS_NAMENODE_EDITS_ASYNC_GROUP_COMMIT_MAX_WAIT_US_DEFAULT);
+    groupCommitMaxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitUs);
+    groupCommitBatchSize = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_EDITS_ASYNC_GROUP_COMMIT_BATCH_SIZE_KEY,
+        DFSConfigKeys.DFS_NAMENODE_EDITS_ASYNC_GROUP_COMMIT_BATCH_SIZE_DEFAULT);
+    Preconditions.checkArgument(groupCommitBatchSize > 0,
+        DFSConfigKeys.DFS_NAMENODE_EDITS_ASYNC_GROUP_COMMIT_BATCH_SIZE_KEY +
+        " must be positive");
+    if (groupCommitMaxWaitNanos > 0) {
+      LOG.info("Edit log group commit waits up to " +
+          TimeUnit.NANOSECONDS.toMicros(groupCommitMaxWaitNanos) +
+          "us for batches of " + groupCommitBatchSize + " edits");
+    }
   }
 
   private boolean isSyncThreadAlive() {
@@ -115,6 +145,7 @@ class FSEditLogAsync extends FSEditLog implements Runnable {
 
   @Override
   void logEdit(final FSEditLogOp op) {
+    invalidateCaches(op);
     Edit edit = getEditInstance(op);
     THREAD_EDIT.set(edit);
     enqueueEdit(edit);
@@ -218,7 +249,66 @@ class FSEditLogAsync extends FSEditLog implements Runnable {
 
   private Edit dequeueEdit() throws InterruptedException {
     // only block for next edit if no pending syncs.
-    return syncWaitQ.isEmpty() ? editPendingQ.take() : editPendingQ.poll();
+    if (syncWaitQ.isEmpty()) {
+      Edit edit = editPendingQ.take();
+      batchStartNanos = System.nanoTime();
+      return edit;
+    }
+    Edit edit = editPendingQ.poll();
+    // a blocked caller, ex. a log roll, is not kept waiting for others.
+    if (edit == null && groupCommitMaxWaitNanos > 0 && blockingEdits == 0) {
+      edit = awaitGroupCommit();
+    }
+    return edit;
+  }
+
+  // the queue ran dry but the rpc responses of the pending edits are only
+  // sent after the sync, so wait a little for more edits to share it.  the
+  // more edits are pending, the more handlers are busy logging edits and the
+  // longer the wait, bounded by the time since the batch started.
+  private Edit awaitGroupCommit() throws InterruptedException {
+    int pending = syncWaitQ.size();
+    long waitNanos = getGroupCommitWaitNanos(pending,
+        groupCommitMaxWaitNanos, groupCommitBatchSize)
+        - (System.nanoTime() - batchStartNanos);
+    if (waitNanos <= 0) {
+      return null;
+    }
+    if (batchSizeAtWait < 0) {
+      batchSizeAtWait = pending;
+      NameNodeMetrics metrics = getMetrics();
+      if (metrics != null) {
+        metrics.incrEditLogGroupCommitWaits();
+      }
+    }
+    return editPendingQ.poll(waitNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * The time to wait for more edits to join a sync, growing linearly with
+   * the edits pending the sync up to the full batch, which is synced without
+   * waiting.
+   */
+  @VisibleForTesting
+  static long getGroupCommitWaitNanos(int pendingEdits, long maxWaitNanos,
+      int batchSize) {
+    if (pendingEdits >= batchSize) {
+      return 0;
+    }
+    return maxWaitNanos * pendingEdits / batchSize;
+  }
+
+  // called by the syncing thread once the pending edits are synced.
+  private void endBatch() {
+    if (batchSizeAtWait >= 0) {
+      NameNodeMetrics metrics = getMetrics();
+      if (metrics != null) {
+        metrics.incrEditLogGroupCommitJoined(
+            syncWaitQ.size() - batchSizeAtWait);
+      }
+      batchSizeAtWait = -1;
+    }
+    blockingEdits = 0;
   }
 
   @Override
@@ -231,6 +321,9 @@ class FSEditLogAsync extends FSEditLog implements Runnable {
           // sync if requested by edit log.
           doSync = edit.logEdit();
           syncWaitQ.add(edit);
+          if (edit instanceof SyncEdit) {
+            blockingEdits++;
+          }
         } else {
           // sync when editq runs dry, but have edits pending a sync.
           doSync = !syncWaitQ.isEmpty();
@@ -244,6 +337,7 @@ class FSEditLogAsync extends FSEditLog implements Runnable {
           } catch (RuntimeException ex) {
             syncEx = ex;
           }
+          endBatch();
           while ((edit = syncWaitQ.poll()) != null) {
             edit.logSyncNotify(syncEx);
           }
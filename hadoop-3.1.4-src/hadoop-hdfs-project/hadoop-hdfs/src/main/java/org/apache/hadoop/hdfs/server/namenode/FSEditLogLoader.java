@@ -22,10 +22,17 @@ import static org.apache.hadoop.hdfs.server.namenode.FSImageFormat.renameReserve
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -119,6 +126,7 @@ import org.apache.hadoop.util.Timer;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import static org.apache.hadoop.log.LogThrottlingHelper.LogAction;
 
@@ -140,6 +148,13 @@ public class FSEditLogLoader {
   private long lastAppliedTxId;
   /** Total number of end transactions loaded. */
   private int totalEdits = 0;
+  /** The number of ops read ahead of the op being applied, 0 for none. */
+  private int prefetchSize = 0;
+
+  /** Threads reading ahead the ops of the edit log being loaded. */
+  private static final ExecutorService PREFETCH_EXECUTOR =
+      Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+          .setDaemon(true).setNameFormat("Edit log prefetcher #%d").build());
   
   public FSEditLogLoader(FSNamesystem fsNamesys, long lastAppliedTxId) {
     this(fsNamesys, lastAppliedTxId, new Timer());
@@ -153,6 +168,14 @@ public class FSEditLogLoader {
     this.timer = timer;
   }
   
+  /**
+   * Read and decode up to the given number of ops on a separate thread while
+   * the previous ones are applied. It is ignored in recovery mode.
+   */
+  void setPrefetchSize(int prefetchSize) {
+    this.prefetchSize = prefetchSize;
+  }
+
   long loadFSEdits(EditLogInputStream edits, long expectedStartingTxId)
       throws IOException {
     return loadFSEdits(edits, expectedStartingTxId, Long.MAX_VALUE, null, null);
@@ -233,13 +256,27 @@ public class FSEditLogLoader {
     Counter counter = prog.getCounter(Phase.LOADING_EDITS, step);
     long lastLogTime = timer.monotonicNow();
     long lastInodeId = fsNamesys.dir.getLastInodeId();
+    OpPrefetcher prefetcher = null;
+    if (prefetchSize > 0 && recovery == null) {
+      prefetcher = new OpPrefetcher(in, prefetchSize, maxTxnsToRead);
+    }
     
     try {
       while (true) {
         try {
           FSEditLogOp op;
+          long position;
+          int logVersion;
           try {
-            op = in.readOp();
+            if (prefetcher != null) {
+              op = prefetcher.next();
+              position = prefetcher.getPosition();
+              logVersion = prefetcher.getLogVersion();
+            } else {
+              op = in.readOp();
+              position = in.getPosition();
+              logVersion = op == null ? 0 : in.getVersion(true);
+            }
             if (op == null) {
               break;
             }
@@ -261,7 +298,7 @@ public class FSEditLogLoader {
             continue;
           }
           recentOpcodeOffsets[(int)(numEdits % recentOpcodeOffsets.length)] =
-            in.getPosition();
+            position;
           if (op.hasTransactionId()) {
             if (op.getTransactionId() > expectedTxId) { 
               MetaRecoveryContext.editLogLoaderPrompt("There appears " +
@@ -284,7 +321,13 @@ public class FSEditLogLoader {
                   + ", numEdits=" + numEdits + ", totalEdits=" + totalEdits);
             }
             long inodeId = applyEditLogOp(op, fsDir, startOpt,
-                in.getVersion(true), lastInodeId);
+                logVersion, lastInodeId);
+            if (fsDir.getContentSummaryCache() != null) {
+              fsDir.getContentSummaryCache().invalidate(op);
+            }
+            if (fsDir.getLocatedBlocksCache() != null) {
+              fsDir.getLocatedBlocksCache().invalidate(op);
+            }
             if (lastInodeId < inodeId) {
               lastInodeId = inodeId;
             }
@@ -335,6 +378,9 @@ public class FSEditLogLoader {
         }
       }
     } finally {
+      if (prefetcher != null) {
+        prefetcher.close();
+      }
       fsNamesys.dir.resetLastInodeId(lastInodeId);
       if(closeOnExit) {
         in.close();
@@ -1322,6 +1368,112 @@ public class FSEditLogLoader {
     boolean hasCorruptHeader() { return hasCorruptHeader; }
   }
 
+  /**
+   * Reads the ops of an edit log on a separate thread, so that reading,
+   * checksumming and decoding them overlaps with applying them under the
+   * namesystem write lock. The ops are applied in the order they are read.
+   */
+  private static class OpPrefetcher implements Runnable {
+    /** An op read from the stream, or the failure to read it. */
+    private static class Prefetched {
+      private final FSEditLogOp op;
+      private final long position;
+      private final int logVersion;
+      private final Throwable error;
+
+      Prefetched(FSEditLogOp op, long position, int logVersion,
+          Throwable error) {
+        this.op = op;
+        this.position = position;
+        this.logVersion = logVersion;
+        this.error = error;
+      }
+    }
+
+    private final EditLogInputStream in;
+    private final long maxOps;
+    private final BlockingQueue<Prefetched> queue;
+    private final Future<?> future;
+    private volatile boolean closed = false;
+    private Prefetched current;
+
+    OpPrefetcher(EditLogInputStream in, int size, long maxOps) {
+      this.in = in;
+      this.maxOps = maxOps;
+      this.queue = new ArrayBlockingQueue<>(size);
+      this.future = PREFETCH_EXECUTOR.submit(this);
+    }
+
+    @Override
+    public void run() {
+      // the ops are handed over, they must not be reused by the next reads
+      FSEditLogOp.OpInstanceCache.disableForCurrentThread();
+      try {
+        for (long n = 0; n < maxOps && !closed; n++) {
+          FSEditLogOp op = in.readOp();
+          queue.put(new Prefetched(op, in.getPosition(),
+              op == null ? 0 : in.getVersion(true), null));
+          if (op == null) {
+            break;
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (Throwable t) {
+        try {
+          queue.put(new Prefetched(null, -1, 0, t));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    /**
+     * @return the next op, or null at the end of the stream.
+     * @throws Throwable the failure to read the op.
+     */
+    FSEditLogOp next() throws Throwable {
+      try {
+        current = queue.take();
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException(
+            "Interrupted while waiting for the next edit log op");
+      }
+      if (current.error != null) {
+        throw current.error;
+      }
+      return current.op;
+    }
+
+    /** @return the stream position after the last op returned by next. */
+    long getPosition() {
+      return current.position;
+    }
+
+    /** @return the log version of the last op returned by next. */
+    int getLogVersion() {
+      return current.logVersion;
+    }
+
+    /**
+     * Stop reading ahead, and wait for the reading thread to stop using the
+     * stream.
+     */
+    void close() {
+      closed = true;
+      // the reader puts at most one more op before it sees the flag
+      queue.clear();
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        future.cancel(true);
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        LOG.warn("Edit log prefetcher failed", e.getCause());
+      }
+    }
+  }
+
   /**
    * Stream wrapper that keeps track of the current stream position.
    * 
@@ -186,9 +186,18 @@ public abstract class FSEditLogOp {
       return this;
     }
 
+    /**
+     * Make every cache used by the calling thread return new instances, so
+     * that the ops the thread reads can be handed over to another thread.
+     */
+    static void disableForCurrentThread() {
+      CACHE.set(null);
+    }
+
     @SuppressWarnings("unchecked")
     public <T extends FSEditLogOp> T get(FSEditLogOpCodes opCode) {
-      return useCache ? (T)CACHE.get().get(opCode) : (T)newInstance(opCode);
+      OpInstanceCacheMap map = useCache ? CACHE.get() : null;
+      return map != null ? (T)map.get(opCode) : (T)newInstance(opCode);
     }
 
     private static FSEditLogOp newInstance(FSEditLogOpCodes opCode) {
@@ -110,6 +110,9 @@ public class FSImage implements Closeable {
 
   final private Configuration conf;
 
+  /** The number of edit log ops read ahead while loading edits. */
+  private final int editsPrefetchSize;
+
   protected NNStorageRetentionManager archivalManager;
 
   /**
@@ -162,6 +165,9 @@ public class FSImage implements Closeable {
                     List<URI> editsDirs)
       throws IOException {
     this.conf = conf;
+    this.editsPrefetchSize = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_EDITS_PREFETCH_SIZE_KEY,
+        DFSConfigKeys.DFS_NAMENODE_EDITS_PREFETCH_SIZE_DEFAULT);
 
     storage = new NNStorage(conf, imageDirs, editsDirs);
     if(conf.getBoolean(DFSConfigKeys.DFS_NAMENODE_NAME_DIR_RESTORE_KEY,
@@ -895,6 +901,7 @@ public class FSImage implements Closeable {
     long remainingReadTxns = maxTxnsToRead;
     try {    
       FSEditLogLoader loader = new FSEditLogLoader(target, lastAppliedTxId);
+      loader.setPrefetchSize(editsPrefetchSize);
       
       // Load latest edits
       for (EditLogInputStream editIn : editStreams) {
@@ -986,7 +993,8 @@ public class FSImage implements Closeable {
     File newFile = NNStorage.getStorageFile(sd, NameNodeFile.IMAGE_NEW, txid);
     File dstFile = NNStorage.getStorageFile(sd, dstType, txid);
     
-    FSImageFormatProtobuf.Saver saver = new FSImageFormatProtobuf.Saver(context);
+    FSImageFormatProtobuf.Saver saver = new FSImageFormatProtobuf.Saver(context,
+        conf, dstType == NameNodeFile.IMAGE_ROLLBACK);
     FSImageCompression compression = FSImageCompression.createCompression(conf);
     long numErrors = saver.save(newFile, compression);
     if (numErrors > 0) {
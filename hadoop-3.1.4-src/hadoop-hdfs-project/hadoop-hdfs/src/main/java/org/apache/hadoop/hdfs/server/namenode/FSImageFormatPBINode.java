@@ -18,13 +18,20 @@
 
 package org.apache.hadoop.hdfs.server.namenode;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -193,6 +200,12 @@ public final class FSImageFormatPBINode {
       }
     }
 
+    /**
+     * Number of inodes a parallel loader thread collects before adding them
+     * to the shared namespace structures under a lock.
+     */
+    private static final int LOAD_BATCH_SIZE = 1000;
+
     private final FSDirectory dir;
     private final FSNamesystem fsn;
     private final FSImageFormatProtobuf.Loader parent;
@@ -225,6 +238,137 @@ public final class FSImageFormatPBINode {
       }
     }
 
+    /**
+     * Load the INODE_DIR sub-sections on the given executor. Every directory
+     * has a single entry, so the threads add children to distinct parents
+     * and only the name cache and the blocks map are shared between them.
+     */
+    void loadINodeDirectorySectionInParallel(ExecutorService executor,
+        List<FileSummary.Section> subSections, final String compressionCodec)
+        throws IOException {
+      LOG.info("Loading the INodeDirectory section in parallel with " +
+          subSections.size() + " sub-sections");
+      List<Future<Long>> futures = new ArrayList<>(subSections.size());
+      for (final FileSummary.Section s : subSections) {
+        futures.add(executor.submit(() -> {
+          try (InputStream in = parent.getInputStreamForSection(s,
+              compressionCodec)) {
+            return loadINodeDirectorySubSection(in);
+          }
+        }));
+      }
+      long numEntries = FSImageFormatProtobuf.waitForSubSections(futures);
+      LOG.info("Loaded " + numEntries + " INodeDirectory entries");
+    }
+
+    private long loadINodeDirectorySubSection(InputStream in)
+        throws IOException {
+      final List<INodeReference> refList = parent.getLoaderContext()
+          .getRefList();
+      List<INode> added = new ArrayList<>(LOAD_BATCH_SIZE);
+      long numEntries = 0;
+      while (true) {
+        INodeDirectorySection.DirEntry e = INodeDirectorySection.DirEntry
+            .parseDelimitedFrom(in);
+        if (e == null) {
+          break;
+        }
+        numEntries++;
+        INodeDirectory p = dir.getInode(e.getParent()).asDirectory();
+        for (long id : e.getChildrenList()) {
+          INode child = dir.getInode(id);
+          if (addChildAtLoading(p, child)) {
+            added.add(child);
+          }
+        }
+        for (int refId : e.getRefChildrenList()) {
+          INodeReference ref = refList.get(refId);
+          if (addChildAtLoading(p, ref)) {
+            added.add(ref);
+          }
+        }
+        if (added.size() >= LOAD_BATCH_SIZE) {
+          addToCacheAndBlocksMap(added);
+          added.clear();
+        }
+      }
+      addToCacheAndBlocksMap(added);
+      return numEntries;
+    }
+
+    /**
+     * Load the INODE section from the given sub-sections on the executor.
+     * The section header is still read from the main image stream.
+     */
+    void loadINodeSectionInParallel(ExecutorService executor, InputStream in,
+        List<FileSummary.Section> subSections, final String compressionCodec,
+        StartupProgress prog, Step currentStep) throws IOException {
+      INodeSection s = INodeSection.parseDelimitedFrom(in);
+      fsn.dir.resetLastInodeId(s.getLastInodeId());
+      long numInodes = s.getNumInodes();
+      LOG.info("Loading " + numInodes + " INodes in parallel with " +
+          subSections.size() + " sub-sections");
+      prog.setTotal(Phase.LOADING_FSIMAGE, currentStep, numInodes);
+      final Counter counter = prog.getCounter(Phase.LOADING_FSIMAGE,
+          currentStep);
+      List<Future<Long>> futures = new ArrayList<>(subSections.size());
+      for (final FileSummary.Section sub : subSections) {
+        futures.add(executor.submit(() -> {
+          try (InputStream sin = parent.getInputStreamForSection(sub,
+              compressionCodec)) {
+            return loadINodeSubSection(sin, counter);
+          }
+        }));
+      }
+      long loaded = FSImageFormatProtobuf.waitForSubSections(futures);
+      if (loaded != numInodes) {
+        throw new IOException("Expected to load " + numInodes +
+            " INodes from the image sub-sections but loaded " + loaded);
+      }
+    }
+
+    private long loadINodeSubSection(InputStream in, Counter counter)
+        throws IOException {
+      List<INode> loaded = new ArrayList<>(LOAD_BATCH_SIZE);
+      long numInodes = 0;
+      while (true) {
+        INodeSection.INode p = INodeSection.INode.parseDelimitedFrom(in);
+        if (p == null) {
+          break;
+        }
+        if (p.getId() == INodeId.ROOT_INODE_ID) {
+          synchronized (this) {
+            loadRootINode(p);
+          }
+        } else {
+          loaded.add(loadINode(p));
+          if (loaded.size() >= LOAD_BATCH_SIZE) {
+            addToInodeMap(loaded);
+            loaded.clear();
+          }
+        }
+        numInodes++;
+        counter.increment();
+      }
+      addToInodeMap(loaded);
+      return numInodes;
+    }
+
+    private synchronized void addToInodeMap(List<INode> inodes) {
+      for (INode n : inodes) {
+        dir.addToInodeMap(n);
+      }
+    }
+
+    private synchronized void addToCacheAndBlocksMap(List<INode> children) {
+      for (INode child : children) {
+        dir.cacheName(child);
+        if (child.isFile()) {
+          updateBlocksMap(child.asFile(), fsn.getBlockManager());
+        }
+      }
+    }
+
     void loadINodeSection(InputStream in, StartupProgress prog,
         Step currentStep) throws IOException {
       INodeSection s = INodeSection.parseDelimitedFrom(in);
@@ -261,14 +405,7 @@ public final class FSImageFormatPBINode {
     }
 
     private void addToParent(INodeDirectory parent, INode child) {
-      if (parent == dir.rootDir && FSDirectory.isReservedName(child)) {
-        throw new HadoopIllegalArgumentException("File name \""
-            + child.getLocalName() + "\" is reserved. Please "
-            + " change the name of the existing file or directory to another "
-            + "name before upgrading to this release.");
-      }
-      // NOTE: This does not update space counts for parents
-      if (!parent.addChildAtLoading(child)) {
+      if (!addChildAtLoading(parent, child)) {
         return;
       }
       dir.cacheName(child);
@@ -278,6 +415,22 @@ public final class FSImageFormatPBINode {
       }
     }
 
+    /**
+     * Add the child to its parent without updating the shared namespace
+     * structures.
+     * @return false if the child already existed in the parent.
+     */
+    private boolean addChildAtLoading(INodeDirectory parent, INode child) {
+      if (parent == dir.rootDir && FSDirectory.isReservedName(child)) {
+        throw new HadoopIllegalArgumentException("File name \""
+            + child.getLocalName() + "\" is reserved. Please "
+            + " change the name of the existing file or directory to another "
+            + "name before upgrading to this release.");
+      }
+      // NOTE: This does not update space counts for parents
+      return parent.addChildAtLoading(child);
+    }
+
     private INode loadINode(INodeSection.INode n) {
       switch (n.getType()) {
       case FILE:
@@ -525,6 +678,15 @@ public final class FSImageFormatPBINode {
           .getMapIterator();
       final ArrayList<INodeReference> refList = parent.getSaverContext()
           .getRefList();
+      // Directory entries are written serially as the reference list depends
+      // on their order, but are cut into sub-sections of roughly the same
+      // number of children so that they can be loaded in parallel.
+      final int childrenPerSubSection = parent.getInodesPerSubSection(
+          dir.getInodeMapSize());
+      if (childrenPerSubSection > 0) {
+        parent.beginSubSections();
+      }
+      long childrenInSubSection = 0;
       int i = 0;
       while (iter.hasNext()) {
         INodeWithAdditionalFields n = iter.next();
@@ -560,6 +722,14 @@ public final class FSImageFormatPBINode {
           }
           INodeDirectorySection.DirEntry e = b.build();
           e.writeDelimitedTo(out);
+
+          childrenInSubSection += children.size();
+          if (childrenPerSubSection > 0 &&
+              childrenInSubSection >= childrenPerSubSection) {
+            parent.commitSubSection(summary,
+                FSImageFormatProtobuf.SectionName.INODE_DIR_SUB);
+            childrenInSubSection = 0;
+          }
         }
 
         ++i;
@@ -567,6 +737,10 @@ public final class FSImageFormatPBINode {
           context.checkCancelled();
         }
       }
+      if (childrenPerSubSection > 0 && childrenInSubSection > 0) {
+        parent.commitSubSection(summary,
+            FSImageFormatProtobuf.SectionName.INODE_DIR_SUB);
+      }
       parent.commitSection(summary,
           FSImageFormatProtobuf.SectionName.INODE_DIR);
     }
@@ -579,19 +753,98 @@ public final class FSImageFormatPBINode {
       INodeSection s = b.build();
       s.writeDelimitedTo(out);
 
-      int i = 0;
       Iterator<INodeWithAdditionalFields> iter = inodesMap.getMapIterator();
-      while (iter.hasNext()) {
-        INodeWithAdditionalFields n = iter.next();
-        save(out, n);
-        ++i;
-        if (i % FSImageFormatProtobuf.Saver.CHECK_CANCEL_INTERVAL == 0) {
-          context.checkCancelled();
+      int inodesPerSubSection = parent.getInodesPerSubSection(
+          inodesMap.size());
+      if (inodesPerSubSection > 0) {
+        serializeINodeSubSections(out, iter, inodesPerSubSection);
+      } else {
+        int i = 0;
+        while (iter.hasNext()) {
+          INodeWithAdditionalFields n = iter.next();
+          save(out, n);
+          ++i;
+          if (i % FSImageFormatProtobuf.Saver.CHECK_CANCEL_INTERVAL == 0) {
+            context.checkCancelled();
+          }
         }
       }
       parent.commitSection(summary, FSImageFormatProtobuf.SectionName.INODE);
     }
 
+    /**
+     * Write the inodes as INODE sub-sections of the given size. When the
+     * parent saver has an executor the sub-sections are serialized by its
+     * threads, and written out in order as they complete.
+     */
+    private void serializeINodeSubSections(OutputStream out,
+        Iterator<INodeWithAdditionalFields> iter, int inodesPerSubSection)
+        throws IOException {
+      parent.beginSubSections();
+      ExecutorService executor = parent.getExecutor();
+      Deque<Future<byte[]>> pending = new ArrayDeque<>();
+      try {
+        int i = 0;
+        while (iter.hasNext()) {
+          final List<INode> batch = new ArrayList<>(inodesPerSubSection);
+          while (iter.hasNext() && batch.size() < inodesPerSubSection) {
+            batch.add(iter.next());
+            ++i;
+            if (i % FSImageFormatProtobuf.Saver.CHECK_CANCEL_INTERVAL == 0) {
+              context.checkCancelled();
+            }
+          }
+          if (executor == null) {
+            for (INode n : batch) {
+              save(out, n);
+            }
+            parent.commitSubSection(summary,
+                FSImageFormatProtobuf.SectionName.INODE_SUB);
+            continue;
+          }
+          pending.add(executor.submit(() -> {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (INode n : batch) {
+              save(bytes, n);
+            }
+            return bytes.toByteArray();
+          }));
+          // bound the number of serialized sub-sections held in memory
+          if (pending.size() > parent.getNumThreads()) {
+            writeSubSection(out, pending.remove());
+          }
+        }
+        while (!pending.isEmpty()) {
+          writeSubSection(out, pending.remove());
+        }
+      } finally {
+        for (Future<byte[]> f : pending) {
+          f.cancel(true);
+        }
+      }
+    }
+
+    private void writeSubSection(OutputStream out, Future<byte[]> f)
+        throws IOException {
+      try {
+        out.write(f.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException(
+            "Interrupted while serializing inodes");
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw new IOException(cause);
+      }
+      parent.commitSubSection(summary,
+          FSImageFormatProtobuf.SectionName.INODE_SUB);
+    }
+
     void serializeFilesUCSection(OutputStream out) throws IOException {
       Collection<Long> filesWithUC = fsn.getLeaseManager()
               .getINodeIdWithLeases();
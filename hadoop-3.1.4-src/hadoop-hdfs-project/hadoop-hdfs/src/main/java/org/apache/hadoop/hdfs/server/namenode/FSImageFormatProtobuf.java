@@ -27,6 +27,7 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
@@ -40,6 +41,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicyInfo;
 import org.apache.hadoop.hdfs.protocolPB.PBHelperClient;
@@ -48,6 +53,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CacheDirectiveInfoProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CachePoolInfoProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.ErasureCodingPolicyProto;
@@ -74,6 +80,7 @@ import org.apache.hadoop.util.Time;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.CodedOutputStream;
 
 /**
@@ -149,6 +156,8 @@ public final class FSImageFormatProtobuf {
      * when we're doing (rollingUpgrade rollback).
      */
     private final boolean requireSameLayoutVersion;
+    /** The image file being loaded, opened again by parallel readers. */
+    private File imageFile;
 
     Loader(Configuration conf, FSNamesystem fsn,
         boolean requireSameLayoutVersion) {
@@ -230,6 +239,7 @@ public final class FSImageFormatProtobuf {
 
     void load(File file) throws IOException {
       long start = Time.monotonicNow();
+      imageFile = file;
       DigestThread dt = new DigestThread(file);
       dt.start();
       RandomAccessFile raFile = new RandomAccessFile(file, "r");
@@ -287,6 +297,34 @@ public final class FSImageFormatProtobuf {
         }
       });
 
+      // Sub-sections are only loaded in parallel from uncompressed images,
+      // older images and images saved without sub-sections load serially.
+      ExecutorService executor = null;
+      ArrayList<FileSummary.Section> inodeSubSections =
+          getSubSectionsOfName(sections, SectionName.INODE_SUB);
+      ArrayList<FileSummary.Section> dirSubSections =
+          getSubSectionsOfName(sections, SectionName.INODE_DIR_SUB);
+      if (enableParallelSaveAndLoad(conf) && !summary.hasCodec() &&
+          (!inodeSubSections.isEmpty() || !dirSubSections.isEmpty())) {
+        executor = newExecutor(getThreadCount(conf), "FSImageLoader-%d");
+      }
+      try {
+        loadSections(channel, fin, summary, sections, inodeLoader,
+            snapshotLoader, executor, inodeSubSections, dirSubSections);
+      } finally {
+        if (executor != null) {
+          executor.shutdownNow();
+        }
+      }
+    }
+
+    private void loadSections(FileChannel channel, FileInputStream fin,
+        FileSummary summary, ArrayList<FileSummary.Section> sections,
+        FSImageFormatPBINode.Loader inodeLoader,
+        FSImageFormatPBSnapshot.Loader snapshotLoader,
+        ExecutorService executor,
+        ArrayList<FileSummary.Section> inodeSubSections,
+        ArrayList<FileSummary.Section> dirSubSections) throws IOException {
       StartupProgress prog = NameNode.getStartupProgress();
       /**
        * beginStep() and the endStep() calls do not match the boundary of the
@@ -315,14 +353,28 @@ public final class FSImageFormatProtobuf {
         case INODE: {
           currentStep = new Step(StepType.INODES);
           prog.beginStep(Phase.LOADING_FSIMAGE, currentStep);
-          inodeLoader.loadINodeSection(in, prog, currentStep);
+          if (executor != null && !inodeSubSections.isEmpty()) {
+            inodeLoader.loadINodeSectionInParallel(executor, in,
+                inodeSubSections, summary.getCodec(), prog, currentStep);
+          } else {
+            inodeLoader.loadINodeSection(in, prog, currentStep);
+          }
         }
           break;
         case INODE_REFERENCE:
           snapshotLoader.loadINodeReferenceSection(in);
           break;
         case INODE_DIR:
-          inodeLoader.loadINodeDirectorySection(in);
+          if (executor != null && !dirSubSections.isEmpty()) {
+            inodeLoader.loadINodeDirectorySectionInParallel(executor,
+                dirSubSections, summary.getCodec());
+          } else {
+            inodeLoader.loadINodeDirectorySection(in);
+          }
+          break;
+        case INODE_SUB:
+        case INODE_DIR_SUB:
+          // Sub-sections are loaded together with their parent section.
           break;
         case FILES_UNDERCONSTRUCTION:
           inodeLoader.loadFilesUnderConstructionSection(in);
@@ -445,6 +497,107 @@ public final class FSImageFormatProtobuf {
       }
       fsn.getErasureCodingPolicyManager().loadPolicies(ecPolicies, conf);
     }
+
+    private static ArrayList<FileSummary.Section> getSubSectionsOfName(
+        List<FileSummary.Section> sections, SectionName name) {
+      ArrayList<FileSummary.Section> subSections = Lists.newArrayList();
+      for (FileSummary.Section s : sections) {
+        if (SectionName.fromString(s.getName()) == name) {
+          subSections.add(s);
+        }
+      }
+      return subSections;
+    }
+
+    /**
+     * Open a new stream over the given section of the image file, so that
+     * sections can be read independently of the main image stream.
+     */
+    InputStream getInputStreamForSection(FileSummary.Section section,
+        String compressionCodec) throws IOException {
+      FileInputStream fin = new FileInputStream(imageFile);
+      try {
+        fin.getChannel().position(section.getOffset());
+        InputStream in = new BufferedInputStream(new LimitInputStream(fin,
+            section.getLength()));
+        return FSImageUtil.wrapInputStreamForCompression(conf,
+            compressionCodec, in);
+      } catch (IOException e) {
+        fin.close();
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * @return true if the INODE and INODE_DIR sections of saved images should
+   *         be split into sub-sections which are saved and loaded in
+   *         parallel. Sub-sections of compressed images cannot be decoded
+   *         independently, so this is never the case for compressed images.
+   */
+  static boolean enableParallelSaveAndLoad(Configuration conf) {
+    boolean parallel = conf.getBoolean(
+        DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_KEY,
+        DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_DEFAULT);
+    boolean compress = conf.getBoolean(DFSConfigKeys.DFS_IMAGE_COMPRESS_KEY,
+        DFSConfigKeys.DFS_IMAGE_COMPRESS_DEFAULT);
+    if (parallel && compress) {
+      LOG.warn("Parallel image saving and loading is not supported when {}" +
+          " is set to true. Parallel saving and loading will be disabled.",
+          DFSConfigKeys.DFS_IMAGE_COMPRESS_KEY);
+      return false;
+    }
+    return parallel;
+  }
+
+  private static int getThreadCount(Configuration conf) {
+    int threads = conf.getInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_THREAD_COUNT_KEY,
+        DFSConfigKeys.DFS_IMAGE_PARALLEL_THREAD_COUNT_DEFAULT);
+    if (threads < 1) {
+      LOG.warn("Invalid value {} for {}, using the default of {}", threads,
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_THREAD_COUNT_KEY,
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_THREAD_COUNT_DEFAULT);
+      threads = DFSConfigKeys.DFS_IMAGE_PARALLEL_THREAD_COUNT_DEFAULT;
+    }
+    return threads;
+  }
+
+  private static ExecutorService newExecutor(int threads, String nameFormat) {
+    LOG.info("Using {} threads to process fsimage sub-sections", threads);
+    return Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+        .setDaemon(true).setNameFormat(nameFormat).build());
+  }
+
+  /**
+   * Wait for all the given tasks processing image sub-sections. If any task
+   * failed, the remaining tasks are cancelled and its failure is rethrown.
+   * @return the sum of the results of the tasks.
+   */
+  static long waitForSubSections(List<Future<Long>> futures)
+      throws IOException {
+    long total = 0;
+    try {
+      for (Future<Long> f : futures) {
+        total += f.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(
+          "Interrupted while processing fsimage sub-sections");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    } finally {
+      for (Future<Long> f : futures) {
+        f.cancel(true);
+      }
+    }
+    return total;
   }
 
   public static final class Saver {
@@ -461,9 +614,42 @@ public final class FSImageFormatProtobuf {
     private CompressionCodec codec;
     private OutputStream underlyingOutputStream;
 
+    private final boolean parallelEnabled;
+    /** Whether the image may be loaded by a release without sub-sections. */
+    private final boolean rollback;
+    private final int numThreads;
+    private final int targetSubSections;
+    private final int inodeThreshold;
+    /** Whether the current image is written with sub-sections. */
+    private boolean writeSubSections;
+    private long subSectionOffset;
+    private ExecutorService executor;
+
     Saver(SaveNamespaceContext context) {
+      this(context, new Configuration());
+    }
+
+    Saver(SaveNamespaceContext context, Configuration conf) {
+      this(context, conf, false);
+    }
+
+    /**
+     * @param rollback true if the image is saved for a rollback, which
+     *                 means that it is never split into sub-sections
+     */
+    Saver(SaveNamespaceContext context, Configuration conf,
+        boolean rollback) {
       this.context = context;
       this.saverContext = new SaverContext();
+      this.parallelEnabled = enableParallelSaveAndLoad(conf);
+      this.rollback = rollback;
+      this.numThreads = getThreadCount(conf);
+      this.targetSubSections = Math.max(1, conf.getInt(
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_TARGET_SECTIONS_KEY,
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_TARGET_SECTIONS_DEFAULT));
+      this.inodeThreshold = conf.getInt(
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_INODE_THRESHOLD_KEY,
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_INODE_THRESHOLD_DEFAULT);
     }
 
     public MD5Hash getSavedDigest() {
@@ -492,6 +678,55 @@ public final class FSImageFormatProtobuf {
       summary.addSections(FileSummary.Section.newBuilder().setName(name.name)
           .setLength(length).setOffset(currentOffset));
       currentOffset += length;
+      subSectionOffset = currentOffset;
+    }
+
+    /**
+     * @return the number of inodes to write per sub-section for a namespace
+     *         of the given size, or 0 if the image is saved without
+     *         sub-sections.
+     */
+    int getInodesPerSubSection(long numInodes) {
+      if (!writeSubSections || numInodes < inodeThreshold) {
+        return 0;
+      }
+      return (int) Math.max(1, (numInodes + targetSubSections - 1)
+          / targetSubSections);
+    }
+
+    /**
+     * @return the executor serializing sub-sections, or null if they are
+     *         serialized by the saving thread.
+     */
+    ExecutorService getExecutor() {
+      return executor;
+    }
+
+    int getNumThreads() {
+      return numThreads;
+    }
+
+    /**
+     * Start the first sub-section at the current position of the stream,
+     * which may be after the header of the enclosing section.
+     */
+    void beginSubSections() throws IOException {
+      flushSectionOutputStream();
+      subSectionOffset = fileChannel.position();
+    }
+
+    /**
+     * Record the data written since the end of the previous sub-section as
+     * a sub-section with the given name. Sub-sections are only written to
+     * uncompressed images, so the data can be read back independently.
+     */
+    void commitSubSection(FileSummary.Builder summary, SectionName name)
+        throws IOException {
+      flushSectionOutputStream();
+      long length = fileChannel.position() - subSectionOffset;
+      summary.addSections(FileSummary.Section.newBuilder().setName(name.name)
+          .setLength(length).setOffset(subSectionOffset));
+      subSectionOffset += length;
     }
 
     private void flushSectionOutputStream() throws IOException {
@@ -589,6 +824,11 @@ public final class FSImageFormatProtobuf {
       } else {
         sectionOutputStream = underlyingOutputStream;
       }
+      // Releases before sub-sections were introduced fail to load images
+      // containing them, so they are not written to images which such a
+      // release may load after a rollback or a rolling downgrade.
+      writeSubSections = parallelEnabled && codec == null && !rollback &&
+          !context.getSourceNamesystem().isRollingUpgrade();
 
       saveNameSystemSection(b);
       // Check for cancellation right after serializing the name system section.
@@ -610,7 +850,19 @@ public final class FSImageFormatProtobuf {
       step = new Step(StepType.INODES, filePath);
       prog.beginStep(Phase.SAVING_CHECKPOINT, step);
       // Count number of non-fatal errors when saving inodes and snapshots.
-      long numErrors = saveInodes(b);
+      long numErrors;
+      if (getInodesPerSubSection(context.getSourceNamesystem().dir
+          .getInodeMapSize()) > 0) {
+        executor = newExecutor(numThreads, "FSImageSaver-%d");
+      }
+      try {
+        numErrors = saveInodes(b);
+      } finally {
+        if (executor != null) {
+          executor.shutdownNow();
+          executor = null;
+        }
+      }
       numErrors += saveSnapshots(b);
       prog.endStep(Phase.SAVING_CHECKPOINT, step);
 
@@ -747,7 +999,9 @@ public final class FSImageFormatProtobuf {
     FILES_UNDERCONSTRUCTION("FILES_UNDERCONSTRUCTION"),
     SNAPSHOT_DIFF("SNAPSHOT_DIFF"),
     SECRET_MANAGER("SECRET_MANAGER"),
-    CACHE_MANAGER("CACHE_MANAGER");
+    CACHE_MANAGER("CACHE_MANAGER"),
+    INODE_SUB("INODE_SUB"),
+    INODE_DIR_SUB("INODE_DIR_SUB");
 
     private static final SectionName[] values = SectionName.values();
 
@@ -202,6 +202,7 @@ import org.apache.hadoop.hdfs.protocol.CacheDirectiveInfo;
 import org.apache.hadoop.hdfs.protocol.CachePoolEntry;
 import org.apache.hadoop.hdfs.protocol.CachePoolInfo;
 import org.apache.hadoop.hdfs.protocol.ClientProtocol;
+import org.apache.hadoop.hdfs.protocol.CreateBatchResult;
 import org.apache.hadoop.hdfs.protocol.DatanodeID;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo.DatanodeInfoBuilder;
@@ -1971,14 +1972,16 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
       long offset, long length) throws IOException {
     final String operationName = "open";
     checkOperation(OperationCategory.READ);
+    final long startNanos = System.nanoTime();
     GetBlockLocationsResult res = null;
     final FSPermissionChecker pc = getPermissionChecker();
+    final LocatedBlocksCache cache = dir.getLocatedBlocksCache();
     final INode inode;
     readLock();
     try {
       checkOperation(OperationCategory.READ);
       res = FSDirStatAndListingOp.getBlockLocations(
-          dir, pc, srcArg, offset, length, true);
+          dir, pc, srcArg, offset, length, true, cache != null);
       inode = res.getIIp().getLastINode();
       if (isInSafeMode()) {
         for (LocatedBlock b : res.blocks.getLocatedBlocks()) {
@@ -2040,7 +2043,19 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
     }
 
     LocatedBlocks blocks = res.blocks;
+    if (!res.cached && res.cacheKey != null && !isInSafeMode()) {
+      cache.put(res.cacheKey, blocks, res.cacheGeneration);
+    }
     sortLocatedBlocks(clientMachine, blocks);
+    final NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+    if (cache != null && metrics != null) {
+      final long elapsedMicros = (System.nanoTime() - startNanos) / 1000;
+      if (res.cached) {
+        metrics.addBlockLocationsCacheHit(elapsedMicros);
+      } else {
+        metrics.addBlockLocationsCacheMiss(elapsedMicros);
+      }
+    }
     return blocks;
   }
 
@@ -2418,6 +2433,70 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
           .append(Arrays.toString(supportedVersions));
       NameNode.stateChangeLog.debug(builder.toString());
     }
+    boolean skipSync = true; // until we do something that might create edits
+    HdfsFileStatus stat = null;
+    BlocksMapUpdateInfo toRemoveBlocks = null;
+
+    checkOperation(OperationCategory.WRITE);
+    final FSPermissionChecker pc = getPermissionChecker();
+    writeLock();
+    try {
+      checkOperation(OperationCategory.WRITE);
+      checkNameNodeSafeMode("Cannot create file" + src);
+      final StartFileArgs args = validateStartFile(pc, src, clientMachine,
+          flag, createParent, replication, blockSize, supportedVersions,
+          ecPolicyName);
+
+      skipSync = false; // following might generate edits
+      toRemoveBlocks = new BlocksMapUpdateInfo();
+      stat = startFileLocked(args, permissions, holder, clientMachine, flag,
+          createParent, replication, blockSize, ecPolicyName, toRemoveBlocks,
+          logRetryCache);
+    } catch (IOException e) {
+      skipSync = skipSync || e instanceof StandbyException;
+      throw e;
+    } finally {
+      writeUnlock("create");
+      // There might be transactions logged while trying to recover the lease.
+      // They need to be sync'ed even when an exception was thrown.
+      if (!skipSync) {
+        getEditLog().logSync();
+        if (toRemoveBlocks != null) {
+          removeBlocks(toRemoveBlocks);
+          toRemoveBlocks.clear();
+        }
+      }
+    }
+
+    return stat;
+  }
+
+  /** The path and encryption info of a file which can be created. */
+  private static class StartFileArgs {
+    private final INodesInPath iip;
+    private final FileEncryptionInfo feInfo;
+    private final boolean shouldReplicate;
+
+    StartFileArgs(INodesInPath iip, FileEncryptionInfo feInfo,
+        boolean shouldReplicate) {
+      this.iip = iip;
+      this.feInfo = feInfo;
+      this.shouldReplicate = shouldReplicate;
+    }
+  }
+
+  /**
+   * Check that a file can be created, the caller holding the write lock.
+   * No edit is logged. If the file is in an encryption zone, the write lock
+   * is released while its EDEK is generated and the path is resolved again
+   * once the lock is retaken.
+   */
+  private StartFileArgs validateStartFile(FSPermissionChecker pc, String src,
+      String clientMachine, EnumSet<CreateFlag> flag, boolean createParent,
+      short replication, long blockSize,
+      CryptoProtocolVersion[] supportedVersions, String ecPolicyName)
+      throws IOException {
+    assert hasWriteLock();
     if (!DFSUtil.isValidName(src) ||
         FSDirectory.isExactReservedName(src) ||
         (FSDirectory.isReservedName(src)
@@ -2433,9 +2512,104 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
           "ecPolicyName are exclusive parameters. Set both is not allowed!");
     }
 
-    INodesInPath iip = null;
+    INodesInPath iip = FSDirWriteFileOp.resolvePathForStartFile(
+        dir, pc, src, flag, createParent);
+
+    if (blockSize < minBlockSize) {
+      throw new IOException("Specified block size is less than configured" +
+          " minimum value (" + DFSConfigKeys.DFS_NAMENODE_MIN_BLOCK_SIZE_KEY
+          + "): " + blockSize + " < " + minBlockSize);
+    }
+
+    if (shouldReplicate) {
+      blockManager.verifyReplication(src, replication, clientMachine);
+    } else {
+      final ErasureCodingPolicy ecPolicy = FSDirErasureCodingOp
+          .getErasureCodingPolicy(this, ecPolicyName, iip);
+      if (ecPolicy != null && (!ecPolicy.isReplicationPolicy())) {
+        checkErasureCodingSupported("createWithEC");
+        if (blockSize < ecPolicy.getCellSize()) {
+          throw new IOException("Specified block size (" + blockSize
+              + ") is less than the cell size (" + ecPolicy.getCellSize()
+              +") of the erasure coding policy (" + ecPolicy + ").");
+        }
+      } else {
+        blockManager.verifyReplication(src, replication, clientMachine);
+      }
+    }
+
+    FileEncryptionInfo feInfo = null;
+    if (!iip.isRaw() && provider != null) {
+      EncryptionKeyInfo ezInfo = FSDirEncryptionZoneOp.getEncryptionKeyInfo(
+          this, iip, supportedVersions);
+      // if the path has an encryption zone, the lock was released while
+      // generating the EDEK.  re-resolve the path to ensure the namesystem
+      // and/or EZ has not mutated
+      if (ezInfo != null) {
+        checkOperation(OperationCategory.WRITE);
+        iip = FSDirWriteFileOp.resolvePathForStartFile(
+            dir, pc, iip.getPath(), flag, createParent);
+        feInfo = FSDirEncryptionZoneOp.getFileEncryptionInfo(
+            dir, iip, ezInfo);
+      }
+    }
+    return new StartFileArgs(iip, feInfo, shouldReplicate);
+  }
+
+  /**
+   * Create a file checked by {@link #validateStartFile}, the caller holding
+   * the write lock since the check. The blocks of a file overwritten by the
+   * new one are added to toRemoveBlocks, and the edits must be synced by the
+   * caller once the lock is released, even if an exception was thrown.
+   */
+  private HdfsFileStatus startFileLocked(StartFileArgs args,
+      PermissionStatus permissions, String holder, String clientMachine,
+      EnumSet<CreateFlag> flag, boolean createParent, short replication,
+      long blockSize, String ecPolicyName, BlocksMapUpdateInfo toRemoveBlocks,
+      boolean logRetryCache) throws IOException {
+    assert hasWriteLock();
+    dir.writeLock();
+    try {
+      return FSDirWriteFileOp.startFile(this, args.iip, permissions, holder,
+          clientMachine, flag, createParent, replication, blockSize,
+          args.feInfo, toRemoveBlocks, args.shouldReplicate, ecPolicyName,
+          logRetryCache);
+    } finally {
+      dir.writeUnlock();
+    }
+  }
+
+  /**
+   * Create a batch of files under a single acquisition of the write lock,
+   * syncing their edits together. Files are created in order until one of
+   * them fails; the failure is returned with the status of the files created
+   * before it, or thrown if no file was created.
+   * <p>
+   * As with create, the write lock is released while the EDEK of a file in
+   * an encryption zone is generated, so other operations may run between
+   * the files of the batch. The files already created are not affected;
+   * the path of the next one is resolved again.
+   * <p>
+   * The creation of each file is logged with the ids of the call. A
+   * NameNode replaying the edits thus keeps the status of the last file of
+   * the batch in its retry cache, see {@link #getReplayedBatchResult}.
+   *
+   * @see ClientProtocol#createBatch
+   */
+  CreateBatchResult startFiles(String[] srcs, PermissionStatus permissions,
+      String holder, String clientMachine, EnumSet<CreateFlag> flag,
+      boolean createParent, short replication, long blockSize,
+      CryptoProtocolVersion[] supportedVersions, String ecPolicyName,
+      boolean logRetryCache) throws IOException {
+    if (NameNode.stateChangeLog.isDebugEnabled()) {
+      NameNode.stateChangeLog.debug("DIR* NameSystem.startFiles: "
+          + srcs.length + " files starting at " + srcs[0] + ", holder="
+          + holder + ", clientMachine=" + clientMachine + ", createFlag="
+          + flag);
+    }
+    final List<HdfsFileStatus> stats = new ArrayList<>(srcs.length);
+    Exception failure = null;
     boolean skipSync = true; // until we do something that might create edits
-    HdfsFileStatus stat = null;
     BlocksMapUpdateInfo toRemoveBlocks = null;
 
     checkOperation(OperationCategory.WRITE);
@@ -2443,68 +2617,31 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
     writeLock();
     try {
       checkOperation(OperationCategory.WRITE);
-      checkNameNodeSafeMode("Cannot create file" + src);
-
-      iip = FSDirWriteFileOp.resolvePathForStartFile(
-          dir, pc, src, flag, createParent);
-
-
-      if (blockSize < minBlockSize) {
-        throw new IOException("Specified block size is less than configured" +
-            " minimum value (" + DFSConfigKeys.DFS_NAMENODE_MIN_BLOCK_SIZE_KEY
-            + "): " + blockSize + " < " + minBlockSize);
-      }
+      checkNameNodeSafeMode("Cannot create files starting at " + srcs[0]);
 
-      if (shouldReplicate) {
-        blockManager.verifyReplication(src, replication, clientMachine);
-      } else {
-        final ErasureCodingPolicy ecPolicy = FSDirErasureCodingOp
-            .getErasureCodingPolicy(this, ecPolicyName, iip);
-        if (ecPolicy != null && (!ecPolicy.isReplicationPolicy())) {
-          checkErasureCodingSupported("createWithEC");
-          if (blockSize < ecPolicy.getCellSize()) {
-            throw new IOException("Specified block size (" + blockSize
-                + ") is less than the cell size (" + ecPolicy.getCellSize()
-                +") of the erasure coding policy (" + ecPolicy + ").");
+      toRemoveBlocks = new BlocksMapUpdateInfo();
+      for (String src : srcs) {
+        try {
+          final StartFileArgs args = validateStartFile(pc, src, clientMachine,
+              flag, createParent, replication, blockSize, supportedVersions,
+              ecPolicyName);
+          skipSync = false; // following might generate edits
+          stats.add(startFileLocked(args, permissions, holder, clientMachine,
+              flag, createParent, replication, blockSize, ecPolicyName,
+              toRemoveBlocks, logRetryCache));
+        } catch (IOException | HadoopIllegalArgumentException e) {
+          if (e instanceof StandbyException) {
+            throw e;
           }
-        } else {
-          blockManager.verifyReplication(src, replication, clientMachine);
-        }
-      }
-
-      FileEncryptionInfo feInfo = null;
-      if (!iip.isRaw() && provider != null) {
-        EncryptionKeyInfo ezInfo = FSDirEncryptionZoneOp.getEncryptionKeyInfo(
-            this, iip, supportedVersions);
-        // if the path has an encryption zone, the lock was released while
-        // generating the EDEK.  re-resolve the path to ensure the namesystem
-        // and/or EZ has not mutated
-        if (ezInfo != null) {
-          checkOperation(OperationCategory.WRITE);
-          iip = FSDirWriteFileOp.resolvePathForStartFile(
-              dir, pc, iip.getPath(), flag, createParent);
-          feInfo = FSDirEncryptionZoneOp.getFileEncryptionInfo(
-              dir, iip, ezInfo);
+          failure = e;
+          break;
         }
       }
-
-      skipSync = false; // following might generate edits
-      toRemoveBlocks = new BlocksMapUpdateInfo();
-      dir.writeLock();
-      try {
-        stat = FSDirWriteFileOp.startFile(this, iip, permissions, holder,
-            clientMachine, flag, createParent, replication, blockSize, feInfo,
-            toRemoveBlocks, shouldReplicate, ecPolicyName, logRetryCache);
-      } catch (IOException e) {
-        skipSync = e instanceof StandbyException;
-        throw e;
-      } finally {
-        dir.writeUnlock();
-      }
+    } catch (StandbyException e) {
+      skipSync = true;
+      throw e;
     } finally {
-      writeUnlock("create");
-      // There might be transactions logged while trying to recover the lease.
-      // They need to be sync'ed even when an exception was thrown.
+      writeUnlock("createBatch");
       if (!skipSync) {
         getEditLog().logSync();
         if (toRemoveBlocks != null) {
@@ -2514,7 +2651,77 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
       }
     }
 
-    return stat;
+    for (int i = 0; i < stats.size(); i++) {
+      logAuditEvent(true, "create", srcs[i], stats.get(i));
+    }
+    if (failure != null) {
+      if (failure instanceof AccessControlException) {
+        logAuditEvent(false, "create", srcs[stats.size()]);
+      }
+      if (stats.isEmpty()) {
+        if (failure instanceof IOException) {
+          throw (IOException) failure;
+        }
+        throw (HadoopIllegalArgumentException) failure;
+      }
+      return new CreateBatchResult(
+          stats.toArray(new HdfsFileStatus[stats.size()]),
+          failure.getClass().getName(), failure.getMessage());
+    }
+    return new CreateBatchResult(
+        stats.toArray(new HdfsFileStatus[stats.size()]), null, null);
+  }
+
+  /**
+   * Rebuild the result of a batch create which is retried on a NameNode
+   * that learned of the batch from the edit log. Its retry cache entry only
+   * holds the status of the last file the batch created; the files before
+   * it in the batch were created too, in order, and are still open for the
+   * holder unless another operation changed them since.
+   *
+   * @param last the status of the last file created by the batch
+   * @throws IOException if the files of the batch have changed since it was
+   *         applied, so its result cannot be rebuilt
+   */
+  CreateBatchResult getReplayedBatchResult(String[] srcs, String holder,
+      HdfsFileStatus last) throws IOException {
+    final String operationName = "createBatch";
+    final List<HdfsFileStatus> stats = new ArrayList<>(srcs.length);
+    checkOperation(OperationCategory.READ);
+    final FSPermissionChecker pc = getPermissionChecker();
+    readLock();
+    try {
+      checkOperation(OperationCategory.READ);
+      for (String src : srcs) {
+        final INodesInPath iip = dir.resolvePath(pc, src, DirOp.READ_LINK);
+        final INodeFile file = INodeFile.valueOf(iip.getLastINode(), src,
+            true);
+        if (file == null || !file.isUnderConstruction() || !holder.equals(
+            file.getFileUnderConstructionFeature().getClientName())) {
+          break;
+        }
+        stats.add(FSDirStatAndListingOp.getFileInfo(dir, iip, false, false));
+        if (file.getId() == last.getFileId()) {
+          break;
+        }
+      }
+    } finally {
+      readUnlock(operationName);
+    }
+    final int created = stats.size();
+    if (created == 0 || stats.get(created - 1).getFileId()
+        != last.getFileId()) {
+      throw new IOException("The files created by the batch"
+          + " starting at " + srcs[0] + " have changed since it was applied");
+    }
+    final HdfsFileStatus[] statuses = stats.toArray(new HdfsFileStatus[0]);
+    if (created == srcs.length) {
+      return new CreateBatchResult(statuses, null, null);
+    }
+    // the failure which stopped the batch is not logged
+    return new CreateBatchResult(statuses, IOException.class.getName(),
+        "Failed to create " + srcs[created] + " in a batch applied before"
+        + " a failover");
   }
 
   /**
@@ -2910,6 +3117,47 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
     return success;
   }
 
+  /**
+   * Complete a batch of files under a single acquisition of the write lock,
+   * syncing their edits together.
+   *
+   * @return whether each file was completed; a file is not completed while
+   *         its last blocks are not minimally replicated.
+   * @throws IOException the failure of the first file which could not be
+   *         completed; the files before it are completed regardless.
+   * @see ClientProtocol#completeBatch
+   */
+  boolean[] completeFiles(String[] srcs, String holder, ExtendedBlock[] lasts,
+      long[] fileIds) throws IOException {
+    final boolean[] success = new boolean[srcs.length];
+    boolean skipSync = true; // until we do something that might create edits
+    checkOperation(OperationCategory.WRITE);
+    final FSPermissionChecker pc = getPermissionChecker();
+    writeLock();
+    try {
+      checkOperation(OperationCategory.WRITE);
+      checkNameNodeSafeMode("Cannot complete files starting at " + srcs[0]);
+      skipSync = false;
+      for (int i = 0; i < srcs.length; i++) {
+        success[i] = FSDirWriteFileOp.completeFile(this, pc, srcs[i], holder,
+            lasts[i], fileIds[i]);
+      }
+    } finally {
+      writeUnlock("completeBatch");
+      // the files completed before a failure need to be sync'ed as well
+      if (!skipSync) {
+        getEditLog().logSync();
+      }
+    }
+    for (int i = 0; i < srcs.length; i++) {
+      if (success[i]) {
+        NameNode.stateChangeLog.info("DIR* completeFile: " + srcs[i]
+            + " is closed by " + holder);
+      }
+    }
+    return success;
+  }
+
   /**
    * Create new block with a unique block id and a new generation stamp.
    * @param blockType is the file under striping or contiguous layout?
@@ -3904,6 +4152,9 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
       boolean requestFullBlockReportLease,
       @Nonnull SlowPeerReports slowPeers,
       @Nonnull SlowDiskReports slowDisks) throws IOException {
+    // the block op queue is read without the lock, whose holder may be
+    // applying the queued ops
+    final int blockOpsQueueLoad = blockManager.getBlockOpQueueLoad();
     readLock();
     try {
       //get datanode commands
@@ -3923,7 +4174,7 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
           getFSImage().getCorrectLastAppliedOrWrittenTxId());
 
       return new HeartbeatResponse(cmds, haState, rollingUpgradeInfo,
-          blockReportLeaseId);
+          blockReportLeaseId, blockOpsQueueLoad);
     } finally {
       readUnlock("handleHeartbeat");
     }
@@ -55,7 +55,9 @@ import static org.apache.hadoop.log.LogThrottlingHelper.LogAction;
  * FSN(Read|Write)LockNanosOperationName, where OperationName denotes the name
  * of the operation that initiated the lock hold (this will be OTHER for certain
  * uncategorized operations) and they export the hold time values in
- * nanoseconds. Note that if a thread dies, metrics produced after the
+ * nanoseconds. The time the operations waited to acquire the lock is
+ * exported in the same way, with names of the form
+ * FSN(Read|Write)LockWaitOperationNameNanos. Note that if a thread dies, metrics produced after the
  * most recent snapshot will be lost due to the use of
  * {@link MutableRatesWithAggregation}. However since threads are re-used
  * between operations this should not generally be an issue.
@@ -80,6 +82,8 @@ class FSNamesystemLock {
   private long writeLockHeldTimeStampNanos;
   /** Frequency limiter used for reporting long write lock hold times. */
   private final LogThrottlingHelper writeLockReportLogger;
+  /** Time (ns) the outermost hold of the write lock waited to acquire it. */
+  private long writeLockWaitNanos;
 
   /** Threshold (ms) for long holding read lock report. */
   private final long readLockReportingThresholdMs;
@@ -95,6 +99,14 @@ class FSNamesystemLock {
           return Long.MAX_VALUE;
         }
       };
+  /** Time (ns) the outermost read lock hold of a thread waited for it. */
+  private final ThreadLocal<Long> readLockWaitNanos =
+      new ThreadLocal<Long>() {
+        @Override
+        public Long initialValue() {
+          return 0L;
+        }
+      };
   private final AtomicInteger numReadLockWarningsSuppressed =
       new AtomicInteger(0);
   /** Time stamp (ms) of the last time a read lock report was written. */
@@ -106,6 +118,7 @@ class FSNamesystemLock {
   static final String OP_NAME_OTHER = "OTHER";
   private static final String READ_LOCK_METRIC_PREFIX = "FSNReadLock";
   private static final String WRITE_LOCK_METRIC_PREFIX = "FSNWriteLock";
+  private static final String LOCK_WAIT_METRIC_INFIX = "Wait";
   private static final String LOCK_METRIC_SUFFIX = "Nanos";
 
   private static final String OVERALL_METRIC_NAME = "Overall";
@@ -163,7 +176,9 @@ class FSNamesystemLock {
 
     if (needReport) {
       addMetric(opName, readLockIntervalNanos, false);
+      addWaitMetric(opName, readLockWaitNanos.get(), false);
       readLockHeldTimeStampNanos.remove();
+      readLockWaitNanos.remove();
     }
     final long readLockIntervalMs =
         TimeUnit.NANOSECONDS.toMillis(readLockIntervalNanos);
@@ -241,6 +256,7 @@ class FSNamesystemLock {
     final long currentTimeMs = TimeUnit.NANOSECONDS.toMillis(currentTimeNanos);
     final long writeLockIntervalMs =
         TimeUnit.NANOSECONDS.toMillis(writeLockIntervalNanos);
+    final long writeLockWaitIntervalNanos = writeLockWaitNanos;
 
     LogAction logAction = LogThrottlingHelper.DO_NOT_LOG;
     if (needReport &&
@@ -253,6 +269,7 @@ class FSNamesystemLock {
 
     if (needReport) {
       addMetric(opName, writeLockIntervalNanos, true);
+      addWaitMetric(opName, writeLockWaitIntervalNanos, true);
     }
 
     if (logAction.shouldLog()) {
@@ -310,6 +327,22 @@ class FSNamesystemLock {
         isWrite ? Timing.LOCKEXCLUSIVE : Timing.LOCKSHARED, value);
   }
 
+  /**
+   * Add the time a recent operation waited to acquire the lock to the
+   * metrics.
+   * @param operationName Name of the operation for which to record the time
+   * @param value Length of time the operation waited (nanoseconds)
+   */
+  private void addWaitMetric(String operationName, long value,
+      boolean isWrite) {
+    if (metricsEnabled) {
+      detailedHoldTimeMetrics.add(
+          getWaitMetricName(operationName, isWrite), value);
+      detailedHoldTimeMetrics.add(
+          getWaitMetricName(OVERALL_METRIC_NAME, isWrite), value);
+    }
+  }
+
   private void doLock(boolean isWrite) {
     long startNanos = timer.monotonicNowNanos();
     if (isWrite) {
@@ -337,10 +370,12 @@ class FSNamesystemLock {
     if (isWrite) {
       if (coarseLock.getWriteHoldCount() == 1) {
         writeLockHeldTimeStampNanos = now;
+        writeLockWaitNanos = now - startNanos;
       }
     } else {
       if (coarseLock.getReadHoldCount() == 1) {
         readLockHeldTimeStampNanos.set(now);
+        readLockWaitNanos.set(now - startNanos);
       }
     }
   }
@@ -357,4 +392,12 @@ class FSNamesystemLock {
         org.apache.commons.lang.StringUtils.capitalize(operationName) +
         LOCK_METRIC_SUFFIX;
   }
+
+  private static String getWaitMetricName(String operationName,
+      boolean isWrite) {
+    return (isWrite ? WRITE_LOCK_METRIC_PREFIX : READ_LOCK_METRIC_PREFIX) +
+        LOCK_WAIT_METRIC_INFIX +
+        org.apache.commons.lang.StringUtils.capitalize(operationName) +
+        LOCK_METRIC_SUFFIX;
+  }
 }
@@ -71,6 +71,17 @@ public class INodeDirectory extends INodeWithAdditionalFields
 
   static final byte[] ROOT_NAME = DFSUtil.string2Bytes("");
 
+  /**
+   * The number of children above which a directory keeps them in a
+   * {@link ChunkedChildrenList}, 0 to always use an {@link ArrayList}. It is
+   * set from the configuration of the {@link FSDirectory}.
+   */
+  private static volatile int chunkedChildrenThreshold = 0;
+
+  static void setChunkedChildrenThreshold(int threshold) {
+    chunkedChildrenThreshold = threshold;
+  }
+
   private List<INode> children = null;
   
   /** constructor */
@@ -200,6 +211,9 @@ public class INodeDirectory extends INodeWithAdditionalFields
   }
 
   int searchChildren(byte[] name) {
+    if (children instanceof ChunkedChildrenList) {
+      return ((ChunkedChildrenList) children).binarySearch(name);
+    }
     return children == null? -1: Collections.binarySearch(children, name);
   }
   
@@ -527,6 +541,11 @@ public class INodeDirectory extends INodeWithAdditionalFields
 
     final INode removed = children.remove(i);
     Preconditions.checkState(removed.equals(child));
+    if (children instanceof ChunkedChildrenList
+        && children.size() <= chunkedChildrenThreshold / 2) {
+      // back to an array once well below the threshold, to save memory
+      children = new ArrayList<>(children);
+    }
     return true;
   }
 
@@ -598,6 +617,11 @@ public class INodeDirectory extends INodeWithAdditionalFields
     }
     node.setParent(this);
     children.add(-insertionPoint - 1, node);
+    final int threshold = chunkedChildrenThreshold;
+    if (threshold > 0 && children.size() > threshold
+        && !(children instanceof ChunkedChildrenList)) {
+      children = new ChunkedChildrenList(children);
+    }
 
     if (node.getGroupName() == null) {
       node.setGroup(getGroupName());
@@ -783,6 +807,11 @@ public class INodeDirectory extends INodeWithAdditionalFields
     }
   }
 
+  @VisibleForTesting
+  boolean hasChunkedChildren() {
+    return children instanceof ChunkedChildrenList;
+  }
+
   /** Set the children list to null. */
   public void clearChildren() {
     this.children = null;
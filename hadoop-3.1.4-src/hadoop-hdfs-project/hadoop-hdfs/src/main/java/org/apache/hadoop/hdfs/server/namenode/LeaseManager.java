@@ -21,16 +21,16 @@ import static org.apache.hadoop.util.Time.monotonicNow;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.NavigableSet;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.TreeSet;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -90,11 +90,10 @@ public class LeaseManager {
   private long lastHolderUpdateTime;
   private String internalLeaseHolder;
 
-  // Used for handling lock-leases
-  // Mapping: leaseHolder -> Lease
-  private final SortedMap<String, Lease> leases = new TreeMap<>();
-  // Set of: Lease
-  private final NavigableSet<Lease> sortedLeases = new TreeSet<>(
+  static final int NUM_LEASE_SHARDS = 16;
+  static final int MAX_EXPIRED_LEASES_PER_CHECK = 1000;
+
+  private static final Comparator<Lease> LAST_UPDATE_ORDER =
       new Comparator<Lease>() {
         @Override
         public int compare(Lease o1, Lease o2) {
@@ -104,9 +103,15 @@ public class LeaseManager {
             return o1.holder.compareTo(o2.holder);
           }
         }
-  });
+      };
+
+  // Used for handling lock-leases, sharded by lease holder so that the
+  // renewals of different clients do not contend on one lock.
+  private final LeaseShard[] shards = new LeaseShard[NUM_LEASE_SHARDS];
   // INodeID -> Lease
   private final TreeMap<Long, Lease> leasesById = new TreeMap<>();
+  // Whether the last check of the leases left expired leases unchecked.
+  private volatile boolean moreExpiredLeases;
 
   private Daemon lmthread;
   private volatile boolean shouldRunMonitor;
@@ -116,9 +121,89 @@ public class LeaseManager {
     this.fsnamesystem = fsnamesystem;
     this.hardLimit = conf.getLong(DFSConfigKeys.DFS_LEASE_HARDLIMIT_KEY,
         DFSConfigKeys.DFS_LEASE_HARDLIMIT_DEFAULT) * 1000;
+    for (int i = 0; i < shards.length; i++) {
+      shards[i] = new LeaseShard();
+    }
     updateInternalLeaseHolder();
   }
 
+  /**
+   * The leases of the holders hashed to one shard, in the order of their
+   * last renewal. As the renewal time never decreases, a renewal moves its
+   * lease to the end of the order, so that both renewing a lease and finding
+   * the expired leases at the start of the order take constant time per
+   * lease. Only the lease holder maps are sharded, the files of the leases
+   * are changed under the LeaseManager lock.
+   */
+  private static final class LeaseShard {
+    // Mapping: leaseHolder -> Lease, oldest renewal first
+    private final LinkedHashMap<String, Lease> leases = new LinkedHashMap<>();
+
+    synchronized Lease get(String holder) {
+      return leases.get(holder);
+    }
+
+    synchronized void add(Lease lease) {
+      leases.put(lease.holder, lease);
+    }
+
+    synchronized boolean remove(Lease lease) {
+      return leases.remove(lease.holder, lease);
+    }
+
+    synchronized void renew(Lease lease) {
+      // a lease released in the meantime is not brought back
+      if (leases.remove(lease.holder, lease)) {
+        lease.renew();
+        leases.put(lease.holder, lease);
+      }
+    }
+
+    synchronized void renewAll() {
+      List<Lease> all = new ArrayList<>(leases.values());
+      leases.clear();
+      for (Lease lease : all) {
+        lease.renew();
+        leases.put(lease.holder, lease);
+      }
+    }
+
+    /**
+     * Add the leases past their hard limit to the given list, at most max.
+     * @return true if the shard may have more expired leases
+     */
+    synchronized boolean getExpired(List<Lease> expired, int max) {
+      int count = 0;
+      for (Lease lease : leases.values()) {
+        if (!lease.expiredHardLimit()) {
+          return false;
+        }
+        if (count++ == max) {
+          return true;
+        }
+        expired.add(lease);
+      }
+      return false;
+    }
+
+    synchronized int size() {
+      return leases.size();
+    }
+
+    synchronized void clear() {
+      leases.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+      return leases.values().toString();
+    }
+  }
+
+  private LeaseShard getShard(String holder) {
+    return shards[(holder.hashCode() & Integer.MAX_VALUE) % shards.length];
+  }
+
   // Update the internal lease holder with the current time stamp.
   private void updateInternalLeaseHolder() {
     this.lastHolderUpdateTime = Time.monotonicNow();
@@ -136,7 +221,7 @@ public class LeaseManager {
   }
 
   Lease getLease(String holder) {
-    return leases.get(holder);
+    return getShard(holder).get(holder);
   }
 
   /**
@@ -337,8 +422,12 @@ public class LeaseManager {
 
   /** @return the number of leases currently in the system */
   @VisibleForTesting
-  public synchronized int countLease() {
-    return sortedLeases.size();
+  public int countLease() {
+    int count = 0;
+    for (LeaseShard shard : shards) {
+      count += shard.size();
+    }
+    return count;
   }
 
   /** @return the number of paths contained in all leases */
@@ -353,8 +442,7 @@ public class LeaseManager {
     Lease lease = getLease(holder);
     if (lease == null) {
       lease = new Lease(holder);
-      leases.put(holder, lease);
-      sortedLeases.add(lease);
+      getShard(holder).add(lease);
     } else {
       renewLease(lease);
     }
@@ -380,9 +468,8 @@ public class LeaseManager {
     }
 
     if (!lease.hasFiles()) {
-      leases.remove(lease.holder);
-      if (!sortedLeases.remove(lease)) {
-        LOG.error("{} not found in sortedLeases", lease);
+      if (!getShard(lease.holder).remove(lease)) {
+        LOG.error("{} not found in leases", lease);
       }
     }
   }
@@ -401,9 +488,10 @@ public class LeaseManager {
   }
 
   synchronized void removeAllLeases() {
-    sortedLeases.clear();
+    for (LeaseShard shard : shards) {
+      shard.clear();
+    }
     leasesById.clear();
-    leases.clear();
   }
 
   /**
@@ -419,16 +507,15 @@ public class LeaseManager {
   }
 
   /**
-   * Renew the lease(s) held by the given client
+   * Renew the lease(s) held by the given client. Only the shard of the
+   * holder is locked, not the LeaseManager.
    */
-  synchronized void renewLease(String holder) {
+  void renewLease(String holder) {
     renewLease(getLease(holder));
   }
-  synchronized void renewLease(Lease lease) {
+  void renewLease(Lease lease) {
     if (lease != null) {
-      sortedLeases.remove(lease);
-      lease.renew();
-      sortedLeases.add(lease);
+      getShard(lease.holder).renew(lease);
     }
   }
 
@@ -436,8 +523,8 @@ public class LeaseManager {
    * Renew all of the currently open leases.
    */
   synchronized void renewAllLeases() {
-    for (Lease l : leases.values()) {
-      renewLease(l);
+    for (LeaseShard shard : shards) {
+      shard.renewAll();
     }
   }
 
@@ -450,7 +537,8 @@ public class LeaseManager {
    *************************************************************/
   class Lease {
     private final String holder;
-    private long lastUpdate;
+    // renewed under the lock of the shard, read without it
+    private volatile long lastUpdate;
     private final HashSet<Long> files = new HashSet<>();
   
     /** Only LeaseManager object can create a lease */
@@ -535,8 +623,15 @@ public class LeaseManager {
               fsnamesystem.getEditLog().logSync();
             }
           }
-  
-          Thread.sleep(fsnamesystem.getLeaseRecheckIntervalMs());
+
+          // after a mass client failure, release the expired leases in
+          // back to back batches, leaving the lock to others in between.
+          long recheckMs = fsnamesystem.getLeaseRecheckIntervalMs();
+          if (moreExpiredLeases) {
+            recheckMs = Math.min(recheckMs,
+                Math.max(1, fsnamesystem.getMaxLockHoldToReleaseLeaseMs()));
+          }
+          Thread.sleep(recheckMs);
         } catch(InterruptedException ie) {
           LOG.debug("{} is interrupted", name, ie);
         } catch(Throwable e) {
@@ -546,6 +641,24 @@ public class LeaseManager {
     }
   }
 
+  /**
+   * Get the oldest leases past their hard limit, at most max.
+   * @return true if there may be more expired leases
+   */
+  @VisibleForTesting
+  boolean getExpiredLeases(List<Lease> expired, int max) {
+    boolean more = false;
+    for (LeaseShard shard : shards) {
+      more |= shard.getExpired(expired, max);
+    }
+    Collections.sort(expired, LAST_UPDATE_ORDER);
+    if (expired.size() > max) {
+      expired.subList(max, expired.size()).clear();
+      more = true;
+    }
+    return more;
+  }
+
   /** Check the leases beginning from the oldest.
    *  @return true is sync is needed.
    */
@@ -556,10 +669,16 @@ public class LeaseManager {
 
     long start = monotonicNow();
 
-    while(!sortedLeases.isEmpty() &&
-        sortedLeases.first().expiredHardLimit()
-        && !isMaxLockHoldToReleaseLease(start)) {
-      Lease leaseToCheck = sortedLeases.first();
+    // every expired lease is checked once, a lease that could not be
+    // released is retried by the next check.
+    final List<Lease> expired = new ArrayList<>();
+    boolean more = getExpiredLeases(expired, MAX_EXPIRED_LEASES_PER_CHECK);
+    int checked = 0;
+    for (Lease leaseToCheck : expired) {
+      if (isMaxLockHoldToReleaseLease(start)) {
+        break;
+      }
+      checked++;
       LOG.info("{} has expired hard limit", leaseToCheck);
 
       final List<Long> removing = new ArrayList<>();
@@ -623,6 +742,8 @@ public class LeaseManager {
         removeLease(leaseToCheck, id);
       }
     }
+    moreExpiredLeases = more || checked < expired.size()
+        || isMaxLockHoldToReleaseLease(start);
 
     return needSync;
   }
@@ -637,8 +758,7 @@ public class LeaseManager {
   @Override
   public synchronized String toString() {
     return getClass().getSimpleName() + "= {"
-        + "\n leases=" + leases
-        + "\n sortedLeases=" + sortedLeases
+        + "\n leases=" + Arrays.toString(shards)
         + "\n leasesById=" + leasesById
         + "\n}";
   }
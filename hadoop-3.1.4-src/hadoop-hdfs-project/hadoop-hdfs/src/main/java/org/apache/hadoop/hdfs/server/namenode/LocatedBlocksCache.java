@@ -0,0 +1,363 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfoWithStorage;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+import org.apache.hadoop.hdfs.protocol.LocatedStripedBlock;
+import org.apache.hadoop.hdfs.server.namenode.FSDirectory.DirOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.AddBlockOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.AddCloseOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.AppendOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.ConcatDeleteOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.TruncateOp;
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogOp.UpdateBlocksOp;
+import org.apache.hadoop.util.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Caches the block locations getBlockLocations returned for a range of a
+ * closed file, so that the many readers opening the same files do not build
+ * and sign the same locations again.
+ * <p>
+ * The locations are keyed by the inode, the range and the user the block
+ * tokens were issued to. They are cached before they are sorted for the
+ * reader, and every reader gets its own copy to sort, so the replicas at
+ * the same distance from the readers are still shuffled.
+ * <p>
+ * The edit log operations that change the blocks of a file, whether logged
+ * by the active NameNode or applied by the standby, invalidate the
+ * locations of the file. Changes to the replicas of the blocks are not
+ * logged, so the locations also expire after a short time, and so do the
+ * block tokens in them, well within their lifetime.
+ * <p>
+ * The locations are computed outside of the cache lock. They are only
+ * stored if the locations of their inode were not invalidated since they
+ * were computed, as told by a generation of the inode. The inodes share a
+ * fixed number of generations, so that the edits of other files seldom
+ * keep locations from being cached.
+ */
+class LocatedBlocksCache {
+  static final Logger LOG = LoggerFactory.getLogger(LocatedBlocksCache.class);
+
+  /** What the cached locations are for. */
+  static final class Key {
+    private final long inodeId;
+    private final long offset;
+    private final long length;
+    private final String user;
+
+    Key(long inodeId, long offset, long length, String user) {
+      this.inodeId = inodeId;
+      this.offset = offset;
+      this.length = length;
+      this.user = user;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      return inodeId == that.inodeId && offset == that.offset &&
+          length == that.length && Objects.equals(user, that.user);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(inodeId, offset, length, user);
+    }
+
+    @Override
+    public String toString() {
+      return "inode " + inodeId + " [" + offset + ", +" + length + ") for " +
+          user;
+    }
+  }
+
+  private static final class Entry {
+    private final LocatedBlocks blocks;
+    private final long expiry;
+
+    private Entry(LocatedBlocks blocks, long expiry) {
+      this.blocks = blocks;
+      this.expiry = expiry;
+    }
+  }
+
+  /** The number of generations the inodes share. */
+  private static final int NUM_GENERATIONS = 4096;
+
+  private final FSDirectory fsd;
+  private final int maxEntries;
+  private final long ttlMs;
+  /**
+   * The generation of each inode, at the index of its id, incremented by
+   * every invalidation of the inode before its entries are removed.
+   */
+  private final AtomicLongArray generations =
+      new AtomicLongArray(NUM_GENERATIONS);
+  /** The entries, least recently used first. */
+  private final LinkedHashMap<Key, Entry> entries;
+  /** The keys of the entries of every inode. */
+  private final Map<Long, Set<Key>> keysByInode = new HashMap<>();
+
+  LocatedBlocksCache(FSDirectory fsd, Configuration conf) {
+    this.fsd = fsd;
+    this.maxEntries = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_BLOCK_LOCATIONS_CACHE_MAX_ENTRIES_KEY,
+        DFSConfigKeys.DFS_NAMENODE_BLOCK_LOCATIONS_CACHE_MAX_ENTRIES_DEFAULT);
+    this.ttlMs = conf.getLong(
+        DFSConfigKeys.DFS_NAMENODE_BLOCK_LOCATIONS_CACHE_TTL_MS_KEY,
+        DFSConfigKeys.DFS_NAMENODE_BLOCK_LOCATIONS_CACHE_TTL_MS_DEFAULT);
+    this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+        if (size() > maxEntries) {
+          removeKey(eldest.getKey());
+          return true;
+        }
+        return false;
+      }
+    };
+    LOG.info("Block locations cache enabled with " +
+        DFSConfigKeys.DFS_NAMENODE_BLOCK_LOCATIONS_CACHE_MAX_ENTRIES_KEY +
+        " = " + maxEntries + ", " +
+        DFSConfigKeys.DFS_NAMENODE_BLOCK_LOCATIONS_CACHE_TTL_MS_KEY + " = " +
+        ttlMs);
+  }
+
+  private static int generationIndex(long inodeId) {
+    return (int) ((inodeId & Long.MAX_VALUE) % NUM_GENERATIONS);
+  }
+
+  /**
+   * @return the generation of the inode to pass to {@link #put} for the
+   * locations computed from now on. The caller holds the namesystem read
+   * lock.
+   */
+  long getGeneration(long inodeId) {
+    return generations.get(generationIndex(inodeId));
+  }
+
+  /**
+   * @return a copy of the cached locations, not sorted for any reader yet,
+   * or null.
+   */
+  LocatedBlocks get(Key key) {
+    final LocatedBlocks blocks;
+    synchronized (this) {
+      Entry entry = entries.get(key);
+      if (entry == null) {
+        return null;
+      }
+      if (Time.monotonicNow() >= entry.expiry) {
+        entries.remove(key);
+        removeKey(key);
+        return null;
+      }
+      blocks = entry.blocks;
+    }
+    return copy(blocks);
+  }
+
+  /**
+   * Cache a copy of the locations computed at the given generation of their
+   * inode, before they are sorted, unless they could already have been
+   * invalidated, or they miss replicas that may be reported soon.
+   */
+  void put(Key key, LocatedBlocks blocks, long computedAt) {
+    if (ttlMs <= 0 || !hasLocations(blocks)) {
+      return;
+    }
+    final LocatedBlocks copy = copy(blocks);
+    final long expiry = Time.monotonicNow() + ttlMs;
+    synchronized (this) {
+      if (getGeneration(key.inodeId) != computedAt) {
+        return;
+      }
+      if (entries.put(key, new Entry(copy, expiry)) == null) {
+        Set<Key> keys = keysByInode.get(key.inodeId);
+        if (keys == null) {
+          keys = new HashSet<>();
+          keysByInode.put(key.inodeId, keys);
+        }
+        keys.add(key);
+      }
+    }
+  }
+
+  private static boolean hasLocations(LocatedBlocks blocks) {
+    for (LocatedBlock b : blocks.getLocatedBlocks()) {
+      if (b.getLocations().length == 0 || b.isCorrupt()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return a copy of the locations whose replicas can be sorted without
+   * changing the given ones.
+   */
+  private static LocatedBlocks copy(LocatedBlocks blocks) {
+    List<LocatedBlock> copies =
+        new ArrayList<>(blocks.getLocatedBlocks().size());
+    for (LocatedBlock b : blocks.getLocatedBlocks()) {
+      copies.add(copy(b));
+    }
+    LocatedBlock last = blocks.getLastLocatedBlock();
+    return new LocatedBlocks(blocks.getFileLength(),
+        blocks.isUnderConstruction(), copies,
+        last == null ? null : copy(last), blocks.isLastBlockComplete(),
+        blocks.getFileEncryptionInfo(), blocks.getErasureCodingPolicy());
+  }
+
+  private static LocatedBlock copy(LocatedBlock b) {
+    // the replicas are sorted in place, with their storages
+    final String[] storageIDs =
+        b.getStorageIDs() == null ? null : b.getStorageIDs().clone();
+    final StorageType[] storageTypes =
+        b.getStorageTypes() == null ? null : b.getStorageTypes().clone();
+    final LocatedBlock copy;
+    if (b.isStriped()) {
+      LocatedStripedBlock striped = (LocatedStripedBlock) b;
+      LocatedStripedBlock stripedCopy = new LocatedStripedBlock(
+          b.getBlock(), b.getLocations(), storageIDs, storageTypes,
+          striped.getBlockIndices(), b.getStartOffset(), b.isCorrupt(),
+          b.getCachedLocations());
+      stripedCopy.setBlockTokens(striped.getBlockTokens().clone());
+      copy = stripedCopy;
+    } else {
+      DatanodeInfoWithStorage[] locs = Arrays.copyOf(b.getLocations(),
+          b.getLocations().length, DatanodeInfoWithStorage[].class);
+      copy = new LocatedBlock(b.getBlock(), locs, storageIDs, storageTypes,
+          b.getStartOffset(), b.isCorrupt(), b.getCachedLocations());
+    }
+    copy.setBlockToken(b.getBlockToken());
+    return copy;
+  }
+
+  /** Remove the key of a removed entry from the keys of its inode. */
+  private void removeKey(Key key) {
+    Set<Key> keys = keysByInode.get(key.inodeId);
+    if (keys != null && keys.remove(key) && keys.isEmpty()) {
+      keysByInode.remove(key.inodeId);
+    }
+  }
+
+  /**
+   * Invalidate the locations of the files whose blocks the given edit log
+   * operation changes. Called under the namesystem write lock, after the
+   * operation was applied to the namespace.
+   */
+  void invalidate(FSEditLogOp op) {
+    switch (op.opCode) {
+    case OP_ADD:
+    case OP_CLOSE:
+      invalidate(((AddCloseOp) op).path);
+      break;
+    case OP_APPEND:
+      invalidate(((AppendOp) op).path);
+      break;
+    case OP_ADD_BLOCK:
+      invalidate(((AddBlockOp) op).getPath());
+      break;
+    case OP_UPDATE_BLOCKS:
+      invalidate(((UpdateBlocksOp) op).path);
+      break;
+    case OP_TRUNCATE:
+      invalidate(((TruncateOp) op).src);
+      break;
+    case OP_CONCAT_DELETE:
+      // the sources are deleted, and their inodes never used again
+      invalidate(((ConcatDeleteOp) op).trg);
+      break;
+    default:
+      // The other operations do not change the blocks of existing files.
+      // A deleted or replaced file is not found by the readers anymore, and
+      // its locations are dropped as the least recently used.
+      break;
+    }
+  }
+
+  private void invalidate(String path) {
+    // the inode is resolved even if nothing is cached, the locations
+    // computed before the operation may be cached next
+    INode inode;
+    try {
+      inode = fsd.getINodesInPath(path, DirOp.READ).getLastINode();
+    } catch (Exception e) {
+      LOG.warn("Failed to resolve " + path + ", clearing the cache", e);
+      clear();
+      return;
+    }
+    if (inode != null) {
+      invalidate(inode.getId());
+    }
+  }
+
+  /** Invalidate the cached locations of the given inode. */
+  @VisibleForTesting
+  void invalidate(long inodeId) {
+    generations.incrementAndGet(generationIndex(inodeId));
+    synchronized (this) {
+      Set<Key> keys = keysByInode.remove(inodeId);
+      if (keys != null) {
+        for (Key key : keys) {
+          entries.remove(key);
+        }
+      }
+    }
+  }
+
+  synchronized void clear() {
+    for (int i = 0; i < NUM_GENERATIONS; i++) {
+      generations.incrementAndGet(i);
+    }
+    entries.clear();
+    keysByInode.clear();
+  }
+
+  @VisibleForTesting
+  synchronized int size() {
+    return entries.size();
+  }
+}
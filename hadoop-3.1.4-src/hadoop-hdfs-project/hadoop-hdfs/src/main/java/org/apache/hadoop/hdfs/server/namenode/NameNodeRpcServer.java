@@ -45,7 +45,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
 
 import com.google.common.collect.Lists;
 
@@ -98,6 +97,7 @@ import org.apache.hadoop.hdfs.protocol.CacheDirectiveInfo;
 import org.apache.hadoop.hdfs.protocol.CachePoolEntry;
 import org.apache.hadoop.hdfs.protocol.CachePoolInfo;
 import org.apache.hadoop.hdfs.protocol.CorruptFileBlocks;
+import org.apache.hadoop.hdfs.protocol.CreateBatchResult;
 import org.apache.hadoop.hdfs.protocol.DSQuotaExceededException;
 import org.apache.hadoop.hdfs.protocol.DatanodeID;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
@@ -266,6 +266,8 @@ public class NameNodeRpcServer implements NamenodeProtocols {
 
   private final String defaultECPolicyName;
 
+  private final int maxWriteBatchSize;
+
   public NameNodeRpcServer(Configuration conf, NameNode nn)
       throws IOException {
     this.nn = nn;
@@ -520,6 +522,10 @@ public class NameNodeRpcServer implements NamenodeProtocols {
         DFSConfigKeys.DFS_NAMENODE_EC_SYSTEM_DEFAULT_POLICY,
         DFSConfigKeys.DFS_NAMENODE_EC_SYSTEM_DEFAULT_POLICY_DEFAULT);
 
+    maxWriteBatchSize = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_WRITE_BATCH_MAX_FILES_KEY,
+        DFSConfigKeys.DFS_NAMENODE_WRITE_BATCH_MAX_FILES_DEFAULT);
+
     // Set terse exception whose stack trace won't be logged
     clientRpcServer.addTerseExceptions(SafeModeException.class,
         FileNotFoundException.class,
@@ -812,6 +818,57 @@ public class NameNodeRpcServer implements NamenodeProtocols {
     return status;
   }
 
+  @Override // ClientProtocol
+  public CreateBatchResult createBatch(String[] srcs, FsPermission masked,
+      String clientName, EnumSetWritable<CreateFlag> flag,
+      boolean createParent, short replication, long blockSize,
+      CryptoProtocolVersion[] supportedVersions, String ecPolicyName)
+      throws IOException {
+    checkNNStartup();
+    String clientMachine = getClientMachine();
+    checkWriteBatchSize("createBatch", srcs.length);
+    if (stateChangeLog.isDebugEnabled()) {
+      stateChangeLog.debug("*DIR* NameNode.createBatch: " + srcs.length
+          + " files starting at " + srcs[0] + " for " + clientName + " at "
+          + clientMachine);
+    }
+    for (String src : srcs) {
+      if (!checkPathLength(src)) {
+        throw new IOException("createBatch: Pathname too long.  Limit "
+            + MAX_PATH_LENGTH + " characters, " + MAX_PATH_DEPTH
+            + " levels.");
+      }
+    }
+    namesystem.checkOperation(OperationCategory.WRITE);
+    CacheEntryWithPayload cacheEntry = RetryCache.waitForCompletion(retryCache,
+        null);
+    if (cacheEntry != null && cacheEntry.isSuccess()) {
+      if (cacheEntry.getPayload() instanceof HdfsFileStatus) {
+        // the batch was applied before a failover and replayed from the edits
+        return namesystem.getReplayedBatchResult(srcs, clientName,
+            (HdfsFileStatus) cacheEntry.getPayload());
+      }
+      return (CreateBatchResult) cacheEntry.getPayload();
+    }
+
+    CreateBatchResult result = null;
+    try {
+      PermissionStatus perm = new PermissionStatus(getRemoteUser()
+          .getShortUserName(), null, masked);
+      result = namesystem.startFiles(srcs, perm, clientName, clientMachine,
+          flag.get(), createParent, replication, blockSize, supportedVersions,
+          ecPolicyName, cacheEntry != null);
+    } finally {
+      RetryCache.setState(cacheEntry, result != null, result);
+    }
+
+    for (int i = 0; i < result.getStatuses().length; i++) {
+      metrics.incrFilesCreated();
+      metrics.incrCreateFileOps();
+    }
+    return result;
+  }
+
   @Override // ClientProtocol
   public LastBlockWithStatus append(String src, String clientName,
       EnumSetWritable<CreateFlag> flag) throws IOException {
@@ -959,6 +1016,28 @@ public class NameNodeRpcServer implements NamenodeProtocols {
     return namesystem.completeFile(src, clientName, last, fileId);
   }
 
+  @Override // ClientProtocol
+  public boolean[] completeBatch(String[] srcs, String clientName,
+      ExtendedBlock[] lasts, long[] fileIds) throws IOException {
+    checkNNStartup();
+    checkWriteBatchSize("completeBatch", srcs.length);
+    if (lasts.length != srcs.length || fileIds.length != srcs.length) {
+      throw new HadoopIllegalArgumentException("completeBatch: got "
+          + srcs.length + " paths, " + lasts.length + " last blocks and "
+          + fileIds.length + " file ids");
+    }
+    return namesystem.completeFiles(srcs, clientName, lasts, fileIds);
+  }
+
+  private void checkWriteBatchSize(String op, int size) {
+    if (size == 0 || size > maxWriteBatchSize) {
+      throw new HadoopIllegalArgumentException(op + ": the batch size "
+          + size + " is not between 1 and "
+          + DFSConfigKeys.DFS_NAMENODE_WRITE_BATCH_MAX_FILES_KEY + " = "
+          + maxWriteBatchSize);
+    }
+  }
+
   /**
    * The client has detected an error on the specified located blocks 
    * and is reporting them to the server.  For now, the namenode will 
@@ -1576,14 +1655,8 @@ public class NameNodeRpcServer implements NamenodeProtocols {
           // for the same node and storage, so the value returned by the last
           // call of this loop is the final updated value for noStaleStorage.
           //
-          final int index = r;
-          noStaleStorages = bm.runBlockOp(new Callable<Boolean>() {
-            @Override
-            public Boolean call() throws IOException {
-              return bm.processReport(nodeReg, reports[index].getStorage(),
-                      blocks, context);
-            }
-          });
+          noStaleStorages = bm.runBlockReport(nodeReg,
+              reports[r].getStorage(), blocks, context);
         }
       }
     } catch (UnregisteredNodeException une) {
@@ -355,11 +355,18 @@ public class EditLogTailer {
       if (LOG.isDebugEnabled()) {
         LOG.debug("edit streams to load from: " + streams.size());
       }
+      // the last txid known to be available, in-progress streams may not
+      // know theirs
+      long lastAvailableTxId = lastTxnId;
+      for (EditLogInputStream stream : streams) {
+        lastAvailableTxId = Math.max(lastAvailableTxId, stream.getLastTxId());
+      }
       
       // Once we have streams to load, errors encountered are legitimate cause
       // for concern, so we don't catch them here. Simple errors reading from
       // disk are ignored.
       long editsLoaded = 0;
+      long loadStartTime = Time.monotonicNow();
       try {
         editsLoaded = image.loadEdits(
             streams, namesystem, maxTxnsPerLock, null, null);
@@ -376,8 +383,12 @@ public class EditLogTailer {
 
       if (editsLoaded > 0) {
         lastLoadTimeMs = monotonicNow();
+        NameNode.getNameNodeMetrics().setEditLogReplayRate(editsLoaded * 1000
+            / Math.max(1, lastLoadTimeMs - loadStartTime));
       }
       lastLoadedTxnId = image.getLastAppliedTxId();
+      NameNode.getNameNodeMetrics().setEditLogReplayLag(
+          Math.max(0, lastAvailableTxId - lastLoadedTxnId));
       return editsLoaded;
     } finally {
       namesystem.writeUnlock();
@@ -30,6 +30,7 @@ import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
 import org.apache.hadoop.metrics2.lib.MetricsRegistry;
 import org.apache.hadoop.metrics2.lib.MutableCounterLong;
 import org.apache.hadoop.metrics2.lib.MutableGaugeInt;
+import org.apache.hadoop.metrics2.lib.MutableGaugeLong;
 import org.apache.hadoop.metrics2.lib.MutableQuantiles;
 import org.apache.hadoop.metrics2.lib.MutableRate;
 import org.apache.hadoop.metrics2.lib.MutableStat;
@@ -85,6 +86,21 @@ public class NameNodeMetrics {
   MutableGaugeInt blockOpsQueued;
   @Metric("Number of blockReports and blockReceivedAndDeleted batch processed")
   MutableCounterLong blockOpsBatched;
+  @Metric(value = "Number of block ops applied per hold of the write lock",
+      valueName = "Count")
+  MutableStat blockOpsBatchSize;
+  @Metric("Write lock hold time of each batch of block ops in usec")
+  MutableRate blockOpsBatchLockHoldTime;
+  @Metric("Number of content summaries served from the cache")
+  MutableCounterLong contentSummaryCacheHits;
+  @Metric("Number of content summaries computed for the cache")
+  MutableCounterLong contentSummaryCacheMisses;
+  @Metric("Number of cached content summaries recomputed in the background")
+  MutableCounterLong contentSummaryCacheRefreshes;
+  @Metric("getBlockLocations served from the block locations cache in usec")
+  MutableRate blockLocationsCacheHits;
+  @Metric("getBlockLocations that missed the block locations cache in usec")
+  MutableRate blockLocationsCacheMisses;
 
   @Metric("Number of file system operations")
   public long totalFileOps(){
@@ -116,10 +132,16 @@ public class NameNodeMetrics {
   final MutableQuantiles[] syncsQuantiles;
   @Metric("Journal transactions batched in sync")
   MutableCounterLong transactionsBatchedInSync;
+  @Metric("Number of syncs the async edit log delayed for more edits")
+  MutableCounterLong editLogGroupCommitWaits;
+  @Metric("Number of edits that joined a sync while it was delayed")
+  MutableCounterLong editLogGroupCommitJoined;
   @Metric("Journal transactions batched in sync")
   final MutableQuantiles[] numTransactionsBatchedInSync;
   @Metric("Number of blockReports from individual storages")
   MutableRate storageBlockReport;
+  @Metric("Number of chunks storage blockReports were processed in")
+  MutableCounterLong storageBlockReportChunks;
   final MutableQuantiles[] storageBlockReportQuantiles;
   @Metric("Cache report") MutableRate cacheReport;
   final MutableQuantiles[] cacheReportQuantiles;
@@ -130,6 +152,10 @@ public class NameNodeMetrics {
   @Metric("Resource check time") private MutableRate resourceCheckTime;
   private final MutableQuantiles[] resourceCheckTimeQuantiles;
 
+  @Metric("Time from blocks becoming low redundancy until all the blocks" +
+      " are fully redundant again in msec")
+  MutableRate timeToFullRedundancy;
+
   @Metric("Duration in SafeMode at startup in msec")
   MutableGaugeInt safeModeTime;
   @Metric("Time loading FS Image at startup in msec")
@@ -146,6 +172,10 @@ public class NameNodeMetrics {
   @Metric("Time between edit log tailing in msec")
   MutableRate editLogTailInterval;
   private final MutableQuantiles[] editLogTailIntervalQuantiles;
+  @Metric("Edits replayed per second by the last edit log tailing")
+  MutableGaugeLong editLogReplayRate;
+  @Metric("Edits found by the last edit log tailing but not replayed yet")
+  MutableGaugeLong editLogReplayLag;
 
   @Metric("GetImageServlet getEdit")
   MutableRate getEdit;
@@ -286,6 +316,26 @@ public class NameNodeMetrics {
     fileInfoOps.incr();
   }
 
+  public void incrContentSummaryCacheHits() {
+    contentSummaryCacheHits.incr();
+  }
+
+  public void incrContentSummaryCacheMisses() {
+    contentSummaryCacheMisses.incr();
+  }
+
+  public void incrContentSummaryCacheRefreshes() {
+    contentSummaryCacheRefreshes.incr();
+  }
+
+  public void addBlockLocationsCacheHit(long latencyMicros) {
+    blockLocationsCacheHits.add(latencyMicros);
+  }
+
+  public void addBlockLocationsCacheMiss(long latencyMicros) {
+    blockLocationsCacheMisses.add(latencyMicros);
+  }
+
   public void incrCreateSymlinkOps() {
     createSymlinkOps.incr();
   }
@@ -334,6 +384,11 @@ public class NameNodeMetrics {
     blockOpsBatched.incr(count);
   }
 
+  public void addBlockOpsBatch(int size, long lockHoldUs) {
+    blockOpsBatchSize.add(size);
+    blockOpsBatchLockHoldTime.add(lockHoldUs);
+  }
+
   public void addTransaction(long latency) {
     transactions.add(latency);
   }
@@ -345,6 +400,14 @@ public class NameNodeMetrics {
     }
   }
 
+  public void incrEditLogGroupCommitWaits() {
+    editLogGroupCommitWaits.incr();
+  }
+
+  public void incrEditLogGroupCommitJoined(long count) {
+    editLogGroupCommitJoined.incr(count);
+  }
+
   public void incSuccessfulReReplications() {
     successfulReReplications.incr();
   }
@@ -368,6 +431,10 @@ public class NameNodeMetrics {
     fsImageLoadTime.set((int) elapsed);
   }
 
+  public void incrStorageBlockReportChunks(long chunks) {
+    storageBlockReportChunks.incr(chunks);
+  }
+
   public void addStorageBlockReport(long latency) {
     storageBlockReport.add(latency);
     for (MutableQuantiles q : storageBlockReportQuantiles) {
@@ -419,6 +486,10 @@ public class NameNodeMetrics {
     }
   }
 
+  public void addTimeToFullRedundancy(long elapsed) {
+    timeToFullRedundancy.add(elapsed);
+  }
+
   public void addEditLogTailTime(long elapsed) {
     editLogTailTime.add(elapsed);
     for (MutableQuantiles q : editLogTailTimeQuantiles) {
@@ -446,4 +517,12 @@ public class NameNodeMetrics {
       q.add(elapsed);
     }
   }
+
+  public void setEditLogReplayRate(long editsPerSec) {
+    editLogReplayRate.set(editsPerSec);
+  }
+
+  public void setEditLogReplayLag(long edits) {
+    editLogReplayLag.set(edits);
+  }
 }
@@ -36,14 +36,24 @@ public class HeartbeatResponse {
   private final RollingUpgradeStatus rollingUpdateStatus;
 
   private final long fullBlockReportLeaseId;
+
+  /** How full the block report processing queue of the NN is, in percent */
+  private final int blockOpsQueueLoad;
   
   public HeartbeatResponse(DatanodeCommand[] cmds,
       NNHAStatusHeartbeat haStatus, RollingUpgradeStatus rollingUpdateStatus,
       long fullBlockReportLeaseId) {
+    this(cmds, haStatus, rollingUpdateStatus, fullBlockReportLeaseId, 0);
+  }
+
+  public HeartbeatResponse(DatanodeCommand[] cmds,
+      NNHAStatusHeartbeat haStatus, RollingUpgradeStatus rollingUpdateStatus,
+      long fullBlockReportLeaseId, int blockOpsQueueLoad) {
     commands = cmds;
     this.haStatus = haStatus;
     this.rollingUpdateStatus = rollingUpdateStatus;
     this.fullBlockReportLeaseId = fullBlockReportLeaseId;
+    this.blockOpsQueueLoad = blockOpsQueueLoad;
   }
   
   public DatanodeCommand[] getCommands() {
@@ -61,4 +71,8 @@ public class HeartbeatResponse {
   public long getFullBlockReportLeaseId() {
     return fullBlockReportLeaseId;
   }
+
+  public int getBlockOpsQueueLoad() {
+    return blockOpsQueueLoad;
+  }
 }
@@ -251,6 +251,13 @@ public class FoldedTreeSet<E> implements SortedSet<E> {
       }
     }
 
+    private TreeSetIterator(FoldedTreeSet<E> tree, Node<E> node, int index) {
+      this.tree = tree;
+      this.iteratorModCount = tree.modCount;
+      this.node = node;
+      this.index = index;
+    }
+
     @Override
     public boolean hasNext() {
       checkForModification();
@@ -479,6 +486,64 @@ public class FoldedTreeSet<E> implements SortedSet<E> {
     return new TreeSetIterator<>(this);
   }
 
+  /**
+   * Iterate the stored objects from the first one that is equal to or greater
+   * than the lookup key, using a user provided comparator.
+   *
+   * @param obj Lookup key
+   * @param cmp User provided Comparator. The comparator should expect that the
+   *            proved obj will always be the first method parameter and any
+   *            stored object will be the second parameter.
+   *
+   * @return An iterator over the stored objects not less than the key
+   */
+  public Iterator<E> tailIterator(Object obj, Comparator<?> cmp) {
+    Objects.requireNonNull(obj);
+
+    Node<E> ceilingNode = null;
+    int ceilingIndex = 0;
+    Node<E> node = root;
+    while (node != null) {
+      E[] entries = node.entries;
+      if (compare(obj, entries[node.leftIndex], cmp) <= 0) {
+        ceilingNode = node;
+        ceilingIndex = node.leftIndex;
+        node = node.left;
+      } else if (compare(obj, entries[node.rightIndex], cmp) > 0) {
+        node = node.right;
+      } else {
+        // The key falls within this node, find the first entry not less
+        // than the key
+        int low = node.leftIndex + 1;
+        int high = node.rightIndex;
+        while (low < high) {
+          int mid = (low + high) >>> 1;
+          if (compare(obj, entries[mid], cmp) > 0) {
+            low = mid + 1;
+          } else {
+            high = mid;
+          }
+        }
+        ceilingNode = node;
+        ceilingIndex = low;
+        break;
+      }
+    }
+    return new TreeSetIterator<>(this, ceilingNode, ceilingIndex);
+  }
+
+  /**
+   * Iterate the stored objects from the first one that is equal to or greater
+   * than the lookup entry.
+   *
+   * @param entry Lookup entry
+   *
+   * @return An iterator over the stored objects not less than the entry
+   */
+  public Iterator<E> tailIterator(E entry) {
+    return tailIterator(entry, comparator);
+  }
+
   @Override
   public Object[] toArray() {
     Object[] objects = new Object[size];
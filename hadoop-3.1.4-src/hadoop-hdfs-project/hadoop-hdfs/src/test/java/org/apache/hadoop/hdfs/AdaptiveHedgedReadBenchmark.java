@@ -0,0 +1,186 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.util.Time;
+import org.apache.hadoop.util.ToolRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the latency of concurrent hedged positional reads of a file
+ * replicated on the three DataNodes of a {@link MiniDFSCluster}, one of
+ * which is slow to serve every read, with the hedged reads started after a
+ * fixed threshold or adapted to the latencies of each DataNode.
+ * <p>
+ * Usage: AdaptiveHedgedReadBenchmark [-threads T] [-reads R]
+ * [-readSize S] [-slowMs D] [-thresholdMs H]
+ */
+public class AdaptiveHedgedReadBenchmark extends HdfsBenchmark {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(AdaptiveHedgedReadBenchmark.class);
+  private static final int FILE_LENGTH = 1024 * 1024;
+  private static final int NUM_DATANODES = 3;
+
+  public AdaptiveHedgedReadBenchmark(Configuration conf) {
+    super(conf);
+    addOption("threads", 8);
+    addOption("reads", 500);
+    addOption("readSize", 4096);
+    addOption("slowMs", 50);
+    addOption("thresholdMs", 500);
+  }
+
+  @Override
+  protected List<Result> runCases() throws Exception {
+    List<Result> results = new ArrayList<>(2);
+    for (boolean adaptive : new boolean[] {false, true}) {
+      results.add(run(getInt("threads"), getInt("reads"),
+          getInt("readSize"), getInt("slowMs"), getLong("thresholdMs"),
+          adaptive));
+    }
+    return results;
+  }
+
+  /**
+   * Have every thread read random ranges of the file, while the reads from
+   * the first DataNode are delayed by the given time.
+   */
+  private Result run(int numThreads, final int readsPerThread,
+      final int readSize, int slowMs, long thresholdMs, boolean adaptive)
+      throws Exception {
+    Configuration clusterConf = new Configuration(getConf());
+    clusterConf.setInt(HdfsClientConfigKeys.HedgedRead.THREADPOOL_SIZE_KEY,
+        2 * numThreads);
+    clusterConf.setLong(HdfsClientConfigKeys.HedgedRead.THRESHOLD_MILLIS_KEY,
+        thresholdMs);
+    clusterConf.setBoolean(
+        HdfsClientConfigKeys.HedgedRead.ADAPTIVE_ENABLED_KEY, adaptive);
+    long numReads = (long) numThreads * readsPerThread;
+    Result result = new Result(adaptive ? "adaptive" : "fixed threshold")
+        .add("threads", numThreads).add("reads", numReads);
+
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(clusterConf)
+        .numDataNodes(NUM_DATANODES).build();
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    DFSClientFaultInjector injector = DFSClientFaultInjector.get();
+    try {
+      cluster.waitActive();
+      final DistributedFileSystem fs = cluster.getFileSystem();
+      final Path file = new Path("/bench/file");
+      DFSTestUtil.createFile(fs, file, FILE_LENGTH, (short) NUM_DATANODES,
+          0L);
+      DFSClientFaultInjector.set(new SlowDataNode(
+          cluster.getDataNodes().get(0).getDatanodeId().getXferAddr(),
+          slowMs));
+      long hedgedReadOps = fs.getHedgedReadMetrics().getHedgedReadOps();
+
+      List<Future<long[]>> futures = new ArrayList<>();
+      long start = Time.monotonicNow();
+      for (int t = 0; t < numThreads; t++) {
+        final Random r = new Random(t);
+        futures.add(executor.submit(new Callable<long[]>() {
+          @Override
+          public long[] call() throws Exception {
+            long[] latencies = new long[readsPerThread];
+            byte[] buf = new byte[readSize];
+            try (FSDataInputStream in = fs.open(file)) {
+              for (int i = 0; i < readsPerThread; i++) {
+                long readStart = System.nanoTime();
+                in.readFully(r.nextInt(FILE_LENGTH - readSize), buf);
+                latencies[i] = (System.nanoTime() - readStart) / 1000;
+              }
+            }
+            return latencies;
+          }
+        }));
+      }
+      long[] latencies = new long[(int) numReads];
+      int n = 0;
+      for (Future<long[]> future : futures) {
+        long[] threadLatencies = future.get();
+        System.arraycopy(threadLatencies, 0, latencies, n,
+            threadLatencies.length);
+        n += threadLatencies.length;
+      }
+      long timeMs = Time.monotonicNow() - start;
+      result.add("timeMs", timeMs).addRate("readsPerSec", numReads, timeMs);
+      Arrays.sort(latencies);
+      long total = 0;
+      for (long latency : latencies) {
+        total += latency;
+      }
+      result.add("meanUs", total / Math.max(1, latencies.length));
+      result.add("p99Us", latencies.length == 0 ? 0 :
+          latencies[(int) Math.ceil(0.99 * latencies.length) - 1]);
+      result.add("hedgedReadOps",
+          fs.getHedgedReadMetrics().getHedgedReadOps() - hedgedReadOps);
+      if (adaptive) {
+        LOG.info("Read latencies by DataNode: {}",
+            fs.getDataNodeReadLatencies().getLatencies());
+      }
+    } finally {
+      DFSClientFaultInjector.set(injector);
+      executor.shutdownNow();
+      cluster.shutdown();
+    }
+    return result;
+  }
+
+  /** Delays the reads from the DataNode of the given address. */
+  static class SlowDataNode extends DFSClientFaultInjector {
+    private final String xferAddr;
+    private final long delayMs;
+
+    SlowDataNode(String xferAddr, long delayMs) {
+      this.xferAddr = xferAddr;
+      this.delayMs = delayMs;
+    }
+
+    @Override
+    public void fetchFromDatanodeDelay(DatanodeInfo datanode) {
+      if (datanode.getXferAddr().equals(xferAddr)) {
+        try {
+          Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    System.exit(ToolRunner.run(
+        new AdaptiveHedgedReadBenchmark(new HdfsConfiguration()), args));
+  }
+}
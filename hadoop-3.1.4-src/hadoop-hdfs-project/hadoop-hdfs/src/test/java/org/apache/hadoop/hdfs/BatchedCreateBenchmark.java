@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.hdfs.client.HdfsDataOutputStream;
+import org.apache.hadoop.util.Time;
+import org.apache.hadoop.util.ToolRunner;
+
+/**
+ * Measures the throughput, in files per second, of writing small files to a
+ * {@link MiniDFSCluster} one by one with
+ * {@link DistributedFileSystem#create} and in batches with
+ * {@link DistributedFileSystem#createFiles} and
+ * {@link DistributedFileSystem#closeFiles}.
+ * <p>
+ * Usage: BatchedCreateBenchmark [-numFiles N] [-batchSize B] [-fileSize S]
+ * [-datanodes D]
+ */
+public class BatchedCreateBenchmark extends HdfsBenchmark {
+
+  public BatchedCreateBenchmark(Configuration conf) {
+    super(conf);
+    addOption("numFiles", 10000);
+    addOption("batchSize", 100);
+    addOption("fileSize", 1024);
+    addOption("datanodes", 1);
+  }
+
+  @Override
+  protected List<Result> runCases() throws IOException {
+    return run(getInt("numFiles"), getInt("batchSize"), getInt("fileSize"),
+        getInt("datanodes"));
+  }
+
+  /**
+   * Write the same number of files one by one, then in batches.
+   */
+  private List<Result> run(int numFiles, int batchSize, int fileSize,
+      int numDataNodes) throws IOException {
+    Configuration clusterConf = new Configuration(getConf());
+    clusterConf.setInt(HdfsClientConfigKeys.DFS_CLIENT_WRITE_BATCH_SIZE_KEY,
+        batchSize);
+    List<Result> results = new ArrayList<>(2);
+    byte[] data = new byte[fileSize];
+    short replication = (short) Math.min(3, numDataNodes);
+
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(clusterConf)
+        .numDataNodes(numDataNodes).build();
+    try {
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      long blockSize = fs.getDefaultBlockSize();
+
+      long start = Time.monotonicNow();
+      for (int i = 0; i < numFiles; i++) {
+        try (FSDataOutputStream out = fs.create(
+            new Path("/single/file" + i), replication)) {
+          out.write(data);
+        }
+      }
+      long timeMs = Time.monotonicNow() - start;
+      results.add(new Result("single").add("files", numFiles)
+          .add("timeMs", timeMs).addRate("filesPerSec", numFiles, timeMs));
+
+      start = Time.monotonicNow();
+      for (int from = 0; from < numFiles; from += batchSize) {
+        List<Path> paths = new ArrayList<>(batchSize);
+        for (int i = from; i < Math.min(numFiles, from + batchSize); i++) {
+          paths.add(new Path("/batched/file" + i));
+        }
+        List<HdfsDataOutputStream> streams = fs.createFiles(paths,
+            FsPermission.getFileDefault(), false, replication, blockSize);
+        for (HdfsDataOutputStream out : streams) {
+          out.write(data);
+        }
+        fs.closeFiles(streams);
+      }
+      timeMs = Time.monotonicNow() - start;
+      results.add(new Result("batched").add("files", numFiles)
+          .add("timeMs", timeMs).addRate("filesPerSec", numFiles, timeMs));
+    } finally {
+      cluster.shutdown();
+    }
+    return results;
+  }
+
+  public static void main(String[] args) throws Exception {
+    System.exit(ToolRunner.run(
+        new BatchedCreateBenchmark(new HdfsConfiguration()), args));
+  }
+}
@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.util.Time;
+import org.apache.hadoop.util.ToolRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the throughput, in reads per second, of concurrent small
+ * positional reads of the tails of files on a {@link MiniDFSCluster}, the
+ * way the footers of columnar files are read, with and without the block
+ * page cache.
+ * <p>
+ * Usage: BlockPageCacheBenchmark [-threads T] [-reads R] [-readSize S]
+ * [-numFiles F]
+ */
+public class BlockPageCacheBenchmark extends HdfsBenchmark {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(BlockPageCacheBenchmark.class);
+  private static final int FILE_LENGTH = 1024 * 1024;
+  /** The tail of each file read. */
+  private static final int TAIL_LENGTH = 256 * 1024;
+  private static final long CACHE_CAPACITY = 64L * 1024 * 1024;
+
+  public BlockPageCacheBenchmark(Configuration conf) {
+    super(conf);
+    addOption("threads", 8);
+    addOption("reads", 5000);
+    addOption("readSize", 1024);
+    addOption("numFiles", 16);
+  }
+
+  @Override
+  protected List<Result> runCases() throws Exception {
+    List<Result> results = new ArrayList<>(2);
+    for (boolean cached : new boolean[] {false, true}) {
+      results.add(run(getInt("threads"), getInt("reads"),
+          getInt("readSize"), getInt("numFiles"), cached));
+    }
+    return results;
+  }
+
+  /**
+   * Have every thread read random small ranges of the tail of random files.
+   */
+  private Result run(int numThreads, final int readsPerThread,
+      final int readSize, final int numFiles, boolean cached)
+      throws Exception {
+    Configuration clusterConf = new Configuration(getConf());
+    clusterConf.setLong(HdfsClientConfigKeys.Read.PageCache.CAPACITY_KEY,
+        cached ? CACHE_CAPACITY : 0);
+    clusterConf.set(HdfsClientConfigKeys.DFS_CLIENT_CONTEXT,
+        "BlockPageCacheBenchmark-" + cached);
+    long numReads = (long) numThreads * readsPerThread;
+    Result result = new Result(cached ? "page cache" : "no cache")
+        .add("threads", numThreads).add("files", numFiles)
+        .add("reads", numReads);
+
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(clusterConf)
+        .numDataNodes(1).build();
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      cluster.waitActive();
+      final DistributedFileSystem fs = cluster.getFileSystem();
+      final Path[] files = new Path[numFiles];
+      for (int f = 0; f < numFiles; f++) {
+        files[f] = new Path("/bench/file" + f);
+        DFSTestUtil.createFile(fs, files[f], FILE_LENGTH, (short) 1, f);
+      }
+
+      // the cache of a client context outlives the cluster
+      final BlockPageCache pageCache =
+          fs.getClient().getClientContext().getBlockPageCache();
+      long cacheHits = pageCache == null ? 0 : pageCache.getHits();
+
+      List<Future<Void>> futures = new ArrayList<>();
+      long start = Time.monotonicNow();
+      for (int t = 0; t < numThreads; t++) {
+        final Random r = new Random(t);
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            FSDataInputStream[] ins = new FSDataInputStream[numFiles];
+            byte[] buf = new byte[readSize];
+            try {
+              for (int f = 0; f < numFiles; f++) {
+                ins[f] = fs.open(files[f]);
+              }
+              for (int i = 0; i < readsPerThread; i++) {
+                long pos = FILE_LENGTH - TAIL_LENGTH +
+                    r.nextInt(TAIL_LENGTH - readSize);
+                ins[r.nextInt(numFiles)].readFully(pos, buf);
+              }
+            } finally {
+              for (FSDataInputStream in : ins) {
+                if (in != null) {
+                  in.close();
+                }
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+      long timeMs = Time.monotonicNow() - start;
+      result.add("timeMs", timeMs).addRate("readsPerSec", numReads, timeMs);
+      if (pageCache != null) {
+        result.add("cacheHits", pageCache.getHits() - cacheHits);
+        LOG.info("Page cache: {}", pageCache);
+      }
+    } finally {
+      executor.shutdownNow();
+      cluster.shutdown();
+    }
+    return result;
+  }
+
+  public static void main(String[] args) throws Exception {
+    System.exit(ToolRunner.run(
+        new BlockPageCacheBenchmark(new HdfsConfiguration()), args));
+  }
+}
@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.util.Tool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Base of the benchmarks of HDFS features which are run as a {@link Tool}.
+ * <p>
+ * A benchmark declares its numeric options with their default values and
+ * runs one or more cases with {@link #runCases()}, returning the
+ * measurements of each case as a {@link Result}. {@link #run(String[])}
+ * parses the options, given as -name value pairs after the generic options,
+ * and logs and prints the results one case per line. The names of the
+ * generic options, such as files or conf, cannot be used.
+ */
+public abstract class HdfsBenchmark extends Configured implements Tool {
+  private static final Logger LOG =
+      LoggerFactory.getLogger(HdfsBenchmark.class);
+
+  private final Map<String, Long> options = new LinkedHashMap<>();
+
+  protected HdfsBenchmark(Configuration conf) {
+    super(conf);
+  }
+
+  /** Declare the option -name with its default value. */
+  protected final void addOption(String name, long defaultValue) {
+    options.put(name, defaultValue);
+  }
+
+  /** @return the value of the option -name. */
+  protected final long getLong(String name) {
+    final Long value = options.get(name);
+    if (value == null) {
+      throw new IllegalArgumentException("Unknown option -" + name);
+    }
+    return value;
+  }
+
+  protected final int getInt(String name) {
+    return (int) getLong(name);
+  }
+
+  /** Run the cases of the benchmark with the current option values. */
+  protected abstract List<Result> runCases() throws Exception;
+
+  @Override
+  public int run(String[] args) throws Exception {
+    for (int i = 0; i < args.length; i += 2) {
+      final String name = args[i].substring(1);
+      if (!args[i].startsWith("-") || !options.containsKey(name)
+          || i + 1 == args.length) {
+        printUsage();
+        return -1;
+      }
+      options.put(name, Long.parseLong(args[i + 1]));
+    }
+    for (Result result : runCases()) {
+      LOG.info("{}: {}", getClass().getSimpleName(), result);
+      System.out.println(result);
+    }
+    return 0;
+  }
+
+  private void printUsage() {
+    final StringBuilder b = new StringBuilder("Usage: ")
+        .append(getClass().getSimpleName());
+    for (Map.Entry<String, Long> e : options.entrySet()) {
+      b.append(" [-").append(e.getKey()).append(' ')
+          .append(e.getValue()).append(']');
+    }
+    System.err.println(b);
+  }
+
+  /** The measurements of one case, printed in the order they were added. */
+  public static class Result {
+    private final String name;
+    private final Map<String, Number> values = new LinkedHashMap<>();
+
+    public Result(String name) {
+      this.name = name;
+    }
+
+    public Result add(String key, long value) {
+      values.put(key, value);
+      return this;
+    }
+
+    public Result add(String key, double value) {
+      values.put(key, value);
+      return this;
+    }
+
+    /** Add the rate per second of count operations done in timeMs. */
+    public Result addRate(String key, long count, long timeMs) {
+      return add(key, count * 1000.0 / Math.max(1, timeMs));
+    }
+
+    public Number get(String key) {
+      return values.get(key);
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder b = new StringBuilder(name).append(':');
+      String sep = " ";
+      for (Map.Entry<String, Number> e : values.entrySet()) {
+        b.append(sep).append(e.getKey()).append('=');
+        if (e.getValue() instanceof Double) {
+          b.append(String.format("%.1f", e.getValue()));
+        } else {
+          b.append(e.getValue());
+        }
+        sep = ", ";
+      }
+      return b.toString();
+    }
+  }
+}
@@ -0,0 +1,189 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
+import org.apache.hadoop.hdfs.protocol.LocatedStripedBlock;
+import org.apache.hadoop.util.Time;
+import org.apache.hadoop.util.ToolRunner;
+
+/**
+ * Measures the throughput of a single sequential reader of an erasure coded
+ * file on a {@link MiniDFSCluster}, with and without reading stripes ahead
+ * and decoding the cells of slow DataNodes, while all the DataNodes are
+ * healthy, one of them is slow to serve every read, or one of them is dead.
+ * The throughput of reading a replicated file of the same size is measured
+ * for reference.
+ * <p>
+ * Usage: StripedReadAheadBenchmark [-sizeMB S] [-readAhead N] [-slowMs D]
+ * [-thresholdMs T]
+ */
+public class StripedReadAheadBenchmark extends HdfsBenchmark {
+
+  private static final int STRIPES_PER_BLOCK = 8;
+  private static final int READ_SIZE = 64 * 1024;
+
+  /** How the file is read. */
+  private enum Mode {
+    /** A replicated file of the same size. */
+    REPLICATED,
+    /** Stripe by stripe. */
+    STRIPED,
+    /** Reading stripes ahead and decoding the cells of slow DataNodes. */
+    PIPELINED
+  }
+
+  /** What happens to the DataNode of the first data block. */
+  private enum Fault {
+    NONE,
+    SLOW,
+    DEAD
+  }
+
+  public StripedReadAheadBenchmark(Configuration conf) {
+    super(conf);
+    addOption("sizeMB", 96);
+    addOption("readAhead", 4);
+    addOption("slowMs", 200);
+    addOption("thresholdMs", 50);
+  }
+
+  @Override
+  protected List<Result> runCases() throws Exception {
+    List<Result> results = new ArrayList<>();
+    for (Fault fault : Fault.values()) {
+      for (Mode mode : Mode.values()) {
+        results.add(run(getInt("sizeMB"), mode, fault, getInt("readAhead"),
+            getInt("slowMs"), getLong("thresholdMs")));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Read the whole file once, sequentially, after the given fault.
+   */
+  private Result run(int sizeMB, Mode mode, Fault fault, int readAhead,
+      int slowMs, long thresholdMs) throws Exception {
+    final ErasureCodingPolicy ecPolicy =
+        StripedFileTestUtil.getDefaultECPolicy();
+    final int numDataNodes =
+        ecPolicy.getNumDataUnits() + ecPolicy.getNumParityUnits();
+    Configuration clusterConf = new Configuration(getConf());
+    clusterConf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY,
+        (long) ecPolicy.getCellSize() * STRIPES_PER_BLOCK);
+    // no reconstruction of the blocks of the dead DataNode
+    clusterConf.setInt(DFSConfigKeys.DFS_NAMENODE_REPLICATION_MAX_STREAMS_KEY,
+        0);
+    if (mode == Mode.PIPELINED) {
+      clusterConf.setInt(
+          HdfsClientConfigKeys.StripedRead.READAHEAD_STRIPES_KEY, readAhead);
+      clusterConf.setLong(
+          HdfsClientConfigKeys.StripedRead.SLOW_READ_THRESHOLD_MILLIS_KEY,
+          thresholdMs);
+    }
+    Result result = new Result(mode + "/" + fault);
+
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(clusterConf)
+        .numDataNodes(numDataNodes).build();
+    DFSClientFaultInjector injector = DFSClientFaultInjector.get();
+    try {
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      Path file = new Path("/bench/file");
+      fs.mkdirs(file.getParent());
+      if (mode != Mode.REPLICATED) {
+        fs.enableErasureCodingPolicy(ecPolicy.getName());
+        fs.setErasureCodingPolicy(file.getParent(), ecPolicy.getName());
+      }
+      final long length = sizeMB * 1024L * 1024;
+      DFSTestUtil.createFile(fs, file, length, (short) 3, 0L);
+
+      if (fault != Fault.NONE) {
+        DatanodeInfo target = getFirstDataNode(fs, file, mode);
+        if (fault == Fault.SLOW) {
+          DFSClientFaultInjector.set(
+              new AdaptiveHedgedReadBenchmark.SlowDataNode(
+                  target.getXferAddr(), slowMs));
+        } else {
+          cluster.stopDataNode(target.getXferAddr());
+        }
+      }
+
+      byte[] buf = new byte[READ_SIZE];
+      long start = Time.monotonicNow();
+      long numBytes = 0;
+      try (FSDataInputStream in = fs.open(file)) {
+        int n;
+        while ((n = in.read(buf)) > 0) {
+          numBytes += n;
+        }
+        long timeMs = Time.monotonicNow() - start;
+        result.add("bytes", numBytes).add("timeMs", timeMs).add("MBPerSec",
+            numBytes * 1000.0 / (1024 * 1024) / Math.max(1, timeMs));
+        if (in.getWrappedStream() instanceof DFSStripedInputStream) {
+          DFSStripedInputStream striped =
+              (DFSStripedInputStream) in.getWrappedStream();
+          result.add("slowReads", striped.getNumSlowReads())
+              .add("stripesReadAhead", striped.getNumStripesReadAhead());
+        }
+      }
+      if (numBytes != length) {
+        throw new IllegalStateException("Read " + numBytes +
+            " bytes out of " + length);
+      }
+    } finally {
+      DFSClientFaultInjector.set(injector);
+      cluster.shutdown();
+    }
+    return result;
+  }
+
+  /**
+   * @return the DataNode of the first data block of the striped file, or
+   * of the first replica of the replicated file.
+   */
+  private static DatanodeInfo getFirstDataNode(DistributedFileSystem fs,
+      Path file, Mode mode) throws Exception {
+    if (mode == Mode.REPLICATED) {
+      return DFSTestUtil.getAllBlocks(fs, file).get(0).getLocations()[0];
+    }
+    LocatedStripedBlock group = (LocatedStripedBlock)
+        DFSTestUtil.getAllBlocks(fs, file).get(0);
+    byte[] indices = group.getBlockIndices();
+    for (int i = 0; i < indices.length; i++) {
+      if (indices[i] == 0) {
+        return group.getLocations()[i];
+      }
+    }
+    throw new IllegalStateException("No data block 0 in " + group);
+  }
+
+  public static void main(String[] args) throws Exception {
+    System.exit(ToolRunner.run(
+        new StripedReadAheadBenchmark(new HdfsConfiguration()), args));
+  }
+}
@@ -0,0 +1,175 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.junit.Test;
+
+/**
+ * Tests the hedged reads adapted to the latencies of each DataNode when
+ * {@link HdfsClientConfigKeys.HedgedRead#ADAPTIVE_ENABLED_KEY} is set.
+ */
+public class TestAdaptiveHedgedRead {
+  private static final DatanodeInfo[] NODES = {
+      DFSTestUtil.getLocalDatanodeInfo(1001),
+      DFSTestUtil.getLocalDatanodeInfo(1002),
+      DFSTestUtil.getLocalDatanodeInfo(1003)};
+  private static final boolean[] ALL = {true, true, true};
+
+  private static void addReads(DataNodeReadLatencies latencies,
+      DatanodeInfo node, int numReads, long latencyUs) {
+    for (int i = 0; i < numReads; i++) {
+      latencies.addRead(node, latencyUs);
+    }
+  }
+
+  @Test
+  public void testChooseFastest() {
+    DataNodeReadLatencies latencies = new DataNodeReadLatencies();
+    // nothing known, the closest node is read
+    assertEquals(0, latencies.chooseFastest(NODES, ALL));
+    assertEquals(1, latencies.chooseFastest(NODES,
+        new boolean[] {false, true, true}));
+    assertEquals(-1, latencies.chooseFastest(NODES,
+        new boolean[] {false, false, false}));
+
+    addReads(latencies, NODES[0], DataNodeReadLatencies.MIN_SAMPLES - 1,
+        10000);
+    addReads(latencies, NODES[1], DataNodeReadLatencies.MIN_SAMPLES, 6000);
+    addReads(latencies, NODES[2], DataNodeReadLatencies.MIN_SAMPLES, 1000);
+    // the closest node is not known yet
+    assertNull(latencies.getKnown(NODES[0]));
+    assertEquals(0, latencies.chooseFastest(NODES, ALL));
+    latencies.addRead(NODES[0], 10000);
+    assertNotNull(latencies.getKnown(NODES[0]));
+    // it is slower than another node
+    assertEquals(2, latencies.chooseFastest(NODES, ALL));
+    // but not twice as slow as the others
+    assertEquals(0, latencies.chooseFastest(NODES,
+        new boolean[] {true, true, false}));
+    addReads(latencies, NODES[0], 50, 1500);
+    assertEquals(0, latencies.chooseFastest(NODES, ALL));
+  }
+
+  @Test
+  public void testExplore() {
+    DataNodeReadLatencies latencies = new DataNodeReadLatencies();
+    addReads(latencies, NODES[0], DataNodeReadLatencies.MIN_SAMPLES, 1000);
+    int[] chosen = new int[NODES.length];
+    for (int i = 0; i < 10 * DataNodeReadLatencies.EXPLORE_INTERVAL; i++) {
+      chosen[latencies.chooseFastest(NODES, ALL)]++;
+    }
+    // the first node not known is read from every few reads
+    assertEquals(10 * (DataNodeReadLatencies.EXPLORE_INTERVAL - 1),
+        chosen[0]);
+    assertEquals(10, chosen[1]);
+    assertEquals(0, chosen[2]);
+  }
+
+  @Test
+  public void testHedgedReadThreshold() {
+    DataNodeReadLatencies latencies = new DataNodeReadLatencies();
+    assertEquals(500,
+        latencies.getHedgedReadThresholdMillis(NODES[0], 500));
+    addReads(latencies, NODES[0], 95, 2000);
+    addReads(latencies, NODES[0], 5, 900000);
+    DataNodeReadLatencies.Latencies l = latencies.getKnown(NODES[0]);
+    assertEquals(2000, l.getP95Us());
+    assertEquals(100, l.getCount());
+    assertEquals(2, latencies.getHedgedReadThresholdMillis(NODES[0], 500));
+    // the percentile is over the last reads only
+    addReads(latencies, NODES[0], DataNodeReadLatencies.NUM_SAMPLES, 900000);
+    assertEquals(900000, l.getP95Us());
+    assertEquals(500,
+        latencies.getHedgedReadThresholdMillis(NODES[0], 500));
+  }
+
+  @Test(timeout = 120000)
+  public void testSlowDataNode() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(HdfsClientConfigKeys.HedgedRead.THREADPOOL_SIZE_KEY, 5);
+    conf.setLong(HdfsClientConfigKeys.HedgedRead.THRESHOLD_MILLIS_KEY,
+        60000);
+    conf.setBoolean(HdfsClientConfigKeys.HedgedRead.ADAPTIVE_ENABLED_KEY,
+        true);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(3).build();
+    DFSClientFaultInjector injector = DFSClientFaultInjector.get();
+    try {
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      Path file = new Path("/file");
+      DFSTestUtil.createFile(fs, file, 64 * 1024, (short) 3, 0L);
+      byte[] expected = DFSTestUtil.readFileAsBytes(fs, file);
+      String slow =
+          cluster.getDataNodes().get(0).getDatanodeId().getXferAddr();
+      DFSClientFaultInjector.set(
+          new AdaptiveHedgedReadBenchmark.SlowDataNode(slow, 20));
+
+      byte[] buf = new byte[1024];
+      try (FSDataInputStream in = fs.open(file)) {
+        for (int i = 0; i < 200; i++) {
+          int pos = (i * 997) % (expected.length - buf.length);
+          in.readFully(pos, buf);
+          for (int j = 0; j < buf.length; j++) {
+            assertEquals(expected[pos + j], buf[j]);
+          }
+        }
+      }
+      DataNodeReadLatencies latencies = fs.getDataNodeReadLatencies();
+      assertNotNull(latencies);
+      // the slow DataNode was learned about and then avoided
+      DataNodeReadLatencies.Latencies slowLatencies =
+          latencies.getLatencies().get(slow);
+      assertNotNull(slowLatencies);
+      assertTrue(slowLatencies.getAverageUs() >= 20000);
+      long fastReads = 0;
+      for (DataNodeReadLatencies.Latencies l :
+          latencies.getLatencies().values()) {
+        if (l != slowLatencies) {
+          fastReads += l.getCount();
+        }
+      }
+      assertTrue("reads from the slow DataNode: " + slowLatencies,
+          slowLatencies.getCount() < fastReads / 2);
+    } finally {
+      DFSClientFaultInjector.set(injector);
+      cluster.shutdown();
+    }
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(
+        new HdfsConfiguration()).numDataNodes(1).build();
+    try {
+      assertNull(cluster.getFileSystem().getDataNodeReadLatencies());
+    } finally {
+      cluster.shutdown();
+    }
+  }
+}
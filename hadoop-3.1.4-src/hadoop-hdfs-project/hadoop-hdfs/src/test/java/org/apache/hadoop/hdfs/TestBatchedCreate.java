@@ -0,0 +1,225 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import static org.apache.hadoop.test.MetricsAsserts.assertCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyShort;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.crypto.CryptoProtocolVersion;
+import org.apache.hadoop.fs.CreateFlag;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.hdfs.client.HdfsDataOutputStream;
+import org.apache.hadoop.hdfs.server.protocol.NamenodeProtocols;
+import org.apache.hadoop.io.EnumSetWritable;
+import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.ipc.RpcNoSuchMethodException;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the batched file creation and completion of
+ * {@link DistributedFileSystem#createFiles} and
+ * {@link DistributedFileSystem#closeFiles}.
+ */
+public class TestBatchedCreate {
+  private static final int FILE_SIZE = 1024;
+  private static final short REPLICATION = 1;
+
+  private Configuration conf;
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem fs;
+
+  @Before
+  public void setUp() throws IOException {
+    conf = new HdfsConfiguration();
+    conf.setInt(HdfsClientConfigKeys.DFS_CLIENT_WRITE_BATCH_SIZE_KEY, 3);
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_WRITE_BATCH_MAX_FILES_KEY, 4);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  private static List<Path> paths(String dir, int n) {
+    List<Path> paths = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      paths.add(new Path(dir, "file" + i));
+    }
+    return paths;
+  }
+
+  private List<HdfsDataOutputStream> createFiles(List<Path> paths,
+      boolean overwrite) throws IOException {
+    return fs.createFiles(paths, FsPermission.getFileDefault(), overwrite,
+        REPLICATION, fs.getDefaultBlockSize());
+  }
+
+  @Test(timeout = 120000)
+  public void testCreateAndCloseFiles() throws Exception {
+    // more files than the client batch size, so several calls are needed
+    List<Path> paths = paths("/batch", 7);
+    List<HdfsDataOutputStream> streams = createFiles(paths, false);
+    assertEquals(paths.size(), streams.size());
+    for (int i = 0; i < paths.size(); i++) {
+      assertFalse(fs.isFileClosed(paths.get(i)));
+      byte[] data = AppendTestUtil.randomBytes(i, FILE_SIZE);
+      streams.get(i).write(data);
+    }
+    fs.closeFiles(streams);
+
+    for (int i = 0; i < paths.size(); i++) {
+      assertTrue(fs.isFileClosed(paths.get(i)));
+      assertArrayEquals(AppendTestUtil.randomBytes(i, FILE_SIZE),
+          DFSTestUtil.readFileAsBytes(fs, paths.get(i)));
+    }
+    assertCounter("CreateFileOps", 7L, getMetrics("NameNodeActivity"));
+    // all the streams are closed and no lease is left behind
+    assertTrue(fs.getClient().isFilesBeingWrittenEmpty());
+  }
+
+  @Test(timeout = 120000)
+  public void testEmptyFilesAndClosedStreams() throws Exception {
+    List<Path> paths = paths("/empty", 3);
+    List<HdfsDataOutputStream> streams = createFiles(paths, false);
+    streams.get(1).write(new byte[FILE_SIZE]);
+    // a stream closed on its own is left alone by closeFiles
+    streams.get(2).close();
+    fs.closeFiles(streams);
+    for (Path p : paths) {
+      assertTrue(fs.isFileClosed(p));
+    }
+    assertEquals(0, fs.getFileStatus(paths.get(0)).getLen());
+    assertEquals(FILE_SIZE, fs.getFileStatus(paths.get(1)).getLen());
+  }
+
+  @Test(timeout = 120000)
+  public void testPartialFailure() throws Exception {
+    List<Path> paths = paths("/partial", 3);
+    DFSTestUtil.createFile(fs, paths.get(1), FILE_SIZE, REPLICATION, 0L);
+    try {
+      createFiles(paths, false);
+      fail("Expected the batch to fail on an existing file");
+    } catch (FileAlreadyExistsException e) {
+      GenericTestUtils.assertExceptionContains(paths.get(1).toString(), e);
+    }
+    // the file created before the failure is closed, the batch stopped at
+    // the failure
+    assertTrue(fs.isFileClosed(paths.get(0)));
+    assertEquals(FILE_SIZE, fs.getFileStatus(paths.get(1)).getLen());
+    assertFalse(fs.exists(paths.get(2)));
+
+    // the failure of the first file is thrown as is
+    try {
+      createFiles(paths.subList(1, 2), false);
+      fail("Expected the batch to fail on an existing file");
+    } catch (FileAlreadyExistsException e) {
+      GenericTestUtils.assertExceptionContains(paths.get(1).toString(), e);
+    }
+
+    List<HdfsDataOutputStream> streams = createFiles(paths, true);
+    fs.closeFiles(streams);
+    for (Path p : paths) {
+      assertEquals(0, fs.getFileStatus(p).getLen());
+    }
+  }
+
+  @Test(timeout = 120000)
+  public void testMaxBatchSize() throws Exception {
+    DFSClient client = fs.getClient();
+    String[] srcs = new String[5];
+    for (int i = 0; i < srcs.length; i++) {
+      srcs[i] = "/max/file" + i;
+    }
+    try {
+      client.namenode.createBatch(srcs, FsPermission.getFileDefault(),
+          client.getClientName(),
+          new EnumSetWritable<>(EnumSet.of(CreateFlag.CREATE)), true,
+          REPLICATION, fs.getDefaultBlockSize(),
+          CryptoProtocolVersion.supported(), null);
+      fail("Expected the batch to be rejected");
+    } catch (IOException e) {
+      GenericTestUtils.assertExceptionContains(
+          DFSConfigKeys.DFS_NAMENODE_WRITE_BATCH_MAX_FILES_KEY, e);
+    }
+    assertFalse(fs.exists(new Path("/max")));
+  }
+
+  @Test(timeout = 120000)
+  public void testFallbackWithoutCreateBatch() throws Exception {
+    NamenodeProtocols spyNN = spy(cluster.getNameNodeRpc());
+    doThrow(new RemoteException(RpcNoSuchMethodException.class.getName(),
+        "Unknown method createBatch")).when(spyNN).createBatch(
+        any(String[].class), any(FsPermission.class), anyString(),
+        any(EnumSetWritable.class), anyBoolean(), anyShort(), anyLong(),
+        any(CryptoProtocolVersion[].class), anyString());
+    DFSClient client = new DFSClient(null, spyNN, conf, null);
+    List<String> srcs = new ArrayList<>();
+    for (Path p : paths("/fallback", 7)) {
+      srcs.add(p.toString());
+    }
+    List<DFSOutputStream> streams = client.createBatch(srcs,
+        FsPermission.getFileDefault(), EnumSet.of(CreateFlag.CREATE), true,
+        REPLICATION, fs.getDefaultBlockSize(), null, null, null);
+    assertEquals(srcs.size(), streams.size());
+    for (DFSOutputStream out : streams) {
+      out.write(new byte[FILE_SIZE]);
+    }
+    client.closeBatch(streams);
+    for (String src : srcs) {
+      assertTrue(fs.isFileClosed(new Path(src)));
+      assertEquals(FILE_SIZE, fs.getFileStatus(new Path(src)).getLen());
+    }
+    // the files are created one by one once createBatch is found missing
+    verify(spyNN, times(1)).createBatch(any(String[].class),
+        any(FsPermission.class), anyString(), any(EnumSetWritable.class),
+        anyBoolean(), anyShort(), anyLong(),
+        any(CryptoProtocolVersion[].class), anyString());
+  }
+}
@@ -0,0 +1,198 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.hdfs.client.HdfsDataInputStream;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.junit.Test;
+
+/**
+ * Tests the {@link BlockPageCache} and the positional reads served from it
+ * when {@link HdfsClientConfigKeys.Read.PageCache#CAPACITY_KEY} is set.
+ */
+public class TestBlockPageCache {
+  private static final int PAGE_SIZE = 4096;
+
+  private static void cache(BlockPageCache cache, ExtendedBlock b,
+      long pageOffset, byte value) {
+    ByteBuffer page = cache.allocate();
+    assertNotNull(page);
+    while (page.hasRemaining()) {
+      page.put(value);
+    }
+    page.flip();
+    cache.put(b, pageOffset, page);
+  }
+
+  private static boolean isCached(BlockPageCache cache, ExtendedBlock b,
+      long pageOffset) {
+    return cache.read(b, pageOffset, 0, 1, ByteBuffer.allocate(1));
+  }
+
+  @Test
+  public void testEviction() {
+    for (BlockPageCache.EvictionPolicy policy :
+        BlockPageCache.EvictionPolicy.values()) {
+      BlockPageCache cache =
+          new BlockPageCache(2 * PAGE_SIZE, PAGE_SIZE, policy);
+      ExtendedBlock b = new ExtendedBlock("bp", 1, 3 * PAGE_SIZE, 1001);
+      cache(cache, b, 0, (byte) 1);
+      cache(cache, b, PAGE_SIZE, (byte) 2);
+      // the first page is read again, then a third one cached
+      ByteBuffer buf = ByteBuffer.allocate(10);
+      assertTrue(cache.read(b, 0, 100, 10, buf));
+      assertArrayEquals(new byte[] {1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
+          buf.array());
+      cache(cache, b, 2 * PAGE_SIZE, (byte) 3);
+      assertEquals(2, cache.size());
+      assertEquals(1, cache.getEvictions());
+      if (policy == BlockPageCache.EvictionPolicy.LRU) {
+        assertTrue(isCached(cache, b, 0));
+        assertFalse(isCached(cache, b, PAGE_SIZE));
+      } else {
+        assertFalse(isCached(cache, b, 0));
+        assertTrue(isCached(cache, b, PAGE_SIZE));
+      }
+      assertTrue(isCached(cache, b, 2 * PAGE_SIZE));
+    }
+  }
+
+  @Test
+  public void testGenerationStamp() {
+    BlockPageCache cache = new BlockPageCache(4 * PAGE_SIZE, PAGE_SIZE,
+        BlockPageCache.EvictionPolicy.LRU);
+    ExtendedBlock b = new ExtendedBlock("bp", 1, PAGE_SIZE, 1001);
+    cache(cache, b, 0, (byte) 1);
+    assertTrue(isCached(cache, b, 0));
+    // the same block id of another pool is another block
+    assertFalse(isCached(cache, new ExtendedBlock("bp2", 1, PAGE_SIZE, 1001),
+        0));
+    // the page of the block appended to is dropped
+    ExtendedBlock appended = new ExtendedBlock("bp", 1, PAGE_SIZE, 1002);
+    assertFalse(isCached(cache, appended, 0));
+    assertEquals(1, cache.getInvalidations());
+    assertEquals(0, cache.size());
+    assertFalse(isCached(cache, b, 0));
+  }
+
+  @Test
+  public void testAllocate() {
+    BlockPageCache cache = new BlockPageCache(2 * PAGE_SIZE, PAGE_SIZE,
+        BlockPageCache.EvictionPolicy.LRU);
+    ByteBuffer p1 = cache.allocate();
+    ByteBuffer p2 = cache.allocate();
+    assertTrue(p1.isDirect());
+    assertEquals(PAGE_SIZE, p2.capacity());
+    // all the pages are being filled
+    assertNull(cache.allocate());
+    cache.release(p1);
+    assertTrue(cache.allocate() == p1);
+  }
+
+  @Test(timeout = 60000)
+  public void testPread() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setLong(HdfsClientConfigKeys.Read.PageCache.CAPACITY_KEY,
+        16 * PAGE_SIZE);
+    conf.setInt(HdfsClientConfigKeys.Read.PageCache.PAGE_SIZE_KEY,
+        PAGE_SIZE);
+    conf.setInt(HdfsClientConfigKeys.DFS_BYTES_PER_CHECKSUM_KEY, 512);
+    conf.setLong(HdfsClientConfigKeys.DFS_BLOCK_SIZE_KEY, 8 * PAGE_SIZE);
+    conf.set(HdfsClientConfigKeys.DFS_CLIENT_CONTEXT, "testPread");
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(1).build();
+    try {
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      BlockPageCache cache =
+          fs.getClient().getClientContext().getBlockPageCache();
+      assertNotNull(cache);
+      Path file = new Path("/file");
+      int length = 20 * PAGE_SIZE + 100;
+      DFSTestUtil.createFile(fs, file, length, (short) 1, 0L);
+      byte[] expected = DFSTestUtil.readFileAsBytes(fs, file);
+
+      byte[] buf = new byte[1000];
+      try (FSDataInputStream in = fs.open(file)) {
+        // across pages, blocks and at the end of the file
+        for (long pos : new long[] {10, 4000, 8 * PAGE_SIZE - 500,
+            length - 1000, 10, 4000}) {
+          in.readFully(pos, buf);
+          assertArrayEquals(Arrays.copyOfRange(expected, (int) pos,
+              (int) pos + buf.length), buf);
+        }
+      }
+      assertEquals(6, cache.size());
+      long hits = cache.getHits();
+      assertTrue(hits >= 3);
+      // another stream reads from the same pages, counted as local reads
+      long bytesRead = DFSTestUtil.getStatistics(fs).getBytesRead();
+      try (HdfsDataInputStream in = (HdfsDataInputStream) fs.open(file)) {
+        in.readFully(10, buf);
+        assertEquals(buf.length,
+            in.getReadStatistics().getTotalLocalBytesRead());
+      }
+      assertEquals(hits + 1, cache.getHits());
+      assertEquals(bytesRead + buf.length,
+          DFSTestUtil.getStatistics(fs).getBytesRead());
+      // larger reads are not cached
+      try (FSDataInputStream in = fs.open(file)) {
+        in.readFully(12 * PAGE_SIZE, new byte[2 * PAGE_SIZE]);
+      }
+      assertEquals(6, cache.size());
+
+      // the last block appended to has a new generation stamp
+      try (FSDataOutputStream out = fs.append(file)) {
+        out.write(new byte[] {1, 2, 3});
+        // files under construction are not cached
+        try (FSDataInputStream in = fs.open(file)) {
+          in.readFully(10, buf);
+          assertEquals(6, cache.size());
+        }
+      }
+      expected = DFSTestUtil.readFileAsBytes(fs, file);
+      try (FSDataInputStream in = fs.open(file)) {
+        in.readFully(length - 1000, buf);
+        assertArrayEquals(Arrays.copyOfRange(expected, length - 1000,
+            length), buf);
+        byte[] tail = new byte[5];
+        in.readFully(length - 2, tail);
+        assertArrayEquals(Arrays.copyOfRange(expected, length - 2,
+            length + 3), tail);
+      }
+      assertTrue(cache.getInvalidations() > 0);
+    } finally {
+      cluster.shutdown();
+    }
+  }
+}
@@ -17,6 +17,8 @@
  */
 package org.apache.hadoop.hdfs;
 
+import static org.apache.hadoop.test.MetricsAsserts.getLongCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeTrue;
@@ -43,6 +45,7 @@ import org.apache.hadoop.hdfs.protocol.DatanodeID;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
 import org.apache.hadoop.hdfs.protocol.LocatedStripedBlock;
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockManager;
@@ -568,4 +571,91 @@ public class TestReconstructStripedFile {
       DataNodeFaultInjector.set(oldInjector);
     }
   }
+
+  @Test(timeout = 120000)
+  public void testBatchedReconstruction() throws Exception {
+    // Reset cluster with the block groups reconstructed in batches, at a
+    // limited bandwidth.
+    conf.setInt(DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_BATCH_SIZE_KEY, 4);
+    conf.setLong(DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_BANDWIDTHPERSEC_KEY,
+        32L * 1024 * 1024);
+    cluster.shutdown();
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(dnNum).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+    fs.enableErasureCodingPolicy(ecPolicy.getName());
+    fs.getClient().setErasureCodingPolicy("/", ecPolicy.getName());
+    List<DataNode> datanodes = cluster.getDataNodes();
+    for (int i = 0; i < dnNum; i++) {
+      dnMap.put(datanodes.get(i).getDatanodeId(), i);
+    }
+
+    final int numGroups = 3;
+    final int fileLen = dataBlkNum * blockSize * numGroups;
+    Path file = new Path("/testBatchedReconstruction");
+    DFSTestUtil.writeFile(fs, file,
+        StripedFileTestUtil.generateBytes(fileLen));
+    StripedFileTestUtil.waitBlockGroupsReported(fs, file.toString());
+
+    // Stop the DataNode with the most internal blocks.
+    LocatedBlocks locatedBlocks =
+        StripedFileTestUtil.getLocatedBlocks(file, fs);
+    int[] numBlocks = new int[dnNum];
+    for (LocatedBlock group : locatedBlocks.getLocatedBlocks()) {
+      for (DatanodeInfo location : group.getLocations()) {
+        numBlocks[dnMap.get(location)]++;
+      }
+    }
+    int deadIndex = 0;
+    for (int i = 1; i < dnNum; i++) {
+      if (numBlocks[i] > numBlocks[deadIndex]) {
+        deadIndex = i;
+      }
+    }
+    DatanodeID dead = datanodes.get(deadIndex).getDatanodeId();
+    List<ExtendedBlock> blocks = new ArrayList<>();
+    List<byte[]> replicaContents = new ArrayList<>();
+    for (LocatedBlock lb : locatedBlocks.getLocatedBlocks()) {
+      LocatedStripedBlock group = (LocatedStripedBlock) lb;
+      DatanodeInfo[] locations = group.getLocations();
+      for (int i = 0; i < locations.length; i++) {
+        if (locations[i].equals(dead)) {
+          ExtendedBlock block = StripedBlockUtil.constructInternalBlock(
+              group.getBlock(), cellSize, dataBlkNum,
+              group.getBlockIndices()[i]);
+          blocks.add(block);
+          replicaContents.add(DFSTestUtil.readFileAsBytes(
+              cluster.getBlockFile(deadIndex, block)));
+        }
+      }
+    }
+    assertTrue(blocks.size() > 1);
+
+    shutdownDataNode(datanodes.get(deadIndex));
+    StripedFileTestUtil.waitForAllReconstructionFinished(file, fs,
+        numGroups * groupSize);
+
+    // Check the replicas on the new targets.
+    long reconstructions = 0;
+    for (int i = 0; i < blocks.size(); i++) {
+      File replica = null;
+      for (int j = 0; j < dnNum && replica == null; j++) {
+        if (j != deadIndex) {
+          replica = cluster.getBlockFile(j, blocks.get(i));
+        }
+      }
+      Assert.assertNotNull("Failed to reconstruct striped block: " +
+          blocks.get(i), replica);
+      Assert.assertArrayEquals(replicaContents.get(i),
+          DFSTestUtil.readFileAsBytes(replica));
+    }
+    for (int j = 0; j < dnNum; j++) {
+      if (j != deadIndex) {
+        reconstructions += getLongCounter(
+            "EcReconstructionThroughputNumOps",
+            getMetrics(datanodes.get(j).getMetrics().name()));
+      }
+    }
+    assertTrue(reconstructions >= blocks.size());
+  }
 }
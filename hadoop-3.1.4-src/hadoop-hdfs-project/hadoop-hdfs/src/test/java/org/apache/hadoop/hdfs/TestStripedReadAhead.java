@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
+import org.apache.hadoop.hdfs.protocol.LocatedStripedBlock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the stateful reads of erasure coded files reading stripes ahead when
+ * {@link HdfsClientConfigKeys.StripedRead#READAHEAD_STRIPES_KEY} is set,
+ * and decoding the cells of slow DataNodes when
+ * {@link HdfsClientConfigKeys.StripedRead#SLOW_READ_THRESHOLD_MILLIS_KEY}
+ * is set.
+ */
+public class TestStripedReadAhead {
+  private static final int STRIPES_PER_BLOCK = 4;
+
+  private final ErasureCodingPolicy ecPolicy =
+      StripedFileTestUtil.getDefaultECPolicy();
+  private final int cellSize = ecPolicy.getCellSize();
+  private final int dataBlkNum = ecPolicy.getNumDataUnits();
+  private final Path file = new Path("/striped/file");
+  /** Two block groups and a part of a third one. */
+  private final int fileLength =
+      (2 * STRIPES_PER_BLOCK * dataBlkNum + 3) * cellSize + 123;
+  private final byte[] expected =
+      StripedFileTestUtil.generateBytes(fileLength);
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem fs;
+
+  @Before
+  public void setup() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY,
+        (long) cellSize * STRIPES_PER_BLOCK);
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_REPLICATION_MAX_STREAMS_KEY, 0);
+    conf.setInt(HdfsClientConfigKeys.StripedRead.READAHEAD_STRIPES_KEY, 2);
+    conf.setLong(
+        HdfsClientConfigKeys.StripedRead.SLOW_READ_THRESHOLD_MILLIS_KEY, 500);
+    cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(dataBlkNum + ecPolicy.getNumParityUnits()).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+    fs.enableErasureCodingPolicy(ecPolicy.getName());
+    fs.mkdirs(file.getParent());
+    fs.setErasureCodingPolicy(file.getParent(), ecPolicy.getName());
+    DFSTestUtil.writeFile(fs, file, expected);
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  /** @return the DataNode of the first data block of the file. */
+  private DatanodeInfo getFirstDataNode() throws Exception {
+    LocatedStripedBlock group = (LocatedStripedBlock)
+        DFSTestUtil.getAllBlocks(fs, file).get(0);
+    byte[] indices = group.getBlockIndices();
+    for (int i = 0; i < indices.length; i++) {
+      if (indices[i] == 0) {
+        return group.getLocations()[i];
+      }
+    }
+    throw new AssertionError("No data block 0 in " + group);
+  }
+
+  /**
+   * Read the file sequentially with the given stream, in reads of the given
+   * size.
+   */
+  private void readFully(FSDataInputStream in, int readSize)
+      throws Exception {
+    byte[] result = new byte[fileLength];
+    int pos = 0;
+    while (pos < fileLength) {
+      int n = in.read(result, pos, Math.min(readSize, fileLength - pos));
+      assertTrue(n > 0);
+      pos += n;
+    }
+    assertEquals(-1, in.read());
+    assertArrayEquals(expected, result);
+  }
+
+  @Test(timeout = 120000)
+  public void testReadAhead() throws Exception {
+    for (int readSize : new int[] {4096, cellSize + 1, 3 * cellSize}) {
+      try (FSDataInputStream in = fs.open(file)) {
+        readFully(in, readSize);
+        DFSStripedInputStream striped =
+            (DFSStripedInputStream) in.getWrappedStream();
+        // all the stripes but the first one of each block group
+        assertEquals(2 * STRIPES_PER_BLOCK - 2,
+            striped.getNumStripesReadAhead());
+        assertEquals(0, striped.getNumSlowReads());
+      }
+    }
+
+    // seeks while reading ahead
+    try (FSDataInputStream in = fs.open(file)) {
+      byte[] buf = new byte[cellSize];
+      for (long pos : new long[] {0, 5L * cellSize + 10, 100, 0,
+          (long) STRIPES_PER_BLOCK * dataBlkNum * cellSize - 10,
+          fileLength - 1000, 7L * cellSize}) {
+        in.seek(pos);
+        int len = (int) Math.min(buf.length, fileLength - pos);
+        in.readFully(buf, 0, len);
+        assertArrayEquals(
+            Arrays.copyOfRange(expected, (int) pos, (int) pos + len),
+            Arrays.copyOf(buf, len));
+        // positional reads do not use the stripes read ahead
+        byte[] pread = new byte[100];
+        in.readFully(pos / 2, pread);
+        assertArrayEquals(
+            Arrays.copyOfRange(expected, (int) pos / 2, (int) pos / 2 + 100),
+            pread);
+      }
+      assertTrue(((DFSStripedInputStream) in.getWrappedStream())
+          .getNumStripesReadAhead() > 0);
+    }
+  }
+
+  @Test(timeout = 120000)
+  public void testSlowDataNode() throws Exception {
+    DFSClientFaultInjector injector = DFSClientFaultInjector.get();
+    DFSClientFaultInjector.set(new AdaptiveHedgedReadBenchmark.SlowDataNode(
+        getFirstDataNode().getXferAddr(), 60000));
+    try {
+      try (FSDataInputStream in = fs.open(file)) {
+        readFully(in, cellSize);
+        // the slow DataNode is not read from again in the block group
+        DFSStripedInputStream striped =
+            (DFSStripedInputStream) in.getWrappedStream();
+        assertTrue(striped.getNumSlowReads() > 0);
+        assertTrue(striped.getNumSlowReads() <= 3);
+      }
+      try (FSDataInputStream in = fs.open(file)) {
+        byte[] buf = new byte[1000];
+        in.readFully(10, buf);
+        assertArrayEquals(Arrays.copyOfRange(expected, 10, 1010), buf);
+        assertEquals(1,
+            ((DFSStripedInputStream) in.getWrappedStream())
+                .getNumSlowReads());
+      }
+    } finally {
+      DFSClientFaultInjector.set(injector);
+    }
+  }
+
+  @Test(timeout = 120000)
+  public void testDeadDataNode() throws Exception {
+    cluster.stopDataNode(getFirstDataNode().getXferAddr());
+    try (FSDataInputStream in = fs.open(file)) {
+      readFully(in, cellSize);
+      DFSStripedInputStream striped =
+          (DFSStripedInputStream) in.getWrappedStream();
+      assertTrue(striped.getNumStripesReadAhead() > 0);
+    }
+  }
+}
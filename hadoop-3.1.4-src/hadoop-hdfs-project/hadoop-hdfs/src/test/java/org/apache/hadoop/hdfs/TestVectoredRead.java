@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileRange;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the vectored reads of {@link DFSInputStream}.
+ */
+public class TestVectoredRead {
+  private static final int BLOCK_SIZE = 64 * 1024;
+  private static final int FILE_LENGTH = 5 * BLOCK_SIZE + 100;
+
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem fs;
+  private final Path file = new Path("/file");
+  private byte[] expected;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setLong(HdfsClientConfigKeys.DFS_BLOCK_SIZE_KEY, BLOCK_SIZE);
+    conf.setInt(HdfsClientConfigKeys.VectoredRead.MIN_SEEK_SIZE_KEY, 1024);
+    conf.setInt(HdfsClientConfigKeys.VectoredRead.MAX_MERGED_SIZE_KEY,
+        16 * 1024);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(3).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+    DFSTestUtil.createFile(fs, file, FILE_LENGTH, (short) 3, 0L);
+    expected = DFSTestUtil.readFileAsBytes(fs, file);
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+    }
+  }
+
+  private static List<FileRange> ranges(long... offsetsAndLengths) {
+    List<FileRange> ranges = new ArrayList<>();
+    for (int i = 0; i < offsetsAndLengths.length; i += 2) {
+      ranges.add(FileRange.createFileRange(offsetsAndLengths[i],
+          (int) offsetsAndLengths[i + 1]));
+    }
+    return ranges;
+  }
+
+  private void assertData(List<FileRange> ranges) throws Exception {
+    for (FileRange range : ranges) {
+      ByteBuffer data = range.getData().get();
+      assertEquals(range.getLength(), data.remaining());
+      for (int i = 0; i < range.getLength(); i++) {
+        assertEquals("at " + (range.getOffset() + i) + " of " + range,
+            expected[(int) range.getOffset() + i], data.get());
+      }
+    }
+  }
+
+  private void testReadVectored(DistributedFileSystem dfs) throws Exception {
+    List<IntFunction<ByteBuffer>> allocators = Arrays.asList(
+        ByteBuffer::allocate, ByteBuffer::allocateDirect);
+    for (IntFunction<ByteBuffer> allocate : allocators) {
+      // nearby, overlapping, across blocks, large and at the end of the file
+      List<FileRange> ranges = ranges(FILE_LENGTH - 100, 100,
+          10, 100, 500, 1000, 1200, 300, 1300, 100,
+          BLOCK_SIZE - 50, 100, 2 * BLOCK_SIZE, 2 * BLOCK_SIZE, 0, 0);
+      try (FSDataInputStream in = dfs.open(file)) {
+        in.readVectored(ranges, allocate);
+        assertData(ranges);
+      }
+    }
+  }
+
+  @Test(timeout = 120000)
+  public void testReadVectored() throws Exception {
+    testReadVectored(fs);
+  }
+
+  @Test(timeout = 120000)
+  public void testReadVectoredInCallingThread() throws Exception {
+    Configuration conf = new Configuration(fs.getConf());
+    conf.setInt(HdfsClientConfigKeys.VectoredRead.THREADPOOL_SIZE_KEY, 0);
+    try (DistributedFileSystem dfs =
+             (DistributedFileSystem) FileSystem.newInstance(fs.getUri(),
+                 conf)) {
+      assertNull(dfs.getClient().getVectoredReadsThreadPool());
+      testReadVectored(dfs);
+    }
+  }
+
+  @Test(timeout = 120000)
+  public void testMergedRanges() throws Exception {
+    final AtomicInteger fetches = new AtomicInteger();
+    DFSClientFaultInjector injector = DFSClientFaultInjector.get();
+    DFSClientFaultInjector.set(new DFSClientFaultInjector() {
+      @Override
+      public void fetchFromDatanodeDelay(DatanodeInfo datanode) {
+        fetches.incrementAndGet();
+      }
+    });
+    try (FSDataInputStream in = fs.open(file)) {
+      // ten ranges a few hundred bytes apart, then ten 2KB apart
+      List<FileRange> ranges = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+        ranges.add(FileRange.createFileRange(i * 500, 100));
+        ranges.add(FileRange.createFileRange(BLOCK_SIZE + i * 2100, 100));
+      }
+      in.readVectored(ranges, ByteBuffer::allocate);
+      assertData(ranges);
+      assertEquals(11, fetches.get());
+    } finally {
+      DFSClientFaultInjector.set(injector);
+    }
+  }
+
+  @Test(timeout = 120000)
+  public void testEOF() throws Exception {
+    try (FSDataInputStream in = fs.open(file)) {
+      List<FileRange> ranges = ranges(100, 10, FILE_LENGTH - 10, 20);
+      in.readVectored(ranges, ByteBuffer::allocate);
+      assertData(ranges.subList(0, 1));
+      try {
+        ranges.get(1).getData().get();
+        fail("read past the end of the file");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof EOFException);
+      }
+      try {
+        in.readVectored(ranges(-1, 10), ByteBuffer::allocate);
+        fail("read at a negative offset");
+      } catch (EOFException e) {
+        GenericTestUtils.assertExceptionContains("negative", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,165 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileRange;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.hadoop.util.Time;
+import org.apache.hadoop.util.ToolRunner;
+
+/**
+ * Measures the throughput, in vectors of ranges per second, of reading the
+ * column chunks of a file the way columnar readers do, range after range
+ * with positional reads or all at once with vectored reads, from a local
+ * file and from a file on a {@link MiniDFSCluster}.
+ * <p>
+ * Usage: VectoredReadBenchmark [-vectors V] [-ranges R] [-rangeSize S]
+ * [-maxGap G] [-delayMs D]
+ */
+public class VectoredReadBenchmark extends HdfsBenchmark {
+
+  public VectoredReadBenchmark(Configuration conf) {
+    super(conf);
+    addOption("vectors", 200);
+    addOption("ranges", 32);
+    addOption("rangeSize", 16 * 1024);
+    addOption("maxGap", 32 * 1024);
+    addOption("delayMs", 0);
+  }
+
+  @Override
+  protected List<Result> runCases() throws Exception {
+    List<Result> results = new ArrayList<>(4);
+    for (boolean local : new boolean[] {true, false}) {
+      for (boolean vectored : new boolean[] {false, true}) {
+        results.add(run(local, getInt("vectors"), getInt("ranges"),
+            getInt("rangeSize"), getInt("maxGap"), getInt("delayMs"),
+            vectored));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Lay out the ranges of a vector one after the other, with random gaps
+   * between them.
+   */
+  private static long[] layOut(int numRanges, int rangeSize, int maxGap) {
+    Random r = new Random(0);
+    long[] offsets = new long[numRanges];
+    long offset = 0;
+    for (int i = 0; i < numRanges; i++) {
+      offset += maxGap == 0 ? 0 : r.nextInt(maxGap);
+      offsets[i] = offset;
+      offset += rangeSize;
+    }
+    return offsets;
+  }
+
+  /**
+   * Read the same vector of ranges of the file the given number of times.
+   * The reads of the file on HDFS are delayed by the given time, as from a
+   * remote DataNode; the local file is read from the raw local filesystem.
+   */
+  private Result run(boolean local, int numVectors, int numRanges,
+      final int rangeSize, int maxGap, int delayMs, boolean vectored)
+      throws Exception {
+    Configuration conf = getConf();
+    long[] offsets = layOut(numRanges, rangeSize, maxGap);
+    int fileLength = (int) offsets[numRanges - 1] + rangeSize;
+    long numBytes = (long) numVectors * numRanges * rangeSize;
+    Result result = new Result((local ? "local" : "hdfs") +
+        (vectored ? " vectored" : " readFully"))
+        .add("vectors", numVectors).add("ranges", numRanges)
+        .add("bytes", numBytes);
+
+    MiniDFSCluster cluster = null;
+    DFSClientFaultInjector injector = DFSClientFaultInjector.get();
+    try {
+      FileSystem fs;
+      Path file;
+      if (local) {
+        fs = FileSystem.getLocal(conf).getRaw();
+        File dir = GenericTestUtils.getTestDir("VectoredReadBenchmark");
+        file = new Path(dir.getAbsolutePath(), "file");
+      } else {
+        cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+        cluster.waitActive();
+        fs = cluster.getFileSystem();
+        file = new Path("/bench/file");
+      }
+      DFSTestUtil.createFile(fs, file, fileLength, (short) 1, 0L);
+      if (!local && delayMs > 0) {
+        DFSClientFaultInjector.set(
+            new AdaptiveHedgedReadBenchmark.SlowDataNode(
+                cluster.getDataNodes().get(0).getDatanodeId().getXferAddr(),
+                delayMs));
+      }
+
+      long start = Time.monotonicNow();
+      try (FSDataInputStream in = fs.open(file)) {
+        for (int v = 0; v < numVectors; v++) {
+          if (vectored) {
+            List<FileRange> ranges = new ArrayList<>(numRanges);
+            for (long offset : offsets) {
+              ranges.add(FileRange.createFileRange(offset, rangeSize));
+            }
+            in.readVectored(ranges, ByteBuffer::allocate);
+            for (FileRange range : ranges) {
+              range.getData().get();
+            }
+          } else {
+            // a buffer for each range, as for those of the vectored reads
+            for (long offset : offsets) {
+              in.readFully(offset, new byte[rangeSize]);
+            }
+          }
+        }
+      }
+      long timeMs = Time.monotonicNow() - start;
+      result.add("timeMs", timeMs)
+          .addRate("vectorsPerSec", numVectors, timeMs)
+          .add("MBPerSec",
+              numBytes * 1000.0 / (1024 * 1024) / Math.max(1, timeMs));
+      if (local) {
+        fs.delete(file, false);
+      }
+    } finally {
+      DFSClientFaultInjector.set(injector);
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+    return result;
+  }
+
+  public static void main(String[] args) throws Exception {
+    System.exit(ToolRunner.run(
+        new VectoredReadBenchmark(new HdfsConfiguration()), args));
+  }
+}
@@ -49,6 +49,7 @@ import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
 import org.apache.hadoop.hdfs.server.blockmanagement.DatanodeDescriptor.BlockTargetPair;
 import org.apache.hadoop.hdfs.server.common.HdfsServerConstants;
 import org.apache.hadoop.hdfs.server.datanode.DataNode;
+import org.apache.hadoop.hdfs.server.datanode.DataNodeTestUtils;
 import org.apache.hadoop.hdfs.server.datanode.FinalizedReplica;
 import org.apache.hadoop.hdfs.server.datanode.InternalDataNodeTestUtils;
 import org.apache.hadoop.hdfs.server.datanode.ReplicaBeingWritten;
@@ -64,8 +65,11 @@ import org.apache.hadoop.hdfs.server.namenode.ha.HAState;
 import org.apache.hadoop.hdfs.server.protocol.BlockReportContext;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeStorage;
+import org.apache.hadoop.hdfs.server.protocol.HeartbeatResponse;
 import org.apache.hadoop.hdfs.server.protocol.NamenodeProtocols;
 import org.apache.hadoop.hdfs.server.protocol.ReceivedDeletedBlockInfo;
+import org.apache.hadoop.hdfs.server.protocol.SlowDiskReports;
+import org.apache.hadoop.hdfs.server.protocol.SlowPeerReports;
 import org.apache.hadoop.hdfs.server.protocol.StorageReceivedDeletedBlocks;
 import org.apache.hadoop.hdfs.server.protocol.StorageReport;
 import org.apache.hadoop.io.EnumSetWritable;
@@ -847,6 +851,30 @@ public class TestBlockManager {
             LowRedundancyBlocks.QUEUE_LOW_REDUNDANCY).length);
   }
 
+  @Test
+  public void testSpreadAcrossSourceRacks() {
+    List<BlockReconstructionWork> reconWork = new ArrayList<>();
+    // four tasks with a source in rackA, then two in rackB
+    for (int i = 0; i < 4; i++) {
+      reconWork.add(mockReconstructionWork(rackA.get(i % rackA.size())));
+    }
+    for (int i = 0; i < 2; i++) {
+      reconWork.add(mockReconstructionWork(rackB.get(i)));
+    }
+    List<BlockReconstructionWork> spread =
+        BlockManager.spreadAcrossSourceRacks(reconWork);
+    assertEquals(Arrays.asList(reconWork.get(0), reconWork.get(4),
+        reconWork.get(1), reconWork.get(5), reconWork.get(2),
+        reconWork.get(3)), spread);
+  }
+
+  private static BlockReconstructionWork mockReconstructionWork(
+      DatanodeDescriptor source) {
+    BlockReconstructionWork rw = mock(BlockReconstructionWork.class);
+    doReturn(new DatanodeDescriptor[] {source}).when(rw).getSrcNodes();
+    return rw;
+  }
+
   @Test
   public void testSafeModeIBR() throws Exception {
     DatanodeDescriptor node = spy(nodes.get(0));
@@ -1362,6 +1390,82 @@ public class TestBlockManager {
     }
   }
 
+  @Test(timeout = 60000)
+  public void testBlockOpsBatching() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_QUEUE_SIZE_KEY, 10);
+    conf.setLong(
+        DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_QUEUE_MAX_LOCK_HOLD_MS_KEY,
+        60000);
+    final MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf).build();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      cluster.waitActive();
+      final FSNamesystem fsn = cluster.getNamesystem();
+      final BlockManager bm = fsn.getBlockManager();
+      final DataNode dn = cluster.getDataNodes().get(0);
+      DataNodeTestUtils.setHeartbeatsDisabledForTests(dn, true);
+      bm.flushBlockOps();
+      MetricsRecordBuilder rb = getMetrics("NameNodeActivity");
+      final long batches =
+          MetricsAsserts.getLongCounter("BlockOpsBatchSizeNumOps", rb);
+      final long batched =
+          MetricsAsserts.getLongCounter("BlockOpsBatched", rb);
+
+      // block the processing thread, as a large full block report would.
+      final CountDownLatch blocked = new CountDownLatch(1);
+      final CountDownLatch unblock = new CountDownLatch(1);
+      final CountDownLatch done = new CountDownLatch(6);
+      bm.enqueueBlockOp(() -> {
+        blocked.countDown();
+        try {
+          unblock.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        done.countDown();
+      });
+      assertTrue(blocked.await(10, TimeUnit.SECONDS));
+      for (int i = 0; i < 5; i++) {
+        bm.enqueueBlockOp(done::countDown);
+      }
+      assertEquals(5, bm.getBlockOpQueueLength());
+      assertEquals(50, bm.getBlockOpQueueLoad());
+
+      // the heartbeat responses tell the DataNodes how loaded the queue is.
+      final String bpid = fsn.getBlockPoolId();
+      Future<HeartbeatResponse> heartbeat = executor.submit(
+          () -> cluster.getNameNodeRpc().sendHeartbeat(
+              dn.getDNRegistrationForBP(bpid),
+              dn.getFSDataset().getStorageReports(bpid), 0L, 0L, 0, 0, 0,
+              null, false, SlowPeerReports.EMPTY_REPORT,
+              SlowDiskReports.EMPTY_REPORT));
+      GenericTestUtils.waitFor(() -> fsn.getFsLockQueueLength() > 0, 10,
+          10000);
+      unblock.countDown();
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+      assertEquals(50, heartbeat.get().getBlockOpsQueueLoad());
+      assertEquals(0, bm.getBlockOpQueueLength());
+
+      // the ops queued behind the blocked one were applied in one batch,
+      // the metrics of which are updated once the lock is released.
+      bm.flushBlockOps();
+      GenericTestUtils.waitFor(() -> {
+        MetricsRecordBuilder metrics = getMetrics("NameNodeActivity");
+        long numBatches = MetricsAsserts.getLongCounter(
+            "BlockOpsBatchSizeNumOps", metrics);
+        return numBatches >= batches + 3 &&
+            numBatches == MetricsAsserts.getLongCounter(
+                "BlockOpsBatchLockHoldTimeNumOps", metrics) &&
+            MetricsAsserts.getLongCounter("BlockOpsBatched", metrics) ==
+                batched + 4;
+      }, 10, 10000);
+    } finally {
+      executor.shutdownNow();
+      cluster.shutdown();
+    }
+  }
+
   @Test(timeout = 60000)
   public void testBlockManagerMachinesArray() throws Exception {
     final Configuration conf = new HdfsConfiguration();
@@ -0,0 +1,168 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.blockmanagement;
+
+import static org.apache.hadoop.test.MetricsAsserts.assertCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getLongCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.protocol.BlockListAsLongs;
+import org.apache.hadoop.hdfs.protocol.BlockListAsLongs.BlockReportReplica;
+import org.apache.hadoop.hdfs.server.datanode.DataNode;
+import org.apache.hadoop.hdfs.server.datanode.DataNodeTestUtils;
+import org.apache.hadoop.hdfs.server.protocol.BlockReportContext;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeStorage;
+import org.apache.hadoop.hdfs.server.protocol.StorageBlockReport;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.hadoop.test.GenericTestUtils.LogCapturer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests full block reports processed in chunks of
+ * {@link DFSConfigKeys#DFS_NAMENODE_BLOCKREPORT_CHUNK_SIZE_KEY} replicas.
+ */
+public class TestChunkedBlockReport {
+  private static final int CHUNK_SIZE = 3;
+  private static final int NUM_FILES = 10;
+  private static final String NN_METRICS = "NameNodeActivity";
+
+  private final Random rand = new Random();
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem fs;
+  private BlockManager bm;
+  private List<Block> blocks;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_CHUNK_SIZE_KEY,
+        CHUNK_SIZE);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1)
+        .storagesPerDatanode(1).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+    bm = cluster.getNamesystem().getBlockManager();
+
+    blocks = new ArrayList<>(NUM_FILES);
+    for (int i = 0; i < NUM_FILES; i++) {
+      Path file = new Path("/file" + i);
+      DFSTestUtil.createFile(fs, file, 1024, (short) 1, 0L);
+      blocks.add(DFSTestUtil.getFirstBlock(fs, file).getLocalBlock());
+    }
+    Collections.sort(blocks);
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  private void sendReport(List<Block> reported, boolean sorted)
+      throws Exception {
+    DataNode dn = cluster.getDataNodes().get(0);
+    String poolId = cluster.getNamesystem().getBlockPoolId();
+    DatanodeRegistration reg = dn.getDNRegistrationForBP(poolId);
+    DatanodeStorage storage =
+        dn.getFSDataset().getStorageReports(poolId)[0].getStorage();
+    BlockListAsLongs.Builder builder = BlockListAsLongs.builder();
+    for (Block b : reported) {
+      builder.add(new BlockReportReplica(b));
+    }
+    StorageBlockReport[] reports = {
+        new StorageBlockReport(storage, builder.build())};
+    cluster.getNameNodeRpc().blockReport(reg, poolId, reports,
+        new BlockReportContext(1, 0, rand.nextLong(), 0, sorted));
+  }
+
+  private int numNodes(Block b) {
+    return bm.getStoredBlock(b).numNodes();
+  }
+
+  @Test(timeout = 60000)
+  public void testChunkedReport() throws Exception {
+    DataNodeTestUtils.setHeartbeatsDisabledForTests(
+        cluster.getDataNodes().get(0), true);
+    long chunks = getLongCounter("StorageBlockReportChunks",
+        getMetrics(NN_METRICS));
+
+    sendReport(blocks, true);
+    for (Block b : blocks) {
+      assertEquals(1, numNodes(b));
+    }
+    chunks += (NUM_FILES + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    assertCounter("StorageBlockReportChunks", chunks, getMetrics(NN_METRICS));
+
+    // Leave out replicas at the start, in the middle and at the end of the
+    // chunks, and report a replica that does not belong to any file
+    List<Block> reported = new ArrayList<>(blocks);
+    reported.remove(NUM_FILES - 2);
+    reported.remove(CHUNK_SIZE);
+    reported.remove(0);
+    Block unknown = new Block(blocks.get(NUM_FILES - 1).getBlockId() + 1000,
+        1024, blocks.get(0).getGenerationStamp());
+    reported.add(unknown);
+    sendReport(reported, true);
+    for (Block b : blocks) {
+      assertEquals(b.toString(), reported.contains(b) ? 1 : 0, numNodes(b));
+    }
+    assertEquals(1, bm.getPendingDeletionBlocksCount());
+    chunks += (reported.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    assertCounter("StorageBlockReportChunks", chunks, getMetrics(NN_METRICS));
+
+    // An unsorted report is sorted before it is chunked
+    reported = new ArrayList<>(blocks);
+    Collections.shuffle(reported, rand);
+    sendReport(reported, false);
+    for (Block b : blocks) {
+      assertEquals(1, numNodes(b));
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testChunkedFirstReport() throws Exception {
+    LogCapturer logs = LogCapturer.captureLogs(BlockManager.blockLog);
+    cluster.restartNameNode(true);
+    bm = cluster.getNamesystem().getBlockManager();
+    for (Block b : blocks) {
+      assertEquals(1, numNodes(b));
+    }
+    GenericTestUtils.assertMatches(logs.getOutput(), "Processing first " +
+        "storage report[\\s\\S]*blocks: " + NUM_FILES + ",.* in " +
+        (NUM_FILES + CHUNK_SIZE - 1) / CHUNK_SIZE + " chunks");
+  }
+}
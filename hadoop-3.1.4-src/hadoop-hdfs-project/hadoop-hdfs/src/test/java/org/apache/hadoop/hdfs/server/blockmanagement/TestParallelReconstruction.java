@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.blockmanagement;
+
+import static org.apache.hadoop.test.MetricsAsserts.getLongCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.Test;
+
+/**
+ * Tests reconstruction work scheduled with
+ * {@link DFSConfigKeys#DFS_NAMENODE_REDUNDANCY_PARALLEL_THREADS_KEY}.
+ */
+public class TestParallelReconstruction {
+  private static final int NUM_FILES = 20;
+  private static final short REPLICATION = 3;
+
+  @Test(timeout = 120000)
+  public void testParallelReconstruction() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_PARALLEL_THREADS_KEY, 4);
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_INTERVAL_SECONDS_KEY, 1);
+    String[] racks = {"/rack1", "/rack1", "/rack2", "/rack2"};
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(racks.length).racks(racks).build();
+    try {
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      Path[] files = new Path[NUM_FILES];
+      for (int i = 0; i < NUM_FILES; i++) {
+        files[i] = new Path("/file" + i);
+        DFSTestUtil.createFile(fs, files[i], 1024, (short) 1, i);
+      }
+      // all the blocks become low redundancy at once
+      for (Path file : files) {
+        fs.setReplication(file, REPLICATION);
+      }
+      for (Path file : files) {
+        DFSTestUtil.waitReplication(fs, file, REPLICATION);
+      }
+      GenericTestUtils.waitFor(() -> getLongCounter(
+          "TimeToFullRedundancyNumOps", getMetrics("NameNodeActivity")) > 0,
+          100, 30000);
+    } finally {
+      cluster.shutdown();
+    }
+  }
+}
@@ -27,6 +27,7 @@ import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.util.Arrays;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.List;
@@ -38,6 +39,7 @@ import net.jcip.annotations.NotThreadSafe;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -121,6 +123,52 @@ public class TestDataNodeMetrics {
     }
   }
 
+  @Test(timeout = 120000)
+  public void testBytesSentZeroCopy() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(
+        DFSConfigKeys.DFS_DATANODE_TRANSFERTO_MAPPED_CHECKSUMS_KEY, true);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf).build();
+    try {
+      FileSystem fs = cluster.getFileSystem();
+      DataNode datanode = cluster.getDataNodes().get(0);
+      final int len = 3 * 64 * 1024 + 512;
+      Path file = new Path("/file");
+      DFSTestUtil.createFile(fs, file, len, (short) 1, 1L);
+      byte[] expected = DFSTestUtil.calculateFileContentsFromSeed(1L, len);
+
+      // the data and the checksums are sent without copying them, but the
+      // last checksum that is kept in memory, and the client verifies them
+      assertArrayEquals(expected, DFSTestUtil.readFileAsBytes(fs, file));
+      MetricsRecordBuilder rb = getMetrics(datanode.getMetrics().name());
+      final long checksumLen = len / 512 * 4;
+      assertCounter("BytesSentZeroCopy", len + checksumLen - 4, rb);
+      assertCounter("BytesSentCopied", 4L, rb);
+      byte[] buf = new byte[10000];
+      try (FSDataInputStream in = fs.open(file)) {
+        in.readFully(70001, buf);
+      }
+      assertArrayEquals(Arrays.copyOfRange(expected, 70001, 80001), buf);
+
+      // so is the last checksum of a replica being written
+      FSDataOutputStream out = fs.create(new Path("/rbw"), (short) 1);
+      try {
+        out.write(expected, 0, 1000);
+        out.hflush();
+        assertArrayEquals(Arrays.copyOf(expected, 1000),
+            DFSTestUtil.readFileAsBytes(fs, new Path("/rbw")));
+      } finally {
+        out.close();
+      }
+      rb = getMetrics(datanode.getMetrics().name());
+      assertCounter("BytesSentCopied", 8L, rb);
+      assertTrue(getLongCounter("BytesSentZeroCopy", rb) >
+          len + checksumLen + 10000);
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
   @Test
   public void testReceivePacketMetrics() throws Exception {
     Configuration conf = new HdfsConfiguration();
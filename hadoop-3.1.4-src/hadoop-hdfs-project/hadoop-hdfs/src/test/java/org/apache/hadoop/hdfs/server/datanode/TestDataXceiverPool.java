@@ -0,0 +1,137 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.Test;
+
+import com.google.common.base.Supplier;
+
+/**
+ * Tests the DataXceivers run by the {@link DataXceiverPool} when
+ * {@link DFSConfigKeys#DFS_DATANODE_XCEIVER_POOL_ENABLED_KEY} is set.
+ */
+public class TestDataXceiverPool {
+  private static final int NUM_CONNECTIONS = 8;
+
+  private static MiniDFSCluster newCluster(int keepaliveMs,
+      String context) throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_DATANODE_XCEIVER_POOL_ENABLED_KEY,
+        true);
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_SOCKET_REUSE_KEEPALIVE_KEY,
+        keepaliveMs);
+    conf.setLong(HdfsClientConfigKeys.DFS_CLIENT_SOCKET_CACHE_EXPIRY_MSEC_KEY,
+        60000);
+    conf.set(HdfsClientConfigKeys.DFS_CLIENT_CONTEXT, context);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(1).build();
+    cluster.waitActive();
+    return cluster;
+  }
+
+  private static void waitForParked(final DataXceiverPool pool,
+      final int expected) throws Exception {
+    GenericTestUtils.waitFor(new Supplier<Boolean>() {
+      @Override
+      public Boolean get() {
+        return pool.getNumParked() == expected;
+      }
+    }, 10, 10000);
+  }
+
+  @Test(timeout = 60000)
+  public void testParkedConnections() throws Exception {
+    MiniDFSCluster cluster = newCluster(60000, "testParkedConnections");
+    try {
+      DistributedFileSystem fs = cluster.getFileSystem();
+      DataNode dn = cluster.getDataNodes().get(0);
+      DataXceiverServer server = dn.getXferServer();
+      DataXceiverPool pool = server.getXceiverPool();
+      assertNotNull(pool);
+      Path idle = new Path("/idle");
+      DFSTestUtil.createFile(fs, idle, 512, (short) 1, 0L);
+      Path file = new Path("/file");
+      DFSTestUtil.createFile(fs, file, 64 * 1024, (short) 1, 1L);
+
+      // the connections kept open do not hold a thread
+      XceiverPoolBenchmark.openIdleConnections(fs, idle, NUM_CONNECTIONS);
+      waitForParked(pool, NUM_CONNECTIONS);
+      assertEquals(NUM_CONNECTIONS, server.getNumPeers());
+      assertTrue(dn.getXceiverCount() < NUM_CONNECTIONS);
+
+      // the next operations are read on the parked connections
+      byte[] expected = DFSTestUtil.readFileAsBytes(fs, file);
+      byte[] buf = new byte[1000];
+      try (FSDataInputStream in = fs.open(file)) {
+        for (int i = 0; i < 20; i++) {
+          int pos = i * 3000;
+          in.readFully(pos, buf);
+          for (int j = 0; j < buf.length; j++) {
+            assertEquals(expected[pos + j], buf[j]);
+          }
+        }
+      }
+      assertArrayEquals(expected, DFSTestUtil.readFileAsBytes(fs, file));
+      waitForParked(pool, NUM_CONNECTIONS);
+      assertEquals(NUM_CONNECTIONS, server.getNumPeers());
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testKeepaliveExpiry() throws Exception {
+    MiniDFSCluster cluster = newCluster(500, "testKeepaliveExpiry");
+    try {
+      DistributedFileSystem fs = cluster.getFileSystem();
+      final DataXceiverServer server =
+          cluster.getDataNodes().get(0).getXferServer();
+      Path idle = new Path("/idle");
+      DFSTestUtil.createFile(fs, idle, 512, (short) 1, 0L);
+      XceiverPoolBenchmark.openIdleConnections(fs, idle, NUM_CONNECTIONS);
+
+      // the parked connections are closed after the keepalive
+      GenericTestUtils.waitFor(new Supplier<Boolean>() {
+        @Override
+        public Boolean get() {
+          return server.getNumPeers() == 0;
+        }
+      }, 10, 10000);
+      assertEquals(0, server.getXceiverPool().getNumParked());
+      // and the client reconnects
+      assertEquals(512, DFSTestUtil.readFileAsBytes(fs, idle).length);
+    } finally {
+      cluster.shutdown();
+    }
+  }
+}
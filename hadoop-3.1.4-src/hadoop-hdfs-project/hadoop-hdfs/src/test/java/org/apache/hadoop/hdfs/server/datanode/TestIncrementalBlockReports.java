@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.hdfs.server.datanode;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
@@ -214,4 +215,33 @@ public class TestIncrementalBlockReports {
       cluster = null;
     }
   }
+
+  /**
+   * Verify that the interval between IBRs grows with the load of the
+   * NameNode when a maximum interval is set.
+   */
+  @Test
+  public void testAdaptiveInterval() throws IOException {
+    try {
+      IncrementalBlockReportManager ibrManager =
+          new IncrementalBlockReportManager(100, 1100, null);
+      assertEquals(100, ibrManager.getIbrInterval());
+      ibrManager.adaptInterval(50);
+      assertEquals(600, ibrManager.getIbrInterval());
+      ibrManager.adaptInterval(100);
+      assertEquals(1100, ibrManager.getIbrInterval());
+      ibrManager.adaptInterval(0);
+      assertEquals(100, ibrManager.getIbrInterval());
+
+      // the interval is fixed without a maximum.
+      ibrManager = new IncrementalBlockReportManager(100, null);
+      ibrManager.adaptInterval(100);
+      assertEquals(100, ibrManager.getIbrInterval());
+      DataNodeTestUtils.triggerHeartbeat(singletonDn);
+      assertEquals(0, actor.getIbrManager().getIbrInterval());
+    } finally {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
 }
@@ -0,0 +1,175 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsBenchmark;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.util.Time;
+import org.apache.hadoop.util.ToolRunner;
+
+/**
+ * Measures the throughput, in reads per second, of concurrent readers
+ * reading small ranges of a file from the DataNode of a
+ * {@link MiniDFSCluster} over cached connections, while many other
+ * connections are kept open idle, and the number of DataNode threads it
+ * takes, with and without the DataXceivers pooled.
+ * <p>
+ * Usage: XceiverPoolBenchmark [-idle C] [-threads T] [-reads R]
+ * [-readSize S]
+ */
+public class XceiverPoolBenchmark extends HdfsBenchmark {
+
+  private static final int FILE_LENGTH = 1024 * 1024;
+  private static final int IDLE_FILE_LENGTH = 512;
+  private static final int KEEPALIVE_MS = 60000;
+
+  public XceiverPoolBenchmark(Configuration conf) {
+    super(conf);
+    addOption("idle", 1000);
+    addOption("threads", 16);
+    addOption("reads", 2000);
+    addOption("readSize", 4096);
+  }
+
+  @Override
+  protected List<Result> runCases() throws Exception {
+    List<Result> results = new ArrayList<>(2);
+    for (boolean pooled : new boolean[] {false, true}) {
+      results.add(run(getInt("idle"), getInt("threads"), getInt("reads"),
+          getInt("readSize"), pooled));
+    }
+    return results;
+  }
+
+  /**
+   * Open the idle connections by reading a small file with as many streams
+   * at once, and have every thread read random ranges of a larger file.
+   */
+  private Result run(int numIdle, int numThreads, final int readsPerThread,
+      final int readSize, boolean pooled) throws Exception {
+    Configuration clusterConf = new Configuration(getConf());
+    clusterConf.setBoolean(DFSConfigKeys.DFS_DATANODE_XCEIVER_POOL_ENABLED_KEY,
+        pooled);
+    clusterConf.setInt(DFSConfigKeys.DFS_DATANODE_SOCKET_REUSE_KEEPALIVE_KEY,
+        KEEPALIVE_MS);
+    clusterConf.setInt(
+        HdfsClientConfigKeys.DFS_CLIENT_SOCKET_CACHE_CAPACITY_KEY,
+        numIdle + numThreads);
+    clusterConf.setLong(
+        HdfsClientConfigKeys.DFS_CLIENT_SOCKET_CACHE_EXPIRY_MSEC_KEY,
+        KEEPALIVE_MS);
+    clusterConf.set(HdfsClientConfigKeys.DFS_CLIENT_CONTEXT,
+        "XceiverPoolBenchmark-" + pooled);
+    long numReads = (long) numThreads * readsPerThread;
+    Result result = new Result(pooled ? "pooled" : "thread per connection")
+        .add("idle", numIdle).add("threads", numThreads)
+        .add("reads", numReads);
+
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(clusterConf)
+        .numDataNodes(1).build();
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      cluster.waitActive();
+      final DistributedFileSystem fs = cluster.getFileSystem();
+      final Path file = new Path("/bench/file");
+      DFSTestUtil.createFile(fs, file, FILE_LENGTH, (short) 1, 0L);
+      Path idleFile = new Path("/bench/idle");
+      DFSTestUtil.createFile(fs, idleFile, IDLE_FILE_LENGTH, (short) 1, 0L);
+      openIdleConnections(fs, idleFile, numIdle);
+
+      List<Future<Void>> futures = new ArrayList<>();
+      long start = Time.monotonicNow();
+      for (int t = 0; t < numThreads; t++) {
+        final Random r = new Random(t);
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            byte[] buf = new byte[readSize];
+            try (FSDataInputStream in = fs.open(file)) {
+              for (int i = 0; i < readsPerThread; i++) {
+                in.readFully(r.nextInt(FILE_LENGTH - readSize), buf);
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+      long timeMs = Time.monotonicNow() - start;
+      result.add("timeMs", timeMs).addRate("readsPerSec", numReads, timeMs);
+      // the connections open on the DataNode and the threads serving them
+      DataNode dn = cluster.getDataNodes().get(0);
+      result.add("peers", dn.getXferServer().getNumPeers())
+          .add("xceiverThreads", dn.threadGroup.activeCount());
+    } finally {
+      executor.shutdownNow();
+      cluster.shutdown();
+    }
+    return result;
+  }
+
+  /**
+   * Read the file with the given number of streams at once, so that each of
+   * them connects to the DataNode, and close them all to have the
+   * connections cached by the client.
+   */
+  static void openIdleConnections(DistributedFileSystem fs, Path file,
+      int numIdle) throws Exception {
+    List<FSDataInputStream> streams = new ArrayList<>();
+    byte[] buf = new byte[IDLE_FILE_LENGTH];
+    try {
+      for (int i = 0; i < numIdle; i++) {
+        FSDataInputStream in = fs.open(file);
+        streams.add(in);
+        IOUtils.readFully(in, buf, 0, buf.length);
+        // reach the end of the block for the connection to be reusable
+        if (in.read() != -1) {
+          throw new IllegalStateException("Unexpected data in " + file);
+        }
+      }
+    } finally {
+      for (FSDataInputStream in : streams) {
+        IOUtils.closeStream(in);
+      }
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    System.exit(ToolRunner.run(
+        new XceiverPoolBenchmark(new HdfsConfiguration()), args));
+  }
+}
@@ -0,0 +1,166 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
+
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.HdfsBenchmark;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.server.datanode.BlockMetadataHeader;
+import org.apache.hadoop.hdfs.server.datanode.DataNode;
+import org.apache.hadoop.hdfs.server.datanode.DataNodeTestUtils;
+import org.apache.hadoop.hdfs.server.datanode.ReplicaHandler;
+import org.apache.hadoop.hdfs.server.datanode.ReplicaInPipeline;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsDatasetSpi;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.ReplicaOutputStreams;
+import org.apache.hadoop.util.DataChecksum;
+import org.apache.hadoop.util.Time;
+import org.apache.hadoop.util.ToolRunner;
+
+/**
+ * Measures the throughput, in blocks per second, of concurrent writers
+ * creating, writing and finalizing small replicas on the volumes of the
+ * DataNode of a {@link MiniDFSCluster}, with the replicas locked by the
+ * dataset lock or by stripes.
+ * <p>
+ * Usage: ReplicaLockBenchmark [-volumes V] [-threads T] [-blocks B]
+ * [-blockSize S] [-stripes N]
+ * <p>
+ * The writes are run on 1, 2, 4, ... up to V volumes.
+ */
+public class ReplicaLockBenchmark extends HdfsBenchmark {
+
+  private static final long GENERATION_STAMP = 1001;
+
+  public ReplicaLockBenchmark(Configuration conf) {
+    super(conf);
+    addOption("volumes", 4);
+    addOption("threads", 16);
+    addOption("blocks", 500);
+    addOption("blockSize", 4096);
+    addOption("stripes", 64);
+  }
+
+  @Override
+  protected List<Result> runCases() throws Exception {
+    List<Result> results = new ArrayList<>();
+    for (int volumes = 1; volumes <= getInt("volumes"); volumes *= 2) {
+      for (int stripes : new int[] {0, getInt("stripes")}) {
+        results.add(run(volumes, getInt("threads"), getInt("blocks"),
+            getInt("blockSize"), stripes));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Have every thread write its blocks to the volumes of a single DataNode,
+   * the way a DataXceiver writes a block received from a client.
+   */
+  private Result run(int numVolumes, int numThreads,
+      final int blocksPerThread, final int blockSize, int numStripes)
+      throws Exception {
+    Configuration clusterConf = new Configuration(getConf());
+    clusterConf.setInt(DFSConfigKeys.DFS_DATANODE_REPLICA_LOCK_STRIPES_KEY,
+        numStripes);
+    long numBlocks = (long) numThreads * blocksPerThread;
+    Result result = new Result(numStripes == 0 ? "dataset lock" : "stripes")
+        .add("volumes", numVolumes).add("stripes", numStripes)
+        .add("threads", numThreads).add("blocks", numBlocks);
+
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(clusterConf)
+        .numDataNodes(1).storagesPerDatanode(numVolumes).build();
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      cluster.waitActive();
+      final String bpid = cluster.getNamesystem().getBlockPoolId();
+      DataNode dn = cluster.getDataNodes().get(0);
+      final FsDatasetSpi<?> dataset = DataNodeTestUtils.getFSDataset(dn);
+      final DataChecksum checksum = DataChecksum.newDataChecksum(
+          DataChecksum.Type.CRC32C, 512);
+      final byte[] data = new byte[blockSize];
+      final byte[] sums =
+          new byte[checksum.getChecksumSize(blockSize)];
+      checksum.calculateChunkedSums(data, 0, blockSize, sums, 0);
+      final AtomicLong nextBlockId = new AtomicLong(1 << 30);
+
+      List<Future<Void>> futures = new ArrayList<>();
+      long start = Time.monotonicNow();
+      for (int t = 0; t < numThreads; t++) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int i = 0; i < blocksPerThread; i++) {
+              ExtendedBlock b = new ExtendedBlock(bpid,
+                  nextBlockId.getAndIncrement(), 0, GENERATION_STAMP);
+              writeBlock(dataset, b, checksum, data, sums);
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+      long timeMs = Time.monotonicNow() - start;
+      result.add("timeMs", timeMs).addRate("blocksPerSec", numBlocks, timeMs);
+    } finally {
+      executor.shutdownNow();
+      cluster.shutdown();
+    }
+    return result;
+  }
+
+  private static void writeBlock(FsDatasetSpi<?> dataset, ExtendedBlock b,
+      DataChecksum checksum, byte[] data, byte[] sums) throws Exception {
+    try (ReplicaHandler handler =
+        dataset.createRbw(StorageType.DEFAULT, null, b, false)) {
+      ReplicaInPipeline replica = handler.getReplica();
+      try (ReplicaOutputStreams streams =
+          replica.createStreams(true, checksum)) {
+        DataOutputStream checksumOut =
+            new DataOutputStream(streams.getChecksumOut());
+        BlockMetadataHeader.writeHeader(checksumOut, checksum);
+        streams.writeDataToDisk(data, 0, data.length);
+        checksumOut.write(sums);
+        checksumOut.flush();
+      }
+      replica.setNumBytes(data.length);
+      replica.setBytesAcked(data.length);
+      b.setNumBytes(data.length);
+      dataset.finalizeBlock(b, false);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    System.exit(ToolRunner.run(
+        new ReplicaLockBenchmark(new HdfsConfiguration()), args));
+  }
+}
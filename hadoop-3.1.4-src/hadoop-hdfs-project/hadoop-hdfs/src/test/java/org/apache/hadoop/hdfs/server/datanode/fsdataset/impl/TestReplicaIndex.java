@@ -0,0 +1,453 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
+
+import static org.apache.hadoop.test.MetricsAsserts.assertCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.MiniDFSCluster.DataNodeProperties;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.server.datanode.DataNode;
+import org.apache.hadoop.hdfs.server.datanode.DataNodeTestUtils;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.hadoop.util.Time;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ReplicaIndex} of the finalized replicas of a volume,
+ * and the replicas loaded from it at startup when
+ * {@link DFSConfigKeys#DFS_DATANODE_REPLICA_INDEX_ENABLED_KEY} is set.
+ */
+public class TestReplicaIndex {
+  private static final Log LOG = LogFactory.getLog(TestReplicaIndex.class);
+
+  private File dir;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = GenericTestUtils.getRandomizedTestDir();
+    FileUtil.fullyDelete(dir);
+    assertTrue(dir.mkdirs());
+  }
+
+  /** Collects the replicas of an index, by block id. */
+  private static class Replicas implements ReplicaIndex.Visitor {
+    private final Map<Long, long[]> replicas = new TreeMap<>();
+
+    @Override
+    public void accept(long blockId, long genStamp, long numBytes) {
+      assertNull("visited twice: " + blockId,
+          replicas.put(blockId, new long[] {genStamp, numBytes}));
+    }
+  }
+
+  /** A checkpoint of the given number of replicas. */
+  private static ReplicaIndex.Snapshot snapshot(final long numReplicas) {
+    return new ReplicaIndex.Snapshot() {
+      @Override
+      public void visit(ReplicaIndex.Visitor visitor) throws IOException {
+        for (long i = 0; i < numReplicas; i++) {
+          visitor.accept(i, 1000 + i, 10 * i);
+        }
+      }
+    };
+  }
+
+  private Map<Long, long[]> load(long checkpointRecords) throws IOException {
+    Replicas replicas = new Replicas();
+    ReplicaIndex index = new ReplicaIndex(dir, checkpointRecords);
+    assertTrue(index.load(replicas));
+    return replicas.replicas;
+  }
+
+  private int countLogs() {
+    int numLogs = 0;
+    for (String name : dir.list()) {
+      if (name.startsWith(ReplicaIndex.CHECKPOINT_FILE + ".log.")) {
+        numLogs++;
+      }
+    }
+    return numLogs;
+  }
+
+  @Test
+  public void testLogAndCheckpoint() throws IOException {
+    ReplicaIndex index = new ReplicaIndex(dir, 1000);
+    assertFalse(index.load(new Replicas()));
+    index.start(false);
+    // the changes logged before the checkpoint is written are applied
+    // to it
+    index.add(1, 2000, 7);
+    index.checkpoint(snapshot(3));
+    index.waitForCheckpoint();
+    index.remove(2);
+    index.add(5, 1005, 50);
+    index.remove(6);
+    index.close();
+
+    Map<Long, long[]> replicas = load(1000);
+    assertEquals(3, replicas.size());
+    assertArrayEquals(new long[] {1000, 0}, replicas.get(0L));
+    assertArrayEquals(new long[] {2000, 7}, replicas.get(1L));
+    assertNull(replicas.get(2L));
+    assertArrayEquals(new long[] {1005, 50}, replicas.get(5L));
+
+    // the logs are kept across restarts
+    index = new ReplicaIndex(dir, 1000);
+    assertTrue(index.load(new Replicas()));
+    assertEquals(4, index.getLogRecords());
+    index.start(true);
+    index.add(2, 3000, 20);
+    index.close();
+    replicas = load(1000);
+    assertEquals(4, replicas.size());
+    assertArrayEquals(new long[] {3000, 20}, replicas.get(2L));
+    assertEquals(2, countLogs());
+  }
+
+  @Test
+  public void testCompaction() throws IOException {
+    ReplicaIndex index = new ReplicaIndex(dir, 10);
+    index.start(false);
+    index.checkpoint(snapshot(100));
+    index.waitForCheckpoint();
+    for (long i = 0; i < 25; i++) {
+      index.add(i, 2000 + i, i);
+      index.waitForCheckpoint();
+    }
+    // the logs of the first 20 records were merged into the checkpoint
+    assertEquals(5, index.getLogRecords());
+    assertEquals(1, countLogs());
+    for (long i = 0; i < 100; i += 2) {
+      index.remove(i);
+      index.waitForCheckpoint();
+    }
+    index.close();
+    Map<Long, long[]> replicas = load(10);
+    assertEquals(50, replicas.size());
+    assertArrayEquals(new long[] {2001, 1}, replicas.get(1L));
+    assertArrayEquals(new long[] {1099, 990}, replicas.get(99L));
+
+    // the logs are merged at startup once they have enough records
+    index = new ReplicaIndex(dir, 5);
+    assertTrue(index.load(new Replicas()));
+    index.start(true);
+    index.waitForCheckpoint();
+    assertEquals(0, index.getLogRecords());
+    index.close();
+    assertEquals(1, countLogs());
+    assertEquals(replicas.keySet(), load(5).keySet());
+  }
+
+  @Test
+  public void testTornLog() throws IOException {
+    ReplicaIndex index = new ReplicaIndex(dir, 1000);
+    index.start(false);
+    index.checkpoint(snapshot(0));
+    index.waitForCheckpoint();
+    index.add(1, 1001, 1);
+    index.add(2, 1002, 2);
+    index.add(3, 1003, 3);
+    index.close();
+    File log = new File(dir, ReplicaIndex.CHECKPOINT_FILE + ".log.1");
+    // the last record was not written whole, nor the close record
+    try (RandomAccessFile raf = new RandomAccessFile(log, "rw")) {
+      raf.setLength(raf.length() - ReplicaIndex.RECORD_SIZE - 5);
+    }
+    assertEquals(2, load(1000).size());
+    // nor were the ones after
+    try (FileOutputStream out = new FileOutputStream(log, true)) {
+      out.write(new byte[100]);
+    }
+    assertEquals(2, load(1000).size());
+
+    // the next log started after the restart is read
+    index = new ReplicaIndex(dir, 1000);
+    assertTrue(index.load(new Replicas()));
+    index.start(true);
+    index.add(4, 1004, 4);
+    index.close();
+    Map<Long, long[]> replicas = load(1000);
+    assertEquals(3, replicas.size());
+    assertNotNull(replicas.get(4L));
+  }
+
+  @Test
+  public void testClosedCleanly() throws IOException {
+    ReplicaIndex index = new ReplicaIndex(dir, 1000);
+    index.start(false);
+    index.checkpoint(snapshot(2));
+    index.add(5, 1005, 50);
+    index.close();
+    index = new ReplicaIndex(dir, 1000);
+    assertTrue(index.load(new Replicas()));
+    assertTrue(index.isClosedCleanly());
+
+    // the DataNode stops without closing the index, after the records
+    // queued were written
+    index.start(true);
+    index.remove(0);
+    index.waitForCheckpoint();
+    ReplicaIndex reloaded = new ReplicaIndex(dir, 1000);
+    Replicas replicas = new Replicas();
+    assertTrue(reloaded.load(replicas));
+    assertFalse(reloaded.isClosedCleanly());
+    assertEquals(2, replicas.replicas.size());
+    assertNull(replicas.replicas.get(0L));
+    index.close();
+  }
+
+  @Test
+  public void testCorruptCheckpoint() throws IOException {
+    ReplicaIndex index = new ReplicaIndex(dir, 1000);
+    index.start(false);
+    index.checkpoint(snapshot(10));
+    index.waitForCheckpoint();
+    index.close();
+    File checkpoint = new File(dir, ReplicaIndex.CHECKPOINT_FILE);
+    try (RandomAccessFile raf = new RandomAccessFile(checkpoint, "rw")) {
+      raf.seek(40);
+      raf.write(raf.read() + 1);
+    }
+    try {
+      load(1000);
+      fail("loaded a corrupt checkpoint");
+    } catch (IOException e) {
+      GenericTestUtils.assertExceptionContains("Checksum error", e);
+    }
+    ReplicaIndex.delete(dir);
+    assertEquals(0, dir.list().length);
+  }
+
+  /**
+   * Load the replicas of an index of as many replicas as a few volumes of a
+   * large DataNode have.
+   */
+  @Test(timeout = 300000)
+  public void testMillionsOfReplicas() throws IOException {
+    final long numReplicas = 2000000;
+    final int numChanges = 100000;
+    ReplicaIndex index = new ReplicaIndex(dir, 2 * numChanges);
+    index.start(false);
+    index.checkpoint(snapshot(numReplicas));
+    index.waitForCheckpoint();
+    for (long i = 0; i < numChanges; i++) {
+      if (i % 2 == 0) {
+        index.remove(i);
+      } else {
+        index.add(numReplicas + i, 1, 1);
+      }
+    }
+    index.close();
+
+    final long[] count = {0};
+    long start = Time.monotonicNow();
+    index = new ReplicaIndex(dir, 2 * numChanges);
+    assertTrue(index.load(new ReplicaIndex.Visitor() {
+      @Override
+      public void accept(long blockId, long genStamp, long numBytes) {
+        count[0]++;
+      }
+    }));
+    long timeMs = Time.monotonicNow() - start;
+    LOG.info("Loaded " + count[0] + " replicas in " + timeMs + "ms");
+    assertEquals(numReplicas, count[0]);
+  }
+
+  /**
+   * Drop the close records of the last logs of the indexes, as if the
+   * DataNode stopped without closing them.
+   */
+  private static void dropCloseRecords(File dataDir) throws IOException {
+    Map<File, File> lastLogs = new TreeMap<>();
+    String prefix = ReplicaIndex.CHECKPOINT_FILE + ".log.";
+    for (File file : FileUtils.listFiles(dataDir, null, true)) {
+      if (file.getName().startsWith(prefix)) {
+        File last = lastLogs.get(file.getParentFile());
+        if (last == null || logSeq(file, prefix) > logSeq(last, prefix)) {
+          lastLogs.put(file.getParentFile(), file);
+        }
+      }
+    }
+    assertFalse(lastLogs.isEmpty());
+    for (File log : lastLogs.values()) {
+      try (RandomAccessFile raf = new RandomAccessFile(log, "rw")) {
+        raf.setLength(raf.length() - ReplicaIndex.RECORD_SIZE);
+      }
+    }
+  }
+
+  private static long logSeq(File log, String prefix) {
+    return Long.parseLong(log.getName().substring(prefix.length()));
+  }
+
+  private static void deleteReplicaCacheFiles(File dataDir) {
+    for (File file : FileUtils.listFiles(dataDir, null, true)) {
+      if (file.getName().equals("replicas")) {
+        assertTrue(file.delete());
+      }
+    }
+  }
+
+  @Test(timeout = 120000)
+  public void testRestart() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_ENABLED_KEY,
+        true);
+    conf.setLong(
+        DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_CHECKPOINT_RECORDS_KEY, 4);
+    conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, 1024);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(1).build();
+    try {
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      final int numFiles = 5;
+      for (int i = 0; i < numFiles; i++) {
+        DFSTestUtil.createFile(fs, new Path("/file" + i), 3000, (short) 1, i);
+      }
+      fs.delete(new Path("/file0"), false);
+      // the blocks of the other files
+      final int numBlocks = 3 * (numFiles - 1);
+      DataNode dn = cluster.getDataNodes().get(0);
+      MetricsRecordBuilder rb = getMetrics(dn.getMetrics().name());
+      assertCounter("ReplicasLoadedFromIndex", 0L, rb);
+      assertCounter("ReplicaMapLoadNumOps", 2L, rb);
+      final String bpid = cluster.getNamesystem().getBlockPoolId();
+      final FsDatasetImpl dataset =
+          (FsDatasetImpl) DataNodeTestUtils.getFSDataset(dn);
+      GenericTestUtils.waitFor(
+          () -> dataset.volumeMap.size(bpid) == numBlocks, 100, 10000);
+
+      // the block of a file is deleted while the DataNode is down
+      ExtendedBlock deleted = DFSTestUtil.getFirstBlock(fs,
+          new Path("/file1"));
+      DataNodeProperties dnProps = cluster.stopDataNode(0);
+      deleteReplicaCacheFiles(new File(cluster.getDataDirectory()));
+      assertTrue(cluster.getBlockFile(0, deleted).delete());
+      assertTrue(cluster.restartDataNode(dnProps));
+      cluster.waitActive();
+
+      DataNode restarted = cluster.getDataNodes().get(0);
+      rb = getMetrics(restarted.getMetrics().name());
+      assertCounter("ReplicasLoadedFromIndex", (long) numBlocks, rb);
+      assertCounter("ReplicasLoadedByScan", 0L, rb);
+      for (int i = 2; i < numFiles; i++) {
+        DFSTestUtil.readFile(fs, new Path("/file" + i));
+      }
+      // the replica of the block deleted is reconciled by the scanner
+      ReplicaMap volumeMap =
+          ((FsDatasetImpl) DataNodeTestUtils.getFSDataset(restarted))
+          .volumeMap;
+      assertNotNull(volumeMap.get(bpid, deleted.getBlockId()));
+      DataNodeTestUtils.runDirectoryScanner(restarted);
+      assertNull(volumeMap.get(bpid, deleted.getBlockId()));
+
+      // the index is updated by the scanner and by new writes
+      DFSTestUtil.createFile(fs, new Path("/file" + numFiles), 3000,
+          (short) 1, 0);
+      dnProps = cluster.stopDataNode(0);
+      deleteReplicaCacheFiles(new File(cluster.getDataDirectory()));
+      assertTrue(cluster.restartDataNode(dnProps));
+      cluster.waitActive();
+      rb = getMetrics(cluster.getDataNodes().get(0).getMetrics().name());
+      assertCounter("ReplicasLoadedFromIndex", (long) numBlocks - 1 + 3, rb);
+      for (int i = 2; i <= numFiles; i++) {
+        DFSTestUtil.readFile(fs, new Path("/file" + i));
+      }
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  /**
+   * Without the directory scanner to reconcile them, the replicas are not
+   * loaded from an index which was not closed cleanly.
+   */
+  @Test(timeout = 120000)
+  public void testUncleanShutdownWithoutDirectoryScanner() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_ENABLED_KEY,
+        true);
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_INTERVAL_KEY, -1);
+    conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, 1024);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(1).build();
+    try {
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      for (int i = 0; i < 3; i++) {
+        DFSTestUtil.createFile(fs, new Path("/file" + i), 2000, (short) 1, i);
+      }
+      final int numBlocks = 6;
+      File dataDir = new File(cluster.getDataDirectory());
+
+      // a clean shutdown
+      DataNodeProperties dnProps = cluster.stopDataNode(0);
+      deleteReplicaCacheFiles(dataDir);
+      assertTrue(cluster.restartDataNode(dnProps));
+      cluster.waitActive();
+      MetricsRecordBuilder rb =
+          getMetrics(cluster.getDataNodes().get(0).getMetrics().name());
+      assertCounter("ReplicasLoadedFromIndex", (long) numBlocks, rb);
+      assertCounter("ReplicasLoadedByScan", 0L, rb);
+
+      // the DataNode stops without closing the index
+      dnProps = cluster.stopDataNode(0);
+      deleteReplicaCacheFiles(dataDir);
+      dropCloseRecords(dataDir);
+      assertTrue(cluster.restartDataNode(dnProps));
+      cluster.waitActive();
+      rb = getMetrics(cluster.getDataNodes().get(0).getMetrics().name());
+      assertCounter("ReplicasLoadedFromIndex", 0L, rb);
+      assertCounter("ReplicasLoadedByScan", (long) numBlocks, rb);
+      for (int i = 0; i < 3; i++) {
+        DFSTestUtil.readFile(fs, new Path("/file" + i));
+      }
+    } finally {
+      cluster.shutdown();
+    }
+  }
+}
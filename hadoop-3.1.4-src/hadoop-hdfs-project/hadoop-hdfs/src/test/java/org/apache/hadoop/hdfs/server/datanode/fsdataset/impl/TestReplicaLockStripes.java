@@ -0,0 +1,173 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.server.datanode.DataNodeTestUtils;
+import org.apache.hadoop.hdfs.server.datanode.ReplicaHandler;
+import org.apache.hadoop.hdfs.server.datanode.ReplicaInfo;
+import org.apache.hadoop.util.AutoCloseableLock;
+import org.junit.Test;
+
+/**
+ * Tests the replicas locked by stripes when
+ * {@link DFSConfigKeys#DFS_DATANODE_REPLICA_LOCK_STRIPES_KEY} is set.
+ */
+public class TestReplicaLockStripes {
+  private static final int NUM_STRIPES = 4;
+
+  private static MiniDFSCluster newCluster() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_REPLICA_LOCK_STRIPES_KEY,
+        NUM_STRIPES);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(1).storagesPerDatanode(2).build();
+    cluster.waitActive();
+    return cluster;
+  }
+
+  @Test(timeout = 60000)
+  public void testReplicasOfOtherStripes() throws Exception {
+    MiniDFSCluster cluster = newCluster();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final FsDatasetImpl dataset = (FsDatasetImpl) DataNodeTestUtils
+          .getFSDataset(cluster.getDataNodes().get(0));
+      final String bpid = cluster.getNamesystem().getBlockPoolId();
+      final ExtendedBlock b1 = new ExtendedBlock(bpid, 1, 0, 1001);
+      final ExtendedBlock b2 = new ExtendedBlock(bpid, 2, 0, 1001);
+
+      AutoCloseableLock lock = dataset.acquireReplicaLock(1);
+      boolean locked = true;
+      try {
+        // the replica of another stripe is created meanwhile
+        Future<ReplicaInfo> created = executor.submit(
+            new Callable<ReplicaInfo>() {
+              @Override
+              public ReplicaInfo call() throws Exception {
+                try (ReplicaHandler handler = dataset.createRbw(
+                    StorageType.DEFAULT, null, b2, false)) {
+                  return handler.getReplica().getReplicaInfo();
+                }
+              }
+            });
+        assertNotNull(created.get(30, TimeUnit.SECONDS));
+        // the whole dataset, and the replica of the stripe, are not
+        Future<Boolean> datasetLocked = executor.submit(
+            new Callable<Boolean>() {
+              @Override
+              public Boolean call() {
+                if (dataset.datasetLock.tryLock()) {
+                  dataset.datasetLock.release();
+                  return true;
+                }
+                return false;
+              }
+            });
+        assertFalse(datasetLocked.get(30, TimeUnit.SECONDS));
+        final ExtendedBlock b5 = new ExtendedBlock(bpid, 1 + NUM_STRIPES,
+            0, 1001);
+        Future<ReplicaInfo> blocked = executor.submit(
+            new Callable<ReplicaInfo>() {
+              @Override
+              public ReplicaInfo call() throws Exception {
+                try (ReplicaHandler handler = dataset.createRbw(
+                    StorageType.DEFAULT, null, b5, false)) {
+                  return handler.getReplica().getReplicaInfo();
+                }
+              }
+            });
+        Thread.sleep(500);
+        assertFalse(blocked.isDone());
+        // the thread holding a stripe still works on its replica
+        dataset.createRbw(StorageType.DEFAULT, null, b1, false).close();
+        assertTrue(dataset.contains(b1));
+        lock.release();
+        locked = false;
+        assertNotNull(blocked.get(30, TimeUnit.SECONDS));
+        assertTrue(dataset.contains(b5));
+      } finally {
+        if (locked) {
+          lock.release();
+        }
+      }
+      assertEquals(1001, dataset.getStoredBlock(bpid, 2)
+          .getGenerationStamp());
+    } finally {
+      executor.shutdownNow();
+      cluster.shutdown();
+    }
+  }
+
+  @Test(timeout = 120000)
+  public void testConcurrentWrites() throws Exception {
+    MiniDFSCluster cluster = newCluster();
+    try {
+      final DistributedFileSystem fs = cluster.getFileSystem();
+      ExecutorService executor = Executors.newFixedThreadPool(8);
+      try {
+        Future<?>[] futures = new Future<?>[32];
+        for (int i = 0; i < futures.length; i++) {
+          final Path file = new Path("/file" + i);
+          final long seed = i;
+          futures[i] = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+              DFSTestUtil.createFile(fs, file, 4096, (short) 1, seed);
+              return null;
+            }
+          });
+        }
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      } finally {
+        executor.shutdownNow();
+      }
+      for (int i = 0; i < 32; i++) {
+        assertEquals(4096, DFSTestUtil.readFileAsBytes(fs,
+            new Path("/file" + i)).length);
+      }
+      FsDatasetImpl dataset = (FsDatasetImpl) DataNodeTestUtils
+          .getFSDataset(cluster.getDataNodes().get(0));
+      assertEquals(32, dataset.getFinalizedBlocks(
+          cluster.getNamesystem().getBlockPoolId()).size());
+    } finally {
+      cluster.shutdown();
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsBenchmark;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+import org.apache.hadoop.hdfs.server.protocol.NamenodeProtocols;
+import org.apache.hadoop.util.Time;
+import org.apache.hadoop.util.ToolRunner;
+
+/**
+ * Measures the throughput, in calls per second, of concurrent readers
+ * getting the block locations of the same few files from the NameNode of a
+ * {@link MiniDFSCluster}, with and without the {@link LocatedBlocksCache}.
+ * <p>
+ * Usage: BlockLocationsCacheBenchmark [-numFiles N] [-blocks B] [-threads T]
+ * [-calls C]
+ */
+public class BlockLocationsCacheBenchmark extends HdfsBenchmark {
+
+  private static final int BLOCK_SIZE = 1024;
+
+  public BlockLocationsCacheBenchmark(Configuration conf) {
+    super(conf);
+    addOption("numFiles", 100);
+    addOption("blocks", 10);
+    addOption("threads", 16);
+    addOption("calls", 10000);
+  }
+
+  @Override
+  protected List<Result> runCases() throws Exception {
+    List<Result> results = new ArrayList<>(2);
+    for (boolean cached : new boolean[] {false, true}) {
+      results.add(run(getInt("numFiles"), getInt("blocks"),
+          getInt("threads"), getInt("calls"), cached));
+    }
+    return results;
+  }
+
+  /**
+   * Write the files with three replicas of every block, then have every
+   * thread get the locations of all the blocks of random files.
+   */
+  private Result run(int numFiles, int blocksPerFile, int numThreads,
+      final int callsPerThread, boolean cached) throws Exception {
+    Configuration clusterConf = new Configuration(getConf());
+    clusterConf.setBoolean(
+        DFSConfigKeys.DFS_NAMENODE_BLOCK_LOCATIONS_CACHE_ENABLED_KEY, cached);
+    clusterConf.setLong(DFSConfigKeys.DFS_NAMENODE_MIN_BLOCK_SIZE_KEY, 0);
+    clusterConf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, BLOCK_SIZE);
+    long numCalls = (long) numThreads * callsPerThread;
+    Result result = new Result(cached ? "cache on" : "cache off")
+        .add("threads", numThreads).add("calls", numCalls);
+
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(clusterConf)
+        .numDataNodes(3).build();
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      final String[] files = new String[numFiles];
+      for (int i = 0; i < numFiles; i++) {
+        files[i] = "/bench/file" + i;
+        DFSTestUtil.createFile(fs, new Path(files[i]),
+            (long) BLOCK_SIZE * blocksPerFile, (short) 3, i);
+      }
+      final NamenodeProtocols nn = cluster.getNameNodeRpc();
+
+      List<Future<Void>> futures = new ArrayList<>();
+      long start = Time.monotonicNow();
+      for (int t = 0; t < numThreads; t++) {
+        final Random r = new Random(t);
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int i = 0; i < callsPerThread; i++) {
+              LocatedBlocks blocks = nn.getBlockLocations(
+                  files[r.nextInt(files.length)], 0, Long.MAX_VALUE);
+              if (blocks.locatedBlockCount() == 0) {
+                throw new IllegalStateException("No blocks");
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+      long timeMs = Time.monotonicNow() - start;
+      result.add("timeMs", timeMs).addRate("callsPerSec", numCalls, timeMs);
+    } finally {
+      executor.shutdownNow();
+      cluster.shutdown();
+    }
+    return result;
+  }
+
+  public static void main(String[] args) throws Exception {
+    System.exit(ToolRunner.run(
+        new BlockLocationsCacheBenchmark(new HdfsConfiguration()), args));
+  }
+}
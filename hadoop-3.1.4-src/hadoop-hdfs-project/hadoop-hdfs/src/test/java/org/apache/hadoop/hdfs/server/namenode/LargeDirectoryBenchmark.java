@@ -0,0 +1,156 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.fs.permission.PermissionStatus;
+import org.apache.hadoop.hdfs.DFSUtil;
+import org.apache.hadoop.hdfs.HdfsBenchmark;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.server.blockmanagement.BlockInfo;
+import org.apache.hadoop.hdfs.server.namenode.snapshot.Snapshot;
+import org.apache.hadoop.util.Time;
+import org.apache.hadoop.util.ToolRunner;
+
+/**
+ * Measures the heap cost and the latency of adding, looking up, listing and
+ * removing the children of one large {@link INodeDirectory}, with the
+ * children kept in an array and in a {@link ChunkedChildrenList}.
+ * <p>
+ * The children are added and removed in random order, so that an array moves
+ * half of the children on average for every change.
+ * <p>
+ * Usage: LargeDirectoryBenchmark [-children N] [-lookups L]
+ */
+public class LargeDirectoryBenchmark extends HdfsBenchmark {
+
+  public LargeDirectoryBenchmark(Configuration conf) {
+    super(conf);
+    addOption("children", 1000000);
+    addOption("lookups", 1000000);
+  }
+
+  @Override
+  protected List<Result> runCases() {
+    return Arrays.asList(
+        run(getInt("children"), getInt("lookups"), false),
+        run(getInt("children"), getInt("lookups"), true));
+  }
+
+  /**
+   * Fill a directory with children in random order, look some of them up,
+   * list them all and remove them in random order.
+   *
+   * @param chunked whether to keep the children in a
+   *                {@link ChunkedChildrenList} from the start
+   */
+  private Result run(int numChildren, int numLookups, boolean chunked) {
+    Result result = new Result(chunked ? "chunked" : "array")
+        .add("children", numChildren);
+    final PermissionStatus perm = new PermissionStatus("benchmark",
+        "benchmark", FsPermission.getDefault());
+    final long now = Time.now();
+    INodeFile[] files = new INodeFile[numChildren];
+    for (int i = 0; i < numChildren; i++) {
+      files[i] = new INodeFile(i + 2, DFSUtil.string2Bytes("file" + i), perm,
+          now, now, BlockInfo.EMPTY_ARRAY, (short) 3, 128L * 1024 * 1024);
+    }
+    shuffle(files, new Random(0));
+
+    INodeDirectory.setChunkedChildrenThreshold(chunked ? 1 : 0);
+    try {
+      long heapBefore = usedHeap();
+      INodeDirectory dir = new INodeDirectory(1,
+          DFSUtil.string2Bytes("dir"), perm, now);
+      long start = System.nanoTime();
+      for (INodeFile file : files) {
+        dir.addChild(file);
+      }
+      double addNanos = (double) (System.nanoTime() - start) / numChildren;
+      result.add("retainedHeapBytes", usedHeap() - heapBefore)
+          .add("addNanos", addNanos);
+
+      Random r = new Random(0);
+      long found = 0;
+      start = System.nanoTime();
+      for (int i = 0; i < numLookups; i++) {
+        INodeFile file = files[r.nextInt(numChildren)];
+        if (dir.searchChildren(file.getLocalNameBytes()) >= 0) {
+          found++;
+        }
+      }
+      result.add("lookupNanos", (double) (System.nanoTime() - start) /
+          Math.max(1, numLookups));
+      if (found != numLookups) {
+        throw new IllegalStateException("Missing children: " +
+            (numLookups - found));
+      }
+
+      long listed = 0;
+      start = System.nanoTime();
+      for (INode child : dir.getChildrenList(Snapshot.CURRENT_STATE_ID)) {
+        if (child != null) {
+          listed++;
+        }
+      }
+      result.add("listNanos",
+          (double) (System.nanoTime() - start) / numChildren);
+      if (listed != numChildren) {
+        throw new IllegalStateException("Listed " + listed + " children");
+      }
+
+      shuffle(files, r);
+      start = System.nanoTime();
+      for (INodeFile file : files) {
+        dir.removeChild(file);
+      }
+      result.add("removeNanos",
+          (double) (System.nanoTime() - start) / numChildren);
+    } finally {
+      INodeDirectory.setChunkedChildrenThreshold(0);
+    }
+    return result;
+  }
+
+  private static void shuffle(INodeFile[] files, Random r) {
+    for (int i = files.length - 1; i > 0; i--) {
+      int j = r.nextInt(i + 1);
+      INodeFile tmp = files[i];
+      files[i] = files[j];
+      files[j] = tmp;
+    }
+  }
+
+  private static long usedHeap() {
+    Runtime rt = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return rt.totalMemory() - rt.freeMemory();
+  }
+
+  public static void main(String[] args) throws Exception {
+    System.exit(ToolRunner.run(
+        new LargeDirectoryBenchmark(new HdfsConfiguration()), args));
+  }
+}
@@ -0,0 +1,220 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.fs.permission.PermissionStatus;
+import org.apache.hadoop.hdfs.DFSUtil;
+import org.apache.hadoop.hdfs.HdfsBenchmark;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.protocol.BlockType;
+import org.apache.hadoop.hdfs.protocol.HdfsConstants.SafeModeAction;
+import org.apache.hadoop.hdfs.server.blockmanagement.BlockInfo;
+import org.apache.hadoop.hdfs.server.blockmanagement.BlockInfoContiguous;
+import org.apache.hadoop.hdfs.server.blockmanagement.BlockManager;
+import org.apache.hadoop.util.Time;
+import org.apache.hadoop.util.ToolRunner;
+
+/**
+ * Measures the heap cost and lookup latency of the namespace maps.
+ * <p>
+ * The benchmark populates the namespace of a NameNode with a synthetic tree
+ * of directories and files, saves it to an fsimage and loads the image into
+ * a fresh {@link FSNamesystem} through {@link FSImageFormatPBINode}. It then
+ * reports the image load time, the heap retained per inode and per block and
+ * the average latency of inode map and blocks map lookups.
+ * <p>
+ * Usage: NamespaceMemoryBenchmark [-numFiles N] [-blocksPerFile B]
+ * [-filesPerDir D] [-lookups L]
+ */
+public class NamespaceMemoryBenchmark extends HdfsBenchmark {
+
+  public NamespaceMemoryBenchmark(Configuration conf) {
+    super(conf);
+    addOption("numFiles", 100000);
+    addOption("blocksPerFile", 1);
+    addOption("filesPerDir", 1000);
+    addOption("lookups", 1000000);
+  }
+
+  @Override
+  protected List<Result> runCases() throws IOException {
+    return Collections.singletonList(run(getInt("numFiles"),
+        getInt("blocksPerFile"), getInt("filesPerDir"), getInt("lookups")));
+  }
+
+  /**
+   * Create, save and reload a synthetic namespace.
+   */
+  private Result run(int numFiles, int blocksPerFile, int filesPerDir,
+      int numLookups) throws IOException {
+    Result result = new Result("namespace");
+    long[] inodeIds = new long[Math.min(numFiles, numLookups)];
+    long[] blockIds =
+        new long[(int) Math.min((long) numFiles * blocksPerFile, numLookups)];
+    long numInodes;
+    long numBlocks;
+
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(getConf())
+        .numDataNodes(0).build();
+    Configuration nnConf;
+    try {
+      cluster.waitActive();
+      FSNamesystem fsn = cluster.getNamesystem();
+      populate(fsn, numFiles, blocksPerFile, filesPerDir, inodeIds, blockIds);
+      numInodes = fsn.dir.getInodeMapSize();
+      numBlocks = fsn.getBlocksTotal();
+      cluster.getNameNodeRpc().setSafeMode(SafeModeAction.SAFEMODE_ENTER,
+          false);
+      cluster.getNameNodeRpc().saveNamespace(0, 0);
+      nnConf = new Configuration(cluster.getConfiguration(0));
+    } finally {
+      cluster.shutdown(false);
+    }
+    result.add("inodes", numInodes).add("blocks", numBlocks);
+
+    long heapBefore = usedHeap();
+    long start = Time.monotonicNow();
+    FSNamesystem fsn = FSNamesystem.loadFromDisk(nnConf);
+    try {
+      result.add("loadTimeMs", Time.monotonicNow() - start);
+      long retainedHeapBytes = usedHeap() - heapBefore;
+      result.add("retainedHeapBytes", retainedHeapBytes)
+          .add("bytesPerEntry",
+              (double) retainedHeapBytes / (numInodes + numBlocks))
+          .add("inodeLookupNanos",
+              timeInodeLookups(fsn.dir, inodeIds, numLookups))
+          .add("blockLookupNanos",
+              timeBlockLookups(fsn.getBlockManager(), blockIds, numLookups));
+    } finally {
+      fsn.close();
+    }
+    return result;
+  }
+
+  /**
+   * Add directories, files and blocks directly to the namespace, without
+   * logging edits, so that large trees can be created quickly.
+   */
+  private static void populate(FSNamesystem fsn, int numFiles,
+      int blocksPerFile, int filesPerDir, long[] inodeIds, long[] blockIds)
+      throws IOException {
+    final FSDirectory fsd = fsn.dir;
+    final BlockManager bm = fsn.getBlockManager();
+    final PermissionStatus perm = new PermissionStatus("benchmark",
+        "benchmark", FsPermission.getDefault());
+    final short replication = 3;
+    final long blockSize = 128L * 1024 * 1024;
+    final long now = Time.now();
+    int numBlocks = 0;
+
+    fsn.writeLock();
+    try {
+      INodeDirectory dir = null;
+      for (int i = 0; i < numFiles; i++) {
+        if (i % filesPerDir == 0) {
+          dir = new INodeDirectory(fsd.allocateNewInodeId(),
+              DFSUtil.string2Bytes("dir" + (i / filesPerDir)), perm, now);
+          fsd.getRoot().addChild(dir);
+          fsd.addToInodeMap(dir);
+        }
+        INodeFile file = new INodeFile(fsd.allocateNewInodeId(),
+            DFSUtil.string2Bytes("file" + i), perm, now, now,
+            BlockInfo.EMPTY_ARRAY, replication, blockSize);
+        for (int j = 0; j < blocksPerFile; j++) {
+          Block b = fsn.createNewBlock(BlockType.CONTIGUOUS);
+          b.setNumBytes(blockSize);
+          BlockInfo blk = new BlockInfoContiguous(b, replication);
+          file.addBlock(blk);
+          bm.addBlockCollection(blk, file);
+          if (numBlocks < blockIds.length) {
+            blockIds[numBlocks++] = b.getBlockId();
+          }
+        }
+        dir.addChild(file);
+        fsd.addToInodeMap(file);
+        if (i < inodeIds.length) {
+          inodeIds[i] = file.getId();
+        }
+      }
+    } finally {
+      fsn.writeUnlock();
+    }
+  }
+
+  private static double timeInodeLookups(FSDirectory fsd, long[] ids,
+      int numLookups) {
+    Random r = new Random(0);
+    long found = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < numLookups; i++) {
+      if (fsd.getInode(ids[r.nextInt(ids.length)]) != null) {
+        found++;
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+    if (found != numLookups) {
+      throw new IllegalStateException("Missing inodes: " +
+          (numLookups - found));
+    }
+    return (double) elapsed / numLookups;
+  }
+
+  private static double timeBlockLookups(BlockManager bm, long[] ids,
+      int numLookups) {
+    Block[] blocks = new Block[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      blocks[i] = new Block(ids[i]);
+    }
+    Random r = new Random(0);
+    long found = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < numLookups; i++) {
+      if (bm.getStoredBlock(blocks[r.nextInt(blocks.length)]) != null) {
+        found++;
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+    if (found != numLookups) {
+      throw new IllegalStateException("Missing blocks: " +
+          (numLookups - found));
+    }
+    return (double) elapsed / numLookups;
+  }
+
+  private static long usedHeap() {
+    Runtime rt = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return rt.totalMemory() - rt.freeMemory();
+  }
+
+  public static void main(String[] args) throws Exception {
+    System.exit(ToolRunner.run(
+        new NamespaceMemoryBenchmark(new HdfsConfiguration()), args));
+  }
+}
@@ -0,0 +1,197 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.fs.permission.PermissionStatus;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DFSUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.HdfsConstants.SafeModeAction;
+import org.apache.hadoop.hdfs.server.blockmanagement.BlockInfo;
+import org.apache.hadoop.hdfs.server.namenode.snapshot.Snapshot;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests {@link ChunkedChildrenList} and the directories that switch to it
+ * above {@link DFSConfigKeys#DFS_NAMENODE_CHUNKED_CHILDREN_THRESHOLD_KEY}.
+ */
+public class TestChunkedChildrenList {
+  private static final PermissionStatus PERM = new PermissionStatus("user",
+      "group", FsPermission.getDefault());
+
+  @After
+  public void tearDown() {
+    INodeDirectory.setChunkedChildrenThreshold(0);
+  }
+
+  private static INode newFile(long id, String name) {
+    return new INodeFile(id, DFSUtil.string2Bytes(name), PERM, 0L, 0L,
+        BlockInfo.EMPTY_ARRAY, (short) 1, 1024L);
+  }
+
+  private static void assertSameList(List<INode> expected,
+      ChunkedChildrenList actual) {
+    assertEquals(expected.size(), actual.size());
+    Iterator<INode> it = actual.iterator();
+    for (int i = 0; i < expected.size(); i++) {
+      assertTrue(expected.get(i) == actual.get(i));
+      assertTrue(expected.get(i) == it.next());
+    }
+    assertFalse(it.hasNext());
+  }
+
+  @Test
+  public void testRandomOperations() {
+    final int chunkSize = 8;
+    Random r = new Random(0);
+    List<INode> expected = new ArrayList<>();
+    ChunkedChildrenList actual = new ChunkedChildrenList(
+        Collections.<INode>emptyList(), chunkSize);
+    for (int op = 0; op < 5000; op++) {
+      byte[] name = DFSUtil.string2Bytes("f" + r.nextInt(500));
+      int i = Collections.binarySearch(expected, name);
+      assertEquals(i, actual.binarySearch(name));
+      // add more than remove to grow the list, then shrink it
+      boolean add = op < 3000 ? r.nextInt(4) != 0 : r.nextInt(4) == 0;
+      if (i < 0 && add) {
+        INode child = newFile(op, DFSUtil.bytes2String(name));
+        expected.add(-i - 1, child);
+        actual.add(-i - 1, child);
+      } else if (i >= 0 && !add) {
+        assertTrue(expected.remove(i) == actual.remove(i));
+      }
+      if (op % 100 == 0) {
+        assertSameList(expected, actual);
+        // the chunks are at least a quarter full on average
+        assertTrue(actual.getNumChunks() <=
+            expected.size() * 4 / chunkSize + 2);
+      }
+    }
+    assertSameList(expected, actual);
+
+    // a list built from the children of a directory
+    ChunkedChildrenList copy = new ChunkedChildrenList(expected, chunkSize);
+    assertSameList(expected, copy);
+    if (!expected.isEmpty()) {
+      INode replacement = newFile(-1, expected.get(0).getLocalName());
+      copy.set(0, replacement);
+      assertTrue(replacement == copy.get(0));
+    }
+  }
+
+  @Test
+  public void testDirectorySwitchesLists() {
+    INodeDirectory.setChunkedChildrenThreshold(10);
+    INodeDirectory dir = new INodeDirectory(1, DFSUtil.string2Bytes("dir"),
+        PERM, 0L);
+    List<INode> children = new ArrayList<>();
+    for (int i = 0; i < 11; i++) {
+      children.add(newFile(i + 2, "file" + i));
+    }
+    for (int i = 0; i < 10; i++) {
+      assertTrue(dir.addChild(children.get(i)));
+    }
+    assertFalse(dir.hasChunkedChildren());
+    assertTrue(dir.addChild(children.get(10)));
+    assertTrue(dir.hasChunkedChildren());
+    assertFalse(dir.addChild(newFile(100, "file3")));
+    assertTrue(dir.searchChildren(DFSUtil.string2Bytes("file7")) >= 0);
+
+    // back to an array at half the threshold
+    for (int i = 0; i < 6; i++) {
+      assertTrue(dir.removeChild(children.get(i)));
+      assertTrue(dir.hasChunkedChildren() == (i < 5));
+    }
+    assertEquals(5,
+        dir.getChildrenList(Snapshot.CURRENT_STATE_ID).size());
+  }
+
+  @Test(timeout = 120000)
+  public void testLargeDirectory() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_CHUNKED_CHILDREN_THRESHOLD_KEY,
+        20);
+    // list the directory in several batches
+    conf.setInt(DFSConfigKeys.DFS_LIST_LIMIT, 7);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(1).build();
+    try {
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      Path dir = new Path("/large");
+      // created in reverse order to insert before the existing children
+      for (int i = 49; i >= 0; i--) {
+        DFSTestUtil.createFile(fs, new Path(dir, String.format("f%02d", i)),
+            10, (short) 1, 0L);
+      }
+      fs.rename(new Path(dir, "f10"), new Path(dir, "g10"));
+      fs.delete(new Path(dir, "f20"), false);
+      assertTrue(getINode(cluster, "/large").hasChunkedChildren());
+      assertListing(fs, dir, 49);
+
+      // the directory is rebuilt from the edits and from the image
+      cluster.restartNameNode();
+      fs = cluster.getFileSystem();
+      assertTrue(getINode(cluster, "/large").hasChunkedChildren());
+      assertListing(fs, dir, 49);
+      fs.setSafeMode(SafeModeAction.SAFEMODE_ENTER);
+      fs.saveNamespace();
+      fs.setSafeMode(SafeModeAction.SAFEMODE_LEAVE);
+      cluster.restartNameNode();
+      fs = cluster.getFileSystem();
+      assertListing(fs, dir, 49);
+      assertEquals(10, fs.getFileStatus(new Path(dir, "g10")).getLen());
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  private static INodeDirectory getINode(MiniDFSCluster cluster, String path)
+      throws Exception {
+    return cluster.getNamesystem().getFSDirectory().getINode(path)
+        .asDirectory();
+  }
+
+  private static void assertListing(DistributedFileSystem fs, Path dir,
+      int expected) throws Exception {
+    FileStatus[] listing = fs.listStatus(dir);
+    assertEquals(expected, listing.length);
+    for (int i = 1; i < listing.length; i++) {
+      assertTrue(listing[i - 1].getPath().getName().compareTo(
+          listing[i].getPath().getName()) < 0);
+    }
+  }
+}
@@ -0,0 +1,204 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.apache.hadoop.test.MetricsAsserts.getLongCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.security.PrivilegedExceptionAction;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.ContentSummary;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.QuotaUsage;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.HdfsConstants;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Supplier;
+
+/**
+ * Tests the content summaries cached by {@link ContentSummaryCache} when
+ * {@link DFSConfigKeys#DFS_CONTENT_SUMMARY_CACHE_ENABLED_KEY} is set.
+ */
+public class TestContentSummaryCache {
+  private static final String NN_METRICS = "NameNodeActivity";
+  private static final int FILE_SIZE = 1024;
+
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem fs;
+  private ContentSummaryCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_ENABLED_KEY,
+        true);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+    cache = cluster.getNamesystem().getFSDirectory()
+        .getContentSummaryCache();
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  private void createFiles(Path dir, int from, int to) throws Exception {
+    for (int i = from; i < to; i++) {
+      DFSTestUtil.createFile(fs, new Path(dir, "file" + i), FILE_SIZE,
+          (short) 1, 0L);
+    }
+  }
+
+  private void waitForCached(final String path) throws Exception {
+    GenericTestUtils.waitFor(new Supplier<Boolean>() {
+      @Override
+      public Boolean get() {
+        return cache.isCached(path);
+      }
+    }, 10, 10000);
+  }
+
+  @Test(timeout = 60000)
+  public void testCachedSummary() throws Exception {
+    Path dir = new Path("/dir");
+    createFiles(new Path(dir, "sub"), 0, 3);
+    long hits = getLongCounter("ContentSummaryCacheHits",
+        getMetrics(NN_METRICS));
+
+    ContentSummary cs = fs.getContentSummary(dir);
+    assertEquals(3, cs.getFileCount());
+    assertEquals(2, cs.getDirectoryCount());
+    assertEquals(3 * FILE_SIZE, cs.getLength());
+    assertTrue(cache.isCached("/dir"));
+
+    // served from the cache, quota usage of a directory without a quota too
+    assertEquals(cs, fs.getContentSummary(dir));
+    QuotaUsage usage = fs.getQuotaUsage(dir);
+    assertEquals(5, usage.getFileAndDirectoryCount());
+    assertEquals(hits + 2, getLongCounter("ContentSummaryCacheHits",
+        getMetrics(NN_METRICS)));
+
+    // a new file below the directory invalidates the summary, which is
+    // recomputed in the background
+    createFiles(new Path(dir, "sub"), 3, 4);
+    waitForCached("/dir");
+    assertEquals(4, fs.getContentSummary(dir).getFileCount());
+    assertTrue(getLongCounter("ContentSummaryCacheRefreshes",
+        getMetrics(NN_METRICS)) > 0);
+  }
+
+  @Test(timeout = 60000)
+  public void testSummariesAreCurrent() throws Exception {
+    Path dir = new Path("/dir");
+    Path sub = new Path(dir, "sub");
+    createFiles(sub, 0, 2);
+    assertEquals(2, fs.getContentSummary(dir).getFileCount());
+    assertEquals(2, fs.getContentSummary(sub).getFileCount());
+
+    // every change is visible right away, whether or not the background
+    // refresh has caught up
+    fs.setReplication(new Path(sub, "file0"), (short) 2);
+    assertEquals(3 * FILE_SIZE, fs.getContentSummary(dir).getSpaceConsumed());
+
+    fs.mkdirs(new Path("/other"));
+    fs.rename(sub, new Path("/other/sub"));
+    assertEquals(0, fs.getContentSummary(dir).getFileCount());
+    assertEquals(2, fs.getContentSummary(new Path("/other")).getFileCount());
+    assertEquals(2,
+        fs.getContentSummary(new Path("/other/sub")).getFileCount());
+
+    fs.setQuota(dir, 100, HdfsConstants.QUOTA_DONT_SET);
+    assertEquals(100, fs.getContentSummary(dir).getQuota());
+
+    fs.delete(new Path("/other/sub/file1"), false);
+    assertEquals(1,
+        fs.getContentSummary(new Path("/other/sub")).getFileCount());
+    fs.delete(new Path("/other"), true);
+    assertEquals(2, fs.getContentSummary(new Path("/")).getDirectoryCount());
+
+    // the summaries of a deleted directory are dropped
+    GenericTestUtils.waitFor(new Supplier<Boolean>() {
+      @Override
+      public Boolean get() {
+        return !cache.isCached("/other") && !cache.isCached("/other/sub");
+      }
+    }, 10, 10000);
+  }
+
+  @Test(timeout = 60000)
+  public void testNotCachedForOtherUsers() throws Exception {
+    Path dir = new Path("/user/foo");
+    fs.mkdirs(dir);
+    fs.setPermission(dir, new FsPermission((short) 0777));
+    createFiles(dir, 0, 2);
+
+    UserGroupInformation foo = UserGroupInformation.createUserForTesting(
+        "foo", new String[] {"foo"});
+    ContentSummary cs = foo.doAs(
+        new PrivilegedExceptionAction<ContentSummary>() {
+          @Override
+          public ContentSummary run() throws Exception {
+            return FileSystem.get(cluster.getConfiguration(0))
+                .getContentSummary(new Path("/user/foo"));
+          }
+        });
+    assertEquals(2, cs.getFileCount());
+    assertFalse(cache.isCached("/user/foo"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test(timeout = 60000)
+  public void testIdleSummariesAreDropped() throws Exception {
+    Path dir = new Path("/dir");
+    createFiles(dir, 0, 1);
+    fs.getContentSummary(dir);
+    assertTrue(cache.isCached("/dir"));
+
+    // nobody asked for the summary within the idle time, so the next change
+    // drops it instead of refreshing it
+    cache.setIdleMs(0);
+    createFiles(dir, 1, 3);
+    GenericTestUtils.waitFor(new Supplier<Boolean>() {
+      @Override
+      public Boolean get() {
+        return cache.size() == 0;
+      }
+    }, 10, 10000);
+    assertEquals(3, fs.getContentSummary(dir).getFileCount());
+  }
+}
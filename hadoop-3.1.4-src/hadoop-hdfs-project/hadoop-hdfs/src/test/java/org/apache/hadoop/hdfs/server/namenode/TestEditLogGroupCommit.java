@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.apache.hadoop.test.MetricsAsserts.getLongCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.junit.Test;
+
+/**
+ * Tests the group commit of the async edit log, enabled by
+ * {@link DFSConfigKeys#DFS_NAMENODE_EDITS_ASYNC_GROUP_COMMIT_MAX_WAIT_US_KEY}.
+ */
+public class TestEditLogGroupCommit {
+  private static final int NUM_THREADS = 8;
+  private static final int DIRS_PER_THREAD = 20;
+
+  @Test
+  public void testGroupCommitWaitNanos() {
+    assertEquals(0, FSEditLogAsync.getGroupCommitWaitNanos(0, 1000, 10));
+    assertEquals(100, FSEditLogAsync.getGroupCommitWaitNanos(1, 1000, 10));
+    assertEquals(900, FSEditLogAsync.getGroupCommitWaitNanos(9, 1000, 10));
+    // a full batch is synced right away
+    assertEquals(0, FSEditLogAsync.getGroupCommitWaitNanos(10, 1000, 10));
+    assertEquals(0, FSEditLogAsync.getGroupCommitWaitNanos(50, 1000, 10));
+  }
+
+  @Test(timeout = 120000)
+  public void testConcurrentEdits() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_NAMENODE_EDITS_ASYNC_LOGGING, true);
+    conf.setLong(
+        DFSConfigKeys.DFS_NAMENODE_EDITS_ASYNC_GROUP_COMMIT_MAX_WAIT_US_KEY,
+        20000);
+    conf.setInt(
+        DFSConfigKeys.DFS_NAMENODE_EDITS_ASYNC_GROUP_COMMIT_BATCH_SIZE_KEY,
+        NUM_THREADS);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(0).build();
+    ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+    try {
+      cluster.waitActive();
+      final FileSystem fs = cluster.getFileSystem();
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int t = 0; t < NUM_THREADS; t++) {
+        final int thread = t;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int i = 0; i < DIRS_PER_THREAD; i++) {
+              // each edit is durable once the call returns
+              Path dir = new Path("/t" + thread + "/d" + i);
+              assertTrue(fs.mkdirs(dir));
+              assertTrue(fs.exists(dir));
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+
+      MetricsRecordBuilder rb = getMetrics("NameNodeActivity");
+      assertTrue(getLongCounter("EditLogGroupCommitWaits", rb) > 0);
+      assertTrue(getLongCounter("EditLogGroupCommitJoined", rb) > 0);
+
+      // all the edits were synced and are replayed on restart
+      cluster.restartNameNode();
+      FileSystem restarted = cluster.getFileSystem();
+      for (int t = 0; t < NUM_THREADS; t++) {
+        assertEquals(DIRS_PER_THREAD,
+            restarted.listStatus(new Path("/t" + t)).length);
+      }
+    } finally {
+      executor.shutdownNow();
+      cluster.shutdown();
+    }
+  }
+}
@@ -156,6 +156,64 @@ public class TestFSEditLogLoader {
     }
   }
   
+  /**
+   * Test that the edits read ahead on a separate thread are applied in order,
+   * and that a corrupt edit log is still reported with the offsets of the
+   * recent ops.
+   */
+  @Test
+  public void testLoadWithPrefetch() throws IOException {
+    Configuration conf = getConf();
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_EDITS_PREFETCH_SIZE_KEY, 3);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(NUM_DATA_NODES).enableManagedDfsDirsRedundancy(false)
+        .build();
+    try {
+      cluster.waitActive();
+      FileSystem fs = cluster.getFileSystem();
+      for (int i = 0; i < 20; i++) {
+        fs.mkdirs(new Path("/tmp/tmp" + i));
+        DFSTestUtil.createFile(fs, new Path("/tmp/tmp" + i, "file"), 0,
+            (short) 1, 0L);
+        if (i % 2 == 0) {
+          fs.rename(new Path("/tmp/tmp" + i), new Path("/tmp/renamed" + i));
+        } else {
+          fs.delete(new Path("/tmp/tmp" + i), true);
+        }
+      }
+      cluster.restartNameNode();
+      fs = cluster.getFileSystem();
+      for (int i = 0; i < 20; i++) {
+        assertEquals(i % 2 == 0,
+            fs.exists(new Path("/tmp/renamed" + i, "file")));
+        assertFalse(fs.exists(new Path("/tmp/tmp" + i)));
+      }
+
+      StorageDirectory sd = cluster.getNamesystem().getFSImage().getStorage()
+          .dirIterator(NameNodeDirType.EDITS).next();
+      fs.mkdirs(new Path("/corrupt"));
+      cluster.shutdown();
+      File editFile = FSImageTestUtil.findLatestEditsLog(sd).getFile();
+      RandomAccessFile rwf = new RandomAccessFile(editFile, "rw");
+      rwf.seek(editFile.length() - 40);
+      for (int i = 0; i < 20; i++) {
+        rwf.write(FSEditLogOpCodes.OP_DELETE.getOpCode());
+      }
+      rwf.close();
+      try {
+        cluster = new MiniDFSCluster.Builder(conf)
+            .numDataNodes(NUM_DATA_NODES).enableManagedDfsDirsRedundancy(false)
+            .format(false).build();
+        fail("should not be able to start");
+      } catch (IOException e) {
+        GenericTestUtils.assertExceptionContains(
+            "Error replaying edit log at offset", e);
+      }
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
   /**
    * Test that, if the NN restarts with a new minimum replication,
    * any files created with the old replication count will get
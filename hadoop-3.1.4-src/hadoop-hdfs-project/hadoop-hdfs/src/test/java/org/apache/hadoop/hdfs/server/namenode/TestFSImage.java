@@ -32,6 +32,7 @@ import java.io.DataInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.EnumSet;
 
 import org.apache.hadoop.hdfs.StripedFileTestUtil;
@@ -47,6 +48,7 @@ import org.apache.hadoop.hdfs.server.blockmanagement.BlockInfoContiguous;
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockInfoStriped;
 import org.apache.hadoop.hdfs.protocol.BlockType;
 import org.apache.hadoop.hdfs.server.common.HdfsServerConstants.StartupOption;
+import org.apache.hadoop.hdfs.server.common.Storage.StorageDirectory;
 import org.apache.hadoop.io.erasurecode.ECSchema;
 import org.apache.hadoop.ipc.RemoteException;
 import org.apache.hadoop.util.NativeCodeLoader;
@@ -71,6 +73,7 @@ import org.apache.hadoop.hdfs.protocol.HdfsConstants.SafeModeAction;
 import org.apache.hadoop.hdfs.server.common.HdfsServerConstants.BlockUCState;
 import org.apache.hadoop.hdfs.server.namenode.LeaseManager.Lease;
 import org.apache.hadoop.hdfs.server.namenode.NNStorage.NameNodeDirType;
+import org.apache.hadoop.hdfs.server.namenode.FsImageProto.FileSummary;
 import org.apache.hadoop.hdfs.server.namenode.FsImageProto.INodeSection;
 import org.apache.hadoop.hdfs.util.MD5FileUtils;
 import org.apache.hadoop.test.GenericTestUtils;
@@ -1000,4 +1003,198 @@ public class TestFSImage {
     }
     throw new AssertionError("Policy is not found!");
   }
+
+  private static Configuration getParallelImageConf() {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_KEY, true);
+    conf.setInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_INODE_THRESHOLD_KEY, 10);
+    conf.setInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_TARGET_SECTIONS_KEY, 5);
+    conf.setInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_THREAD_COUNT_KEY, 3);
+    return conf;
+  }
+
+  /**
+   * Create a namespace with files, directories, an open file and a snapshot
+   * with a renamed file, so that every kind of inode and directory entry is
+   * written to the image.
+   */
+  private static void createParallelImageNamespace(DistributedFileSystem fs)
+      throws IOException {
+    for (int i = 0; i < 10; i++) {
+      Path dir = new Path("/dir" + i);
+      for (int j = 0; j < 10; j++) {
+        DFSTestUtil.createFile(fs, new Path(dir, "file" + j), 10,
+            (short) 1, 0L);
+      }
+    }
+    Path snapshottable = new Path("/dir0");
+    fs.allowSnapshot(snapshottable);
+    fs.createSnapshot(snapshottable, "s0");
+    fs.rename(new Path("/dir0/file0"), new Path("/dir1/renamed"));
+    FSDataOutputStream out = fs.create(new Path("/dir2/open"));
+    out.write(new byte[10]);
+    out.hflush();
+    // leave the file open so that its lease is saved in the image
+  }
+
+  private static void verifyParallelImageNamespace(DistributedFileSystem fs,
+      long numInodes, long numBlocks, FSNamesystem fsn) throws IOException {
+    assertEquals(numInodes, fsn.dir.getInodeMapSize());
+    assertEquals(numBlocks, fsn.getBlocksTotal());
+    assertTrue(fs.exists(new Path("/dir1/renamed")));
+    assertTrue(fs.exists(new Path("/dir0/.snapshot/s0/file0")));
+    assertFalse(fs.exists(new Path("/dir0/file0")));
+    assertEquals(10, fs.getFileStatus(new Path("/dir9/file9")).getLen());
+    assertEquals(1, fsn.getLeaseManager().countLease());
+  }
+
+  private static int countSections(File image, String name)
+      throws IOException {
+    int count = 0;
+    try (RandomAccessFile raFile = new RandomAccessFile(image, "r")) {
+      FileSummary summary = FSImageUtil.loadSummary(raFile);
+      for (FileSummary.Section s : summary.getSectionsList()) {
+        if (s.getName().equals(name)) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  private static File saveAndGetLatestImage(DistributedFileSystem fs,
+      MiniDFSCluster cluster) throws IOException {
+    fs.setSafeMode(SafeModeAction.SAFEMODE_ENTER);
+    fs.saveNamespace();
+    fs.setSafeMode(SafeModeAction.SAFEMODE_LEAVE);
+    StorageDirectory sd = FSImageTestUtil.getFSImage(cluster.getNameNode())
+        .getStorage().getStorageDir(0);
+    return FSImageTestUtil.findLatestImageFile(sd);
+  }
+
+  @Test(timeout = 120000)
+  public void testParallelSaveAndLoad() throws IOException {
+    Configuration conf = getParallelImageConf();
+    MiniDFSCluster cluster = null;
+    try {
+      cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      createParallelImageNamespace(fs);
+      FSNamesystem fsn = cluster.getNamesystem();
+      long numInodes = fsn.dir.getInodeMapSize();
+      long numBlocks = fsn.getBlocksTotal();
+
+      File image = saveAndGetLatestImage(fs, cluster);
+      assertEquals(5, countSections(image,
+          FSImageFormatProtobuf.SectionName.INODE_SUB.name()));
+      assertTrue(countSections(image,
+          FSImageFormatProtobuf.SectionName.INODE_DIR_SUB.name()) > 1);
+
+      cluster.restartNameNode();
+      cluster.waitActive();
+      fs = cluster.getFileSystem();
+      verifyParallelImageNamespace(fs, numInodes, numBlocks,
+          cluster.getNamesystem());
+
+      // an image with sub-sections is still loaded by the serial loader
+      cluster.getConfiguration(0).setBoolean(
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_KEY, false);
+      cluster.restartNameNode();
+      cluster.waitActive();
+      fs = cluster.getFileSystem();
+      verifyParallelImageNamespace(fs, numInodes, numBlocks,
+          cluster.getNamesystem());
+
+      // an image without sub-sections is loaded with parallel loading on
+      image = saveAndGetLatestImage(fs, cluster);
+      assertEquals(0, countSections(image,
+          FSImageFormatProtobuf.SectionName.INODE_SUB.name()));
+      cluster.getConfiguration(0).setBoolean(
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_KEY, true);
+      cluster.restartNameNode();
+      cluster.waitActive();
+      verifyParallelImageNamespace(cluster.getFileSystem(), numInodes,
+          numBlocks, cluster.getNamesystem());
+    } finally {
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testNoSubSectionsBelowThresholdOrWithCompression()
+      throws IOException {
+    Configuration conf = getParallelImageConf();
+    conf.setInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_INODE_THRESHOLD_KEY, 1000);
+    MiniDFSCluster cluster = null;
+    try {
+      cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      createParallelImageNamespace(fs);
+      File image = saveAndGetLatestImage(fs, cluster);
+      assertEquals(0, countSections(image,
+          FSImageFormatProtobuf.SectionName.INODE_SUB.name()));
+      assertEquals(0, countSections(image,
+          FSImageFormatProtobuf.SectionName.INODE_DIR_SUB.name()));
+
+      Configuration nnConf = cluster.getConfiguration(0);
+      nnConf.setInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_INODE_THRESHOLD_KEY, 10);
+      nnConf.setBoolean(DFSConfigKeys.DFS_IMAGE_COMPRESS_KEY, true);
+      assertFalse(FSImageFormatProtobuf.enableParallelSaveAndLoad(nnConf));
+      cluster.restartNameNode();
+      cluster.waitActive();
+      fs = cluster.getFileSystem();
+      image = saveAndGetLatestImage(fs, cluster);
+      assertEquals(0, countSections(image,
+          FSImageFormatProtobuf.SectionName.INODE_SUB.name()));
+    } finally {
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+  }
+
+  @Test(timeout = 120000)
+  public void testNoSubSectionsDuringRollingUpgrade() throws IOException {
+    Configuration conf = getParallelImageConf();
+    MiniDFSCluster cluster = null;
+    try {
+      cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      createParallelImageNamespace(fs);
+      fs.setSafeMode(SafeModeAction.SAFEMODE_ENTER);
+      fs.rollingUpgrade(HdfsConstants.RollingUpgradeAction.PREPARE);
+      fs.setSafeMode(SafeModeAction.SAFEMODE_LEAVE);
+
+      // the image to roll back to is loaded by the previous release
+      StorageDirectory sd = FSImageTestUtil.getFSImage(cluster.getNameNode())
+          .getStorage().getStorageDir(0);
+      File[] rollbackImages = sd.getCurrentDir().listFiles((dir, name) ->
+          name.startsWith(NNStorage.NameNodeFile.IMAGE_ROLLBACK.getName())
+              && !name.endsWith(MD5FileUtils.MD5_SUFFIX));
+      assertEquals(1, rollbackImages.length);
+      assertEquals(0, countSections(rollbackImages[0],
+          FSImageFormatProtobuf.SectionName.INODE_SUB.name()));
+
+      // so is any image saved before the upgrade is finalized
+      File image = saveAndGetLatestImage(fs, cluster);
+      assertEquals(0, countSections(image,
+          FSImageFormatProtobuf.SectionName.INODE_SUB.name()));
+      assertEquals(0, countSections(image,
+          FSImageFormatProtobuf.SectionName.INODE_DIR_SUB.name()));
+
+      fs.rollingUpgrade(HdfsConstants.RollingUpgradeAction.FINALIZE);
+      image = saveAndGetLatestImage(fs, cluster);
+      assertEquals(5, countSections(image,
+          FSImageFormatProtobuf.SectionName.INODE_SUB.name()));
+    } finally {
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+  }
 }
@@ -365,6 +365,43 @@ public class TestFSNamesystemLock {
     assertCounter("FSNReadLockOverallNanosNumOps", 3L, rb);
     assertGauge("FSNWriteLockOverallNanosAvgTime", 1000000.0, rb);
     assertCounter("FSNWriteLockOverallNanosNumOps", 1L, rb);
+
+    // none of them waited for the lock
+    assertGauge("FSNReadLockWaitFooNanosAvgTime", 0.0, rb);
+    assertCounter("FSNReadLockWaitFooNanosNumOps", 2L, rb);
+    assertCounter("FSNReadLockWaitBarNanosNumOps", 1L, rb);
+    assertCounter("FSNWriteLockWaitBazNanosNumOps", 1L, rb);
+    assertCounter("FSNReadLockWaitOverallNanosNumOps", 3L, rb);
+  }
+
+  @Test(timeout = 30000)
+  public void testDetailedWaitMetrics() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setBoolean(DFSConfigKeys.DFS_NAMENODE_LOCK_DETAILED_METRICS_KEY, true);
+    FakeTimer timer = new FakeTimer();
+    MetricsRegistry registry = new MetricsRegistry("Test");
+    MutableRatesWithAggregation rates =
+        registry.newRatesWithAggregation("Test");
+    final FSNamesystemLock fsLock = new FSNamesystemLock(conf, rates, timer);
+
+    fsLock.writeLock();
+    Thread waiter = new Thread(() -> {
+      fsLock.readLock();
+      fsLock.readUnlock("foo");
+    });
+    waiter.start();
+    GenericTestUtils.waitFor(() -> fsLock.getQueueLength() == 1, 10, 10000);
+    timer.advanceNanos(5000000);
+    fsLock.writeUnlock("bar");
+    waiter.join();
+
+    MetricsRecordBuilder rb = MetricsAsserts.mockMetricsRecordBuilder();
+    rates.snapshot(rb, true);
+    assertGauge("FSNReadLockWaitFooNanosAvgTime", 5000000.0, rb);
+    assertCounter("FSNReadLockWaitFooNanosNumOps", 1L, rb);
+    assertGauge("FSNReadLockWaitOverallNanosAvgTime", 5000000.0, rb);
+    assertGauge("FSNWriteLockWaitBarNanosAvgTime", 0.0, rb);
+    assertGauge("FSNWriteLockBarNanosAvgTime", 5000000.0, rb);
   }
 
   /**
@@ -19,6 +19,7 @@ package org.apache.hadoop.hdfs.server.namenode;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -36,6 +37,7 @@ import org.apache.hadoop.hdfs.protocol.HdfsConstants.SafeModeAction;
 import org.apache.hadoop.hdfs.protocol.OpenFilesIterator;
 import org.apache.hadoop.hdfs.protocol.QuotaExceededException;
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockInfo;
+import org.apache.hadoop.hdfs.server.namenode.LeaseManager.Lease;
 import org.apache.hadoop.hdfs.server.namenode.snapshot.Snapshot;
 import org.junit.Rule;
 import org.junit.Test;
@@ -46,9 +48,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertThat;
@@ -102,6 +107,92 @@ public class TestLeaseManager {
     assertTrue(lm.countLease() < numLease);
   }
 
+  /**
+   * Check that the expired leases are found oldest renewal first, whatever
+   * the shards of their holders.
+   */
+  @Test
+  public void testExpiredLeasesOrder() throws Exception {
+    LeaseManager lm = new LeaseManager(makeMockFsNameSystem());
+    final int numLeases = 100;
+    for (int i = 0; i < numLeases; i++) {
+      lm.addLease("holder" + i, INodeId.ROOT_INODE_ID + i);
+    }
+    Thread.sleep(2);
+    // renewed leases move behind the others
+    for (int i = 0; i < 10; i++) {
+      lm.renewLease("holder" + i);
+    }
+    lm.setLeasePeriod(0, 0);
+    Thread.sleep(1);
+
+    List<Lease> expired = new ArrayList<>();
+    assertFalse(lm.getExpiredLeases(expired, numLeases));
+    assertEquals(numLeases, expired.size());
+    Set<String> renewed = new HashSet<>();
+    for (int i = 0; i < expired.size(); i++) {
+      if (i > 0) {
+        assertTrue(expired.get(i - 1).getLastUpdate()
+            <= expired.get(i).getLastUpdate());
+      }
+      if (i >= numLeases - 10) {
+        renewed.add(expired.get(i).getHolder());
+      }
+    }
+    for (int i = 0; i < 10; i++) {
+      assertTrue(renewed.contains("holder" + i));
+    }
+
+    // the number of expired leases to check at once is bounded
+    expired.clear();
+    assertTrue(lm.getExpiredLeases(expired, 30));
+    assertEquals(30, expired.size());
+  }
+
+  /**
+   * Renewals do not take the LeaseManager lock, check that they do not
+   * lose or resurrect the leases added and removed meanwhile.
+   */
+  @Test
+  public void testConcurrentRenewals() throws Exception {
+    final LeaseManager lm = new LeaseManager(makeMockFsNameSystem());
+    final int numHolders = 64;
+    final AtomicBoolean done = new AtomicBoolean();
+    List<Thread> renewers = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      Thread renewer = new Thread() {
+        @Override
+        public void run() {
+          Random r = new Random();
+          while (!done.get()) {
+            lm.renewLease("holder" + r.nextInt(numHolders));
+          }
+        }
+      };
+      renewer.start();
+      renewers.add(renewer);
+    }
+    try {
+      for (int round = 0; round < 100; round++) {
+        for (int i = 0; i < numHolders; i++) {
+          lm.addLease("holder" + i, INodeId.ROOT_INODE_ID + i);
+        }
+        assertEquals(numHolders, lm.countLease());
+        for (int i = 0; i < numHolders; i += 2) {
+          lm.removeLease(INodeId.ROOT_INODE_ID + i);
+        }
+        assertEquals(numHolders / 2, lm.countLease());
+        lm.removeAllLeases();
+      }
+    } finally {
+      done.set(true);
+      for (Thread renewer : renewers) {
+        renewer.join();
+      }
+    }
+    assertEquals(0, lm.countLease());
+  }
+
   /**
    * Test whether the internal lease holder name is updated properly.
    */
@@ -0,0 +1,235 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.apache.hadoop.test.MetricsAsserts.getLongCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+import org.apache.hadoop.hdfs.server.protocol.NamenodeProtocols;
+import org.junit.Test;
+
+/**
+ * Tests the block locations cached by {@link LocatedBlocksCache} when
+ * {@link DFSConfigKeys#DFS_NAMENODE_BLOCK_LOCATIONS_CACHE_ENABLED_KEY} is set.
+ */
+public class TestLocatedBlocksCache {
+  private static final String NN_METRICS = "NameNodeActivity";
+
+  private static LocatedBlocks newBlocks() {
+    return new LocatedBlocks(0, false,
+        Collections.<LocatedBlock>emptyList(), null, true, null, null);
+  }
+
+  @Test
+  public void testEvictionAndInvalidation() {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(
+        DFSConfigKeys.DFS_NAMENODE_BLOCK_LOCATIONS_CACHE_MAX_ENTRIES_KEY, 2);
+    LocatedBlocksCache cache = new LocatedBlocksCache(null, conf);
+    LocatedBlocksCache.Key a1 = new LocatedBlocksCache.Key(1, 0, 10, "user");
+    LocatedBlocksCache.Key a2 = new LocatedBlocksCache.Key(1, 10, 10, "user");
+    LocatedBlocksCache.Key b = new LocatedBlocksCache.Key(2, 0, 10, "user");
+    LocatedBlocks blocks = newBlocks();
+
+    cache.put(a1, blocks, cache.getGeneration(1));
+    cache.put(a2, newBlocks(), cache.getGeneration(1));
+    LocatedBlocks cached =
+        cache.get(new LocatedBlocksCache.Key(1, 0, 10, "user"));
+    assertNotNull(cached);
+    assertNotSame(blocks, cached);
+    assertNull(cache.get(new LocatedBlocksCache.Key(1, 0, 10, "other")));
+    // the least recently used entry is dropped
+    cache.put(b, newBlocks(), cache.getGeneration(2));
+    assertEquals(2, cache.size());
+    assertNull(cache.get(a2));
+    assertNotNull(cache.get(a1));
+
+    // all the ranges of an inode are invalidated together
+    cache.put(a2, newBlocks(), cache.getGeneration(1));
+    cache.invalidate(1);
+    assertNull(cache.get(a1));
+    assertNull(cache.get(a2));
+
+    // locations computed before an invalidation of the inode are not cached
+    long generation = cache.getGeneration(1);
+    cache.invalidate(1);
+    cache.put(a1, blocks, generation);
+    assertNull(cache.get(a1));
+    // but the invalidations of other inodes do not matter
+    generation = cache.getGeneration(1);
+    cache.invalidate(3);
+    cache.put(a1, blocks, generation);
+    assertNotNull(cache.get(a1));
+  }
+
+  @Test
+  public void testCopies() {
+    Configuration conf = new HdfsConfiguration();
+    LocatedBlocksCache cache = new LocatedBlocksCache(null, conf);
+    DatanodeInfo[] locs = {DFSTestUtil.getLocalDatanodeInfo(1001),
+        DFSTestUtil.getLocalDatanodeInfo(1002)};
+    LocatedBlock block = new LocatedBlock(new ExtendedBlock("bp", 1, 10, 1),
+        locs, new String[] {"s1", "s2"},
+        new StorageType[] {StorageType.DISK, StorageType.SSD});
+    LocatedBlocks blocks = new LocatedBlocks(10, false,
+        Collections.singletonList(block), block, true, null, null);
+    LocatedBlocksCache.Key key = new LocatedBlocksCache.Key(1, 0, 10, "user");
+    cache.put(key, blocks, cache.getGeneration(1));
+
+    // the locations cached and returned are sorted in place by the readers
+    ArrayUtils.reverse(block.getLocations());
+    block.updateCachedStorageInfo();
+    for (int i = 0; i < 2; i++) {
+      LocatedBlocks copy = cache.get(key);
+      LocatedBlock b = copy.get(0);
+      assertNotSame(block, b);
+      assertEquals(block.getBlock(), b.getBlock());
+      assertEquals(1001, b.getLocations()[0].getXferPort());
+      assertArrayEquals(new String[] {"s1", "s2"}, b.getStorageIDs());
+      assertEquals(StorageType.SSD, b.getStorageTypes()[1]);
+      assertNotSame(b, copy.getLastLocatedBlock());
+      ArrayUtils.reverse(b.getLocations());
+      b.updateCachedStorageInfo();
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testCachedLocations() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(
+        DFSConfigKeys.DFS_NAMENODE_BLOCK_LOCATIONS_CACHE_ENABLED_KEY, true);
+    conf.setLong(
+        DFSConfigKeys.DFS_NAMENODE_BLOCK_LOCATIONS_CACHE_TTL_MS_KEY, 60000);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(1).build();
+    try {
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      NamenodeProtocols nn = cluster.getNameNodeRpc();
+      LocatedBlocksCache cache = cluster.getNamesystem().getFSDirectory()
+          .getLocatedBlocksCache();
+      String file = "/file";
+      DFSTestUtil.createFile(fs, new Path(file), 1024, (short) 1, 0L);
+      long hits = getLongCounter("BlockLocationsCacheHitsNumOps",
+          getMetrics(NN_METRICS));
+
+      LocatedBlocks blocks = nn.getBlockLocations(file, 0, Long.MAX_VALUE);
+      assertEquals(1024, blocks.getFileLength());
+      LocatedBlocks cached = nn.getBlockLocations(file, 0, Long.MAX_VALUE);
+      assertNotSame(blocks, cached);
+      assertEquals(blocks.get(0).getBlock(), cached.get(0).getBlock());
+      assertArrayEquals(blocks.get(0).getLocations(),
+          cached.get(0).getLocations());
+      nn.getBlockLocations(file, 0, 512);
+      assertEquals(2, cache.size());
+      assertEquals(++hits, getLongCounter("BlockLocationsCacheHitsNumOps",
+          getMetrics(NN_METRICS)));
+
+      // a file being written is not cached
+      FSDataOutputStream out = fs.append(new Path(file));
+      assertEquals(0, cache.size());
+      out.write(new byte[512]);
+      out.hflush();
+      assertTrue(nn.getBlockLocations(file, 0, Long.MAX_VALUE)
+          .isUnderConstruction());
+      assertEquals(0, cache.size());
+
+      // the locations after the append are cached again
+      out.close();
+      blocks = nn.getBlockLocations(file, 0, Long.MAX_VALUE);
+      assertFalse(blocks.isUnderConstruction());
+      assertEquals(1536, blocks.getFileLength());
+      assertEquals(1536,
+          nn.getBlockLocations(file, 0, Long.MAX_VALUE).getFileLength());
+      assertEquals(++hits, getLongCounter("BlockLocationsCacheHitsNumOps",
+          getMetrics(NN_METRICS)));
+
+      // a file replaced by another one of the same name
+      DFSTestUtil.createFile(fs, new Path(file), 100, (short) 1, 0L);
+      assertEquals(100,
+          nn.getBlockLocations(file, 0, Long.MAX_VALUE).getFileLength());
+      fs.truncate(new Path(file), 0);
+      assertEquals(0,
+          nn.getBlockLocations(file, 0, Long.MAX_VALUE).getFileLength());
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testShuffledLocations() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(
+        DFSConfigKeys.DFS_NAMENODE_BLOCK_LOCATIONS_CACHE_ENABLED_KEY, true);
+    conf.setLong(
+        DFSConfigKeys.DFS_NAMENODE_BLOCK_LOCATIONS_CACHE_TTL_MS_KEY, 60000);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(3).build();
+    try {
+      cluster.waitActive();
+      NamenodeProtocols nn = cluster.getNameNodeRpc();
+      String file = "/file";
+      DFSTestUtil.createFile(cluster.getFileSystem(), new Path(file), 1024,
+          (short) 3, 0L);
+      DFSTestUtil.waitReplication(cluster.getFileSystem(), new Path(file),
+          (short) 3);
+      long hits = getLongCounter("BlockLocationsCacheHitsNumOps",
+          getMetrics(NN_METRICS));
+      // the replicas at the same distance are shuffled for every reader
+      Set<List<DatanodeInfo>> orders = new HashSet<>();
+      for (int i = 0; i < 20; i++) {
+        orders.add(Arrays.asList(
+            nn.getBlockLocations(file, 0, Long.MAX_VALUE).get(0)
+                .getLocations()));
+      }
+      assertTrue(orders.size() > 1);
+      // all cached since the replication was checked
+      assertEquals(hits + 20, getLongCounter("BlockLocationsCacheHitsNumOps",
+          getMetrics(NN_METRICS)));
+    } finally {
+      cluster.shutdown();
+    }
+  }
+}
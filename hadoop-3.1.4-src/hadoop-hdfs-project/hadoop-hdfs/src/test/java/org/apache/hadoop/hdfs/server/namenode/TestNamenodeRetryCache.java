@@ -42,6 +42,7 @@ import org.apache.hadoop.hdfs.DistributedFileSystem;
 import org.apache.hadoop.hdfs.HdfsConfiguration;
 import org.apache.hadoop.hdfs.MiniDFSCluster;
 import org.apache.hadoop.hdfs.MiniDFSNNTopology;
+import org.apache.hadoop.hdfs.protocol.CreateBatchResult;
 import org.apache.hadoop.hdfs.protocol.DatanodeID;
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
@@ -251,6 +252,57 @@ public class TestNamenodeRetryCache {
     }
   }
   
+  /**
+   * Test for a batch of creates, retried on the same NameNode and on a
+   * NameNode which rebuilt its retry cache from the edit log.
+   */
+  @Test
+  public void testCreateBatch() throws Exception {
+    String dir = "/testNamenodeRetryCache/testCreateBatch/";
+    String[] srcs = {dir + "a", dir + "b", dir + "c", dir + "d"};
+    EnumSetWritable<CreateFlag> flag =
+        new EnumSetWritable<CreateFlag>(EnumSet.of(CreateFlag.CREATE));
+    newCall();
+    nnRpc.create(srcs[2], perm, "other", flag, true, (short) 1, BlockSize,
+        null, null);
+
+    // Two retried calls return the result of the first one
+    newCall();
+    CreateBatchResult result = nnRpc.createBatch(srcs, perm, "holder", flag,
+        true, (short) 1, BlockSize, null, null);
+    assertEquals(2, result.getStatuses().length);
+    Assert.assertNotNull(result.getFailure());
+    for (int i = 0; i < 2; i++) {
+      Assert.assertSame(result, nnRpc.createBatch(srcs, perm, "holder", flag,
+          true, (short) 1, BlockSize, null, null));
+    }
+
+    // After a restart, the result is rebuilt from the retry cache entry
+    // replayed from the edit log
+    cluster.restartNameNode();
+    cluster.waitActive();
+    nnRpc = cluster.getNameNode().getRpcServer();
+    CreateBatchResult replayed = nnRpc.createBatch(srcs, perm, "holder",
+        flag, true, (short) 1, BlockSize, null, null);
+    assertEquals(2, replayed.getStatuses().length);
+    for (int i = 0; i < 2; i++) {
+      assertEquals(result.getStatuses()[i].getFileId(),
+          replayed.getStatuses()[i].getFileId());
+    }
+    assertEquals(IOException.class.getName(),
+        replayed.getExceptionClassName());
+
+    // A non-retried call fails
+    newCall();
+    try {
+      nnRpc.createBatch(srcs, perm, "holder", flag, true, (short) 1,
+          BlockSize, null, null);
+      Assert.fail("testCreateBatch - expected exception is not thrown");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
   /**
    * Test for rename1
    */
@@ -159,6 +159,41 @@ public class TestEditLogTailer {
     }
   }
 
+  @Test
+  public void testTailerWithPrefetch() throws Exception {
+    Configuration conf = getConf();
+    conf.setInt(DFSConfigKeys.DFS_HA_TAILEDITS_PERIOD_KEY, 0);
+    conf.setLong(EditLogTailer.DFS_HA_TAILEDITS_MAX_TXNS_PER_LOCK_KEY, 5);
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_EDITS_PREFETCH_SIZE_KEY, 2);
+
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .nnTopology(MiniDFSNNTopology.simpleHATopology())
+        .numDataNodes(0)
+        .build();
+    try {
+      cluster.waitActive();
+      cluster.transitionToActive(0);
+      NameNode nn1 = cluster.getNameNode(0);
+      NameNode nn2 = cluster.getNameNode(1);
+      for (int i = 0; i < DIRS_TO_MAKE; i++) {
+        NameNodeAdapter.mkdirs(nn1, getDirPath(i),
+            new PermissionStatus("test", "test",
+                new FsPermission((short)00755)), true);
+      }
+
+      HATestUtil.waitForStandbyToCatchUp(nn1, nn2);
+      assertEquals("Inconsistent number of applied txns on Standby",
+          nn1.getNamesystem().getEditLog().getLastWrittenTxId(),
+          nn2.getNamesystem().getFSImage().getLastAppliedTxId() + 1);
+      for (int i = 0; i < DIRS_TO_MAKE; i++) {
+        assertTrue(NameNodeAdapter.getFileInfo(nn2,
+            getDirPath(i), false, false, false).isDirectory());
+      }
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
   @Test
   public void testTailerBackoff() throws Exception {
     Configuration conf = new Configuration();
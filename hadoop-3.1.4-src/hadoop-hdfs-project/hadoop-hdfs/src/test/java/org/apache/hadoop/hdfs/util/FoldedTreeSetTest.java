@@ -328,6 +328,58 @@ public class FoldedTreeSetTest {
     }
   }
 
+  @Test
+  public void testTailIterator() {
+    FoldedTreeSet<Integer> set = new FoldedTreeSet<>();
+    assertFalse(set.tailIterator(0).hasNext());
+    // Even numbers, spread over many nodes
+    for (int i = 0; i < 2048; i += 2) {
+      set.add(i);
+    }
+    for (int from = -1; from <= 2048; from++) {
+      Iterator<Integer> it = set.tailIterator(from);
+      int expected = Math.max(0, from + (from & 1));
+      while (expected < 2048) {
+        assertTrue(it.hasNext());
+        assertEquals(expected, it.next().intValue());
+        expected += 2;
+      }
+      assertFalse(it.hasNext());
+    }
+
+    // Random keys, looked up with a comparator
+    FoldedTreeSet<Holder> holders = new FoldedTreeSet<>();
+    long[] longs = new long[4096];
+    for (int i = 0; i < longs.length; i++) {
+      Holder val = new Holder(srand.nextLong());
+      while (holders.contains(val)) {
+        val = new Holder(srand.nextLong());
+      }
+      longs[i] = val.getId();
+      holders.add(val);
+    }
+    Arrays.sort(longs);
+    Comparator<Object> cmp = new Comparator<Object>() {
+      @Override
+      public int compare(Object o1, Object o2) {
+        long lookup = (long) o1;
+        long stored = ((Holder) o2).getId();
+        return lookup < stored ? -1
+               : lookup > stored ? 1 : 0;
+      }
+    };
+    for (int i = 0; i < 100; i++) {
+      long from = srand.nextLong();
+      Iterator<Holder> it = holders.tailIterator(from, cmp);
+      int index = Arrays.binarySearch(longs, from);
+      for (index = index < 0 ? -index - 1 : index; index < longs.length;
+          index++) {
+        assertEquals(longs[index], it.next().getId());
+      }
+      assertFalse(it.hasNext());
+    }
+  }
+
   @Test
   public void testRemoveWithComparator() {
     FoldedTreeSet<Holder> set = new FoldedTreeSet<>();
@@ -42,7 +42,10 @@ public class TestHdfsConfigFields extends TestConfigurationFieldsBase {
     xmlFilename = new String("hdfs-default.xml");
     configurationClasses = new Class[] { HdfsClientConfigKeys.class,
         HdfsClientConfigKeys.Failover.class,
-        HdfsClientConfigKeys.StripedRead.class, DFSConfigKeys.class,
+        HdfsClientConfigKeys.StripedRead.class,
+        HdfsClientConfigKeys.VectoredRead.class,
+        HdfsClientConfigKeys.HedgedRead.class,
+        HdfsClientConfigKeys.Read.PageCache.class, DFSConfigKeys.class,
         HdfsClientConfigKeys.BlockWrite.ReplaceDatanodeOnFailure.class };
 
     // Set error modes